@@ -0,0 +1,55 @@
+package com.parkit.parkingsystem.benchmark;
+
+import java.util.SplittableRandom;
+
+/**
+ * When the next vehicle reaches a gate. Arrivals are a Poisson process,
+ * steady or with a rate following the rush hours; several gates each running
+ * one at {@code rate / gates} add up to one process at {@code rate}.
+ */
+@FunctionalInterface
+interface ArrivalProcess {
+
+    /**
+     * @param elapsedNanos time since the run started
+     * @return the wait until the next arrival, in nanoseconds
+     */
+    long nextGapNanos(long elapsedNanos, SplittableRandom random);
+
+    static ArrivalProcess poisson(double ratePerSecond) {
+        return (elapsedNanos, random) -> exponentialNanos(ratePerSecond, random);
+    }
+
+    /**
+     * A Poisson process whose rate peaks at {@code peakRatePerSecond} around
+     * 8:30 and 17:30 of simulated time and falls to a fifth of it at night,
+     * drawn by thinning: candidates come at the peak rate and are kept with
+     * the probability of the rate at their time over the peak rate.
+     *
+     * @param timeScale simulated seconds per real second
+     * @param startHour simulated hour of day the run starts at
+     */
+    static ArrivalProcess rushHour(double peakRatePerSecond, double timeScale, double startHour) {
+        return (elapsedNanos, random) -> {
+            long candidate = elapsedNanos;
+            do {
+                candidate += exponentialNanos(peakRatePerSecond, random);
+            } while (random.nextDouble() >= rushHourShare(startHour + candidate / 1e9 * timeScale / 3600));
+            return candidate - elapsedNanos;
+        };
+    }
+
+    /**
+     * @return the rate at that hour as a share of the peak rate
+     */
+    static double rushHourShare(double hour) {
+        double hourOfDay = hour % 24;
+        double morning = Math.exp(-Math.pow(hourOfDay - 8.5, 2) / 2);
+        double evening = Math.exp(-Math.pow((hourOfDay - 17.5) / 1.25, 2) / 2);
+        return 0.2 + 0.8 * Math.max(morning, evening);
+    }
+
+    private static long exponentialNanos(double ratePerSecond, SplittableRandom random) {
+        return (long) (-Math.log(1 - random.nextDouble()) / ratePerSecond * 1e9);
+    }
+}
@@ -0,0 +1,101 @@
+package com.parkit.parkingsystem.benchmark;
+
+import com.parkit.parkingsystem.config.DataBaseConfig;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.net.URI;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Locale;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * In-memory H2 database in MySQL mode standing in for the production MySQL
+ * server, so the DAO benchmarks measure our code rather than the network.
+ */
+final class BenchmarkDatabase {
+
+    static final String USER = "sa";
+    static final String PASSWORD = "";
+
+    private BenchmarkDatabase() {
+    }
+
+    static String url(String name) {
+        return "jdbc:h2:mem:" + name + ";MODE=MySQL;DATABASE_TO_LOWER=TRUE;DB_CLOSE_DELAY=-1";
+    }
+
+    /**
+     * Drops and recreates the schema of the named database.
+     */
+    static DataBaseConfig create(String name) throws IOException, SQLException {
+        String url = url(name);
+        try (Connection con = DriverManager.getConnection(url, USER, PASSWORD);
+             Statement statement = con.createStatement()) {
+            statement.execute("DROP ALL OBJECTS");
+            for (String sql : loadSchema().split(";")) {
+                if (!sql.isBlank()) {
+                    statement.execute(sql);
+                }
+            }
+            checkTablesOfMigrations(con);
+        }
+        return new DataBaseConfig(url, USER, PASSWORD);
+    }
+
+    /**
+     * Fails when a migration creates a table missing from bench-schema.sql,
+     * rather than letting every query on it fail quietly during the run.
+     */
+    private static void checkTablesOfMigrations(Connection con) throws IOException, SQLException {
+        URL migrations = BenchmarkDatabase.class.getResource("/db/migration");
+        if (migrations == null || !"file".equals(migrations.getProtocol())) {
+            throw new IOException("Migration scripts not found on the classpath");
+        }
+        Pattern createTable = Pattern.compile("(?i)CREATE TABLE (?:IF NOT EXISTS )?(\\w+)");
+        try (DirectoryStream<Path> scripts = Files.newDirectoryStream(Path.of(URI.create(migrations.toString())), "V*.sql")) {
+            for (Path script : scripts) {
+                Matcher matcher = createTable.matcher(Files.readString(script));
+                while (matcher.find()) {
+                    String table = matcher.group(1).toLowerCase(Locale.ROOT);
+                    try (ResultSet tables = con.getMetaData().getTables(null, null, table, null)) {
+                        if (!tables.next()) {
+                            throw new IllegalStateException("Table " + table + " of " + script.getFileName()
+                                    + " is missing from bench-schema.sql");
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * The gate flows print to the console; keep that out of the measurements.
+     */
+    static PrintStream silenceConsole() {
+        PrintStream console = System.out;
+        System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+        return console;
+    }
+
+    private static String loadSchema() throws IOException {
+        try (InputStream in = BenchmarkDatabase.class.getResourceAsStream("/bench-schema.sql")) {
+            if (in == null) {
+                throw new IOException("bench-schema.sql not found on the classpath");
+            }
+            return new String(in.readAllBytes(), StandardCharsets.UTF_8).replaceAll("(?s)/\\*.*?\\*/", "");
+        }
+    }
+}
@@ -0,0 +1,68 @@
+package com.parkit.parkingsystem.benchmark;
+
+import com.parkit.parkingsystem.config.DataBaseConfig;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of getting a connection from {@link DataBaseConfig}, against opening
+ * one straight from the driver.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ConnectionPoolBenchmark {
+
+    private DataBaseConfig dataBaseConfig;
+    private String url;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        dataBaseConfig = BenchmarkDatabase.create("pool");
+        url = BenchmarkDatabase.url("pool");
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        DataBaseConfig.shutdownPools();
+    }
+
+    @Benchmark
+    public boolean borrowAndRelease() throws Exception {
+        Connection con = dataBaseConfig.getConnection();
+        boolean autoCommit = con.getAutoCommit();
+        dataBaseConfig.closeConnection(con);
+        return autoCommit;
+    }
+
+    @Benchmark
+    @Threads(8)
+    public boolean borrowAndReleaseContended() throws Exception {
+        return borrowAndRelease();
+    }
+
+    @Benchmark
+    public boolean openAndClose() throws Exception {
+        try (Connection con = DriverManager.getConnection(url, BenchmarkDatabase.USER, BenchmarkDatabase.PASSWORD)) {
+            return con.getAutoCommit();
+        }
+    }
+}
@@ -0,0 +1,93 @@
+package com.parkit.parkingsystem.benchmark;
+
+import com.parkit.parkingsystem.constants.ParkingType;
+import com.parkit.parkingsystem.model.ParkingSpot;
+import com.parkit.parkingsystem.model.Ticket;
+import com.parkit.parkingsystem.service.FareCalculatorService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Fare computation alone: one ticket at a time, and whole batches through the
+ * array API.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class FareCalculatorBenchmark {
+
+    @Param({"1024", "262144"})
+    public int batchSize;
+
+    private final FareCalculatorService fareCalculatorService = new FareCalculatorService();
+
+    private Ticket[] tickets;
+    private boolean[] discounts;
+    private long[] inTimes;
+    private long[] outTimes;
+    private int[] parkingTypes;
+    private long[] prices;
+    private int next;
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(42);
+        long now = System.currentTimeMillis();
+        tickets = new Ticket[batchSize];
+        discounts = new boolean[batchSize];
+        inTimes = new long[batchSize];
+        outTimes = new long[batchSize];
+        parkingTypes = new int[batchSize];
+        prices = new long[batchSize];
+        for (int i = 0; i < batchSize; i++) {
+            inTimes[i] = now - random.nextInt(48 * 60 * 60 * 1000);
+            outTimes[i] = inTimes[i] + random.nextInt(72 * 60 * 60 * 1000);
+            parkingTypes[i] = random.nextInt(ParkingType.values().length);
+            discounts[i] = random.nextBoolean();
+
+            Ticket ticket = new Ticket();
+            ticket.setParkingSpot(new ParkingSpot(i + 1, ParkingType.values()[parkingTypes[i]], false));
+            ticket.setInTimeMillis(inTimes[i]);
+            ticket.setOutTimeMillis(outTimes[i]);
+            tickets[i] = ticket;
+        }
+    }
+
+    @Benchmark
+    public long calculateFare() {
+        int i = next;
+        next = i + 1 == batchSize ? 0 : i + 1;
+        Ticket ticket = tickets[i];
+        fareCalculatorService.calculateFare(ticket, discounts[i]);
+        return ticket.getPriceCents();
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    public long[] calculateFares() {
+        fareCalculatorService.calculateFares(inTimes, outTimes, parkingTypes, discounts, prices);
+        return prices;
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    public long[] calculateFaresParallel() {
+        fareCalculatorService.calculateFaresParallel(inTimes, outTimes, parkingTypes, discounts, prices);
+        return prices;
+    }
+}
@@ -0,0 +1,44 @@
+package com.parkit.parkingsystem.benchmark;
+
+import com.parkit.parkingsystem.constants.ParkingType;
+import com.parkit.parkingsystem.util.InputReaderUtil;
+
+/**
+ * The terminal of one virtual gate: answers the console flows of its
+ * {@code ParkingService} with the vehicle in front of the gate instead of
+ * reading the keyboard. The entry flow only asks for the plate once it found
+ * a spot, which tells a parked vehicle from one turned away.
+ */
+class GateScript extends InputReaderUtil {
+
+    private int selection;
+    private String vehicleRegNumber;
+    private boolean plateRead;
+
+    void arrive(ParkingType parkingType, String vehicleRegNumber) {
+        //same menu as ParkingService
+        this.selection = parkingType == ParkingType.CAR ? 1 : 2;
+        this.vehicleRegNumber = vehicleRegNumber;
+        this.plateRead = false;
+    }
+
+    void leave(String vehicleRegNumber) {
+        this.vehicleRegNumber = vehicleRegNumber;
+        this.plateRead = false;
+    }
+
+    boolean isPlateRead() {
+        return plateRead;
+    }
+
+    @Override
+    public int readSelection() {
+        return selection;
+    }
+
+    @Override
+    public String readVehicleRegistrationNumber() {
+        plateRead = true;
+        return vehicleRegNumber;
+    }
+}
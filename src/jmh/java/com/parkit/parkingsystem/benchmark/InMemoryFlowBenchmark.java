@@ -0,0 +1,73 @@
+package com.parkit.parkingsystem.benchmark;
+
+import com.parkit.parkingsystem.config.MemoryStoreSettings;
+import com.parkit.parkingsystem.dao.InMemoryParkingStore;
+import com.parkit.parkingsystem.service.ParkingService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The same gate flow as {@link ParkingFlowBenchmark#entryThenExit()} on the
+ * in-memory store, the baseline for the database path.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@Threads(1)
+@State(Scope.Benchmark)
+public class InMemoryFlowBenchmark {
+
+    /**
+     * Whether changes go to a change log, with snapshots.
+     */
+    @Param({"false", "true"})
+    public boolean persistent;
+
+    private final ScriptedInputReaderUtil inputReaderUtil = new ScriptedInputReaderUtil();
+    private InMemoryParkingStore store;
+    private ParkingService parkingService;
+    private PrintStream console;
+    private long vehicleCounter;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        console = BenchmarkDatabase.silenceConsole();
+        MemoryStoreSettings settings = new MemoryStoreSettings();
+        settings.setDirectory(persistent ? Files.createTempDirectory("memory-store-bench") : null);
+        settings.setSpots("CAR:100,BIKE:100");
+        store = new InMemoryParkingStore(settings);
+        parkingService = new ParkingService(inputReaderUtil, store, store);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        store.close();
+        System.setOut(console);
+    }
+
+    @Benchmark
+    public void entryThenExit() {
+        inputReaderUtil.vehicleRegNumber = "BENCH" + Long.toString(vehicleCounter++, 36).toUpperCase();
+        parkingService.processIncomingVehicle();
+        parkingService.processExitingVehicle();
+    }
+}
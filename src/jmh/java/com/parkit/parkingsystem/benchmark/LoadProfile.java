@@ -0,0 +1,168 @@
+package com.parkit.parkingsystem.benchmark;
+
+import com.parkit.parkingsystem.constants.ParkingType;
+
+import java.util.EnumMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.SplittableRandom;
+
+/**
+ * The traffic a {@link LoadSimulation} offers, read from
+ * {@code -Dparkit.load.<name>=<value>} system properties. Simulated time runs
+ * {@code timeScale} times faster than the wall clock, so that a day of rush
+ * hours and dwell times fits in a short run; arrival rates are per real
+ * second.
+ */
+final class LoadProfile {
+
+    /**
+     * How long a vehicle stays, in simulated minutes.
+     */
+    enum DwellTime {
+        /** Always {@code dwellMinutes}. */
+        FIXED,
+        /** A mean of {@code dwellMinutes}, most stays short. */
+        EXPONENTIAL,
+        /** Median of {@code dwellMinutes}, spread by {@code dwellSigma}; a few vehicles stay all day. */
+        LOGNORMAL
+    }
+
+    private final String backend = System.getProperty("parkit.load.backend", "memory").toLowerCase(Locale.ROOT);
+    private final String spots = System.getProperty("parkit.load.spots", "CAR:800,BIKE:200");
+    private final int gates = Integer.getInteger("parkit.load.gates", 8);
+    private final long durationSeconds = Long.getLong("parkit.load.durationSeconds", 60L);
+    private final long warmupSeconds = Long.getLong("parkit.load.warmupSeconds", 5L);
+    private final double ratePerSecond = Double.parseDouble(System.getProperty("parkit.load.rate", "200"));
+    private final String arrivals = System.getProperty("parkit.load.arrivals", "poisson").toLowerCase(Locale.ROOT);
+    private final double timeScale = Double.parseDouble(System.getProperty("parkit.load.timeScale", "1440"));
+    private final double startHour = Double.parseDouble(System.getProperty("parkit.load.startHour", "6"));
+    private final Map<ParkingType, Double> mix = parseMix(System.getProperty("parkit.load.mix", "CAR:0.8,BIKE:0.2"));
+    private final double repeatShare = Double.parseDouble(System.getProperty("parkit.load.repeatShare", "0.3"));
+    private final int regulars = Integer.getInteger("parkit.load.regulars", 2_000);
+    private final DwellTime dwellTime = DwellTime.valueOf(System.getProperty("parkit.load.dwell", "LOGNORMAL").toUpperCase(Locale.ROOT));
+    private final double dwellMinutes = Double.parseDouble(System.getProperty("parkit.load.dwellMinutes", "90"));
+    private final double dwellSigma = Double.parseDouble(System.getProperty("parkit.load.dwellSigma", "0.8"));
+
+    /**
+     * {@code memory} for the in-memory store, {@code h2} for the DAOs on an
+     * in-memory H2 database.
+     */
+    String getBackend() {
+        return backend;
+    }
+
+    /**
+     * Spots of the lot, as {@code TYPE:count} pairs like
+     * {@code -Dparkit.memoryStore.spots}.
+     */
+    String getSpots() {
+        return spots;
+    }
+
+    int getGates() {
+        return gates;
+    }
+
+    long getDurationSeconds() {
+        return durationSeconds;
+    }
+
+    /**
+     * Start of the run left out of the throughput and latencies, while the
+     * JIT compiles the gate flows.
+     */
+    long getWarmupSeconds() {
+        return warmupSeconds;
+    }
+
+    /**
+     * {@code poisson} at a steady {@code rate}, or {@code rush} peaking at
+     * {@code rate} in the morning and evening rush hours of simulated time.
+     */
+    ArrivalProcess arrivalProcessPerGate() {
+        double perGate = ratePerSecond / gates;
+        switch (arrivals) {
+            case "poisson":
+                return ArrivalProcess.poisson(perGate);
+            case "rush":
+                return ArrivalProcess.rushHour(perGate, timeScale, startHour);
+            default:
+                throw new IllegalArgumentException("Expected poisson or rush, got : " + arrivals);
+        }
+    }
+
+    double getTimeScale() {
+        return timeScale;
+    }
+
+    double getStartHour() {
+        return startHour;
+    }
+
+    ParkingType nextParkingType(SplittableRandom random) {
+        double draw = random.nextDouble();
+        ParkingType last = null;
+        for (Map.Entry<ParkingType, Double> share : mix.entrySet()) {
+            last = share.getKey();
+            draw -= share.getValue();
+            if (draw < 0) {
+                break;
+            }
+        }
+        return last;
+    }
+
+    /**
+     * Share of arrivals made by one of {@link #getRegulars()} known plates,
+     * which earn the recurring-user discount after their first visit.
+     */
+    double getRepeatShare() {
+        return repeatShare;
+    }
+
+    int getRegulars() {
+        return regulars;
+    }
+
+    long nextDwellMinutes(SplittableRandom random) {
+        switch (dwellTime) {
+            case FIXED:
+                return Math.round(dwellMinutes);
+            case EXPONENTIAL:
+                return Math.round(-dwellMinutes * Math.log(1 - random.nextDouble()));
+            default:
+                return Math.round(dwellMinutes * Math.exp(dwellSigma * gaussian(random)));
+        }
+    }
+
+    @Override
+    public String toString() {
+        return backend + " backend, " + spots + ", " + gates + " gates, " + durationSeconds + "s (" + warmupSeconds + "s warm-up) at " + ratePerSecond
+                + "/s " + arrivals + " arrivals, mix " + mix + ", " + Math.round(repeatShare * 100) + "% repeat visitors, "
+                + dwellTime + " dwell of " + dwellMinutes + " min, 1s = " + timeScale / 60 + " simulated min";
+    }
+
+    private static double gaussian(SplittableRandom random) {
+        //Box-Muller, SplittableRandom has no nextGaussian
+        return Math.sqrt(-2 * Math.log(1 - random.nextDouble())) * Math.cos(2 * Math.PI * random.nextDouble());
+    }
+
+    private static Map<ParkingType, Double> parseMix(String mix) {
+        Map<ParkingType, Double> weights = new EnumMap<>(ParkingType.class);
+        double total = 0;
+        for (String pair : mix.split(",")) {
+            String[] typeAndWeight = pair.trim().split(":");
+            if (typeAndWeight.length != 2) {
+                throw new IllegalArgumentException("Expected TYPE:weight, got : " + pair);
+            }
+            double weight = Double.parseDouble(typeAndWeight[1].trim());
+            weights.put(ParkingType.valueOf(typeAndWeight[0].trim().toUpperCase(Locale.ROOT)), weight);
+            total += weight;
+        }
+        for (Map.Entry<ParkingType, Double> weight : weights.entrySet()) {
+            weight.setValue(weight.getValue() / total);
+        }
+        return weights;
+    }
+}
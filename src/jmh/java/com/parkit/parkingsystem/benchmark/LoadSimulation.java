@@ -0,0 +1,279 @@
+package com.parkit.parkingsystem.benchmark;
+
+import com.parkit.parkingsystem.config.DataBaseConfig;
+import com.parkit.parkingsystem.config.MemoryStoreSettings;
+import com.parkit.parkingsystem.constants.ParkingType;
+import com.parkit.parkingsystem.dao.InMemoryParkingStore;
+import com.parkit.parkingsystem.dao.ParkingSpotDAO;
+import com.parkit.parkingsystem.dao.TicketDAO;
+import com.parkit.parkingsystem.metrics.LatencyHistogram;
+import com.parkit.parkingsystem.metrics.Metrics;
+import com.parkit.parkingsystem.metrics.OperationStats;
+import com.parkit.parkingsystem.model.ParkingSpot;
+import com.parkit.parkingsystem.service.ParkingService;
+
+import java.io.PrintStream;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.SplittableRandom;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.DelayQueue;
+import java.util.concurrent.Delayed;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Function;
+
+/**
+ * How many entries and exits per second one node sustains under the traffic
+ * of a {@link LoadProfile}. Each virtual gate is a thread with its own
+ * {@link ParkingService} over the shared store, driven through the console
+ * flows by a {@link GateScript}: it lets in the vehicles arriving on its
+ * {@link ArrivalProcess} and lets out any vehicle whose dwell time is over.
+ * Arrivals are scheduled whether or not the gates keep up, and latencies are
+ * measured from the scheduled time, so a gate falling behind shows in the
+ * percentiles instead of slowing the traffic down. Throughput and latencies
+ * leave out the warm-up.
+ * <p>
+ * mvn -Pjmh -DskipTests test-compile exec:java -Dexec.classpathScope=test
+ * -Dexec.mainClass=com.parkit.parkingsystem.benchmark.LoadSimulation -Dparkit.load.rate=2000
+ */
+public class LoadSimulation {
+
+    private static final ParkingType[] PARKING_TYPES = ParkingType.values();
+
+    private static final class Departure implements Delayed {
+        private final long dueNanos;
+        private final String vehicleRegNumber;
+
+        private Departure(long dueNanos, String vehicleRegNumber) {
+            this.dueNanos = dueNanos;
+            this.vehicleRegNumber = vehicleRegNumber;
+        }
+
+        @Override
+        public long getDelay(TimeUnit unit) {
+            return unit.convert(dueNanos - System.nanoTime(), TimeUnit.NANOSECONDS);
+        }
+
+        @Override
+        public int compareTo(Delayed other) {
+            return Long.compare(dueNanos, ((Departure) other).dueNanos);
+        }
+    }
+
+    private final LoadProfile profile;
+    private final DelayQueue<Departure> departures = new DelayQueue<>();
+    private final Set<String> parked = ConcurrentHashMap.newKeySet();
+    private final AtomicLong newVisitors = new AtomicLong();
+    private final LatencyHistogram entryLatency = new LatencyHistogram();
+    private final LatencyHistogram exitLatency = new LatencyHistogram();
+    private final LongAdder arrivals = new LongAdder();
+    private final LongAdder entries = new LongAdder();
+    private final LongAdder exits = new LongAdder();
+    private final LongAdder repeatEntries = new LongAdder();
+    private final LongAdder[] turnedAway = new LongAdder[PARKING_TYPES.length];
+    private final AtomicLong firstTurnedAwayNanos = new AtomicLong(-1);
+    private long startNanos;
+    private long measureFromNanos;
+    private long endNanos;
+
+    LoadSimulation(LoadProfile profile) {
+        this.profile = profile;
+        for (int i = 0; i < turnedAway.length; i++) {
+            turnedAway[i] = new LongAdder();
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        //before anything logs, so the gate flows print nowhere
+        PrintStream console = BenchmarkDatabase.silenceConsole();
+        LoadProfile profile = new LoadProfile();
+        console.println("Load simulation: " + profile);
+        LoadSimulation simulation = new LoadSimulation(profile);
+        if ("h2".equals(profile.getBackend())) {
+            DataBaseConfig dataBaseConfig = databaseWithSpots(new MemoryStoreSettings(), profile.getSpots());
+            ParkingSpotDAO parkingSpotDAO = new ParkingSpotDAO();
+            parkingSpotDAO.dataBaseConfig = dataBaseConfig;
+            parkingSpotDAO.loadSpotAllocator();
+            TicketDAO ticketDAO = new TicketDAO();
+            ticketDAO.dataBaseConfig = dataBaseConfig;
+            ticketDAO.loadVisitCountIndex();
+            ticketDAO.loadOpenTicketIndex();
+            simulation.run(gate -> new ParkingService(gate, parkingSpotDAO, ticketDAO));
+            DataBaseConfig.shutdownPools();
+        } else {
+            MemoryStoreSettings settings = new MemoryStoreSettings();
+            settings.setDirectory(null);
+            settings.setSpots(profile.getSpots());
+            try (InMemoryParkingStore store = new InMemoryParkingStore(settings)) {
+                simulation.run(gate -> new ParkingService(gate, store, store));
+            }
+        }
+        simulation.report(console);
+        System.setOut(console);
+    }
+
+    void run(Function<GateScript, ParkingService> parkingServices) throws InterruptedException {
+        List<Thread> gates = new ArrayList<>();
+        SplittableRandom random = new SplittableRandom(Long.getLong("parkit.load.seed", 42L));
+        startNanos = System.nanoTime();
+        measureFromNanos = startNanos + TimeUnit.SECONDS.toNanos(profile.getWarmupSeconds());
+        endNanos = startNanos + TimeUnit.SECONDS.toNanos(profile.getDurationSeconds());
+        for (int i = 0; i < profile.getGates(); i++) {
+            GateScript script = new GateScript();
+            ParkingService parkingService = parkingServices.apply(script);
+            SplittableRandom gateRandom = random.split();
+            Thread gate = new Thread(() -> runGate(parkingService, script, gateRandom), "gate-" + i);
+            gates.add(gate);
+            gate.start();
+        }
+        for (Thread gate : gates) {
+            gate.join();
+        }
+        endNanos = System.nanoTime();
+    }
+
+    private void runGate(ParkingService parkingService, GateScript script, SplittableRandom random) {
+        ArrivalProcess arrivalProcess = profile.arrivalProcessPerGate();
+        long nextArrival = startNanos + arrivalProcess.nextGapNanos(0, random);
+        long now;
+        while ((now = System.nanoTime()) < endNanos) {
+            Departure departure = departures.poll();
+            if (departure != null) {
+                exit(parkingService, script, departure);
+            } else if (now >= nextArrival) {
+                enter(parkingService, script, random, nextArrival);
+                nextArrival += arrivalProcess.nextGapNanos(nextArrival - startNanos, random);
+            } else {
+                LockSupport.parkNanos(Math.min(nextArrival - now, 200_000));
+            }
+        }
+    }
+
+    private void enter(ParkingService parkingService, GateScript script, SplittableRandom random, long scheduledNanos) {
+        arrivals.increment();
+        ParkingType parkingType = profile.nextParkingType(random);
+        String vehicleRegNumber = nextVehicle(random);
+        boolean regular = vehicleRegNumber.startsWith("RG");
+        script.arrive(parkingType, vehicleRegNumber);
+        parkingService.processIncomingVehicle();
+        long now = System.nanoTime();
+        if (scheduledNanos >= measureFromNanos) {
+            entryLatency.record(now - scheduledNanos);
+        }
+        if (!script.isPlateRead()) {
+            parked.remove(vehicleRegNumber);
+            turnedAway[parkingType.ordinal()].increment();
+            firstTurnedAwayNanos.compareAndSet(-1, now - startNanos);
+            return;
+        }
+        entries.increment();
+        if (regular) {
+            repeatEntries.increment();
+        }
+        long dwellNanos = (long) (profile.nextDwellMinutes(random) * 60e9 / profile.getTimeScale());
+        departures.add(new Departure(scheduledNanos + dwellNanos, vehicleRegNumber));
+    }
+
+    private void exit(ParkingService parkingService, GateScript script, Departure departure) {
+        script.leave(departure.vehicleRegNumber);
+        parkingService.processExitingVehicle();
+        if (departure.dueNanos >= measureFromNanos) {
+            exitLatency.record(System.nanoTime() - departure.dueNanos);
+        }
+        exits.increment();
+        parked.remove(departure.vehicleRegNumber);
+    }
+
+    /**
+     * @return a regular not parked yet for the repeat share of arrivals, a
+     * plate never seen before otherwise
+     */
+    private String nextVehicle(SplittableRandom random) {
+        if (profile.getRegulars() > 0 && random.nextDouble() < profile.getRepeatShare()) {
+            String regular = "RG" + Integer.toString(random.nextInt(profile.getRegulars()), 36).toUpperCase(Locale.ROOT);
+            if (parked.add(regular)) {
+                return regular;
+            }
+        }
+        String vehicleRegNumber = "LG" + Long.toString(newVisitors.incrementAndGet(), 36).toUpperCase(Locale.ROOT);
+        parked.add(vehicleRegNumber);
+        return vehicleRegNumber;
+    }
+
+    void report(PrintStream out) {
+        double measuredSeconds = (endNanos - measureFromNanos) / 1e9;
+        out.printf(Locale.ROOT, "%n%d arrivals in %.1fs, %d parked, %d exits%n",
+                arrivals.sum(), (endNanos - startNanos) / 1e9, entries.sum(), exits.sum());
+        out.printf(Locale.ROOT, "%.0f entries and exits per second after the warm-up%n",
+                (entryLatency.getCount() + exitLatency.getCount()) / measuredSeconds);
+        out.printf(Locale.ROOT, "%d entries by regulars, %d vehicles still parked%n", repeatEntries.sum(), parked.size());
+        long firstTurnedAway = firstTurnedAwayNanos.get();
+        if (firstTurnedAway < 0) {
+            out.println("No vehicle turned away");
+        } else {
+            StringBuilder perType = new StringBuilder();
+            for (ParkingType parkingType : PARKING_TYPES) {
+                perType.append(' ').append(parkingType).append('=').append(turnedAway[parkingType.ordinal()].sum());
+            }
+            double hour = profile.getStartHour() + firstTurnedAway / 1e9 * profile.getTimeScale() / 3600;
+            out.printf(Locale.ROOT, "Turned away, lot full:%s, first after %.1fs (simulated %02d:%02d)%n",
+                    perType, firstTurnedAway / 1e9, (int) hour % 24, (int) (hour * 60) % 60);
+        }
+        out.printf(Locale.ROOT, "%-34s %8s %8s %8s %8s %8s%n", "latency (us)", "count", "p50", "p99", "p999", "max");
+        print(out, "entry, from scheduled arrival", entryLatency);
+        print(out, "exit, from end of dwell time", exitLatency);
+        long errors = 0;
+        for (OperationStats stats : Metrics.getOperations()) {
+            //the console is silenced, so failing DAO calls only show here
+            if (stats.getCount() > 0 && (stats.getName().startsWith("ParkingService.") || stats.getErrorCount() > 0)) {
+                out.printf(Locale.ROOT, "%-34s %8d %8d %8d %8d %8d  (%d errors)%n", stats.getName(), stats.getCount(),
+                        stats.getP50Micros(), stats.getP99Micros(), stats.getP999Micros(), stats.getMaxMicros(), stats.getErrorCount());
+            }
+            errors += stats.getErrorCount();
+        }
+        if (errors > 0) {
+            out.println("WARNING: " + errors + " operations failed, the figures above do not measure a healthy node");
+        }
+    }
+
+    private static void print(PrintStream out, String name, LatencyHistogram histogram) {
+        out.printf(Locale.ROOT, "%-34s %8d %8d %8d %8d %8d%n", name, histogram.getCount(),
+                histogram.getPercentileNanos(0.5) / 1000, histogram.getPercentileNanos(0.99) / 1000,
+                histogram.getPercentileNanos(0.999) / 1000, histogram.getMaxNanos() / 1000);
+    }
+
+    /**
+     * The benchmark database with the lot's spots instead of the five of the
+     * seed.
+     */
+    private static DataBaseConfig databaseWithSpots(MemoryStoreSettings settings, String spots) throws Exception {
+        settings.setSpots(spots);
+        DataBaseConfig dataBaseConfig = BenchmarkDatabase.create("load");
+        Connection con = dataBaseConfig.getConnection();
+        try {
+            try (Statement statement = con.createStatement()) {
+                statement.execute("DELETE FROM parking");
+            }
+            try (PreparedStatement ps = con.prepareStatement("INSERT INTO parking(parking_number, available, type) values(?,?,?)")) {
+                for (ParkingSpot parkingSpot : settings.getParkingSpots()) {
+                    ps.setInt(1, parkingSpot.getId());
+                    ps.setBoolean(2, true);
+                    ps.setString(3, parkingSpot.getParkingType().name());
+                    ps.addBatch();
+                }
+                ps.executeBatch();
+            }
+        } finally {
+            dataBaseConfig.closeConnection(con);
+        }
+        return dataBaseConfig;
+    }
+}
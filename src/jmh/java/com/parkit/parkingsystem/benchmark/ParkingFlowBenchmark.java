@@ -0,0 +1,103 @@
+package com.parkit.parkingsystem.benchmark;
+
+import com.parkit.parkingsystem.config.DataBaseConfig;
+import com.parkit.parkingsystem.dao.ParkingEntryDAO;
+import com.parkit.parkingsystem.dao.ParkingSpotDAO;
+import com.parkit.parkingsystem.dao.TicketDAO;
+import com.parkit.parkingsystem.service.ParkingService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.PrintStream;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The gate flows end to end against the in-memory database: a vehicle
+ * entering then leaving, plus the DAO round trips they are made of.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@Threads(1)
+@State(Scope.Benchmark)
+public class ParkingFlowBenchmark {
+
+    /**
+     * Whether the visit-count, open-ticket and spot indexes are loaded, as the
+     * shell does by default.
+     */
+    @Param({"false", "true"})
+    public boolean indexes;
+
+    private final ScriptedInputReaderUtil inputReaderUtil = new ScriptedInputReaderUtil();
+    private TicketDAO ticketDAO;
+    private ParkingService parkingService;
+    private ParkingService transactionalParkingService;
+    private PrintStream console;
+    private long vehicleCounter;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        console = BenchmarkDatabase.silenceConsole();
+        DataBaseConfig dataBaseConfig = BenchmarkDatabase.create("flow_" + indexes);
+
+        ParkingSpotDAO parkingSpotDAO = new ParkingSpotDAO();
+        parkingSpotDAO.dataBaseConfig = dataBaseConfig;
+        ticketDAO = new TicketDAO();
+        ticketDAO.dataBaseConfig = dataBaseConfig;
+        ParkingEntryDAO parkingEntryDAO = new ParkingEntryDAO();
+        parkingEntryDAO.dataBaseConfig = dataBaseConfig;
+        if (indexes) {
+            ticketDAO.loadVisitCountIndex();
+            ticketDAO.loadOpenTicketIndex();
+            parkingSpotDAO.loadSpotAllocator();
+            parkingEntryDAO.visitCountIndex = ticketDAO.visitCountIndex;
+            parkingEntryDAO.openTicketIndex = ticketDAO.openTicketIndex;
+        }
+        parkingService = new ParkingService(inputReaderUtil, parkingSpotDAO, ticketDAO);
+        transactionalParkingService = new ParkingService(inputReaderUtil, parkingSpotDAO, ticketDAO, parkingEntryDAO);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        DataBaseConfig.shutdownPools();
+        System.setOut(console);
+    }
+
+    @Benchmark
+    public void entryThenExit() {
+        inputReaderUtil.vehicleRegNumber = nextVehicleRegNumber();
+        parkingService.processIncomingVehicle();
+        parkingService.processExitingVehicle();
+    }
+
+    @Benchmark
+    public void transactionalEntryThenExit() {
+        inputReaderUtil.vehicleRegNumber = nextVehicleRegNumber();
+        transactionalParkingService.processIncomingVehicle();
+        transactionalParkingService.processExitingVehicle();
+    }
+
+    @Benchmark
+    public int getNbTicket() {
+        return ticketDAO.getNbTicket("BENCH0");
+    }
+
+    private String nextVehicleRegNumber() {
+        return "BENCH" + Long.toString(vehicleCounter++, 36).toUpperCase();
+    }
+}
@@ -0,0 +1,21 @@
+package com.parkit.parkingsystem.benchmark;
+
+import com.parkit.parkingsystem.util.InputReaderUtil;
+
+/**
+ * Always parks a car, under whatever plate the benchmark set last.
+ */
+class ScriptedInputReaderUtil extends InputReaderUtil {
+
+    String vehicleRegNumber;
+
+    @Override
+    public int readSelection() {
+        return 1;
+    }
+
+    @Override
+    public String readVehicleRegistrationNumber() {
+        return vehicleRegNumber;
+    }
+}
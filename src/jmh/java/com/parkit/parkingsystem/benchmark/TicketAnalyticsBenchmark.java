@@ -0,0 +1,70 @@
+package com.parkit.parkingsystem.benchmark;
+
+import com.parkit.parkingsystem.analytics.DwellTimeDistribution;
+import com.parkit.parkingsystem.analytics.RowFilter;
+import com.parkit.parkingsystem.analytics.TicketAnalytics;
+import com.parkit.parkingsystem.analytics.TicketArchive;
+import com.parkit.parkingsystem.constants.ParkingType;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.Random;
+import java.util.SortedMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Finance queries over a year of synthetic closed tickets held in the
+ * columnar archive.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class TicketAnalyticsBenchmark {
+
+    @Param({"1000000", "10000000"})
+    public int tickets;
+
+    private TicketAnalytics analytics;
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(42);
+        long from = System.currentTimeMillis() - 365L * 86_400_000L;
+        TicketArchive.Builder builder = TicketArchive.builder();
+        for (int i = 0; i < tickets; i++) {
+            long inTime = from + (long) (random.nextDouble() * 365 * 86_400_000L);
+            builder.add(inTime, inTime + random.nextInt(8 * 3_600_000), 1 + random.nextInt(500),
+                    random.nextInt(4) == 0 ? ParkingType.BIKE : ParkingType.CAR, random.nextInt(3_000), "AB" + random.nextInt(200_000));
+        }
+        analytics = new TicketAnalytics(builder.build(), ZoneId.of("Europe/Paris"));
+    }
+
+    @Benchmark
+    public SortedMap<LocalDate, Long> revenuePerDay() {
+        return analytics.revenuePerDay(RowFilter.ALL);
+    }
+
+    @Benchmark
+    public long[] carRevenuePerArrivalHour() {
+        return analytics.revenuePerArrivalHour(RowFilter.ofType(ParkingType.CAR));
+    }
+
+    @Benchmark
+    public DwellTimeDistribution dwellTimes() {
+        return analytics.dwellTimes(RowFilter.ALL);
+    }
+}
@@ -0,0 +1,39 @@
+/* Same tables and indexes as the V1, V2 and V4 migrations under src/main/resources/db/migration, for the in-memory H2 database used by the benchmarks; BenchmarkDatabase checks that every table of the migrations is here */
+create table parking(
+PARKING_NUMBER int PRIMARY KEY,
+AVAILABLE bool NOT NULL,
+TYPE varchar(10) NOT NULL
+);
+
+create table ticket(
+ ID int PRIMARY KEY AUTO_INCREMENT,
+ PARKING_NUMBER int NOT NULL,
+ VEHICLE_REG_NUMBER varchar(10) NOT NULL,
+ PRICE DECIMAL(10,2),
+ IN_TIME DATETIME NOT NULL,
+ OUT_TIME DATETIME,
+ FOREIGN KEY (PARKING_NUMBER)
+ REFERENCES parking(PARKING_NUMBER));
+
+create table ticket_archive(
+ ID int PRIMARY KEY,
+ PARKING_NUMBER int NOT NULL,
+ VEHICLE_REG_NUMBER varchar(10) NOT NULL,
+ PRICE DECIMAL(10,2),
+ IN_TIME DATETIME NOT NULL,
+ OUT_TIME DATETIME NOT NULL);
+
+create table ticket_visit_summary(
+ VEHICLE_REG_NUMBER varchar(10) PRIMARY KEY,
+ ARCHIVED_COUNT int NOT NULL);
+
+insert into parking(PARKING_NUMBER,AVAILABLE,TYPE) values(1,true,'CAR');
+insert into parking(PARKING_NUMBER,AVAILABLE,TYPE) values(2,true,'CAR');
+insert into parking(PARKING_NUMBER,AVAILABLE,TYPE) values(3,true,'CAR');
+insert into parking(PARKING_NUMBER,AVAILABLE,TYPE) values(4,true,'BIKE');
+insert into parking(PARKING_NUMBER,AVAILABLE,TYPE) values(5,true,'BIKE');
+
+create index idx_parking_type_available on parking(TYPE, AVAILABLE, PARKING_NUMBER);
+create index idx_ticket_plate_in_time on ticket(VEHICLE_REG_NUMBER, IN_TIME);
+create index idx_ticket_out_time on ticket(OUT_TIME);
+create index idx_ticket_archive_plate on ticket_archive(VEHICLE_REG_NUMBER);
@@ -1,13 +1,49 @@
 package com.parkit.parkingsystem;
 
+import com.parkit.parkingsystem.analytics.ArchiveReport;
+import com.parkit.parkingsystem.metrics.Tracing;
+import com.parkit.parkingsystem.service.EventReplayer;
+import com.parkit.parkingsystem.service.GateServers;
 import com.parkit.parkingsystem.service.InteractiveShell;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+
 public class App {
     private static final Logger logger = LogManager.getLogger("App");
-    public static void main(String args[]){
+    public static void main(String args[]) throws IOException {
         logger.info("Initializing Parking System");
+        List<String> options = Arrays.asList(args);
+        int trace = options.indexOf("--trace");
+        if (trace >= 0 && trace + 1 < options.size()) {
+            Tracing.start(Path.of(options.get(trace + 1)));
+        }
+        if (options.contains("--report")) {
+            ArchiveReport.run();
+            return;
+        }
+        int replay = options.indexOf("--replay");
+        if (replay >= 0 && replay + 1 < options.size()) {
+            Path file = Path.of(options.get(replay + 1));
+            EventReplayer.Format format = EventReplayer.Format.of(file);
+            if (options.contains("--format=csv")) {
+                format = EventReplayer.Format.CSV;
+            } else if (options.contains("--format=binary")) {
+                format = EventReplayer.Format.BINARY;
+            }
+            EventReplayer.replayFile(file, format);
+            return;
+        }
+        if (options.contains("--http") || options.contains("--gate")) {
+            GateServers.serve(
+                    options.contains("--http") ? Integer.getInteger("parkit.http.port", 8080) : GateServers.DISABLED,
+                    options.contains("--gate") ? Integer.getInteger("parkit.gate.port", 9090) : GateServers.DISABLED);
+            return;
+        }
         InteractiveShell.loadInterface();
     }
 }
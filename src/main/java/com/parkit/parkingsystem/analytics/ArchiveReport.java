@@ -0,0 +1,66 @@
+package com.parkit.parkingsystem.analytics;
+
+import com.parkit.parkingsystem.config.DataBaseConfig;
+import com.parkit.parkingsystem.constants.ParkingType;
+import com.parkit.parkingsystem.dao.TicketArchiveDAO;
+import com.parkit.parkingsystem.util.Money;
+
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.Map;
+
+/**
+ * The finance report: revenue per day, per parking type and per hour of
+ * arrival, and dwell times per parking type, over all closed tickets.
+ */
+public final class ArchiveReport {
+
+    private ArchiveReport() {
+    }
+
+    /**
+     * Loads the archive from {@code -Dparkit.analytics.url}, by default the
+     * production database, and prints the report.
+     */
+    public static void run() {
+        TicketArchiveDAO ticketArchiveDAO = new TicketArchiveDAO();
+        String url = System.getProperty("parkit.analytics.url");
+        if (url != null) {
+            ticketArchiveDAO.dataBaseConfig = new DataBaseConfig(url, "root", "");
+        }
+        long start = System.nanoTime();
+        TicketArchive archive = ticketArchiveDAO.loadClosedTickets();
+        DataBaseConfig.shutdownPools();
+        if (archive == null) {
+            System.out.println("Unable to load the closed tickets");
+            return;
+        }
+        long loaded = System.nanoTime();
+        System.out.print(format(new TicketAnalytics(archive, ZoneId.systemDefault())));
+        System.out.println("Loaded " + archive.size() + " tickets in " + (loaded - start) / 1_000_000
+                + " ms, reported in " + (System.nanoTime() - loaded) / 1_000_000 + " ms");
+    }
+
+    public static String format(TicketAnalytics analytics) {
+        StringBuilder report = new StringBuilder();
+        report.append("Revenue per day\n");
+        for (Map.Entry<LocalDate, Long> day : analytics.revenuePerDay(RowFilter.ALL).entrySet()) {
+            report.append("  ").append(day.getKey()).append(' ').append(Money.format(day.getValue())).append('\n');
+        }
+        report.append("Revenue per parking type\n");
+        for (Map.Entry<ParkingType, Long> type : analytics.revenuePerType(RowFilter.ALL).entrySet()) {
+            report.append("  ").append(type.getKey()).append(' ').append(Money.format(type.getValue())).append('\n');
+        }
+        report.append("Revenue per hour of arrival\n");
+        long[] revenuePerHour = analytics.revenuePerArrivalHour(RowFilter.ALL);
+        for (int hour = 0; hour < revenuePerHour.length; hour++) {
+            report.append(String.format("  %02d:00 %s%n", hour, Money.format(revenuePerHour[hour])));
+        }
+        report.append("Dwell times\n");
+        for (ParkingType parkingType : ParkingType.values()) {
+            report.append("  ").append(parkingType).append(' ')
+                    .append(analytics.dwellTimes(RowFilter.ofType(parkingType))).append('\n');
+        }
+        return report.toString();
+    }
+}
@@ -0,0 +1,58 @@
+package com.parkit.parkingsystem.analytics;
+
+/**
+ * How long vehicles stayed, from the exact sorted dwell times of the
+ * selected tickets.
+ */
+public class DwellTimeDistribution {
+
+    private final long[] sortedDwellMillis;
+    private final long totalMillis;
+
+    DwellTimeDistribution(long[] sortedDwellMillis) {
+        this.sortedDwellMillis = sortedDwellMillis;
+        long total = 0;
+        for (long dwellMillis : sortedDwellMillis) {
+            total += dwellMillis;
+        }
+        this.totalMillis = total;
+    }
+
+    public int getCount() {
+        return sortedDwellMillis.length;
+    }
+
+    public long getMeanMillis() {
+        return sortedDwellMillis.length == 0 ? 0 : totalMillis / sortedDwellMillis.length;
+    }
+
+    public long getMinMillis() {
+        return sortedDwellMillis.length == 0 ? 0 : sortedDwellMillis[0];
+    }
+
+    public long getMaxMillis() {
+        return sortedDwellMillis.length == 0 ? 0 : sortedDwellMillis[sortedDwellMillis.length - 1];
+    }
+
+    /**
+     * @param quantile between 0 and 1, e.g. 0.9
+     * @return the dwell time of that rank, or 0 without tickets
+     */
+    public long getPercentileMillis(double quantile) {
+        if (sortedDwellMillis.length == 0) {
+            return 0;
+        }
+        int rank = (int) Math.ceil(quantile * sortedDwellMillis.length);
+        return sortedDwellMillis[Math.min(sortedDwellMillis.length, Math.max(1, rank)) - 1];
+    }
+
+    @Override
+    public String toString() {
+        return "DwellTimeDistribution{count=" + getCount()
+                + ", meanMinutes=" + getMeanMillis() / 60_000
+                + ", p50Minutes=" + getPercentileMillis(0.5) / 60_000
+                + ", p90Minutes=" + getPercentileMillis(0.9) / 60_000
+                + ", p99Minutes=" + getPercentileMillis(0.99) / 60_000
+                + ", maxMinutes=" + getMaxMillis() / 60_000 + "}";
+    }
+}
@@ -0,0 +1,79 @@
+package com.parkit.parkingsystem.analytics;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.Arrays;
+
+/**
+ * Start of every local hour over a time range, so that the local date and
+ * hour of an epoch time are found by binary search instead of a time zone
+ * conversion per row. Daylight saving changes are taken into account: a
+ * skipped hour is missing and a repeated hour appears twice.
+ */
+final class HourIndex {
+
+    private final long[] hourStarts;
+    private final byte[] hours;
+    private final int[] days;
+    private final long firstEpochDay;
+    private final int dayCount;
+
+    HourIndex(long fromMillis, long toMillis, ZoneId zone) {
+        int capacity = (int) Math.max(1, (toMillis - fromMillis) / 3_600_000L + 3);
+        long[] hourStarts = new long[capacity];
+        byte[] hours = new byte[capacity];
+        int[] days = new int[capacity];
+        ZonedDateTime hour = Instant.ofEpochMilli(fromMillis).atZone(zone).truncatedTo(ChronoUnit.HOURS);
+        long firstEpochDay = hour.toLocalDate().toEpochDay();
+        int size = 0;
+        long start;
+        while ((start = hour.toInstant().toEpochMilli()) <= toMillis) {
+            if (size == hourStarts.length) {
+                hourStarts = Arrays.copyOf(hourStarts, size * 2);
+                hours = Arrays.copyOf(hours, size * 2);
+                days = Arrays.copyOf(days, size * 2);
+            }
+            hourStarts[size] = start;
+            hours[size] = (byte) hour.getHour();
+            days[size] = (int) (hour.toLocalDate().toEpochDay() - firstEpochDay);
+            size++;
+            hour = hour.plusHours(1);
+        }
+        this.hourStarts = Arrays.copyOf(hourStarts, size);
+        this.hours = Arrays.copyOf(hours, size);
+        this.days = Arrays.copyOf(days, size);
+        this.firstEpochDay = firstEpochDay;
+        this.dayCount = size == 0 ? 0 : days[size - 1] + 1;
+    }
+
+    /**
+     * @return the local hour of day of a time within the range
+     */
+    int hourOf(long millis) {
+        return hours[slotOf(millis)];
+    }
+
+    /**
+     * @return the local day of a time within the range, counted from the
+     * first day of the range
+     */
+    int dayOf(long millis) {
+        return days[slotOf(millis)];
+    }
+
+    int getDayCount() {
+        return dayCount;
+    }
+
+    LocalDate dateOf(int day) {
+        return LocalDate.ofEpochDay(firstEpochDay + day);
+    }
+
+    private int slotOf(long millis) {
+        int slot = Arrays.binarySearch(hourStarts, millis);
+        return slot >= 0 ? slot : -slot - 2;
+    }
+}
@@ -0,0 +1,49 @@
+package com.parkit.parkingsystem.analytics;
+
+import com.parkit.parkingsystem.constants.ParkingType;
+
+/**
+ * Selects the rows of a {@link TicketArchive} a query looks at. Filters read
+ * the columns directly, so testing a row allocates nothing.
+ */
+@FunctionalInterface
+public interface RowFilter {
+
+    RowFilter ALL = (archive, row) -> true;
+
+    boolean test(TicketArchive archive, int row);
+
+    default RowFilter and(RowFilter other) {
+        return (archive, row) -> test(archive, row) && other.test(archive, row);
+    }
+
+    /**
+     * Tickets that left from {@code fromMillis} included to {@code toMillis}
+     * excluded.
+     */
+    static RowFilter outBetween(long fromMillis, long toMillis) {
+        return (archive, row) -> archive.getOutTime(row) >= fromMillis && archive.getOutTime(row) < toMillis;
+    }
+
+    /**
+     * Tickets that arrived from {@code fromMillis} included to {@code toMillis}
+     * excluded.
+     */
+    static RowFilter inBetween(long fromMillis, long toMillis) {
+        return (archive, row) -> archive.getInTime(row) >= fromMillis && archive.getInTime(row) < toMillis;
+    }
+
+    static RowFilter ofType(ParkingType parkingType) {
+        int ordinal = parkingType.ordinal();
+        return (archive, row) -> archive.getParkingTypeOrdinal(row) == ordinal;
+    }
+
+    /**
+     * Tickets of one vehicle, compared by dictionary index rather than by
+     * string.
+     */
+    static RowFilter ofPlate(TicketArchive archive, String plate) {
+        int plateId = archive.plateIdOf(plate);
+        return (rows, row) -> rows.getPlateId(row) == plateId;
+    }
+}
@@ -0,0 +1,239 @@
+package com.parkit.parkingsystem.analytics;
+
+import com.parkit.parkingsystem.constants.ParkingType;
+
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Group-by, filter and aggregate queries over a {@link TicketArchive}. A
+ * query splits the rows into chunks of {@value #CHUNK_SIZE}, aggregates each
+ * chunk into its own partial result on a fork-join pool, then combines the
+ * partial results, so no thread shares state with another while scanning.
+ * Days and hours are local to the zone given.
+ */
+public class TicketAnalytics {
+
+    static final int CHUNK_SIZE = 16_384;
+
+    private static final ParkingType[] PARKING_TYPES = ParkingType.values();
+
+    /**
+     * A query as a partial result per chunk of rows, combined at the end.
+     */
+    public interface Aggregation<R> {
+
+        R newPartial();
+
+        void accumulate(R partial, TicketArchive archive, int row);
+
+        R combine(R left, R right);
+    }
+
+    private final TicketArchive archive;
+    private final ForkJoinPool pool;
+    private final HourIndex hourIndex;
+
+    public TicketAnalytics(TicketArchive archive, ZoneId zone) {
+        this(archive, zone, ForkJoinPool.commonPool());
+    }
+
+    public TicketAnalytics(TicketArchive archive, ZoneId zone, ForkJoinPool pool) {
+        this.archive = archive;
+        this.pool = pool;
+        long[] range = aggregate(RowFilter.ALL, new Aggregation<long[]>() {
+            @Override
+            public long[] newPartial() {
+                return new long[]{Long.MAX_VALUE, Long.MIN_VALUE};
+            }
+
+            @Override
+            public void accumulate(long[] partial, TicketArchive archive, int row) {
+                partial[0] = Math.min(partial[0], Math.min(archive.getInTime(row), archive.getOutTime(row)));
+                partial[1] = Math.max(partial[1], Math.max(archive.getInTime(row), archive.getOutTime(row)));
+            }
+
+            @Override
+            public long[] combine(long[] left, long[] right) {
+                return new long[]{Math.min(left[0], right[0]), Math.max(left[1], right[1])};
+            }
+        });
+        this.hourIndex = archive.size() == 0 ? null : new HourIndex(range[0], range[1], zone);
+    }
+
+    public TicketArchive getArchive() {
+        return archive;
+    }
+
+    public <R> R aggregate(RowFilter filter, Aggregation<R> aggregation) {
+        return pool.invoke(new ChunkTask<>(filter, aggregation, 0, archive.size()));
+    }
+
+    /**
+     * Revenue in cents per local day the tickets were paid, leaving out days
+     * without tickets.
+     */
+    public SortedMap<LocalDate, Long> revenuePerDay(RowFilter filter) {
+        SortedMap<LocalDate, Long> revenuePerDay = new TreeMap<>();
+        if (hourIndex == null) {
+            return revenuePerDay;
+        }
+        int dayCount = hourIndex.getDayCount();
+        //revenue of each day, then the number of tickets of each day
+        long[] totals = aggregate(filter, new SumAggregation(dayCount * 2) {
+            @Override
+            public void accumulate(long[] partial, TicketArchive archive, int row) {
+                int day = hourIndex.dayOf(archive.getOutTime(row));
+                partial[day] += archive.getPriceCents(row);
+                partial[dayCount + day]++;
+            }
+        });
+        for (int day = 0; day < dayCount; day++) {
+            if (totals[dayCount + day] > 0) {
+                revenuePerDay.put(hourIndex.dateOf(day), totals[day]);
+            }
+        }
+        return revenuePerDay;
+    }
+
+    /**
+     * Revenue in cents per parking type, 0 for types without tickets.
+     */
+    public Map<ParkingType, Long> revenuePerType(RowFilter filter) {
+        long[] totals = aggregate(filter, new SumAggregation(PARKING_TYPES.length) {
+            @Override
+            public void accumulate(long[] partial, TicketArchive archive, int row) {
+                partial[archive.getParkingTypeOrdinal(row)] += archive.getPriceCents(row);
+            }
+        });
+        Map<ParkingType, Long> revenuePerType = new EnumMap<>(ParkingType.class);
+        for (ParkingType parkingType : PARKING_TYPES) {
+            revenuePerType.put(parkingType, totals[parkingType.ordinal()]);
+        }
+        return revenuePerType;
+    }
+
+    /**
+     * Revenue in cents by local hour of arrival, indexed from 0 to 23.
+     */
+    public long[] revenuePerArrivalHour(RowFilter filter) {
+        if (hourIndex == null) {
+            return new long[24];
+        }
+        return aggregate(filter, new SumAggregation(24) {
+            @Override
+            public void accumulate(long[] partial, TicketArchive archive, int row) {
+                partial[hourIndex.hourOf(archive.getInTime(row))] += archive.getPriceCents(row);
+            }
+        });
+    }
+
+    public DwellTimeDistribution dwellTimes(RowFilter filter) {
+        long[] dwellMillis = aggregate(filter, new Aggregation<DwellTimes>() {
+            @Override
+            public DwellTimes newPartial() {
+                return new DwellTimes();
+            }
+
+            @Override
+            public void accumulate(DwellTimes partial, TicketArchive archive, int row) {
+                partial.add(archive.getDwellMillis(row));
+            }
+
+            @Override
+            public DwellTimes combine(DwellTimes left, DwellTimes right) {
+                return left.addAll(right);
+            }
+        }).toArray();
+        Arrays.parallelSort(dwellMillis);
+        return new DwellTimeDistribution(dwellMillis);
+    }
+
+    private final class ChunkTask<R> extends RecursiveTask<R> {
+
+        private final RowFilter filter;
+        private final Aggregation<R> aggregation;
+        private final int from;
+        private final int to;
+
+        private ChunkTask(RowFilter filter, Aggregation<R> aggregation, int from, int to) {
+            this.filter = filter;
+            this.aggregation = aggregation;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected R compute() {
+            if (to - from <= CHUNK_SIZE) {
+                R partial = aggregation.newPartial();
+                for (int row = from; row < to; row++) {
+                    if (filter.test(archive, row)) {
+                        aggregation.accumulate(partial, archive, row);
+                    }
+                }
+                return partial;
+            }
+            int middle = (from + to) >>> 1;
+            ChunkTask<R> left = new ChunkTask<>(filter, aggregation, from, middle);
+            left.fork();
+            R right = new ChunkTask<>(filter, aggregation, middle, to).compute();
+            return aggregation.combine(left.join(), right);
+        }
+    }
+
+    private abstract static class SumAggregation implements Aggregation<long[]> {
+
+        private final int length;
+
+        private SumAggregation(int length) {
+            this.length = length;
+        }
+
+        @Override
+        public long[] newPartial() {
+            return new long[length];
+        }
+
+        @Override
+        public long[] combine(long[] left, long[] right) {
+            for (int i = 0; i < length; i++) {
+                left[i] += right[i];
+            }
+            return left;
+        }
+    }
+
+    private static final class DwellTimes {
+
+        private long[] values = new long[256];
+        private int size;
+
+        private void add(long value) {
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size * 2);
+            }
+            values[size++] = value;
+        }
+
+        private DwellTimes addAll(DwellTimes other) {
+            if (size + other.size > values.length) {
+                values = Arrays.copyOf(values, Math.max(values.length * 2, size + other.size));
+            }
+            System.arraycopy(other.values, 0, values, size, other.size);
+            size += other.size;
+            return this;
+        }
+
+        private long[] toArray() {
+            return Arrays.copyOf(values, size);
+        }
+    }
+}
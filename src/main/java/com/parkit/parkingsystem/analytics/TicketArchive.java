@@ -0,0 +1,158 @@
+package com.parkit.parkingsystem.analytics;
+
+import com.parkit.parkingsystem.constants.ParkingType;
+import com.parkit.parkingsystem.model.Ticket;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Closed tickets held column by column in primitive arrays, for reports that
+ * scan millions of rows without touching the ticket table. Plates are
+ * dictionary-encoded: each row stores the index of its plate in a table of
+ * distinct plates. An archive does not change once built.
+ */
+public final class TicketArchive {
+
+    private static final ParkingType[] PARKING_TYPES = ParkingType.values();
+
+    private final int size;
+    private final long[] inTimes;
+    private final long[] outTimes;
+    private final int[] parkingNumbers;
+    private final byte[] parkingTypes;
+    private final long[] prices;
+    private final int[] plateIds;
+    private final String[] plates;
+    private final Map<String, Integer> plateIdsByPlate;
+
+    private TicketArchive(Builder builder) {
+        this.size = builder.size;
+        this.inTimes = Arrays.copyOf(builder.inTimes, size);
+        this.outTimes = Arrays.copyOf(builder.outTimes, size);
+        this.parkingNumbers = Arrays.copyOf(builder.parkingNumbers, size);
+        this.parkingTypes = Arrays.copyOf(builder.parkingTypes, size);
+        this.prices = Arrays.copyOf(builder.prices, size);
+        this.plateIds = Arrays.copyOf(builder.plateIds, size);
+        this.plates = builder.plateIdsByPlate.keySet().toArray(new String[0]);
+        for (Map.Entry<String, Integer> plate : builder.plateIdsByPlate.entrySet()) {
+            plates[plate.getValue()] = plate.getKey();
+        }
+        this.plateIdsByPlate = new HashMap<>(builder.plateIdsByPlate);
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public long getInTime(int row) {
+        return inTimes[row];
+    }
+
+    public long getOutTime(int row) {
+        return outTimes[row];
+    }
+
+    public long getDwellMillis(int row) {
+        return outTimes[row] - inTimes[row];
+    }
+
+    public int getParkingNumber(int row) {
+        return parkingNumbers[row];
+    }
+
+    public int getParkingTypeOrdinal(int row) {
+        return parkingTypes[row];
+    }
+
+    public ParkingType getParkingType(int row) {
+        return PARKING_TYPES[parkingTypes[row]];
+    }
+
+    public long getPriceCents(int row) {
+        return prices[row];
+    }
+
+    public int getPlateId(int row) {
+        return plateIds[row];
+    }
+
+    public String getPlate(int row) {
+        return plates[plateIds[row]];
+    }
+
+    /**
+     * @return the dictionary index of this plate, or -1 if no row has it
+     */
+    public int plateIdOf(String plate) {
+        Integer plateId = plateIdsByPlate.get(plate.toUpperCase(Locale.ROOT));
+        return plateId == null ? -1 : plateId;
+    }
+
+    /**
+     * Number of distinct plates.
+     */
+    public int getPlateCount() {
+        return plates.length;
+    }
+
+    public static final class Builder {
+
+        private int size;
+        private long[] inTimes = new long[1024];
+        private long[] outTimes = new long[1024];
+        private int[] parkingNumbers = new int[1024];
+        private byte[] parkingTypes = new byte[1024];
+        private long[] prices = new long[1024];
+        private int[] plateIds = new int[1024];
+        private final Map<String, Integer> plateIdsByPlate = new HashMap<>();
+
+        private Builder() {
+        }
+
+        /**
+         * @param plate compared case-insensitively, like vehicle_reg_number
+         */
+        public Builder add(long inTime, long outTime, int parkingNumber, ParkingType parkingType, long priceCents, String plate) {
+            if (size == inTimes.length) {
+                int capacity = size * 2;
+                inTimes = Arrays.copyOf(inTimes, capacity);
+                outTimes = Arrays.copyOf(outTimes, capacity);
+                parkingNumbers = Arrays.copyOf(parkingNumbers, capacity);
+                parkingTypes = Arrays.copyOf(parkingTypes, capacity);
+                prices = Arrays.copyOf(prices, capacity);
+                plateIds = Arrays.copyOf(plateIds, capacity);
+            }
+            inTimes[size] = inTime;
+            outTimes[size] = outTime;
+            parkingNumbers[size] = parkingNumber;
+            parkingTypes[size] = (byte) parkingType.ordinal();
+            prices[size] = priceCents;
+            plateIds[size] = plateIdsByPlate.computeIfAbsent(plate.toUpperCase(Locale.ROOT), key -> plateIdsByPlate.size());
+            size++;
+            return this;
+        }
+
+        public Builder add(Ticket ticket) {
+            if (ticket.isOpen()) {
+                throw new IllegalArgumentException("Only closed tickets are archived : " + ticket.getId());
+            }
+            return add(ticket.getInTimeMillis(), ticket.getOutTimeMillis(), ticket.getParkingSpot().getId(),
+                    ticket.getParkingSpot().getParkingType(), ticket.getPriceCents(), ticket.getVehicleRegNumber());
+        }
+
+        public int size() {
+            return size;
+        }
+
+        public TicketArchive build() {
+            return new TicketArchive(this);
+        }
+    }
+}
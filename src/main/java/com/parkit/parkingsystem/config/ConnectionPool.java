@@ -0,0 +1,336 @@
+package com.parkit.parkingsystem.config;
+
+import com.parkit.parkingsystem.metrics.Metrics;
+import com.parkit.parkingsystem.metrics.OperationStats;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.SQLTransientConnectionException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Bounded pool of physical JDBC connections. Borrowers wait at most
+ * {@link ConnectionPoolSettings#getBorrowTimeoutMillis()} for a free slot;
+ * idle connections are validated, aged out and evicted in the background.
+ */
+public class ConnectionPool {
+
+    private static final Logger logger = LogManager.getLogger("ConnectionPool");
+
+    private static final OperationStats borrowStats = Metrics.operation("ConnectionPool.borrow");
+
+    private static final ScheduledExecutorService evictor = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "db-pool-evictor");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    public interface ConnectionFactory {
+        Connection create() throws SQLException;
+    }
+
+    private static final class PooledConnection {
+        private final Connection connection;
+        private final long createdAt;
+        private final StatementCache statementCache;
+        private volatile long lastReturnedAt;
+
+        private PooledConnection(Connection connection, long now, StatementCache statementCache) {
+            this.connection = connection;
+            this.createdAt = now;
+            this.statementCache = statementCache;
+            this.lastReturnedAt = now;
+        }
+    }
+
+    private final ConnectionFactory connectionFactory;
+    private final ConnectionPoolSettings settings;
+    private final Semaphore permits;
+    private final ConcurrentLinkedDeque<PooledConnection> idle = new ConcurrentLinkedDeque<>();
+    private final Map<Connection, PooledConnection> borrowed = new ConcurrentHashMap<>();
+    private final ScheduledFuture<?> evictionTask;
+    private volatile boolean closed;
+
+    private final LongAdder borrowCount = new LongAdder();
+    private final LongAdder totalWaitNanos = new LongAdder();
+    private final AtomicLong maxWaitNanos = new AtomicLong();
+    private final LongAdder timeoutCount = new LongAdder();
+    private final LongAdder createdCount = new LongAdder();
+    private final LongAdder destroyedCount = new LongAdder();
+    private final LongAdder statementCacheHits = new LongAdder();
+    private final LongAdder statementCacheMisses = new LongAdder();
+    private final LongAdder statementCacheEvictions = new LongAdder();
+
+    public ConnectionPool(ConnectionFactory connectionFactory, ConnectionPoolSettings settings) {
+        if (settings.getMaxSize() < 1) {
+            throw new IllegalArgumentException("Pool size must be at least 1 : " + settings.getMaxSize());
+        }
+        this.connectionFactory = connectionFactory;
+        this.settings = settings;
+        this.permits = new Semaphore(settings.getMaxSize(), true);
+        long interval = settings.getEvictionIntervalMillis();
+        this.evictionTask = interval > 0
+                ? evictor.scheduleWithFixedDelay(this::evictIdleConnections, interval, interval, TimeUnit.MILLISECONDS)
+                : null;
+    }
+
+    /**
+     * Time spent here, waiting for a permit and validating or opening the
+     * connection, is recorded as the {@code ConnectionPool.borrow} operation.
+     */
+    public Connection borrow() throws SQLException {
+        long start = System.nanoTime();
+        try {
+            return acquire(start);
+        } catch (SQLException | RuntimeException e) {
+            borrowStats.error();
+            throw e;
+        } finally {
+            borrowStats.record(start);
+        }
+    }
+
+    private Connection acquire(long start) throws SQLException {
+        if (closed) {
+            throw new SQLException("Connection pool is closed");
+        }
+        try {
+            if (!permits.tryAcquire(settings.getBorrowTimeoutMillis(), TimeUnit.MILLISECONDS)) {
+                timeoutCount.increment();
+                throw new SQLTransientConnectionException(
+                        "Timed out after " + settings.getBorrowTimeoutMillis() + "ms waiting for a DB connection");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrupted while waiting for a DB connection", e);
+        }
+        recordWait(System.nanoTime() - start);
+
+        try {
+            PooledConnection pooled;
+            while ((pooled = idle.pollFirst()) != null) {
+                if (isUsable(pooled)) {
+                    borrowed.put(pooled.connection, pooled);
+                    return pooled.connection;
+                }
+                destroy(pooled);
+            }
+            Connection connection = connectionFactory.create();
+            StatementCache statementCache = settings.getStatementCacheSize() > 0
+                    ? new StatementCache(connection, settings.getStatementCacheSize(),
+                            statementCacheHits, statementCacheMisses, statementCacheEvictions)
+                    : null;
+            pooled = new PooledConnection(connection, System.nanoTime(), statementCache);
+            createdCount.increment();
+            logger.info("Create DB connection");
+            borrowed.put(pooled.connection, pooled);
+            return pooled.connection;
+        } catch (SQLException | RuntimeException e) {
+            permits.release();
+            throw e;
+        }
+    }
+
+    /**
+     * Handle on a borrowed connection that keeps its prepared statements open
+     * for the next borrower, see {@link ConnectionPoolSettings#getStatementCacheSize()}.
+     * Hand the handle back with {@link #release(Connection)} like the
+     * connection itself.
+     *
+     * @return the connection itself if statement caching is off or it was
+     * not borrowed from this pool
+     */
+    public Connection withStatementCache(Connection connection) {
+        PooledConnection pooled = borrowed.get(connection);
+        if (pooled == null || pooled.statementCache == null) {
+            return connection;
+        }
+        return pooled.statementCache.getConnection();
+    }
+
+    /**
+     * Hands a borrowed connection, or its statement caching handle, back to
+     * the pool.
+     *
+     * @return false if the connection was not borrowed from this pool
+     */
+    public boolean release(Connection connection) {
+        Connection physicalConnection = StatementCache.physicalConnectionOf(connection);
+        if (physicalConnection != null) {
+            connection = physicalConnection;
+        }
+        PooledConnection pooled = borrowed.remove(connection);
+        if (pooled == null) {
+            return false;
+        }
+        if (pooled.statementCache != null) {
+            pooled.statementCache.closeCheckedOut();
+        }
+        try {
+            if (closed || isExpired(pooled, System.nanoTime()) || connection.isClosed()) {
+                destroy(pooled);
+            } else {
+                if (!connection.getAutoCommit()) {
+                    connection.rollback();
+                    connection.setAutoCommit(true);
+                }
+                pooled.lastReturnedAt = System.nanoTime();
+                idle.offerFirst(pooled);
+            }
+        } catch (SQLException e) {
+            logger.error("Error while returning connection to pool", e);
+            destroy(pooled);
+        } finally {
+            permits.release();
+        }
+        return true;
+    }
+
+    public void close() {
+        closed = true;
+        if (evictionTask != null) {
+            evictionTask.cancel(false);
+        }
+        PooledConnection pooled;
+        while ((pooled = idle.pollFirst()) != null) {
+            destroy(pooled);
+        }
+        logger.info("Closed connection pool : " + this);
+    }
+
+    void evictIdleConnections() {
+        long now = System.nanoTime();
+        for (PooledConnection pooled : idle) {
+            boolean stale = isExpired(pooled, now)
+                    || now - pooled.lastReturnedAt > TimeUnit.MILLISECONDS.toNanos(settings.getIdleTimeoutMillis());
+            if (stale && idle.remove(pooled)) {
+                destroy(pooled);
+            }
+        }
+    }
+
+    private boolean isUsable(PooledConnection pooled) {
+        long now = System.nanoTime();
+        if (isExpired(pooled, now)
+                || now - pooled.lastReturnedAt > TimeUnit.MILLISECONDS.toNanos(settings.getIdleTimeoutMillis())) {
+            return false;
+        }
+        if (now - pooled.lastReturnedAt < TimeUnit.MILLISECONDS.toNanos(settings.getValidationIntervalMillis())) {
+            return true;
+        }
+        try {
+            return pooled.connection.isValid(settings.getValidationTimeoutSeconds());
+        } catch (SQLException e) {
+            logger.error("Error while validating pooled connection", e);
+            return false;
+        }
+    }
+
+    private boolean isExpired(PooledConnection pooled, long now) {
+        return now - pooled.createdAt > TimeUnit.MILLISECONDS.toNanos(settings.getMaxLifetimeMillis());
+    }
+
+    private void destroy(PooledConnection pooled) {
+        destroyedCount.increment();
+        if (pooled.statementCache != null) {
+            pooled.statementCache.close();
+        }
+        try {
+            pooled.connection.close();
+            logger.info("Closing DB connection");
+        } catch (SQLException e) {
+            logger.error("Error while closing connection", e);
+        }
+    }
+
+    private void recordWait(long waitNanos) {
+        borrowCount.increment();
+        totalWaitNanos.add(waitNanos);
+        maxWaitNanos.accumulateAndGet(waitNanos, Math::max);
+    }
+
+    public int getActiveCount() {
+        return borrowed.size();
+    }
+
+    public int getIdleCount() {
+        return idle.size();
+    }
+
+    public int getThreadsAwaitingConnection() {
+        return permits.getQueueLength();
+    }
+
+    public long getBorrowCount() {
+        return borrowCount.sum();
+    }
+
+    public long getTotalWaitNanos() {
+        return totalWaitNanos.sum();
+    }
+
+    public long getMaxWaitNanos() {
+        return maxWaitNanos.get();
+    }
+
+    public long getTimeoutCount() {
+        return timeoutCount.sum();
+    }
+
+    public long getCreatedCount() {
+        return createdCount.sum();
+    }
+
+    public long getDestroyedCount() {
+        return destroyedCount.sum();
+    }
+
+    public long getStatementCacheHits() {
+        return statementCacheHits.sum();
+    }
+
+    public long getStatementCacheMisses() {
+        return statementCacheMisses.sum();
+    }
+
+    public long getStatementCacheEvictions() {
+        return statementCacheEvictions.sum();
+    }
+
+    /**
+     * Share of {@code prepareStatement} calls served from the cache, 0 before
+     * the first one.
+     */
+    public double getStatementCacheHitRate() {
+        long hits = getStatementCacheHits();
+        long lookups = hits + getStatementCacheMisses();
+        return lookups == 0 ? 0 : (double) hits / lookups;
+    }
+
+    @Override
+    public String toString() {
+        long borrows = getBorrowCount();
+        return "ConnectionPool{active=" + getActiveCount()
+                + ", idle=" + getIdleCount()
+                + ", borrows=" + borrows
+                + ", avgWaitMicros=" + (borrows == 0 ? 0 : getTotalWaitNanos() / borrows / 1_000)
+                + ", maxWaitMicros=" + getMaxWaitNanos() / 1_000
+                + ", timeouts=" + getTimeoutCount()
+                + ", created=" + getCreatedCount()
+                + ", destroyed=" + getDestroyedCount()
+                + ", statementCacheHits=" + getStatementCacheHits()
+                + ", statementCacheMisses=" + getStatementCacheMisses()
+                + ", statementCacheEvictions=" + getStatementCacheEvictions() + "}";
+    }
+}
@@ -0,0 +1,90 @@
+package com.parkit.parkingsystem.config;
+
+/**
+ * Tuning knobs for {@link ConnectionPool}. Defaults can be overridden with
+ * {@code -Dparkit.db.pool.<name>=<value>} system properties.
+ */
+public class ConnectionPoolSettings {
+
+    private int maxSize = Integer.getInteger("parkit.db.pool.maxSize", 10);
+    private long borrowTimeoutMillis = Long.getLong("parkit.db.pool.borrowTimeoutMillis", 5_000L);
+    private long idleTimeoutMillis = Long.getLong("parkit.db.pool.idleTimeoutMillis", 600_000L);
+    private long maxLifetimeMillis = Long.getLong("parkit.db.pool.maxLifetimeMillis", 1_800_000L);
+    private long validationIntervalMillis = Long.getLong("parkit.db.pool.validationIntervalMillis", 500L);
+    private int validationTimeoutSeconds = Integer.getInteger("parkit.db.pool.validationTimeoutSeconds", 2);
+    private long evictionIntervalMillis = Long.getLong("parkit.db.pool.evictionIntervalMillis", 30_000L);
+    private int statementCacheSize = Integer.getInteger("parkit.db.pool.statementCacheSize", 16);
+
+    public int getMaxSize() {
+        return maxSize;
+    }
+
+    public void setMaxSize(int maxSize) {
+        this.maxSize = maxSize;
+    }
+
+    public long getBorrowTimeoutMillis() {
+        return borrowTimeoutMillis;
+    }
+
+    public void setBorrowTimeoutMillis(long borrowTimeoutMillis) {
+        this.borrowTimeoutMillis = borrowTimeoutMillis;
+    }
+
+    public long getIdleTimeoutMillis() {
+        return idleTimeoutMillis;
+    }
+
+    public void setIdleTimeoutMillis(long idleTimeoutMillis) {
+        this.idleTimeoutMillis = idleTimeoutMillis;
+    }
+
+    public long getMaxLifetimeMillis() {
+        return maxLifetimeMillis;
+    }
+
+    public void setMaxLifetimeMillis(long maxLifetimeMillis) {
+        this.maxLifetimeMillis = maxLifetimeMillis;
+    }
+
+    /**
+     * Connections returned to the pool more recently than this are handed out
+     * again without a validation round trip.
+     */
+    public long getValidationIntervalMillis() {
+        return validationIntervalMillis;
+    }
+
+    public void setValidationIntervalMillis(long validationIntervalMillis) {
+        this.validationIntervalMillis = validationIntervalMillis;
+    }
+
+    public int getValidationTimeoutSeconds() {
+        return validationTimeoutSeconds;
+    }
+
+    public void setValidationTimeoutSeconds(int validationTimeoutSeconds) {
+        this.validationTimeoutSeconds = validationTimeoutSeconds;
+    }
+
+    public long getEvictionIntervalMillis() {
+        return evictionIntervalMillis;
+    }
+
+    public void setEvictionIntervalMillis(long evictionIntervalMillis) {
+        this.evictionIntervalMillis = evictionIntervalMillis;
+    }
+
+    /**
+     * Prepared statements kept open on each pooled connection for reuse, 0 to
+     * prepare every statement again. Enough for every {@code DBConstants}
+     * query and its variants by default.
+     */
+    public int getStatementCacheSize() {
+        return statementCacheSize;
+    }
+
+    public void setStatementCacheSize(int statementCacheSize) {
+        this.statementCacheSize = statementCacheSize;
+    }
+}
@@ -4,20 +4,79 @@ import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
 import java.sql.*;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 public class DataBaseConfig {
 
     private static final Logger logger = LogManager.getLogger("DataBaseConfig");
 
+    private static final Map<String, ConnectionPool> pools = new ConcurrentHashMap<>();
+
+    private final String url;
+    private final String user;
+    private final String password;
+    //a pool logs in as one user, configs for other users of the same database get their own
+    private final String poolKey;
+
+    /**
+     * Connects to the production database with server-side prepared
+     * statements, which the pool keeps open across borrows, and batches
+     * rewritten into multi-row statements instead of one round trip per row.
+     */
+    public DataBaseConfig() {
+        this("jdbc:mysql://localhost:3306/prod?useServerPrepStmts=true&rewriteBatchedStatements=true", "root", "");
+    }
+
+    public DataBaseConfig(String url, String user, String password) {
+        this.url = url;
+        this.user = user;
+        this.password = password;
+        this.poolKey = user + "@" + url;
+    }
+
     public Connection getConnection() throws ClassNotFoundException, SQLException {
-        logger.info("Create DB connection");
-        Class.forName("com.mysql.cj.jdbc.Driver");
-        return DriverManager.getConnection(
-                "jdbc:mysql://localhost:3306/prod","root","");
+        ConnectionPool pool = getPool();
+        return pool.withStatementCache(pool.borrow());
+    }
+
+    public ConnectionPool getPool() throws ClassNotFoundException {
+        ConnectionPool pool = pools.get(poolKey);
+        if (pool == null) {
+            Class.forName("com.mysql.cj.jdbc.Driver");
+            pool = pools.computeIfAbsent(poolKey, key -> new ConnectionPool(
+                    () -> DriverManager.getConnection(url, user, password), new ConnectionPoolSettings()));
+        }
+        return pool;
+    }
+
+    public static void shutdownPools() {
+        pools.values().forEach(ConnectionPool::close);
+        pools.clear();
+    }
+
+    /**
+     * Prepares a read-only query whose rows are streamed one at a time
+     * instead of buffering the whole result, for reads over the full ticket
+     * history.
+     */
+    public static PreparedStatement prepareStreamingStatement(Connection con, String sql) throws SQLException {
+        PreparedStatement ps = con.prepareStatement(sql, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+        try {
+            ps.setFetchSize(Integer.MIN_VALUE);
+        } catch (SQLException e) {
+            //only the MySQL driver understands this hint, other drivers page on their own
+            logger.debug("Row streaming not supported by the driver", e);
+        }
+        return ps;
     }
 
     public void closeConnection(Connection con){
         if(con!=null){
+            ConnectionPool pool = pools.get(poolKey);
+            if (pool != null && pool.release(con)) {
+                return;
+            }
             try {
                 con.close();
                 logger.info("Closing DB connection");
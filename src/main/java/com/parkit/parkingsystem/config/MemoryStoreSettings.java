@@ -0,0 +1,85 @@
+package com.parkit.parkingsystem.config;
+
+import com.parkit.parkingsystem.constants.ParkingType;
+import com.parkit.parkingsystem.model.ParkingSpot;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Tuning knobs for the in-memory parking store. Defaults can be overridden
+ * with {@code -Dparkit.memoryStore.<name>=<value>} system properties.
+ */
+public class MemoryStoreSettings {
+
+    private Path directory = directoryOf(System.getProperty("parkit.memoryStore.directory", "memory-store"));
+    private long snapshotIntervalMillis = Long.getLong("parkit.memoryStore.snapshotIntervalMillis", 60_000L);
+    private long flushIntervalMillis = Long.getLong("parkit.memoryStore.flushIntervalMillis", 200L);
+    private String spots = System.getProperty("parkit.memoryStore.spots", "CAR:3,BIKE:2");
+
+    /**
+     * Where snapshots and change logs go, or null to keep nothing on disk.
+     * An empty {@code parkit.memoryStore.directory} also means nothing.
+     */
+    public Path getDirectory() {
+        return directory;
+    }
+
+    public void setDirectory(Path directory) {
+        this.directory = directory;
+    }
+
+    public long getSnapshotIntervalMillis() {
+        return snapshotIntervalMillis;
+    }
+
+    public void setSnapshotIntervalMillis(long snapshotIntervalMillis) {
+        this.snapshotIntervalMillis = snapshotIntervalMillis;
+    }
+
+    /**
+     * How long changes may sit in the change log buffer before they are
+     * written to the file.
+     */
+    public long getFlushIntervalMillis() {
+        return flushIntervalMillis;
+    }
+
+    public void setFlushIntervalMillis(long flushIntervalMillis) {
+        this.flushIntervalMillis = flushIntervalMillis;
+    }
+
+    /**
+     * Spots of a new store, as {@code TYPE:count} pairs numbered from 1 in
+     * order, e.g. {@code CAR:3,BIKE:2} like the database seed. Ignored once
+     * the store has a snapshot.
+     */
+    public String getSpots() {
+        return spots;
+    }
+
+    public void setSpots(String spots) {
+        this.spots = spots;
+    }
+
+    public List<ParkingSpot> getParkingSpots() {
+        List<ParkingSpot> parkingSpots = new ArrayList<>();
+        for (String pair : spots.split(",")) {
+            String[] typeAndCount = pair.trim().split(":");
+            if (typeAndCount.length != 2) {
+                throw new IllegalArgumentException("Expected TYPE:count, got : " + pair);
+            }
+            ParkingType parkingType = ParkingType.valueOf(typeAndCount[0].trim().toUpperCase(Locale.ROOT));
+            for (int i = Integer.parseInt(typeAndCount[1].trim()); i > 0; i--) {
+                parkingSpots.add(new ParkingSpot(parkingSpots.size() + 1, parkingType, true));
+            }
+        }
+        return parkingSpots;
+    }
+
+    private static Path directoryOf(String directory) {
+        return directory.isEmpty() ? null : Path.of(directory);
+    }
+}
@@ -0,0 +1,388 @@
+package com.parkit.parkingsystem.config;
+
+import com.parkit.parkingsystem.constants.DBConstants;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.zip.CRC32;
+
+/**
+ * Brings the schema up to date at startup from the scripts under
+ * {@code db/migration} on the classpath, named
+ * {@code V<version>__<description>.sql} and listed in {@link #MIGRATIONS}.
+ * Each applied version is recorded in {@code schema_version} with the
+ * checksum of its script, and a script changed after it ran stops the
+ * migration. MySQL commits every DDL statement on its own, so a script that
+ * fails halfway is not recorded and the database has to be fixed by hand
+ * before it runs again. Nodes starting together take a named lock so that
+ * only one of them migrates.
+ * <p>
+ * A script may drop a foreign key by the name MySQL generates for it, like
+ * {@code ticket_ibfk_1}. When a table has no key of that name but exactly
+ * one foreign key, that key is dropped instead, so databases whose
+ * constraint was created under another name migrate too.
+ * <p>
+ * {@code ticket} is partitioned by year of {@code in_time}. After each
+ * migration, the last yearly partition is split off {@code pmax} ahead of
+ * time, {@code -Dparkit.schema.partitionLookaheadDays} (90 by default)
+ * before the year starts.
+ */
+public class SchemaMigrator {
+
+    private static final Logger logger = LogManager.getLogger("SchemaMigrator");
+
+    static final List<String> MIGRATIONS = List.of(
+            "V1__create_parking_and_ticket.sql",
+            "V2__add_hot_path_indexes.sql",
+            "V3__partition_ticket_by_in_time.sql",
+            "V4__add_ticket_archive_and_visit_summary.sql",
+            "V5__store_ticket_price_as_decimal.sql");
+
+    private static final int LOCK_TIMEOUT_SECONDS = 60;
+
+    private static final Pattern DROP_FOREIGN_KEY = Pattern.compile("(?i)ALTER\\s+TABLE\\s+(\\w+)\\s+DROP\\s+FOREIGN\\s+KEY\\s+(\\w+)");
+
+    /**
+     * A hot query, sample parameters and the index its plan must use.
+     */
+    private static final class PlanCheck {
+        private final String query;
+        private final String[] parameters;
+        private final String index;
+
+        private PlanCheck(String query, String index, String... parameters) {
+            this.query = query;
+            this.index = index;
+            this.parameters = parameters;
+        }
+    }
+
+    private static final List<PlanCheck> PLAN_CHECKS = List.of(
+            new PlanCheck(DBConstants.GET_NEXT_PARKING_SPOT, "idx_parking_type_available", "CAR"),
+            new PlanCheck(DBConstants.CLAIM_PARKING_SPOT, "idx_parking_type_available", "CAR"),
+            new PlanCheck(DBConstants.COUNT_AVAILABLE_PARKING_SPOTS, "idx_parking_type_available", "CAR"),
+            new PlanCheck(DBConstants.GET_TICKET, "idx_ticket_plate_in_time", "ABCDEF"),
+            new PlanCheck(DBConstants.GET_NB_TICKET, "idx_ticket_plate_in_time", "ABCDEF"),
+            new PlanCheck(DBConstants.GET_OPEN_TICKETS, "idx_ticket_out_time"));
+
+    static final class Migration {
+        final int version;
+        final String description;
+        final String script;
+        final String sql;
+        final long checksum;
+
+        Migration(String script, String sql) {
+            int separator = script.indexOf("__");
+            if (!script.startsWith("V") || separator < 0 || !script.endsWith(".sql")) {
+                throw new IllegalArgumentException("Expected V<version>__<description>.sql, got : " + script);
+            }
+            this.version = Integer.parseInt(script.substring(1, separator));
+            this.description = script.substring(separator + 2, script.length() - 4).replace('_', ' ');
+            this.script = script;
+            //the same checksum whatever line endings the checkout uses
+            this.sql = sql.replace("\r\n", "\n");
+            this.checksum = checksumOf(this.sql);
+        }
+    }
+
+    private final DataBaseConfig dataBaseConfig;
+    private final int partitionLookaheadDays = Integer.getInteger("parkit.schema.partitionLookaheadDays", 90);
+
+    public SchemaMigrator(DataBaseConfig dataBaseConfig) {
+        this.dataBaseConfig = dataBaseConfig;
+    }
+
+    /**
+     * Applies the versions not yet recorded, in order.
+     *
+     * @return true if the schema is at the latest version
+     */
+    public boolean migrate() {
+        Connection con = null;
+        boolean locked = false;
+        try {
+            List<Migration> migrations = loadMigrations();
+            con = dataBaseConfig.getConnection();
+            locked = lock(con);
+            if (!locked) {
+                logger.error("Schema migration lock not acquired within " + LOCK_TIMEOUT_SECONDS + "s, keeping the current schema");
+                return false;
+            }
+            try (Statement statement = con.createStatement()) {
+                statement.execute(DBConstants.CREATE_SCHEMA_VERSION);
+            }
+            Map<Integer, Long> applied = appliedVersions(con);
+            int pending = 0;
+            for (Migration migration : migrations) {
+                Long checksum = applied.get(migration.version);
+                if (checksum == null) {
+                    apply(con, migration);
+                    pending++;
+                } else if (checksum != migration.checksum) {
+                    logger.error("Migration " + migration.script + " was changed after it was applied, keeping the current schema");
+                    return false;
+                }
+            }
+            logger.info("Schema at version " + migrations.get(migrations.size() - 1).version + ", " + pending + " migrations applied");
+            extendTicketPartitions(con, LocalDate.now());
+            return true;
+        } catch (Exception ex) {
+            logger.error("Error migrating the schema", ex);
+            return false;
+        } finally {
+            if (locked) {
+                unlock(con);
+            }
+            dataBaseConfig.closeConnection(con);
+        }
+    }
+
+    /**
+     * Explains each hot query and checks that its plan uses the index made
+     * for it, without scanning a whole table. The optimizer may still scan
+     * tables of a few rows, so problems are only logged.
+     *
+     * @return the problems found, empty if every plan is as expected
+     */
+    public List<String> verifyQueryPlans() {
+        List<String> problems = new ArrayList<>();
+        Connection con = null;
+        try {
+            con = dataBaseConfig.getConnection();
+            for (PlanCheck check : PLAN_CHECKS) {
+                String problem = checkPlan(con, check);
+                if (problem != null) {
+                    logger.warn(problem);
+                    problems.add(problem);
+                }
+            }
+        } catch (Exception ex) {
+            logger.error("Error explaining the hot queries", ex);
+            problems.add("Query plans not checked : " + ex.getMessage());
+        } finally {
+            dataBaseConfig.closeConnection(con);
+        }
+        return problems;
+    }
+
+    /**
+     * Splits yearly partitions off {@code pmax} until the named ones cover
+     * the lookahead. A failure is only logged: tickets then still land in
+     * {@code pmax}, just without pruning.
+     */
+    void extendTicketPartitions(Connection con, LocalDate today) {
+        LocalDate coveredUntil = null;
+        try {
+            String maxPartition = null;
+            PreparedStatement ps = con.prepareStatement(DBConstants.GET_TICKET_PARTITIONS);
+            ResultSet rs = ps.executeQuery();
+            while (rs.next()) {
+                String name = rs.getString(1);
+                String bound = rs.getString(2);
+                if ("MAXVALUE".equalsIgnoreCase(bound)) {
+                    maxPartition = name;
+                } else {
+                    //'2028-01-01' or '2028-01-01 00:00:00'
+                    coveredUntil = LocalDate.parse(bound.replace("'", "").substring(0, 10));
+                }
+            }
+            dataBaseConfig.closeResultSet(rs);
+            dataBaseConfig.closePreparedStatement(ps);
+            if (coveredUntil == null) {
+                //not partitioned
+                return;
+            }
+            LocalDate horizon = today.plusDays(partitionLookaheadDays);
+            while (!coveredUntil.isAfter(horizon)) {
+                if (maxPartition == null) {
+                    throw new SQLException("No MAXVALUE partition to split");
+                }
+                LocalDate nextBound = coveredUntil.plusYears(1);
+                try (Statement statement = con.createStatement()) {
+                    statement.execute("ALTER TABLE ticket REORGANIZE PARTITION " + maxPartition + " INTO ("
+                            + "PARTITION p" + coveredUntil.getYear() + " VALUES LESS THAN ('" + nextBound + "'), "
+                            + "PARTITION " + maxPartition + " VALUES LESS THAN (MAXVALUE))");
+                }
+                logger.info("Added ticket partition p" + coveredUntil.getYear());
+                coveredUntil = nextBound;
+            }
+        } catch (Exception ex) {
+            logger.warn("Ticket partitions end on " + coveredUntil + ", later tickets go to the MAXVALUE partition."
+                    + " Split it with ALTER TABLE ticket REORGANIZE PARTITION", ex);
+        }
+    }
+
+    private String checkPlan(Connection con, PlanCheck check) throws SQLException {
+        PreparedStatement ps = con.prepareStatement("EXPLAIN " + check.query);
+        for (int i = 0; i < check.parameters.length; i++) {
+            ps.setString(i + 1, check.parameters[i]);
+        }
+        ResultSet rs = ps.executeQuery();
+        boolean usesIndex = false;
+        String problem = null;
+        while (rs.next()) {
+            String extra = rs.getString("Extra");
+            if (extra != null && extra.contains("optimized away")) {
+                //answered from the index while planning
+                usesIndex = true;
+            } else if (rs.getString("table") != null && !rs.getString("table").startsWith("<")) {
+                //derived tables such as <derived2> are built in memory
+                String key = rs.getString("key");
+                if ("ALL".equals(rs.getString("type")) || key == null) {
+                    problem = "Full scan of " + rs.getString("table") + " for : " + check.query;
+                }
+                usesIndex |= check.index.equals(key);
+            }
+        }
+        dataBaseConfig.closeResultSet(rs);
+        dataBaseConfig.closePreparedStatement(ps);
+        if (problem == null && !usesIndex) {
+            problem = "Index " + check.index + " not used for : " + check.query;
+        }
+        return problem;
+    }
+
+    private boolean lock(Connection con) throws SQLException {
+        PreparedStatement ps = con.prepareStatement(DBConstants.LOCK_SCHEMA);
+        ps.setInt(1, LOCK_TIMEOUT_SECONDS);
+        ResultSet rs = ps.executeQuery();
+        boolean locked = rs.next() && rs.getInt(1) == 1;
+        dataBaseConfig.closeResultSet(rs);
+        dataBaseConfig.closePreparedStatement(ps);
+        return locked;
+    }
+
+    private void unlock(Connection con) {
+        try {
+            PreparedStatement ps = con.prepareStatement(DBConstants.UNLOCK_SCHEMA);
+            dataBaseConfig.closeResultSet(ps.executeQuery());
+            dataBaseConfig.closePreparedStatement(ps);
+        } catch (Exception ex) {
+            logger.error("Error releasing the schema migration lock", ex);
+        }
+    }
+
+    private Map<Integer, Long> appliedVersions(Connection con) throws SQLException {
+        Map<Integer, Long> applied = new HashMap<>();
+        PreparedStatement ps = con.prepareStatement(DBConstants.GET_SCHEMA_VERSIONS);
+        ResultSet rs = ps.executeQuery();
+        while (rs.next()) {
+            applied.put(rs.getInt(1), rs.getLong(2));
+        }
+        dataBaseConfig.closeResultSet(rs);
+        dataBaseConfig.closePreparedStatement(ps);
+        return applied;
+    }
+
+    private void apply(Connection con, Migration migration) throws SQLException {
+        logger.info("Applying migration " + migration.script);
+        long start = System.currentTimeMillis();
+        try (Statement statement = con.createStatement()) {
+            for (String sql : statementsOf(migration.sql)) {
+                String resolved = resolveForeignKey(con, sql);
+                if (resolved != null) {
+                    statement.execute(resolved);
+                }
+            }
+        }
+        PreparedStatement ps = con.prepareStatement(DBConstants.SAVE_SCHEMA_VERSION);
+        ps.setInt(1, migration.version);
+        ps.setString(2, migration.description);
+        ps.setString(3, migration.script);
+        ps.setLong(4, migration.checksum);
+        ps.setTimestamp(5, new Timestamp(start));
+        ps.setLong(6, System.currentTimeMillis() - start);
+        ps.execute();
+        dataBaseConfig.closePreparedStatement(ps);
+    }
+
+    /**
+     * Points a {@code DROP FOREIGN KEY} at the name the key actually has.
+     *
+     * @return the statement to run, or null if the table has no foreign key left
+     */
+    private String resolveForeignKey(Connection con, String sql) throws SQLException {
+        Matcher drop = DROP_FOREIGN_KEY.matcher(sql);
+        if (!drop.lookingAt()) {
+            return sql;
+        }
+        String table = drop.group(1);
+        String name = drop.group(2);
+        List<String> foreignKeys = new ArrayList<>();
+        PreparedStatement ps = con.prepareStatement(DBConstants.GET_FOREIGN_KEYS);
+        ps.setString(1, table);
+        ResultSet rs = ps.executeQuery();
+        while (rs.next()) {
+            foreignKeys.add(rs.getString(1));
+        }
+        dataBaseConfig.closeResultSet(rs);
+        dataBaseConfig.closePreparedStatement(ps);
+        if (foreignKeys.stream().anyMatch(name::equalsIgnoreCase)) {
+            return sql;
+        }
+        if (foreignKeys.isEmpty()) {
+            logger.info("No foreign key left on " + table + ", skipping : " + sql);
+            return null;
+        }
+        if (foreignKeys.size() > 1) {
+            throw new SQLException("Foreign key " + name + " not found on " + table + ", which has " + foreignKeys);
+        }
+        logger.info("Foreign key " + name + " of " + table + " is named " + foreignKeys.get(0));
+        return sql.substring(0, drop.start(2)) + foreignKeys.get(0) + sql.substring(drop.end(2));
+    }
+
+    static List<Migration> loadMigrations() throws IOException {
+        List<Migration> migrations = new ArrayList<>();
+        for (String script : MIGRATIONS) {
+            try (InputStream in = SchemaMigrator.class.getResourceAsStream("/db/migration/" + script)) {
+                if (in == null) {
+                    throw new IOException("Migration not on the classpath : " + script);
+                }
+                Migration migration = new Migration(script, new String(in.readAllBytes(), StandardCharsets.UTF_8));
+                if (!migrations.isEmpty() && migration.version <= migrations.get(migrations.size() - 1).version) {
+                    throw new IllegalStateException("Migrations out of order : " + script);
+                }
+                migrations.add(migration);
+            }
+        }
+        return migrations;
+    }
+
+    /**
+     * Splits a script on the semicolons ending its statements, dropping
+     * {@code /* *}{@code /} and {@code --} comments.
+     */
+    static List<String> statementsOf(String script) {
+        String code = script.replaceAll("(?s)/\\*.*?\\*/", "").replaceAll("(?m)^\\s*--.*$", "");
+        List<String> statements = new ArrayList<>();
+        for (String statement : code.split(";")) {
+            if (!statement.isBlank()) {
+                statements.add(statement.trim());
+            }
+        }
+        return statements;
+    }
+
+    static long checksumOf(String script) {
+        CRC32 crc = new CRC32();
+        crc.update(script.getBytes(StandardCharsets.UTF_8));
+        return crc.getValue();
+    }
+}
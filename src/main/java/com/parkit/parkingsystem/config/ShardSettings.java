@@ -0,0 +1,79 @@
+package com.parkit.parkingsystem.config;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Shards of a sharded deployment, each a lot with its own storage. Names come
+ * from {@code -Dparkit.shards=<name>,<name>...}; each shard uses the backend
+ * picked by the usual {@code parkit.*} properties, with its own database,
+ * store directory and spots:
+ * <ul>
+ *     <li>{@code -Dparkit.shard.<name>.url}, by default database {@code <name>}
+ *     on the production server,</li>
+ *     <li>a {@code <name>} sub-directory of the ticket or memory store
+ *     directory,</li>
+ *     <li>{@code -Dparkit.shard.<name>.spots} for the memory store, by default
+ *     {@code parkit.memoryStore.spots}.</li>
+ * </ul>
+ */
+public class ShardSettings {
+
+    private List<String> shardNames = namesOf(System.getProperty("parkit.shards", ""));
+    private int virtualNodes = Integer.getInteger("parkit.shards.virtualNodes", 128);
+
+    public boolean isEnabled() {
+        return !shardNames.isEmpty();
+    }
+
+    public List<String> getShardNames() {
+        return shardNames;
+    }
+
+    public void setShardNames(List<String> shardNames) {
+        this.shardNames = shardNames;
+    }
+
+    /**
+     * Points of each shard on the hash ring. More points spread plates more
+     * evenly, at the cost of a bigger ring.
+     */
+    public int getVirtualNodes() {
+        return virtualNodes;
+    }
+
+    public void setVirtualNodes(int virtualNodes) {
+        this.virtualNodes = virtualNodes;
+    }
+
+    public DataBaseConfig getDataBaseConfig(String shardName) {
+        String url = System.getProperty("parkit.shard." + shardName + ".url",
+                "jdbc:mysql://localhost:3306/" + shardName + "?useServerPrepStmts=true&rewriteBatchedStatements=true");
+        return new DataBaseConfig(url, "root", "");
+    }
+
+    public MemoryStoreSettings getMemoryStoreSettings(String shardName) {
+        MemoryStoreSettings settings = new MemoryStoreSettings();
+        if (settings.getDirectory() != null) {
+            settings.setDirectory(settings.getDirectory().resolve(shardName));
+        }
+        settings.setSpots(System.getProperty("parkit.shard." + shardName + ".spots", settings.getSpots()));
+        return settings;
+    }
+
+    public TicketStoreSettings getTicketStoreSettings(String shardName) {
+        TicketStoreSettings settings = new TicketStoreSettings();
+        settings.setDirectory(settings.getDirectory().resolve(shardName));
+        return settings;
+    }
+
+    private static List<String> namesOf(String shards) {
+        List<String> names = new ArrayList<>();
+        for (String name : shards.split(",")) {
+            if (!name.isBlank() && !names.contains(name.trim())) {
+                names.add(name.trim());
+            }
+        }
+        return names;
+    }
+}
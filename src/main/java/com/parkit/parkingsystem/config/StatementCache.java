@@ -0,0 +1,263 @@
+package com.parkit.parkingsystem.config;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Prepared statements of one pooled connection, kept open between uses.
+ * Callers get a {@link #getConnection() connection handle} whose
+ * {@code prepareStatement} hands out a cached statement for the same SQL and
+ * options when there is one, and whose statements go back to the cache
+ * instead of closing. At most {@code maxSize} idle statements are kept, the
+ * least recently used one is closed when another one comes back. Statements
+ * still checked out when the connection returns to the pool are closed.
+ * <p>
+ * A connection is only used by one thread at a time; the methods are
+ * synchronized so the pool's evictor can still close a cache safely.
+ */
+class StatementCache {
+
+    private static final Logger logger = LogManager.getLogger("StatementCache");
+
+    private static final class Key {
+        private final String sql;
+        private final int autoGeneratedKeys;
+        private final int resultSetType;
+        private final int resultSetConcurrency;
+
+        private Key(String sql, int autoGeneratedKeys, int resultSetType, int resultSetConcurrency) {
+            this.sql = sql;
+            this.autoGeneratedKeys = autoGeneratedKeys;
+            this.resultSetType = resultSetType;
+            this.resultSetConcurrency = resultSetConcurrency;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            Key key = (Key) o;
+            return autoGeneratedKeys == key.autoGeneratedKeys && resultSetType == key.resultSetType
+                    && resultSetConcurrency == key.resultSetConcurrency && sql.equals(key.sql);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(sql, autoGeneratedKeys, resultSetType, resultSetConcurrency);
+        }
+    }
+
+    private final class CachedStatement implements InvocationHandler {
+        private final Key key;
+        private final PreparedStatement statement;
+        private final PreparedStatement handle;
+        private boolean checkedOut;
+
+        private CachedStatement(Key key, PreparedStatement statement) {
+            this.key = key;
+            this.statement = statement;
+            this.handle = (PreparedStatement) Proxy.newProxyInstance(
+                    StatementCache.class.getClassLoader(), new Class<?>[]{PreparedStatement.class}, this);
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            switch (method.getName()) {
+                case "close":
+                    checkIn(this);
+                    return null;
+                case "isClosed":
+                    return !isCheckedOut(this) || statement.isClosed();
+                case "getConnection":
+                    return connectionHandle;
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "toString":
+                    return "Cached" + statement;
+                default:
+                    if (!isCheckedOut(this)) {
+                        throw new SQLException("Statement is closed");
+                    }
+                    return delegate(statement, method, args);
+            }
+        }
+    }
+
+    private final class ConnectionHandler implements InvocationHandler {
+        private Connection physicalConnection() {
+            return connection;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            switch (method.getName()) {
+                case "prepareStatement":
+                    return prepareStatement(method, args);
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                default:
+                    return delegate(connection, method, args);
+            }
+        }
+    }
+
+    private final Connection connection;
+    private final Connection connectionHandle;
+    private final int maxSize;
+    private final LongAdder hitCount;
+    private final LongAdder missCount;
+    private final LongAdder evictionCount;
+    //statements are removed while checked out, so insertion order is use order
+    private final LinkedHashMap<Key, CachedStatement> idle = new LinkedHashMap<>();
+    private final Map<CachedStatement, Boolean> checkedOut = new IdentityHashMap<>();
+
+    StatementCache(Connection connection, int maxSize, LongAdder hitCount, LongAdder missCount, LongAdder evictionCount) {
+        this.connection = connection;
+        this.maxSize = maxSize;
+        this.hitCount = hitCount;
+        this.missCount = missCount;
+        this.evictionCount = evictionCount;
+        this.connectionHandle = (Connection) Proxy.newProxyInstance(
+                StatementCache.class.getClassLoader(), new Class<?>[]{Connection.class}, new ConnectionHandler());
+    }
+
+    Connection getConnection() {
+        return connectionHandle;
+    }
+
+    /**
+     * @return the physical connection behind {@code connection} if it is a
+     * handle of some cache, else null
+     */
+    static Connection physicalConnectionOf(Connection connection) {
+        if (connection != null && Proxy.isProxyClass(connection.getClass())
+                && Proxy.getInvocationHandler(connection) instanceof ConnectionHandler) {
+            return ((ConnectionHandler) Proxy.getInvocationHandler(connection)).physicalConnection();
+        }
+        return null;
+    }
+
+    synchronized int getIdleCount() {
+        return idle.size();
+    }
+
+    /**
+     * Closes the statements callers did not give back.
+     */
+    synchronized void closeCheckedOut() {
+        for (CachedStatement cached : checkedOut.keySet()) {
+            cached.checkedOut = false;
+            closeQuietly(cached.statement);
+        }
+        checkedOut.clear();
+    }
+
+    synchronized void close() {
+        closeCheckedOut();
+        for (CachedStatement cached : idle.values()) {
+            closeQuietly(cached.statement);
+        }
+        idle.clear();
+    }
+
+    private Object prepareStatement(Method method, Object[] args) throws Throwable {
+        Key key;
+        Class<?>[] types = method.getParameterTypes();
+        if (types.length == 1) {
+            key = new Key((String) args[0], Statement.NO_GENERATED_KEYS, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+        } else if (types.length == 2 && types[1] == int.class) {
+            key = new Key((String) args[0], (Integer) args[1], ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+        } else if (types.length == 3) {
+            key = new Key((String) args[0], Statement.NO_GENERATED_KEYS, (Integer) args[1], (Integer) args[2]);
+        } else {
+            //column indexes or names, holdability: not worth caching
+            return delegate(connection, method, args);
+        }
+        synchronized (this) {
+            CachedStatement cached = idle.remove(key);
+            if (cached != null) {
+                hitCount.increment();
+            } else {
+                missCount.increment();
+                cached = new CachedStatement(key, (PreparedStatement) delegate(connection, method, args));
+            }
+            cached.checkedOut = true;
+            checkedOut.put(cached, Boolean.TRUE);
+            return cached.handle;
+        }
+    }
+
+    private synchronized boolean isCheckedOut(CachedStatement cached) {
+        return cached.checkedOut;
+    }
+
+    private synchronized void checkIn(CachedStatement cached) {
+        if (!cached.checkedOut) {
+            return;
+        }
+        cached.checkedOut = false;
+        checkedOut.remove(cached);
+        try {
+            if (cached.statement.isClosed()) {
+                return;
+            }
+            cached.statement.clearParameters();
+            cached.statement.clearBatch();
+            cached.statement.setFetchSize(0);
+        } catch (SQLException e) {
+            logger.error("Error while resetting cached statement", e);
+            closeQuietly(cached.statement);
+            return;
+        }
+        if (idle.containsKey(cached.key)) {
+            //the same statement was checked out twice at once, keep one
+            closeQuietly(cached.statement);
+            return;
+        }
+        idle.put(cached.key, cached);
+        if (idle.size() > maxSize) {
+            Iterator<CachedStatement> eldest = idle.values().iterator();
+            CachedStatement evicted = eldest.next();
+            eldest.remove();
+            evictionCount.increment();
+            closeQuietly(evicted.statement);
+        }
+    }
+
+    private static Object delegate(Object target, Method method, Object[] args) throws Throwable {
+        try {
+            return method.invoke(target, args);
+        } catch (InvocationTargetException e) {
+            throw e.getCause();
+        }
+    }
+
+    private static void closeQuietly(Statement statement) {
+        try {
+            statement.close();
+        } catch (SQLException e) {
+            logger.error("Error while closing cached statement", e);
+        }
+    }
+}
@@ -0,0 +1,207 @@
+package com.parkit.parkingsystem.config;
+
+import com.parkit.parkingsystem.constants.Fare;
+import com.parkit.parkingsystem.constants.ParkingType;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.Properties;
+
+/**
+ * Declarative pricing rules, one {@link TypeTariff} per parking type plus the
+ * recurring-user discount. Read from a properties file such as:
+ *
+ * <pre>
+ * tariff.discount.percent=5
+ * tariff.CAR.grace.minutes=30
+ * tariff.CAR.tiers=0:150,180:100
+ * tariff.CAR.daily.cap.cents=2000
+ * </pre>
+ *
+ * {@code tiers} lists {@code fromMinute:centsPerHour} pairs, starting at minute 0.
+ * Tiers and the daily cap apply to each 24 hour period of a stay. A stay no
+ * longer than the grace period is free; past it the whole stay is charged.
+ */
+public class TariffDefinition {
+
+    public static final int MINUTES_PER_DAY = 24 * 60;
+    public static final long NO_DAILY_CAP = -1;
+
+    private static final String PREFIX = "tariff.";
+
+    private final int discountPercent;
+    private final Map<ParkingType, TypeTariff> typeTariffs;
+
+    public TariffDefinition(int discountPercent, Map<ParkingType, TypeTariff> typeTariffs) {
+        if (discountPercent < 0 || discountPercent > 100) {
+            throw new IllegalArgumentException("Discount percent must be between 0 and 100 : " + discountPercent);
+        }
+        for (ParkingType parkingType : ParkingType.values()) {
+            if (typeTariffs.get(parkingType) == null) {
+                throw new IllegalArgumentException("No tariff defined for " + parkingType);
+            }
+        }
+        this.discountPercent = discountPercent;
+        this.typeTariffs = Collections.unmodifiableMap(new EnumMap<>(typeTariffs));
+    }
+
+    /**
+     * The historical flat tariff: 30 free minutes, then the {@link Fare} hourly
+     * rate for the whole stay, with no cap.
+     */
+    public static TariffDefinition defaults() {
+        Map<ParkingType, TypeTariff> typeTariffs = new EnumMap<>(ParkingType.class);
+        typeTariffs.put(ParkingType.CAR, TypeTariff.flat(30, Fare.CAR_RATE_PER_HOUR_CENTS));
+        typeTariffs.put(ParkingType.BIKE, TypeTariff.flat(30, Fare.BIKE_RATE_PER_HOUR_CENTS));
+        return new TariffDefinition(Fare.RECURRING_USER_DISCOUNT_PERCENT, typeTariffs);
+    }
+
+    public static TariffDefinition load(Path path) throws IOException {
+        Properties properties = new Properties();
+        try (Reader reader = Files.newBufferedReader(path, StandardCharsets.UTF_8)) {
+            properties.load(reader);
+        }
+        return fromProperties(properties);
+    }
+
+    public static TariffDefinition fromProperties(Properties properties) {
+        Map<ParkingType, TypeTariff> typeTariffs = new EnumMap<>(ParkingType.class);
+        for (ParkingType parkingType : ParkingType.values()) {
+            String typePrefix = PREFIX + parkingType.name() + ".";
+            String tiers = properties.getProperty(typePrefix + "tiers");
+            if (tiers == null) {
+                throw new IllegalArgumentException("Missing " + typePrefix + "tiers");
+            }
+            typeTariffs.put(parkingType, new TypeTariff(
+                    parseInt(properties, typePrefix + "grace.minutes", 0),
+                    parseTiers(typePrefix + "tiers", tiers),
+                    parseLong(properties, typePrefix + "daily.cap.cents", NO_DAILY_CAP)));
+        }
+        return new TariffDefinition(parseInt(properties, PREFIX + "discount.percent", 0), typeTariffs);
+    }
+
+    public int getDiscountPercent() {
+        return discountPercent;
+    }
+
+    public TypeTariff getTypeTariff(ParkingType parkingType) {
+        return typeTariffs.get(parkingType);
+    }
+
+    private static long[][] parseTiers(String key, String value) {
+        String[] entries = value.split(",");
+        long[][] tiers = new long[entries.length][];
+        for (int i = 0; i < entries.length; i++) {
+            String[] pair = entries[i].trim().split(":");
+            if (pair.length != 2) {
+                throw new IllegalArgumentException("Expected fromMinute:centsPerHour in " + key + " : " + entries[i]);
+            }
+            try {
+                tiers[i] = new long[] {Long.parseLong(pair[0].trim()), Long.parseLong(pair[1].trim())};
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("Invalid tier in " + key + " : " + entries[i], e);
+            }
+        }
+        return tiers;
+    }
+
+    private static int parseInt(Properties properties, String key, int defaultValue) {
+        return (int) parseLong(properties, key, defaultValue);
+    }
+
+    private static long parseLong(Properties properties, String key, long defaultValue) {
+        String value = properties.getProperty(key);
+        if (value == null || value.isBlank()) {
+            return defaultValue;
+        }
+        try {
+            return Long.parseLong(value.trim());
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid number for " + key + " : " + value, e);
+        }
+    }
+
+    /**
+     * Pricing rules for one parking type.
+     */
+    public static class TypeTariff {
+
+        private final int graceMinutes;
+        private final int[] tierStartMinutes;
+        private final long[] tierRatesPerHourCents;
+        private final long dailyCapCents;
+
+        /**
+         * @param graceMinutes  stays up to this long are free
+         * @param tiers         {@code {fromMinute, centsPerHour}} pairs, the first starting at minute 0
+         * @param dailyCapCents most charged per 24 hours, or {@link #NO_DAILY_CAP}
+         */
+        public TypeTariff(int graceMinutes, long[][] tiers, long dailyCapCents) {
+            if (graceMinutes < 0 || graceMinutes > MINUTES_PER_DAY) {
+                throw new IllegalArgumentException("Grace period must be between 0 and " + MINUTES_PER_DAY + " minutes : " + graceMinutes);
+            }
+            if (tiers.length == 0 || tiers[0][0] != 0) {
+                throw new IllegalArgumentException("The first tier must start at minute 0");
+            }
+            if (dailyCapCents < 0 && dailyCapCents != NO_DAILY_CAP) {
+                throw new IllegalArgumentException("Invalid daily cap : " + dailyCapCents);
+            }
+            this.graceMinutes = graceMinutes;
+            this.tierStartMinutes = new int[tiers.length];
+            this.tierRatesPerHourCents = new long[tiers.length];
+            for (int i = 0; i < tiers.length; i++) {
+                long startMinute = tiers[i][0];
+                long rate = tiers[i][1];
+                if (i > 0 && startMinute <= tierStartMinutes[i - 1]) {
+                    throw new IllegalArgumentException("Tiers must be in increasing minute order : " + startMinute);
+                }
+                if (startMinute >= MINUTES_PER_DAY) {
+                    throw new IllegalArgumentException("Tiers must start within the first day : " + startMinute);
+                }
+                if (rate < 0) {
+                    throw new IllegalArgumentException("Tier rate must not be negative : " + rate);
+                }
+                tierStartMinutes[i] = (int) startMinute;
+                tierRatesPerHourCents[i] = rate;
+            }
+            this.dailyCapCents = dailyCapCents;
+        }
+
+        public static TypeTariff flat(int graceMinutes, long ratePerHourCents) {
+            return new TypeTariff(graceMinutes, new long[][] {{0, ratePerHourCents}}, NO_DAILY_CAP);
+        }
+
+        public int getGraceMinutes() {
+            return graceMinutes;
+        }
+
+        public int getTierCount() {
+            return tierStartMinutes.length;
+        }
+
+        public int getTierStartMinute(int tier) {
+            return tierStartMinutes[tier];
+        }
+
+        public long getTierRatePerHourCents(int tier) {
+            return tierRatesPerHourCents[tier];
+        }
+
+        public long getDailyCapCents() {
+            return dailyCapCents;
+        }
+
+        @Override
+        public String toString() {
+            return "TypeTariff{grace=" + graceMinutes + "min, tierStarts=" + Arrays.toString(tierStartMinutes)
+                    + ", ratesPerHourCents=" + Arrays.toString(tierRatesPerHourCents) + ", dailyCapCents=" + dailyCapCents + "}";
+        }
+    }
+}
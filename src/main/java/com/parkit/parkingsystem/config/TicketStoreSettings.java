@@ -0,0 +1,63 @@
+package com.parkit.parkingsystem.config;
+
+import java.nio.file.Path;
+
+/**
+ * Tuning knobs for the memory-mapped ticket store. Defaults can be overridden
+ * with {@code -Dparkit.ticketStore.<name>=<value>} system properties.
+ */
+public class TicketStoreSettings {
+
+    /**
+     * When ticket writes are forced from the page cache to the disk.
+     */
+    public enum FsyncPolicy {
+        /** After every entry and exit; a write survives a power cut once the call returns. */
+        ALWAYS,
+        /** Every {@link #getFsyncIntervalMillis()}; a power cut loses at most that much. */
+        INTERVAL,
+        /** Left to the operating system, and on close; a process crash still loses nothing. */
+        NEVER
+    }
+
+    private Path directory = Path.of(System.getProperty("parkit.ticketStore.directory", "ticket-store"));
+    private int recordsPerSegment = Integer.getInteger("parkit.ticketStore.recordsPerSegment", 65_536);
+    private FsyncPolicy fsyncPolicy = FsyncPolicy.valueOf(System.getProperty("parkit.ticketStore.fsync", "INTERVAL"));
+    private long fsyncIntervalMillis = Long.getLong("parkit.ticketStore.fsyncIntervalMillis", 1_000L);
+
+    public Path getDirectory() {
+        return directory;
+    }
+
+    public void setDirectory(Path directory) {
+        this.directory = directory;
+    }
+
+    /**
+     * Tickets held by one segment file. A store keeps this value for life:
+     * it decides in which file and at which offset each ticket id lives.
+     */
+    public int getRecordsPerSegment() {
+        return recordsPerSegment;
+    }
+
+    public void setRecordsPerSegment(int recordsPerSegment) {
+        this.recordsPerSegment = recordsPerSegment;
+    }
+
+    public FsyncPolicy getFsyncPolicy() {
+        return fsyncPolicy;
+    }
+
+    public void setFsyncPolicy(FsyncPolicy fsyncPolicy) {
+        this.fsyncPolicy = fsyncPolicy;
+    }
+
+    public long getFsyncIntervalMillis() {
+        return fsyncIntervalMillis;
+    }
+
+    public void setFsyncIntervalMillis(long fsyncIntervalMillis) {
+        this.fsyncIntervalMillis = fsyncIntervalMillis;
+    }
+}
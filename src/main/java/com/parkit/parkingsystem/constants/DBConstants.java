@@ -4,9 +4,31 @@ public class DBConstants {
 
     public static final String GET_NEXT_PARKING_SPOT = "SELECT min(parking_number) FROM parking WHERE available = true and type = ?";
     public static final String UPDATE_PARKING_SPOT = "UPDATE parking SET available = ? WHERE parking_number = ?";
+    public static final String CLAIM_PARKING_SPOT = "SELECT parking_number FROM parking WHERE available = true and type = ? ORDER BY parking_number LIMIT 1 FOR UPDATE SKIP LOCKED";
+    public static final String COUNT_AVAILABLE_PARKING_SPOTS = "SELECT count(*) FROM parking WHERE available = true and type = ?";
+    public static final String GET_PARKING_SPOTS = "SELECT parking_number, available, type FROM parking";
 
     public static final String SAVE_TICKET = "INSERT INTO ticket(parking_number, vehicle_reg_number, price, in_time, out_time) values(?,?,?,?,?)";
-    public static final String UPDATE_TICKET = "UPDATE ticket SET price = ?, out_time = ? WHERE id = ?";
-    public static final String GET_TICKET = "SELECT t.parking_number, t.id, t.price, t.in_time, t.out_time, p.type FROM ticket t,parking p WHERE p.parking_number = t.parking_number AND t.vehicle_reg_number = ? ORDER BY t.in_time limit 1";
-    public static final String GET_NB_TICKET = "SELECT count(*) FROM ticket WHERE vehicle_reg_number = ?";
+    public static final String UPDATE_TICKET = "UPDATE ticket SET price = ?, out_time = ? WHERE id = ? AND out_time IS NULL";
+    public static final String GET_TICKET = "SELECT t.parking_number, t.id, t.price, t.in_time, t.out_time, p.type FROM ticket t,parking p WHERE p.parking_number = t.parking_number AND t.vehicle_reg_number = ? AND t.out_time IS NULL ORDER BY t.in_time DESC LIMIT 1";
+    public static final String GET_OPEN_TICKETS = "SELECT t.parking_number, t.id, t.price, t.in_time, t.out_time, p.type, t.vehicle_reg_number FROM ticket t,parking p WHERE p.parking_number = t.parking_number AND t.out_time IS NULL";
+    public static final String GET_NB_TICKET = "SELECT (SELECT count(*) FROM ticket t WHERE t.vehicle_reg_number = v.plate) + COALESCE((SELECT s.archived_count FROM ticket_visit_summary s WHERE s.vehicle_reg_number = v.plate), 0) FROM (SELECT ? AS plate) v";
+    public static final String GET_CLOSED_TICKETS = "SELECT t.in_time, t.out_time, t.parking_number, p.type, t.price, t.vehicle_reg_number FROM ticket t,parking p WHERE p.parking_number = t.parking_number AND t.out_time IS NOT NULL"
+            + " UNION ALL SELECT a.in_time, a.out_time, a.parking_number, p.type, a.price, a.vehicle_reg_number FROM ticket_archive a,parking p WHERE p.parking_number = a.parking_number";
+    public static final String GET_VISIT_COUNTS = "SELECT plate, sum(visits) FROM (SELECT vehicle_reg_number AS plate, count(*) AS visits FROM ticket GROUP BY vehicle_reg_number"
+            + " UNION ALL SELECT vehicle_reg_number, archived_count FROM ticket_visit_summary) v GROUP BY plate";
+
+    public static final String GET_ARCHIVABLE_TICKET_IDS = "SELECT id FROM ticket WHERE id > ? AND in_time < ? AND out_time < ? ORDER BY id LIMIT ?";
+    public static final String ARCHIVE_TICKETS = "INSERT INTO ticket_archive(id, parking_number, vehicle_reg_number, price, in_time, out_time) SELECT id, parking_number, vehicle_reg_number, price, in_time, out_time FROM ticket WHERE id > ? AND id <= ? AND in_time < ? AND out_time < ?";
+    public static final String SUMMARIZE_ARCHIVED_TICKETS = "INSERT INTO ticket_visit_summary(vehicle_reg_number, archived_count) SELECT vehicle_reg_number, count(*) FROM ticket WHERE id > ? AND id <= ? AND in_time < ? AND out_time < ? GROUP BY vehicle_reg_number"
+            + " ON DUPLICATE KEY UPDATE archived_count = archived_count + VALUES(archived_count)";
+    public static final String DELETE_ARCHIVED_TICKETS = "DELETE FROM ticket WHERE id > ? AND id <= ? AND in_time < ? AND out_time < ?";
+
+    public static final String CREATE_SCHEMA_VERSION = "CREATE TABLE IF NOT EXISTS schema_version(VERSION int PRIMARY KEY, DESCRIPTION varchar(200) NOT NULL, SCRIPT varchar(200) NOT NULL, CHECKSUM bigint NOT NULL, INSTALLED_ON DATETIME NOT NULL, EXECUTION_MILLIS bigint NOT NULL)";
+    public static final String GET_SCHEMA_VERSIONS = "SELECT version, checksum FROM schema_version ORDER BY version";
+    public static final String SAVE_SCHEMA_VERSION = "INSERT INTO schema_version(version, description, script, checksum, installed_on, execution_millis) values(?,?,?,?,?,?)";
+    public static final String LOCK_SCHEMA = "SELECT GET_LOCK('parkit_schema_migration', ?)";
+    public static final String UNLOCK_SCHEMA = "SELECT RELEASE_LOCK('parkit_schema_migration')";
+    public static final String GET_FOREIGN_KEYS = "SELECT constraint_name FROM information_schema.table_constraints WHERE table_schema = DATABASE() AND table_name = ? AND constraint_type = 'FOREIGN KEY'";
+    public static final String GET_TICKET_PARTITIONS = "SELECT partition_name, partition_description FROM information_schema.partitions WHERE table_schema = DATABASE() AND table_name = 'ticket' AND partition_name IS NOT NULL ORDER BY partition_ordinal_position";
 }
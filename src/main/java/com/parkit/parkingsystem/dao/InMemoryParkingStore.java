@@ -0,0 +1,608 @@
+package com.parkit.parkingsystem.dao;
+
+import com.parkit.parkingsystem.config.MemoryStoreSettings;
+import com.parkit.parkingsystem.constants.ParkingType;
+import com.parkit.parkingsystem.model.ExitResult;
+import com.parkit.parkingsystem.model.ParkingSpot;
+import com.parkit.parkingsystem.model.ParkingSpotRegistry;
+import com.parkit.parkingsystem.model.Ticket;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.zip.CRC32C;
+import java.util.zip.CheckedInputStream;
+import java.util.zip.CheckedOutputStream;
+
+/**
+ * Spots and tickets held entirely in memory, for simulations, edge
+ * deployments and as a baseline against the database.
+ * <p>
+ * Spots are handed out by a {@link ParkingSpotAllocator}. Tickets live in
+ * chunks of primitive columns indexed by id, and plates map to their latest
+ * ticket and visit count. Reads never block. Writes are serialised on a short
+ * lock that also orders them in the change log.
+ * <p>
+ * With a directory configured, every change is appended to the current
+ * change log, flushed every {@link MemoryStoreSettings#getFlushIntervalMillis()},
+ * and a snapshot is written every {@link MemoryStoreSettings#getSnapshotIntervalMillis()}.
+ * Snapshot {@code N} holds the state at the start of change log {@code N}, so
+ * a restart loads the newest snapshot and replays the logs from there. The
+ * snapshot is taken without stopping writers; changes that slip into it are
+ * replayed again from the log, which is harmless because every record sets
+ * absolute values.
+ */
+public class InMemoryParkingStore implements TicketRepository, ParkingSpotRepository, Closeable {
+
+    private static final Logger logger = LogManager.getLogger("InMemoryParkingStore");
+
+    private static final int MAGIC = 0x504B4D53;
+    private static final int VERSION = 1;
+    private static final byte ENTRY = 1;
+    private static final byte EXIT = 2;
+    private static final byte SPOT = 3;
+    private static final int MAX_PLATE_BYTES = 255;
+    private static final int MAX_RECORD = 1 + 4 + 4 + 1 + 1 + MAX_PLATE_BYTES + 8 + 8 + 8;
+    private static final long NO_TIME = Ticket.NO_TIME;
+    private static final int CHUNK_BITS = 12;
+    private static final int CHUNK_SIZE = 1 << CHUNK_BITS;
+
+    private static final String SNAPSHOT_PREFIX = "snapshot-";
+    private static final String SNAPSHOT_SUFFIX = ".bin";
+    private static final String CHANGE_LOG_PREFIX = "changes-";
+    private static final String CHANGE_LOG_SUFFIX = ".log";
+
+    private static final ParkingType[] PARKING_TYPES = ParkingType.values();
+
+    private final Path directory;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final ConcurrentHashMap<String, PlateHistory> plates = new ConcurrentHashMap<>();
+    private final ByteBuffer record = ByteBuffer.allocate(MAX_RECORD);
+    private final CRC32C recordCrc = new CRC32C();
+    private final ScheduledExecutorService scheduler;
+    private volatile TicketChunk[] chunks = new TicketChunk[0];
+    private volatile int nextId = 1;
+    private List<ParkingSpot> parkingSpots;
+    private boolean[] occupied;
+    private ParkingSpotAllocator parkingSpotAllocator;
+    private ParkingSpotRegistry parkingSpotRegistry;
+    private DataOutputStream changeLog;
+    private long generation = -1;
+    private boolean closed;
+
+    public InMemoryParkingStore(MemoryStoreSettings settings) throws IOException {
+        this.directory = settings.getDirectory();
+        if (directory == null) {
+            reset(settings.getParkingSpots());
+            scheduler = null;
+            return;
+        }
+        Files.createDirectories(directory);
+        long started = System.nanoTime();
+        restore(settings);
+        logger.info("Restored " + (nextId - 1) + " tickets and " + parkingSpots.size() + " spots from " + directory
+                + " in " + TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started) + " ms");
+        //start from a fresh generation so the logs just replayed can go
+        snapshot();
+        scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "memory-store-snapshot");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.scheduleWithFixedDelay(this::flushChangeLog,
+                settings.getFlushIntervalMillis(), settings.getFlushIntervalMillis(), TimeUnit.MILLISECONDS);
+        scheduler.scheduleWithFixedDelay(() -> {
+            try {
+                snapshot();
+            } catch (Exception e) {
+                logger.error("Error writing snapshot", e);
+            }
+        }, settings.getSnapshotIntervalMillis(), settings.getSnapshotIntervalMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public boolean saveTicket(Ticket ticket) {
+        byte[] plate = ticket.getVehicleRegNumber().getBytes(StandardCharsets.UTF_8);
+        if (plate.length == 0 || plate.length > MAX_PLATE_BYTES) {
+            logger.error("Error saving ticket info, invalid plate : " + ticket.getVehicleRegNumber());
+            return false;
+        }
+        int parkingNumber = ticket.getParkingSpot().getId();
+        ParkingType parkingType = ticket.getParkingSpot().getParkingType();
+        long inTime = ticket.getInTimeMillis();
+        long outTime = ticket.isOpen() ? NO_TIME : ticket.getOutTimeMillis();
+        lock.lock();
+        try {
+            ensureOpen();
+            int id = nextId;
+            if (changeLog != null) {
+                record.clear();
+                record.put(ENTRY).putInt(id).putInt(parkingNumber).put((byte) parkingType.ordinal())
+                        .put((byte) plate.length).put(plate).putLong(inTime).putLong(outTime).putLong(ticket.getPriceCents());
+                appendRecord();
+            }
+            applyEntry(id, parkingNumber, parkingType, ticket.getVehicleRegNumber(), inTime, outTime, ticket.getPriceCents());
+            ticket.setId(id);
+            return true;
+        } catch (IOException ex) {
+            logger.error("Error saving ticket info", ex);
+            return false;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return the vehicle's most recent ticket, so its open one if it is parked
+     */
+    @Override
+    public Ticket getTicket(String vehicleRegNumber) {
+        PlateHistory history = vehicleRegNumber == null ? null : plates.get(keyOf(vehicleRegNumber));
+        if (history == null) {
+            return null;
+        }
+        int id = history.latestId;
+        if (id == 0) {
+            //still being saved
+            return null;
+        }
+        TicketChunk chunk = chunks[(id - 1) >>> CHUNK_BITS];
+        int slot = (id - 1) & (CHUNK_SIZE - 1);
+        Ticket ticket = new Ticket();
+        ticket.setId(id);
+        ticket.setParkingSpot(parkingSpotRegistry.get(chunk.parkingNumbers[slot], PARKING_TYPES[chunk.parkingTypes[slot]], false));
+        ticket.setVehicleRegNumber(chunk.plates[slot]);
+        ticket.setInTimeMillis(chunk.inTimes[slot]);
+        //the out time is written last, so a set one comes with its price
+        long outTime = chunk.outTimes.get(slot);
+        if (outTime != NO_TIME) {
+            ticket.setOutTimeMillis(outTime);
+            ticket.setPriceCents(chunk.priceCents[slot]);
+        }
+        return ticket;
+    }
+
+    @Override
+    public boolean updateTicket(Ticket ticket) {
+        return closeTicket(ticket) == ExitResult.Status.SUCCESS;
+    }
+
+    @Override
+    public ExitResult.Status closeTicket(Ticket ticket) {
+        int id = ticket.getId();
+        if (ticket.isOpen()) {
+            throw new IllegalArgumentException("Ticket " + id + " has no out time");
+        }
+        long outTime = ticket.getOutTimeMillis();
+        lock.lock();
+        try {
+            ensureOpen();
+            if (id <= 0 || id >= nextId) {
+                return ExitResult.Status.NO_TICKET_FOUND;
+            }
+            if (chunks[(id - 1) >>> CHUNK_BITS].outTimes.get((id - 1) & (CHUNK_SIZE - 1)) != NO_TIME) {
+                return ExitResult.Status.NO_TICKET_FOUND;
+            }
+            if (changeLog != null) {
+                record.clear();
+                record.put(EXIT).putInt(id).putLong(outTime).putLong(ticket.getPriceCents());
+                appendRecord();
+            }
+            applyExit(id, outTime, ticket.getPriceCents());
+            return ExitResult.Status.SUCCESS;
+        } catch (IOException ex) {
+            logger.error("Error saving ticket info", ex);
+            return ExitResult.Status.ERROR;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public int getNbTicket(String vehicleRegNumber) {
+        PlateHistory history = vehicleRegNumber == null ? null : plates.get(keyOf(vehicleRegNumber));
+        return history == null ? 0 : history.visits;
+    }
+
+    @Override
+    public int getNextAvailableSlot(ParkingType parkingType) {
+        return parkingSpotAllocator.claim(parkingType);
+    }
+
+    @Override
+    public int getAvailableSlotCount(ParkingType parkingType) {
+        return parkingSpotAllocator.getAvailableCount(parkingType);
+    }
+
+    @Override
+    public boolean updateParking(ParkingSpot parkingSpot) {
+        int parkingNumber = parkingSpot.getId();
+        lock.lock();
+        try {
+            ensureOpen();
+            if (parkingSpotAllocator.getParkingType(parkingNumber) == null) {
+                return false;
+            }
+            if (changeLog != null) {
+                record.clear();
+                record.put(SPOT).putInt(parkingNumber).put((byte) (parkingSpot.isAvailable() ? 0 : 1));
+                appendRecord();
+            }
+            applySpot(parkingNumber, !parkingSpot.isAvailable());
+            return true;
+        } catch (IOException ex) {
+            logger.error("Error updating parking info", ex);
+            if (!parkingSpot.isAvailable()) {
+                parkingSpotAllocator.release(parkingNumber);
+            }
+            return false;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void releaseSlot(ParkingSpot parkingSpot) {
+        parkingSpotAllocator.release(parkingSpot.getId());
+    }
+
+    public int getTicketCount() {
+        return nextId - 1;
+    }
+
+    /**
+     * Starts a new change log and writes the state it starts from, then
+     * deletes the older snapshots and logs. Runs on its own every snapshot
+     * interval.
+     */
+    public synchronized void snapshot() throws IOException {
+        if (directory == null) {
+            return;
+        }
+        long snapshotGeneration;
+        int ticketCount;
+        boolean[] occupiedSpots;
+        TicketChunk[] ticketChunks;
+        lock.lock();
+        try {
+            ensureOpen();
+            snapshotGeneration = generation + 1;
+            DataOutputStream nextLog = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(
+                    fileOf(CHANGE_LOG_PREFIX, snapshotGeneration, CHANGE_LOG_SUFFIX),
+                    StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE), 1 << 16));
+            if (changeLog != null) {
+                changeLog.close();
+            }
+            changeLog = nextLog;
+            generation = snapshotGeneration;
+            ticketCount = nextId - 1;
+            occupiedSpots = occupied.clone();
+            ticketChunks = chunks;
+        } finally {
+            lock.unlock();
+        }
+
+        Path file = fileOf(SNAPSHOT_PREFIX, snapshotGeneration, SNAPSHOT_SUFFIX);
+        Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+        CRC32C crc = new CRC32C();
+        try (OutputStream out = Files.newOutputStream(temp)) {
+            DataOutputStream data = new DataOutputStream(new CheckedOutputStream(new BufferedOutputStream(out, 1 << 16), crc));
+            data.writeInt(MAGIC);
+            data.writeInt(VERSION);
+            data.writeLong(snapshotGeneration);
+            data.writeInt(parkingSpots.size());
+            for (ParkingSpot parkingSpot : parkingSpots) {
+                data.writeInt(parkingSpot.getId());
+                data.writeByte(parkingSpot.getParkingType().ordinal());
+                data.writeBoolean(occupiedSpots[parkingSpot.getId()]);
+            }
+            data.writeInt(ticketCount);
+            for (int id = 1; id <= ticketCount; id++) {
+                TicketChunk chunk = ticketChunks[(id - 1) >>> CHUNK_BITS];
+                int slot = (id - 1) & (CHUNK_SIZE - 1);
+                data.writeInt(chunk.parkingNumbers[slot]);
+                data.writeByte(chunk.parkingTypes[slot]);
+                data.writeUTF(chunk.plates[slot]);
+                data.writeLong(chunk.inTimes[slot]);
+                data.writeLong(chunk.outTimes.get(slot));
+                data.writeLong(chunk.priceCents[slot]);
+            }
+            data.writeInt((int) crc.getValue());
+            data.flush();
+        }
+        Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        for (long older : generations(SNAPSHOT_PREFIX, SNAPSHOT_SUFFIX).headMap(snapshotGeneration).keySet()) {
+            Files.deleteIfExists(fileOf(SNAPSHOT_PREFIX, older, SNAPSHOT_SUFFIX));
+        }
+        for (long older : generations(CHANGE_LOG_PREFIX, CHANGE_LOG_SUFFIX).headMap(snapshotGeneration).keySet()) {
+            Files.deleteIfExists(fileOf(CHANGE_LOG_PREFIX, older, CHANGE_LOG_SUFFIX));
+        }
+        logger.debug("Wrote snapshot " + snapshotGeneration + " of " + ticketCount + " tickets");
+    }
+
+    /**
+     * Writes a last snapshot, so the next start has no log to replay.
+     */
+    @Override
+    public void close() throws IOException {
+        if (scheduler != null) {
+            scheduler.shutdown();
+            try {
+                scheduler.awaitTermination(10, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        if (directory != null) {
+            snapshot();
+        }
+        lock.lock();
+        try {
+            closed = true;
+            if (changeLog != null) {
+                changeLog.close();
+                changeLog = null;
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void restore(MemoryStoreSettings settings) throws IOException {
+        TreeMap<Long, Path> snapshots = generations(SNAPSHOT_PREFIX, SNAPSHOT_SUFFIX);
+        long from = Long.MIN_VALUE;
+        for (Long candidate : snapshots.descendingKeySet()) {
+            try {
+                readSnapshot(snapshots.get(candidate));
+                from = candidate;
+                break;
+            } catch (IOException e) {
+                logger.error("Skipping unreadable snapshot " + snapshots.get(candidate), e);
+            }
+        }
+        if (from == Long.MIN_VALUE) {
+            reset(settings.getParkingSpots());
+        }
+        generation = from == Long.MIN_VALUE ? -1 : from;
+        for (Map.Entry<Long, Path> log : generations(CHANGE_LOG_PREFIX, CHANGE_LOG_SUFFIX).tailMap(from).entrySet()) {
+            replay(log.getValue());
+            generation = Math.max(generation, log.getKey());
+        }
+    }
+
+    private void readSnapshot(Path file) throws IOException {
+        CRC32C crc = new CRC32C();
+        try (DataInputStream data = new DataInputStream(new CheckedInputStream(
+                new BufferedInputStream(Files.newInputStream(file), 1 << 16), crc))) {
+            if (data.readInt() != MAGIC || data.readInt() != VERSION) {
+                throw new IOException("Not a snapshot : " + file);
+            }
+            data.readLong();
+            List<ParkingSpot> spots = new ArrayList<>();
+            List<Integer> taken = new ArrayList<>();
+            for (int i = data.readInt(); i > 0; i--) {
+                int parkingNumber = data.readInt();
+                spots.add(new ParkingSpot(parkingNumber, PARKING_TYPES[data.readByte()], true));
+                if (data.readBoolean()) {
+                    taken.add(parkingNumber);
+                }
+            }
+            reset(spots);
+            for (int id = 1, count = data.readInt(); id <= count; id++) {
+                int parkingNumber = data.readInt();
+                ParkingType parkingType = PARKING_TYPES[data.readByte()];
+                applyEntry(id, parkingNumber, parkingType, data.readUTF(), data.readLong(), data.readLong(), data.readLong());
+            }
+            int expected = (int) crc.getValue();
+            if (data.readInt() != expected) {
+                throw new IOException("Snapshot failed its checksum : " + file);
+            }
+            for (int parkingNumber : taken) {
+                applySpot(parkingNumber, true);
+            }
+        }
+    }
+
+    /**
+     * Applies a change log up to its end or to its first torn record.
+     */
+    private void replay(Path file) throws IOException {
+        int applied = 0;
+        try (DataInputStream data = new DataInputStream(new BufferedInputStream(Files.newInputStream(file), 1 << 16))) {
+            byte[] body = new byte[MAX_RECORD];
+            CRC32C crc = new CRC32C();
+            while (true) {
+                int length;
+                try {
+                    length = data.readInt();
+                    if (length <= 0 || length > MAX_RECORD) {
+                        throw new IOException("Invalid record length " + length);
+                    }
+                    data.readFully(body, 0, length);
+                    crc.reset();
+                    crc.update(body, 0, length);
+                    if (data.readInt() != (int) crc.getValue()) {
+                        throw new IOException("Record failed its checksum");
+                    }
+                } catch (EOFException e) {
+                    break;
+                } catch (IOException e) {
+                    logger.warn("Change log " + file + " torn after " + applied + " records", e);
+                    break;
+                }
+                ByteBuffer change = ByteBuffer.wrap(body, 0, length);
+                switch (change.get()) {
+                    case ENTRY:
+                        int id = change.getInt();
+                        int parkingNumber = change.getInt();
+                        ParkingType parkingType = PARKING_TYPES[change.get()];
+                        byte[] plate = new byte[Byte.toUnsignedInt(change.get())];
+                        change.get(plate);
+                        applyEntry(id, parkingNumber, parkingType, new String(plate, StandardCharsets.UTF_8),
+                                change.getLong(), change.getLong(), change.getLong());
+                        break;
+                    case EXIT:
+                        applyExit(change.getInt(), change.getLong(), change.getLong());
+                        break;
+                    case SPOT:
+                        applySpot(change.getInt(), change.get() != 0);
+                        break;
+                    default:
+                        throw new IOException("Unknown change in " + file);
+                }
+                applied++;
+            }
+        }
+    }
+
+    private void appendRecord() throws IOException {
+        record.flip();
+        recordCrc.reset();
+        recordCrc.update(record.array(), 0, record.limit());
+        changeLog.writeInt(record.limit());
+        changeLog.write(record.array(), 0, record.limit());
+        changeLog.writeInt((int) recordCrc.getValue());
+    }
+
+    void flushChangeLog() {
+        lock.lock();
+        try {
+            if (changeLog != null) {
+                changeLog.flush();
+            }
+        } catch (IOException e) {
+            logger.error("Error flushing change log", e);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void reset(List<ParkingSpot> spots) {
+        parkingSpots = spots;
+        int maxNumber = 0;
+        for (ParkingSpot parkingSpot : spots) {
+            maxNumber = Math.max(maxNumber, parkingSpot.getId());
+        }
+        occupied = new boolean[maxNumber + 1];
+        parkingSpotAllocator = new ParkingSpotAllocator(spots);
+        parkingSpotRegistry = new ParkingSpotRegistry(spots);
+    }
+
+    /**
+     * Shared spots of this store, whose availability follows the committed
+     * spot updates.
+     */
+    public ParkingSpotRegistry getParkingSpotRegistry() {
+        return parkingSpotRegistry;
+    }
+
+    private void applyEntry(int id, int parkingNumber, ParkingType parkingType, String vehicleRegNumber,
+                            long inTime, long outTime, long priceCents) {
+        int chunkIndex = (id - 1) >>> CHUNK_BITS;
+        if (chunkIndex >= chunks.length) {
+            TicketChunk[] grown = Arrays.copyOf(chunks, Math.max(chunkIndex + 1, chunks.length * 2));
+            for (int i = chunks.length; i < grown.length; i++) {
+                grown[i] = new TicketChunk();
+            }
+            chunks = grown;
+        }
+        TicketChunk chunk = chunks[chunkIndex];
+        int slot = (id - 1) & (CHUNK_SIZE - 1);
+        chunk.parkingNumbers[slot] = parkingNumber;
+        chunk.parkingTypes[slot] = (byte) parkingType.ordinal();
+        chunk.plates[slot] = vehicleRegNumber;
+        chunk.inTimes[slot] = inTime;
+        chunk.priceCents[slot] = priceCents;
+        chunk.outTimes.set(slot, outTime);
+        nextId = Math.max(nextId, id + 1);
+        PlateHistory history = plates.computeIfAbsent(keyOf(vehicleRegNumber), key -> new PlateHistory());
+        history.visits++;
+        //published last: readers find the ticket through it
+        history.latestId = Math.max(history.latestId, id);
+    }
+
+    private void applyExit(int id, long outTime, long priceCents) {
+        TicketChunk chunk = chunks[(id - 1) >>> CHUNK_BITS];
+        int slot = (id - 1) & (CHUNK_SIZE - 1);
+        chunk.priceCents[slot] = priceCents;
+        chunk.outTimes.set(slot, outTime);
+    }
+
+    private void applySpot(int parkingNumber, boolean taken) {
+        occupied[parkingNumber] = taken;
+        ParkingSpot parkingSpot = parkingSpotRegistry.get(parkingNumber);
+        if (parkingSpot != null) {
+            parkingSpot.setAvailable(!taken);
+        }
+        if (taken) {
+            parkingSpotAllocator.claim(parkingNumber);
+        } else {
+            parkingSpotAllocator.release(parkingNumber);
+        }
+    }
+
+    private TreeMap<Long, Path> generations(String prefix, String suffix) throws IOException {
+        TreeMap<Long, Path> files = new TreeMap<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, prefix + "*" + suffix)) {
+            for (Path file : stream) {
+                String name = file.getFileName().toString();
+                files.put(Long.parseLong(name.substring(prefix.length(), name.length() - suffix.length())), file);
+            }
+        }
+        return files;
+    }
+
+    private Path fileOf(String prefix, long fileGeneration, String suffix) {
+        return directory.resolve(String.format("%s%012d%s", prefix, fileGeneration, suffix));
+    }
+
+    private void ensureOpen() {
+        if (closed) {
+            throw new IllegalStateException("Parking store is closed");
+        }
+    }
+
+    private static String keyOf(String vehicleRegNumber) {
+        return vehicleRegNumber.toUpperCase(Locale.ROOT);
+    }
+
+    private static final class TicketChunk {
+        private final int[] parkingNumbers = new int[CHUNK_SIZE];
+        private final byte[] parkingTypes = new byte[CHUNK_SIZE];
+        private final String[] plates = new String[CHUNK_SIZE];
+        private final long[] inTimes = new long[CHUNK_SIZE];
+        private final long[] priceCents = new long[CHUNK_SIZE];
+        private final AtomicLongArray outTimes = new AtomicLongArray(CHUNK_SIZE);
+    }
+
+    private static final class PlateHistory {
+        private volatile int latestId;
+        private volatile int visits;
+    }
+}
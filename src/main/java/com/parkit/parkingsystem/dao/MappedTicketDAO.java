@@ -0,0 +1,92 @@
+package com.parkit.parkingsystem.dao;
+
+import com.parkit.parkingsystem.model.ExitResult;
+import com.parkit.parkingsystem.model.Ticket;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.Closeable;
+import java.io.IOException;
+
+/**
+ * {@link TicketDAO} over a {@link MappedTicketStore} instead of the ticket
+ * table. The store keeps its own plate lookups in memory, so the database
+ * indexes and the write-behind queue are not used.
+ */
+public class MappedTicketDAO extends TicketDAO implements Closeable {
+
+    private static final Logger logger = LogManager.getLogger("MappedTicketDAO");
+
+    private final MappedTicketStore store;
+
+    public MappedTicketDAO(MappedTicketStore store) {
+        this.store = store;
+    }
+
+    public MappedTicketStore getStore() {
+        return store;
+    }
+
+    @Override
+    public boolean loadOpenTicketIndex() {
+        return true;
+    }
+
+    @Override
+    public boolean loadVisitCountIndex() {
+        return true;
+    }
+
+    @Override
+    public boolean saveTicket(Ticket ticket) {
+        try {
+            ticket.setId(store.append(ticket));
+            return true;
+        } catch (Exception ex) {
+            logger.error("Error saving ticket info", ex);
+            return false;
+        }
+    }
+
+    /**
+     * @return the vehicle's most recent ticket, so its open one if it is parked
+     */
+    @Override
+    public Ticket getTicket(String vehicleRegNumber) {
+        try {
+            return store.findLatest(vehicleRegNumber);
+        } catch (Exception ex) {
+            logger.error("Error fetching ticket", ex);
+            return null;
+        }
+    }
+
+    @Override
+    public boolean updateTicket(Ticket ticket) {
+        return closeTicket(ticket) == ExitResult.Status.SUCCESS;
+    }
+
+    @Override
+    public ExitResult.Status closeTicket(Ticket ticket) {
+        try {
+            if (ticket.isOpen()) {
+                throw new IllegalArgumentException("Ticket " + ticket.getId() + " has no out time");
+            }
+            return store.recordExitIfOpen(ticket.getId(), ticket.getOutTimeMillis(), ticket.getPriceCents())
+                    ? ExitResult.Status.SUCCESS : ExitResult.Status.NO_TICKET_FOUND;
+        } catch (Exception ex) {
+            logger.error("Error saving ticket info", ex);
+            return ExitResult.Status.ERROR;
+        }
+    }
+
+    @Override
+    public int getNbTicket(String vehicleRegNumber) {
+        return store.getVisitCount(vehicleRegNumber);
+    }
+
+    @Override
+    public void close() throws IOException {
+        store.close();
+    }
+}
@@ -0,0 +1,599 @@
+package com.parkit.parkingsystem.dao;
+
+import com.parkit.parkingsystem.config.TicketStoreSettings;
+import com.parkit.parkingsystem.constants.ParkingType;
+import com.parkit.parkingsystem.model.ParkingSpot;
+import com.parkit.parkingsystem.model.Ticket;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32C;
+
+/**
+ * Embedded, append-only ticket storage in memory-mapped segment files, for
+ * lots without a database server.
+ * <p>
+ * Tickets get sequential ids and fixed-width {@value #RECORD_SIZE}-byte
+ * records, so a ticket's segment and offset follow from its id. Entries are
+ * appended at the tail; an exit rewrites the out time and price of the record
+ * in place. Both are plain stores into the page cache, made durable according
+ * to the {@link TicketStoreSettings.FsyncPolicy fsync policy}.
+ * <pre>
+ * id(4) parkingNumber(4) type(1) plateLength(1) plate(22, UTF-8) inTime(8) entryCrc(4) | exitCrc(4) outTime(8) priceCents(8)
+ * </pre>
+ * The entry and the exit halves carry their own CRC32C. On startup the
+ * segments are scanned: the log ends at the first record whose id or entry
+ * CRC is wrong, and what follows is wiped; an exit with a bad CRC is dropped,
+ * leaving the ticket open.
+ * <p>
+ * A segment whose tickets are all closed is compacted once the log has moved
+ * past it: its visits are folded into a summary file and the segment is
+ * deleted, so visit counts survive but the old tickets cannot be read back.
+ */
+public class MappedTicketStore implements Closeable {
+
+    private static final Logger logger = LogManager.getLogger("MappedTicketStore");
+
+    static final int RECORD_SIZE = 64;
+    static final int MAX_PLATE_BYTES = 22;
+
+    private static final int MAGIC = 0x504B5453;
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = RECORD_SIZE;
+    private static final long NO_TIME = Ticket.NO_TIME;
+
+    private static final int ID = 0;
+    private static final int PARKING_NUMBER = 4;
+    private static final int PARKING_TYPE = 8;
+    private static final int PLATE_LENGTH = 9;
+    private static final int PLATE = 10;
+    private static final int IN_TIME = 32;
+    private static final int ENTRY_CRC = 40;
+    private static final int EXIT_CRC = 44;
+    private static final int OUT_TIME = 48;
+    private static final int PRICE = 56;
+
+    private static final String SEGMENT_PREFIX = "tickets-";
+    private static final String SEGMENT_SUFFIX = ".seg";
+    private static final String SUMMARY_FILE = "visit-summary.bin";
+
+    private static final ParkingType[] PARKING_TYPES = ParkingType.values();
+
+    private final TicketStoreSettings settings;
+    private final Path directory;
+    private final int recordsPerSegment;
+    private final ConcurrentSkipListMap<Integer, Segment> segments = new ConcurrentSkipListMap<>();
+    private final Map<String, PlateHistory> plates = new HashMap<>();
+    private final Map<String, Integer> compactedVisits = new HashMap<>();
+    private final ScheduledExecutorService flusher;
+    private int nextId = 1;
+    private boolean closed;
+
+    public MappedTicketStore(TicketStoreSettings settings) throws IOException {
+        if (settings.getRecordsPerSegment() < 1
+                || settings.getRecordsPerSegment() > (Integer.MAX_VALUE - HEADER_SIZE) / RECORD_SIZE) {
+            throw new IllegalArgumentException("Invalid records per segment : " + settings.getRecordsPerSegment());
+        }
+        this.settings = settings;
+        this.directory = settings.getDirectory();
+        this.recordsPerSegment = settings.getRecordsPerSegment();
+        Files.createDirectories(directory);
+        recover();
+        if (settings.getFsyncPolicy() == TicketStoreSettings.FsyncPolicy.INTERVAL) {
+            flusher = Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread thread = new Thread(r, "ticket-store-fsync");
+                thread.setDaemon(true);
+                return thread;
+            });
+            flusher.scheduleWithFixedDelay(this::forceDirtySegments,
+                    settings.getFsyncIntervalMillis(), settings.getFsyncIntervalMillis(), TimeUnit.MILLISECONDS);
+        } else {
+            flusher = null;
+        }
+    }
+
+    /**
+     * Appends a ticket and returns its id. A ticket saved with an out time is
+     * stored closed.
+     */
+    public synchronized int append(Ticket ticket) throws IOException {
+        ensureOpen();
+        byte[] plate = ticket.getVehicleRegNumber().getBytes(StandardCharsets.UTF_8);
+        if (plate.length == 0 || plate.length > MAX_PLATE_BYTES) {
+            throw new IllegalArgumentException("Plate must be 1 to " + MAX_PLATE_BYTES + " bytes : " + ticket.getVehicleRegNumber());
+        }
+        int id = nextId;
+        Segment segment = segments.get(segmentIndexOf(id));
+        if (segment == null) {
+            segment = roll(segmentIndexOf(id));
+        }
+        MappedByteBuffer buffer = segment.buffer;
+        int offset = offsetOf(id);
+        buffer.putInt(offset + ID, id);
+        buffer.putInt(offset + PARKING_NUMBER, ticket.getParkingSpot().getId());
+        buffer.put(offset + PARKING_TYPE, (byte) ticket.getParkingSpot().getParkingType().ordinal());
+        buffer.put(offset + PLATE_LENGTH, (byte) plate.length);
+        buffer.put(offset + PLATE, plate);
+        buffer.put(offset + PLATE + plate.length, new byte[MAX_PLATE_BYTES - plate.length]);
+        buffer.putLong(offset + IN_TIME, ticket.getInTimeMillis());
+        buffer.putInt(offset + ENTRY_CRC, entryCrc(buffer, offset));
+        boolean open = ticket.isOpen();
+        writeExit(buffer, offset, open ? NO_TIME : ticket.getOutTimeMillis(), ticket.getPriceCents());
+        nextId++;
+        if (open) {
+            segment.openTickets++;
+        }
+        visited(keyOf(ticket.getVehicleRegNumber()), id);
+        written(segment, offset);
+        return id;
+    }
+
+    /**
+     * Records the exit of a ticket in place.
+     *
+     * @return false if there is no such ticket, or it has been compacted
+     */
+    public boolean recordExit(int id, Date outTime, long priceCents) {
+        return recordExit(id, outTime.getTime(), priceCents);
+    }
+
+    /**
+     * Same as {@link #recordExit(int, Date, long)} with the exit time in epoch millis.
+     */
+    public synchronized boolean recordExit(int id, long outTime, long priceCents) {
+        return recordExit(id, outTime, priceCents, false);
+    }
+
+    /**
+     * Same as {@link #recordExit(int, long, long)}, but leaves a ticket
+     * already closed as it is.
+     *
+     * @return false if there is no such open ticket
+     */
+    public synchronized boolean recordExitIfOpen(int id, long outTime, long priceCents) {
+        return recordExit(id, outTime, priceCents, true);
+    }
+
+    private boolean recordExit(int id, long outTime, long priceCents, boolean onlyIfOpen) {
+        ensureOpen();
+        Segment segment = id > 0 && id < nextId ? segments.get(segmentIndexOf(id)) : null;
+        if (segment == null) {
+            return false;
+        }
+        int offset = offsetOf(id);
+        if (!isClosed(segment.buffer, offset)) {
+            segment.openTickets--;
+        } else if (onlyIfOpen) {
+            return false;
+        }
+        writeExit(segment.buffer, offset, outTime, priceCents);
+        written(segment, offset);
+        return true;
+    }
+
+    /**
+     * @return the most recent ticket of this vehicle, or null if it never
+     * parked here or that ticket has been compacted
+     */
+    public synchronized Ticket findLatest(String vehicleRegNumber) {
+        ensureOpen();
+        PlateHistory history = vehicleRegNumber == null ? null : plates.get(keyOf(vehicleRegNumber));
+        if (history == null || history.latestId == 0) {
+            //only known from the visit summary
+            return null;
+        }
+        Segment segment = segments.get(segmentIndexOf(history.latestId));
+        return segment == null ? null : read(segment.buffer, offsetOf(history.latestId));
+    }
+
+    /**
+     * Number of tickets ever saved for this vehicle, compacted ones included.
+     */
+    public synchronized int getVisitCount(String vehicleRegNumber) {
+        PlateHistory history = vehicleRegNumber == null ? null : plates.get(keyOf(vehicleRegNumber));
+        return history == null ? 0 : history.visits;
+    }
+
+    public synchronized int getOpenTicketCount() {
+        int open = 0;
+        for (Segment segment : segments.values()) {
+            open += segment.openTickets;
+        }
+        return open;
+    }
+
+    public synchronized int getSegmentCount() {
+        return segments.size();
+    }
+
+    /**
+     * Compacts every fully closed segment behind the tail. Runs on its own
+     * each time the log rolls to a new segment.
+     *
+     * @return the number of segments removed
+     */
+    public synchronized int compact() throws IOException {
+        ensureOpen();
+        List<Segment> compactable = new ArrayList<>();
+        for (Segment segment : segments.headMap(segmentIndexOf(nextId)).values()) {
+            if (segment.openTickets == 0) {
+                compactable.add(segment);
+            }
+        }
+        if (compactable.isEmpty()) {
+            return 0;
+        }
+        Set<Integer> indexes = new TreeSet<>();
+        for (Segment segment : compactable) {
+            indexes.add(segment.index);
+            for (int slot = 0; slot < recordsPerSegment; slot++) {
+                compactedVisits.merge(keyOf(readPlate(segment.buffer, HEADER_SIZE + slot * RECORD_SIZE)), 1, Integer::sum);
+            }
+        }
+        //once the summary names these segments, recovery finishes deleting them instead of counting them twice
+        writeSummary(indexes);
+        for (Segment segment : compactable) {
+            segments.remove(segment.index);
+            segment.channel.close();
+            Files.delete(segmentFile(segment.index));
+        }
+        logger.info("Compacted ticket segments " + indexes);
+        return compactable.size();
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        if (flusher != null) {
+            flusher.shutdown();
+        }
+        for (Segment segment : segments.values()) {
+            segment.buffer.force();
+            segment.channel.close();
+        }
+    }
+
+    private void recover() throws IOException {
+        Set<Integer> interrupted = readSummary();
+        boolean endOfLog = false;
+        int tickets = 0;
+        for (int index : listSegments()) {
+            Path file = segmentFile(index);
+            if (interrupted.contains(index)) {
+                Files.delete(file);
+                continue;
+            }
+            if (endOfLog) {
+                //written after a torn record, these tickets never made it to the log
+                Path corrupt = file.resolveSibling(file.getFileName() + ".corrupt");
+                Files.move(file, corrupt, StandardCopyOption.REPLACE_EXISTING);
+                logger.error("Moved ticket segment past the end of the log aside to " + corrupt);
+                continue;
+            }
+            Segment segment = openSegment(index, false);
+            segments.put(index, segment);
+            int records = scan(segment);
+            tickets += records;
+            endOfLog = records < recordsPerSegment;
+        }
+        logger.info("Recovered " + tickets + " tickets (" + getOpenTicketCount() + " open) from "
+                + segments.size() + " segments in " + directory);
+    }
+
+    /**
+     * Indexes the valid records of a segment and wipes anything after the
+     * last one.
+     *
+     * @return the number of valid records
+     */
+    private int scan(Segment segment) {
+        MappedByteBuffer buffer = segment.buffer;
+        int firstId = segment.index * recordsPerSegment + 1;
+        int slot = 0;
+        for (; slot < recordsPerSegment; slot++) {
+            int offset = HEADER_SIZE + slot * RECORD_SIZE;
+            int id = firstId + slot;
+            if (buffer.getInt(offset + ID) != id || buffer.getInt(offset + ENTRY_CRC) != entryCrc(buffer, offset)) {
+                break;
+            }
+            if (buffer.getLong(offset + OUT_TIME) != NO_TIME && !isClosed(buffer, offset)) {
+                logger.warn("Exit of ticket " + id + " failed its checksum, ticket left open");
+                writeExit(buffer, offset, NO_TIME, 0);
+            }
+            if (!isClosed(buffer, offset)) {
+                segment.openTickets++;
+            }
+            visited(keyOf(readPlate(buffer, offset)), id);
+        }
+        nextId = firstId + slot;
+        if (slot < recordsPerSegment && wipe(buffer, slot)) {
+            logger.warn("Ticket log torn at id " + nextId + ", discarded the rest of segment " + segment.index);
+            buffer.force();
+        }
+        return slot;
+    }
+
+    private boolean wipe(MappedByteBuffer buffer, int fromSlot) {
+        boolean wiped = false;
+        byte[] zeros = new byte[RECORD_SIZE];
+        for (int slot = fromSlot; slot < recordsPerSegment; slot++) {
+            int offset = HEADER_SIZE + slot * RECORD_SIZE;
+            for (int i = 0; i < RECORD_SIZE; i += Long.BYTES) {
+                if (buffer.getLong(offset + i) != 0) {
+                    buffer.put(offset, zeros);
+                    wiped = true;
+                    break;
+                }
+            }
+        }
+        return wiped;
+    }
+
+    private Segment roll(int index) throws IOException {
+        Segment segment = openSegment(index, true);
+        segments.put(index, segment);
+        compact();
+        return segment;
+    }
+
+    private Segment openSegment(int index, boolean create) throws IOException {
+        Path file = segmentFile(index);
+        FileChannel channel = create
+                ? FileChannel.open(file, StandardOpenOption.CREATE_NEW, StandardOpenOption.READ, StandardOpenOption.WRITE)
+                : FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        try {
+            long size = HEADER_SIZE + (long) recordsPerSegment * RECORD_SIZE;
+            if (!create && channel.size() != size) {
+                throw new IOException("Unexpected size " + channel.size() + " for ticket segment " + file);
+            }
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+            if (create) {
+                buffer.putInt(0, MAGIC).putInt(4, VERSION).putInt(8, RECORD_SIZE).putInt(12, recordsPerSegment).putInt(16, index);
+                buffer.force(0, HEADER_SIZE);
+            } else if (buffer.getInt(0) != MAGIC || buffer.getInt(4) != VERSION || buffer.getInt(8) != RECORD_SIZE
+                    || buffer.getInt(16) != index) {
+                throw new IOException("Not a ticket segment : " + file);
+            } else if (buffer.getInt(12) != recordsPerSegment) {
+                throw new IOException("Ticket store was created with " + buffer.getInt(12)
+                        + " records per segment, not " + recordsPerSegment);
+            }
+            return new Segment(index, channel, buffer);
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    private List<Integer> listSegments() throws IOException {
+        List<Integer> indexes = new ArrayList<>();
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, SEGMENT_PREFIX + "*" + SEGMENT_SUFFIX)) {
+            for (Path file : files) {
+                String name = file.getFileName().toString();
+                indexes.add(Integer.parseInt(name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length())));
+            }
+        }
+        indexes.sort(null);
+        return indexes;
+    }
+
+    /**
+     * Loads the visits of compacted tickets.
+     *
+     * @return the segments of the last compaction, which may not all be deleted yet
+     */
+    private Set<Integer> readSummary() throws IOException {
+        Path file = directory.resolve(SUMMARY_FILE);
+        Set<Integer> lastCompacted = new HashSet<>();
+        if (!Files.exists(file)) {
+            return lastCompacted;
+        }
+        ByteBuffer summary = ByteBuffer.wrap(Files.readAllBytes(file));
+        CRC32C crc = new CRC32C();
+        crc.update(summary.slice(0, Math.max(0, summary.limit() - Integer.BYTES)));
+        if (summary.limit() < 3 * Integer.BYTES || summary.getInt(summary.limit() - Integer.BYTES) != (int) crc.getValue()) {
+            throw new IOException("Visit summary failed its checksum : " + file);
+        }
+        try (DataInputStream data = new DataInputStream(new ByteArrayInputStream(summary.array()))) {
+            if (data.readInt() != MAGIC || data.readInt() != VERSION) {
+                throw new IOException("Not a visit summary : " + file);
+            }
+            for (int i = data.readInt(); i > 0; i--) {
+                lastCompacted.add(data.readInt());
+            }
+            for (int i = data.readInt(); i > 0; i--) {
+                String plate = data.readUTF();
+                int visits = data.readInt();
+                compactedVisits.put(plate, visits);
+                plates.computeIfAbsent(plate, key -> new PlateHistory()).visits += visits;
+            }
+        }
+        return lastCompacted;
+    }
+
+    private void writeSummary(Set<Integer> compacted) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream data = new DataOutputStream(bytes);
+        data.writeInt(MAGIC);
+        data.writeInt(VERSION);
+        data.writeInt(compacted.size());
+        for (int index : compacted) {
+            data.writeInt(index);
+        }
+        data.writeInt(compactedVisits.size());
+        for (Map.Entry<String, Integer> entry : compactedVisits.entrySet()) {
+            data.writeUTF(entry.getKey());
+            data.writeInt(entry.getValue());
+        }
+        CRC32C crc = new CRC32C();
+        crc.update(bytes.toByteArray());
+        data.writeInt((int) crc.getValue());
+
+        Path file = directory.resolve(SUMMARY_FILE);
+        Path temp = directory.resolve(SUMMARY_FILE + ".tmp");
+        try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+                StandardOpenOption.WRITE)) {
+            ByteBuffer summary = ByteBuffer.wrap(bytes.toByteArray());
+            while (summary.hasRemaining()) {
+                channel.write(summary);
+            }
+            channel.force(true);
+        }
+        Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        try (FileChannel dir = FileChannel.open(directory, StandardOpenOption.READ)) {
+            dir.force(true);
+        } catch (IOException e) {
+            //not every platform can sync a directory
+            logger.debug("Unable to sync " + directory, e);
+        }
+    }
+
+    private void forceDirtySegments() {
+        for (Segment segment : segments.values()) {
+            if (segment.dirty) {
+                segment.dirty = false;
+                try {
+                    segment.buffer.force();
+                } catch (RuntimeException e) {
+                    //compacted and closed meanwhile
+                    logger.debug("Unable to sync ticket segment " + segment.index, e);
+                }
+            }
+        }
+    }
+
+    private void written(Segment segment, int offset) {
+        switch (settings.getFsyncPolicy()) {
+            case ALWAYS:
+                segment.buffer.force(offset, RECORD_SIZE);
+                break;
+            case INTERVAL:
+                segment.dirty = true;
+                break;
+            default:
+        }
+    }
+
+    private void visited(String plateKey, int id) {
+        PlateHistory history = plates.computeIfAbsent(plateKey, key -> new PlateHistory());
+        history.visits++;
+        history.latestId = Math.max(history.latestId, id);
+    }
+
+    private static Ticket read(MappedByteBuffer buffer, int offset) {
+        Ticket ticket = new Ticket();
+        ticket.setId(buffer.getInt(offset + ID));
+        ticket.setParkingSpot(new ParkingSpot(buffer.getInt(offset + PARKING_NUMBER),
+                PARKING_TYPES[buffer.get(offset + PARKING_TYPE)], false));
+        ticket.setVehicleRegNumber(readPlate(buffer, offset));
+        ticket.setInTimeMillis(buffer.getLong(offset + IN_TIME));
+        if (isClosed(buffer, offset)) {
+            ticket.setOutTimeMillis(buffer.getLong(offset + OUT_TIME));
+            ticket.setPriceCents(buffer.getLong(offset + PRICE));
+        }
+        return ticket;
+    }
+
+    private static String readPlate(MappedByteBuffer buffer, int offset) {
+        byte[] plate = new byte[buffer.get(offset + PLATE_LENGTH)];
+        buffer.get(offset + PLATE, plate);
+        return new String(plate, StandardCharsets.UTF_8);
+    }
+
+    private static void writeExit(MappedByteBuffer buffer, int offset, long outTime, long priceCents) {
+        buffer.putLong(offset + OUT_TIME, outTime);
+        buffer.putLong(offset + PRICE, priceCents);
+        buffer.putInt(offset + EXIT_CRC, outTime == NO_TIME ? 0 : exitCrc(buffer, offset));
+    }
+
+    private static boolean isClosed(MappedByteBuffer buffer, int offset) {
+        return buffer.getLong(offset + OUT_TIME) != NO_TIME && buffer.getInt(offset + EXIT_CRC) == exitCrc(buffer, offset);
+    }
+
+    private static int entryCrc(ByteBuffer buffer, int offset) {
+        CRC32C crc = new CRC32C();
+        crc.update(buffer.slice(offset, ENTRY_CRC));
+        return (int) crc.getValue();
+    }
+
+    /**
+     * Covers the id too, so an exit cannot pass for another record's.
+     */
+    private static int exitCrc(ByteBuffer buffer, int offset) {
+        CRC32C crc = new CRC32C();
+        crc.update(buffer.slice(offset + ID, Integer.BYTES));
+        crc.update(buffer.slice(offset + OUT_TIME, RECORD_SIZE - OUT_TIME));
+        return (int) crc.getValue();
+    }
+
+    private int segmentIndexOf(int id) {
+        return (id - 1) / recordsPerSegment;
+    }
+
+    private int offsetOf(int id) {
+        return HEADER_SIZE + ((id - 1) % recordsPerSegment) * RECORD_SIZE;
+    }
+
+    private Path segmentFile(int index) {
+        return directory.resolve(String.format("%s%010d%s", SEGMENT_PREFIX, index, SEGMENT_SUFFIX));
+    }
+
+    private void ensureOpen() {
+        if (closed) {
+            throw new IllegalStateException("Ticket store is closed");
+        }
+    }
+
+    private static String keyOf(String vehicleRegNumber) {
+        return vehicleRegNumber.toUpperCase(Locale.ROOT);
+    }
+
+    private static final class Segment {
+        private final int index;
+        private final FileChannel channel;
+        private final MappedByteBuffer buffer;
+        private int openTickets;
+        private volatile boolean dirty;
+
+        private Segment(int index, FileChannel channel, MappedByteBuffer buffer) {
+            this.index = index;
+            this.channel = channel;
+            this.buffer = buffer;
+        }
+    }
+
+    private static final class PlateHistory {
+        private int latestId;
+        private int visits;
+    }
+}
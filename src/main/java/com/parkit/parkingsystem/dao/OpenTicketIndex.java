@@ -0,0 +1,73 @@
+package com.parkit.parkingsystem.dao;
+
+import com.parkit.parkingsystem.model.Ticket;
+
+import java.util.Locale;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Tickets whose vehicle is still parked ({@code out_time} is null), keyed by
+ * plate. Plates are compared case-insensitively, like MySQL does.
+ */
+public class OpenTicketIndex {
+
+    private final ConcurrentHashMap<String, Ticket> openTickets = new ConcurrentHashMap<>();
+
+    public void put(Ticket ticket) {
+        openTickets.merge(keyOf(ticket.getVehicleRegNumber()), ticket,
+                (current, candidate) -> candidate.getInTimeMillis() < current.getInTimeMillis() ? current : candidate);
+    }
+
+    public Ticket get(String vehicleRegNumber) {
+        return vehicleRegNumber == null ? null : openTickets.get(keyOf(vehicleRegNumber));
+    }
+
+    /**
+     * Drops the open ticket of this vehicle if it is the given ticket, either
+     * the same instance or the same database id.
+     */
+    public boolean remove(Ticket ticket) {
+        return claim(ticket) != null;
+    }
+
+    /**
+     * Takes the open ticket of this vehicle out of the index if it is the
+     * given ticket or a copy of it: the same instance, the same database id,
+     * or, before the id is known, the same in time. Only one caller gets a
+     * given ticket back.
+     *
+     * @return the indexed instance, or null if it was not indexed
+     */
+    public Ticket claim(Ticket ticket) {
+        Ticket[] claimed = new Ticket[1];
+        openTickets.computeIfPresent(keyOf(ticket.getVehicleRegNumber()), (key, current) -> {
+            if (isSameTicket(current, ticket)) {
+                claimed[0] = current;
+                return null;
+            }
+            return current;
+        });
+        return claimed[0];
+    }
+
+    private static boolean isSameTicket(Ticket current, Ticket ticket) {
+        if (current == ticket) {
+            return true;
+        }
+        return ticket.getId() > 0 && current.getId() > 0
+                ? current.getId() == ticket.getId()
+                : current.getInTimeMillis() == ticket.getInTimeMillis();
+    }
+
+    public int size() {
+        return openTickets.size();
+    }
+
+    public void clear() {
+        openTickets.clear();
+    }
+
+    private static String keyOf(String vehicleRegNumber) {
+        return vehicleRegNumber.toUpperCase(Locale.ROOT);
+    }
+}
@@ -0,0 +1,183 @@
+package com.parkit.parkingsystem.dao;
+
+import com.parkit.parkingsystem.config.DataBaseConfig;
+import com.parkit.parkingsystem.constants.DBConstants;
+import com.parkit.parkingsystem.constants.ParkingType;
+import com.parkit.parkingsystem.model.EntryResult;
+import com.parkit.parkingsystem.model.ParkingSpot;
+import com.parkit.parkingsystem.model.ParkingSpotRegistry;
+import com.parkit.parkingsystem.model.Ticket;
+import com.parkit.parkingsystem.util.Money;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.util.Date;
+
+/**
+ * Vehicle entry as a single transaction: the spot is claimed with a
+ * {@code FOR UPDATE SKIP LOCKED} row lock, marked occupied, the visit count
+ * is read and the ticket inserted on one connection, then committed. Gates
+ * racing for the same type skip each other's locked rows instead of queueing
+ * on the lowest free spot. Not meant to be combined with
+ * {@link ParkingSpotAllocator}, which assumes it is the only spot writer.
+ */
+public class ParkingEntryDAO {
+
+    private static final Logger logger = LogManager.getLogger("ParkingEntryDAO");
+
+    private static final int ER_LOCK_WAIT_TIMEOUT = 1205;
+    private static final int ER_LOCK_DEADLOCK = 1213;
+
+    public DataBaseConfig dataBaseConfig = new DataBaseConfig();
+
+    public VisitCountIndex visitCountIndex;
+
+    public OpenTicketIndex openTicketIndex;
+
+    public ParkingSpotRegistry parkingSpotRegistry;
+
+    public EntryResult enterVehicle(ParkingType parkingType, String vehicleRegNumber, Date inTime) {
+        Connection con = null;
+        try {
+            con = dataBaseConfig.getConnection();
+            con.setAutoCommit(false);
+
+            int parkingNumber = claimParkingSpot(con, parkingType);
+            if (parkingNumber <= 0) {
+                EntryResult.Status status = countAvailableSpots(con, parkingType) > 0
+                        ? EntryResult.Status.CONTENTION
+                        : EntryResult.Status.NO_SPOT_AVAILABLE;
+                con.rollback();
+                return EntryResult.failure(status);
+            }
+
+            PreparedStatement ps = con.prepareStatement(DBConstants.UPDATE_PARKING_SPOT);
+            ps.setBoolean(1, false);
+            ps.setInt(2, parkingNumber);
+            int updated = ps.executeUpdate();
+            dataBaseConfig.closePreparedStatement(ps);
+            if (updated != 1) {
+                throw new SQLException("Parking spot " + parkingNumber + " was not marked as occupied");
+            }
+
+            int nbTicket = visitCountIndex == null ? VisitCountIndex.UNKNOWN : visitCountIndex.getCount(vehicleRegNumber);
+            if (nbTicket == VisitCountIndex.UNKNOWN) {
+                nbTicket = countTickets(con, vehicleRegNumber);
+            }
+
+            Ticket ticket = new Ticket();
+            ParkingSpot parkingSpot = (parkingSpotRegistry == null)
+                    ? new ParkingSpot(parkingNumber, parkingType, false)
+                    : parkingSpotRegistry.get(parkingNumber, parkingType, false);
+            parkingSpot.setAvailable(false);
+            ticket.setParkingSpot(parkingSpot);
+            ticket.setVehicleRegNumber(vehicleRegNumber);
+            ticket.setPriceCents(0);
+            ticket.setInTimeMillis(inTime.getTime());
+            ticket.setId(insertTicket(con, ticket));
+
+            con.commit();
+            if (visitCountIndex != null) {
+                visitCountIndex.increment(vehicleRegNumber);
+            }
+            if (openTicketIndex != null) {
+                openTicketIndex.put(ticket);
+            }
+            return EntryResult.success(ticket, nbTicket);
+        } catch (Exception ex) {
+            rollback(con);
+            if (isContention(ex)) {
+                logger.warn("Lock contention while processing vehicle entry", ex);
+                return EntryResult.failure(EntryResult.Status.CONTENTION);
+            }
+            logger.error("Error processing vehicle entry", ex);
+            return EntryResult.failure(EntryResult.Status.ERROR);
+        } finally {
+            dataBaseConfig.closeConnection(con);
+        }
+    }
+
+    private int claimParkingSpot(Connection con, ParkingType parkingType) throws SQLException {
+        int parkingNumber = -1;
+        PreparedStatement ps = con.prepareStatement(DBConstants.CLAIM_PARKING_SPOT);
+        ps.setString(1, parkingType.toString());
+        ResultSet rs = ps.executeQuery();
+        if (rs.next()) {
+            parkingNumber = rs.getInt(1);
+        }
+        dataBaseConfig.closeResultSet(rs);
+        dataBaseConfig.closePreparedStatement(ps);
+        return parkingNumber;
+    }
+
+    private int countAvailableSpots(Connection con, ParkingType parkingType) throws SQLException {
+        int count = 0;
+        PreparedStatement ps = con.prepareStatement(DBConstants.COUNT_AVAILABLE_PARKING_SPOTS);
+        ps.setString(1, parkingType.toString());
+        ResultSet rs = ps.executeQuery();
+        if (rs.next()) {
+            count = rs.getInt(1);
+        }
+        dataBaseConfig.closeResultSet(rs);
+        dataBaseConfig.closePreparedStatement(ps);
+        return count;
+    }
+
+    private int countTickets(Connection con, String vehicleRegNumber) throws SQLException {
+        int count = 0;
+        PreparedStatement ps = con.prepareStatement(DBConstants.GET_NB_TICKET);
+        ps.setString(1, vehicleRegNumber);
+        ResultSet rs = ps.executeQuery();
+        if (rs.next()) {
+            count = rs.getInt(1);
+        }
+        dataBaseConfig.closeResultSet(rs);
+        dataBaseConfig.closePreparedStatement(ps);
+        return count;
+    }
+
+    private int insertTicket(Connection con, Ticket ticket) throws SQLException {
+        int id = 0;
+        PreparedStatement ps = con.prepareStatement(DBConstants.SAVE_TICKET, Statement.RETURN_GENERATED_KEYS);
+        ps.setInt(1, ticket.getParkingSpot().getId());
+        ps.setString(2, ticket.getVehicleRegNumber());
+        ps.setBigDecimal(3, Money.toBigDecimal(ticket.getPriceCents()));
+        ps.setTimestamp(4, new Timestamp(ticket.getInTimeMillis()));
+        ps.setTimestamp(5, null);
+        ps.executeUpdate();
+        ResultSet keys = ps.getGeneratedKeys();
+        if (keys != null && keys.next()) {
+            id = keys.getInt(1);
+        }
+        dataBaseConfig.closeResultSet(keys);
+        dataBaseConfig.closePreparedStatement(ps);
+        return id;
+    }
+
+    private void rollback(Connection con) {
+        if (con != null) {
+            try {
+                con.rollback();
+            } catch (SQLException e) {
+                logger.error("Error while rolling back vehicle entry", e);
+            }
+        }
+    }
+
+    private boolean isContention(Exception ex) {
+        if (!(ex instanceof SQLException)) {
+            return false;
+        }
+        SQLException sqlException = (SQLException) ex;
+        String sqlState = sqlException.getSQLState();
+        return (sqlState != null && sqlState.startsWith("40"))
+                || sqlException.getErrorCode() == ER_LOCK_DEADLOCK
+                || sqlException.getErrorCode() == ER_LOCK_WAIT_TIMEOUT;
+    }
+}
@@ -0,0 +1,131 @@
+package com.parkit.parkingsystem.dao;
+
+import com.parkit.parkingsystem.constants.ParkingType;
+import com.parkit.parkingsystem.model.ParkingSpot;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * In-memory view of spot availability: one bitset per {@link ParkingType},
+ * indexed by parking number, where a set bit means the spot is free.
+ * Spots are claimed and released with CAS so two gates can never be handed
+ * the same spot. Only valid while this process is the single writer of the
+ * {@code parking} table.
+ */
+public class ParkingSpotAllocator {
+
+    private final AtomicLongArray[] freeSpots;
+    private final ParkingType[] spotTypes;
+
+    public ParkingSpotAllocator(List<ParkingSpot> parkingSpots) {
+        int maxNumber = 0;
+        for (ParkingSpot parkingSpot : parkingSpots) {
+            if (parkingSpot.getId() <= 0) {
+                throw new IllegalArgumentException("Invalid parking number : " + parkingSpot.getId());
+            }
+            maxNumber = Math.max(maxNumber, parkingSpot.getId());
+        }
+        int words = (maxNumber >>> 6) + 1;
+        spotTypes = new ParkingType[maxNumber + 1];
+        freeSpots = new AtomicLongArray[ParkingType.values().length];
+        for (int i = 0; i < freeSpots.length; i++) {
+            freeSpots[i] = new AtomicLongArray(words);
+        }
+        for (ParkingSpot parkingSpot : parkingSpots) {
+            int number = parkingSpot.getId();
+            spotTypes[number] = parkingSpot.getParkingType();
+            if (parkingSpot.isAvailable()) {
+                AtomicLongArray bits = freeSpots[parkingSpot.getParkingType().ordinal()];
+                bits.set(number >>> 6, bits.get(number >>> 6) | (1L << number));
+            }
+        }
+    }
+
+    /**
+     * Claims the lowest-numbered free spot of the given type.
+     *
+     * @return the parking number, or -1 if every spot of that type is taken
+     */
+    public int claim(ParkingType parkingType) {
+        AtomicLongArray bits = freeSpots[parkingType.ordinal()];
+        for (int i = 0; i < bits.length(); i++) {
+            long word = bits.get(i);
+            while (word != 0) {
+                long lowest = Long.lowestOneBit(word);
+                if (bits.compareAndSet(i, word, word & ~lowest)) {
+                    return (i << 6) + Long.numberOfTrailingZeros(lowest);
+                }
+                word = bits.get(i);
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Marks a specific spot as taken.
+     *
+     * @return true if the spot was free before this call
+     */
+    public boolean claim(int parkingNumber) {
+        AtomicLongArray bits = bitsFor(parkingNumber);
+        if (bits == null) {
+            return false;
+        }
+        long mask = 1L << parkingNumber;
+        int index = parkingNumber >>> 6;
+        long word;
+        do {
+            word = bits.get(index);
+            if ((word & mask) == 0) {
+                return false;
+            }
+        } while (!bits.compareAndSet(index, word, word & ~mask));
+        return true;
+    }
+
+    /**
+     * Hands a spot back.
+     *
+     * @return true if the spot was taken before this call
+     */
+    public boolean release(int parkingNumber) {
+        AtomicLongArray bits = bitsFor(parkingNumber);
+        if (bits == null) {
+            return false;
+        }
+        long mask = 1L << parkingNumber;
+        int index = parkingNumber >>> 6;
+        long word;
+        do {
+            word = bits.get(index);
+            if ((word & mask) != 0) {
+                return false;
+            }
+        } while (!bits.compareAndSet(index, word, word | mask));
+        return true;
+    }
+
+    public boolean isAvailable(int parkingNumber) {
+        AtomicLongArray bits = bitsFor(parkingNumber);
+        return bits != null && (bits.get(parkingNumber >>> 6) & (1L << parkingNumber)) != 0;
+    }
+
+    public int getAvailableCount(ParkingType parkingType) {
+        AtomicLongArray bits = freeSpots[parkingType.ordinal()];
+        int count = 0;
+        for (int i = 0; i < bits.length(); i++) {
+            count += Long.bitCount(bits.get(i));
+        }
+        return count;
+    }
+
+    public ParkingType getParkingType(int parkingNumber) {
+        return parkingNumber > 0 && parkingNumber < spotTypes.length ? spotTypes[parkingNumber] : null;
+    }
+
+    private AtomicLongArray bitsFor(int parkingNumber) {
+        ParkingType parkingType = getParkingType(parkingNumber);
+        return parkingType == null ? null : freeSpots[parkingType.ordinal()];
+    }
+}
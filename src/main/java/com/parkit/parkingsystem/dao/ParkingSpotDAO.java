@@ -3,20 +3,92 @@ package com.parkit.parkingsystem.dao;
 import com.parkit.parkingsystem.config.DataBaseConfig;
 import com.parkit.parkingsystem.constants.DBConstants;
 import com.parkit.parkingsystem.constants.ParkingType;
+import com.parkit.parkingsystem.metrics.Metrics;
+import com.parkit.parkingsystem.metrics.OperationStats;
 import com.parkit.parkingsystem.model.ParkingSpot;
+import com.parkit.parkingsystem.model.ParkingSpotRegistry;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
 import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
+import java.util.ArrayList;
+import java.util.List;
 
-public class ParkingSpotDAO {
+public class ParkingSpotDAO implements ParkingSpotRepository {
     private static final Logger logger = LogManager.getLogger("ParkingSpotDAO");
 
+    private static final OperationStats getParkingSpotsStats = Metrics.operation("ParkingSpotDAO.getParkingSpots");
+    private static final OperationStats getNextAvailableSlotStats = Metrics.operation("ParkingSpotDAO.getNextAvailableSlot");
+    private static final OperationStats getAvailableSlotCountStats = Metrics.operation("ParkingSpotDAO.getAvailableSlotCount");
+    private static final OperationStats updateParkingStats = Metrics.operation("ParkingSpotDAO.updateParking");
+    private static final OperationStats releaseSlotStats = Metrics.operation("ParkingSpotDAO.releaseSlot");
+
     public DataBaseConfig dataBaseConfig = new DataBaseConfig();
 
+    public ParkingSpotAllocator parkingSpotAllocator;
+
+    public ParkingSpotRegistry parkingSpotRegistry;
+
+    public boolean loadSpotAllocator(){
+        List<ParkingSpot> parkingSpots = getParkingSpots();
+        if(parkingSpots.isEmpty()){
+            logger.error("No parking spot loaded, keeping database slot lookup");
+            return false;
+        }
+        parkingSpotAllocator = new ParkingSpotAllocator(parkingSpots);
+        parkingSpotRegistry = new ParkingSpotRegistry(parkingSpots);
+        logger.info("Loaded " + parkingSpots.size() + " parking spots into the spot allocator");
+        return true;
+    }
+
+    /**
+     * Loads the shared spots only, for when spots are not handed out by the
+     * allocator.
+     */
+    public boolean loadSpotRegistry(){
+        List<ParkingSpot> parkingSpots = getParkingSpots();
+        if(parkingSpots.isEmpty()){
+            logger.error("No parking spot loaded, spots will be created per request");
+            return false;
+        }
+        parkingSpotRegistry = new ParkingSpotRegistry(parkingSpots);
+        return true;
+    }
+
+    public List<ParkingSpot> getParkingSpots(){
+        long start = System.nanoTime();
+        Connection con = null;
+        List<ParkingSpot> parkingSpots = new ArrayList<>();
+        try {
+            con = dataBaseConfig.getConnection();
+            PreparedStatement ps = con.prepareStatement(DBConstants.GET_PARKING_SPOTS);
+            ResultSet rs = ps.executeQuery();
+            while(rs.next()){
+                parkingSpots.add(new ParkingSpot(rs.getInt(1), ParkingType.valueOf(rs.getString(3)), rs.getBoolean(2)));
+            }
+            dataBaseConfig.closeResultSet(rs);
+            dataBaseConfig.closePreparedStatement(ps);
+        }catch (Exception ex){
+            logger.error("Error fetching parking spots",ex);
+            getParkingSpotsStats.error();
+            parkingSpots.clear();
+        }finally {
+            dataBaseConfig.closeConnection(con);
+            getParkingSpotsStats.record(start);
+        }
+        return parkingSpots;
+    }
+
+    @Override
     public int getNextAvailableSlot(ParkingType parkingType){
+        long start = System.nanoTime();
+        if(parkingSpotAllocator != null){
+            int parkingNumber = parkingSpotAllocator.claim(parkingType);
+            getNextAvailableSlotStats.record(start);
+            return parkingNumber;
+        }
         Connection con = null;
         int result=-1;
         try {
@@ -31,29 +103,88 @@ public class ParkingSpotDAO {
             dataBaseConfig.closePreparedStatement(ps);
         }catch (Exception ex){
             logger.error("Error fetching next available slot",ex);
+            getNextAvailableSlotStats.error();
         }finally {
             dataBaseConfig.closeConnection(con);
+            getNextAvailableSlotStats.record(start);
         }
         return result;
     }
 
+    @Override
+    public int getAvailableSlotCount(ParkingType parkingType){
+        long start = System.nanoTime();
+        if(parkingSpotAllocator != null){
+            int count = parkingSpotAllocator.getAvailableCount(parkingType);
+            getAvailableSlotCountStats.record(start);
+            return count;
+        }
+        Connection con = null;
+        int result=-1;
+        try {
+            con = dataBaseConfig.getConnection();
+            PreparedStatement ps = con.prepareStatement(DBConstants.COUNT_AVAILABLE_PARKING_SPOTS);
+            ps.setString(1, parkingType.toString());
+            ResultSet rs = ps.executeQuery();
+            if(rs.next()){
+                result = rs.getInt(1);
+            }
+            dataBaseConfig.closeResultSet(rs);
+            dataBaseConfig.closePreparedStatement(ps);
+        }catch (Exception ex){
+            logger.error("Error counting available slots",ex);
+            getAvailableSlotCountStats.error();
+        }finally {
+            dataBaseConfig.closeConnection(con);
+            getAvailableSlotCountStats.record(start);
+        }
+        return result;
+    }
+
+    @Override
     public boolean updateParking(ParkingSpot parkingSpot){
         //update the availability fo that parking slot
+        long start = System.nanoTime();
         Connection con = null;
+        boolean available = parkingSpot.isAvailable();
+        boolean claimed = parkingSpotAllocator != null && !available;
+        int updateRowCount = 0;
         try {
             con = dataBaseConfig.getConnection();
             PreparedStatement ps = con.prepareStatement(DBConstants.UPDATE_PARKING_SPOT);
-            ps.setBoolean(1, parkingSpot.isAvailable());
+            ps.setBoolean(1, available);
             ps.setInt(2, parkingSpot.getId());
-            int updateRowCount = ps.executeUpdate();
+            if(claimed){
+                parkingSpotAllocator.claim(parkingSpot.getId());
+            }
+            updateRowCount = ps.executeUpdate();
             dataBaseConfig.closePreparedStatement(ps);
+            if(parkingSpotAllocator != null && available && updateRowCount == 1){
+                parkingSpotAllocator.release(parkingSpot.getId());
+            }
             return (updateRowCount == 1);
         }catch (Exception ex){
             logger.error("Error updating parking info",ex);
+            updateParkingStats.error();
             return false;
         }finally {
+            if(claimed && updateRowCount != 1){
+                //the table still has the spot free, so must the allocator
+                parkingSpotAllocator.release(parkingSpot.getId());
+            }
             dataBaseConfig.closeConnection(con);
+            updateParkingStats.record(start);
+        }
+    }
+
+    @Override
+    public void releaseSlot(ParkingSpot parkingSpot){
+        //give back a slot handed out by getNextAvailableSlot that was never occupied
+        long start = System.nanoTime();
+        if(parkingSpotAllocator != null){
+            parkingSpotAllocator.release(parkingSpot.getId());
         }
+        releaseSlotStats.record(start);
     }
 
 }
@@ -0,0 +1,39 @@
+package com.parkit.parkingsystem.dao;
+
+import com.parkit.parkingsystem.constants.ParkingType;
+import com.parkit.parkingsystem.model.ParkingSpot;
+
+/**
+ * Parking spot availability as {@code ParkingService} sees it, whatever the
+ * backend.
+ */
+public interface ParkingSpotRepository {
+
+    /**
+     * Picks a free spot of this type. Backends may reserve it until it is
+     * either occupied with {@link #updateParking} or handed back with
+     * {@link #releaseSlot}.
+     *
+     * @return the parking number, or 0 or less if none is free
+     */
+    int getNextAvailableSlot(ParkingType parkingType);
+
+    /**
+     * @return the number of free spots of this type, or -1 if unknown
+     */
+    int getAvailableSlotCount(ParkingType parkingType);
+
+    /**
+     * Stores whether the spot is available. A spot that could not be marked
+     * as occupied is left free, reservation included.
+     *
+     * @return false if nothing was written
+     */
+    boolean updateParking(ParkingSpot parkingSpot);
+
+    /**
+     * Hands back a spot from {@link #getNextAvailableSlot} that was never
+     * occupied.
+     */
+    void releaseSlot(ParkingSpot parkingSpot);
+}
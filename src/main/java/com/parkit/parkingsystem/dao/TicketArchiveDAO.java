@@ -0,0 +1,60 @@
+package com.parkit.parkingsystem.dao;
+
+import com.parkit.parkingsystem.analytics.TicketArchive;
+import com.parkit.parkingsystem.config.DataBaseConfig;
+import com.parkit.parkingsystem.constants.DBConstants;
+import com.parkit.parkingsystem.constants.ParkingType;
+import com.parkit.parkingsystem.metrics.Metrics;
+import com.parkit.parkingsystem.metrics.OperationStats;
+import com.parkit.parkingsystem.util.Money;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.math.RoundingMode;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+
+/**
+ * Reads the closed tickets once into a {@link TicketArchive}, in a single
+ * streamed scan, so that reports run in memory. Point {@link #dataBaseConfig}
+ * at a replica to keep even that scan off the production database.
+ */
+public class TicketArchiveDAO {
+
+    private static final Logger logger = LogManager.getLogger("TicketArchiveDAO");
+
+    private static final OperationStats loadClosedTicketsStats = Metrics.operation("TicketArchiveDAO.loadClosedTickets");
+
+    public DataBaseConfig dataBaseConfig = new DataBaseConfig();
+
+    /**
+     * @return the closed tickets, or null if they could not be read
+     */
+    public TicketArchive loadClosedTickets(){
+        long start = System.nanoTime();
+        Connection con = null;
+        TicketArchive.Builder archive = TicketArchive.builder();
+        try {
+            con = dataBaseConfig.getConnection();
+            PreparedStatement ps = DataBaseConfig.prepareStreamingStatement(con, DBConstants.GET_CLOSED_TICKETS);
+            ResultSet rs = ps.executeQuery();
+            while(rs.next()){
+                archive.add(rs.getTimestamp(1).getTime(), rs.getTimestamp(2).getTime(), rs.getInt(3),
+                        ParkingType.valueOf(rs.getString(4)),
+                        Money.fromBigDecimal(rs.getBigDecimal(5), RoundingMode.HALF_UP), rs.getString(6));
+            }
+            dataBaseConfig.closeResultSet(rs);
+            dataBaseConfig.closePreparedStatement(ps);
+            logger.info("Loaded " + archive.size() + " closed tickets into the archive");
+            return archive.build();
+        }catch (Exception ex){
+            logger.error("Error loading closed tickets",ex);
+            loadClosedTicketsStats.error();
+            return null;
+        }finally {
+            dataBaseConfig.closeConnection(con);
+            loadClosedTicketsStats.record(start);
+        }
+    }
+}
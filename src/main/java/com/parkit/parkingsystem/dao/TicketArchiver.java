@@ -0,0 +1,207 @@
+package com.parkit.parkingsystem.dao;
+
+import com.parkit.parkingsystem.config.DataBaseConfig;
+import com.parkit.parkingsystem.constants.DBConstants;
+import com.parkit.parkingsystem.metrics.Metrics;
+import com.parkit.parkingsystem.metrics.OperationStats;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Moves the tickets closed more than {@code retentionDays} ago from
+ * {@code ticket} to {@code ticket_archive} in the background, so the hot
+ * table holds about the last days of traffic. Tickets are walked by id, a
+ * batch of {@code batchSize} ids at a time, and each batch is copied,
+ * counted into {@code ticket_visit_summary} and deleted in one short
+ * transaction that only locks closed tickets. The archiver pauses
+ * {@code pauseMillis} between batches so gate traffic keeps the database
+ * and the connection pool. Visit counts read {@code ticket} and the summary
+ * in one statement, so a ticket is counted exactly once whichever side of a
+ * batch it is on.
+ */
+public class TicketArchiver {
+
+    private static final Logger logger = LogManager.getLogger("TicketArchiver");
+
+    private static final OperationStats archiveBatchStats = Metrics.operation("TicketArchiver.archiveBatch");
+
+    private static final long DAY_MILLIS = 24 * 60 * 60 * 1000L;
+
+    private final DataBaseConfig dataBaseConfig;
+    private final int retentionDays;
+    private final int batchSize;
+    private final long pauseMillis;
+    private final long intervalMillis;
+    private ScheduledExecutorService scheduler;
+    private volatile boolean running = true;
+
+    public TicketArchiver(DataBaseConfig dataBaseConfig) {
+        this(dataBaseConfig,
+                Integer.getInteger("parkit.archiver.retentionDays", 1),
+                Integer.getInteger("parkit.archiver.batchSize", 500),
+                Long.getLong("parkit.archiver.pauseMillis", 100L),
+                Long.getLong("parkit.archiver.intervalMillis", 15 * 60 * 1000L));
+    }
+
+    public TicketArchiver(DataBaseConfig dataBaseConfig, int retentionDays, int batchSize,
+                          long pauseMillis, long intervalMillis) {
+        this.dataBaseConfig = dataBaseConfig;
+        this.retentionDays = retentionDays;
+        this.batchSize = batchSize;
+        this.pauseMillis = pauseMillis;
+        this.intervalMillis = intervalMillis;
+    }
+
+    /**
+     * Archives now, then every {@code intervalMillis} after the previous
+     * pass ended.
+     */
+    public synchronized void start() {
+        if (scheduler != null) {
+            return;
+        }
+        scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "ticket-archiver");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.scheduleWithFixedDelay(() -> archive(System.currentTimeMillis()), 0, intervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Archives the tickets closed before {@code nowMillis} minus the
+     * retention, batch after batch, until none is left or the archiver is
+     * shut down.
+     *
+     * @return the number of tickets archived, up to the failed batch if any
+     */
+    public int archive(long nowMillis) {
+        Timestamp cutoff = new Timestamp(nowMillis - retentionDays * DAY_MILLIS);
+        int archived = 0;
+        int lastId = 0;
+        try {
+            while (running) {
+                int maxId = lastIdOfNextBatch(lastId, cutoff);
+                if (maxId <= lastId) {
+                    break;
+                }
+                int moved = archiveBatch(lastId, maxId, cutoff);
+                if (moved < 0) {
+                    break;
+                }
+                archived += moved;
+                lastId = maxId;
+                if (pauseMillis > 0) {
+                    Thread.sleep(pauseMillis);
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (archived > 0) {
+            logger.info("Archived " + archived + " tickets closed before " + cutoff);
+        }
+        return archived;
+    }
+
+    /**
+     * Stops after the batch in progress.
+     */
+    public synchronized void shutdown() {
+        running = false;
+        if (scheduler != null) {
+            scheduler.shutdown();
+            try {
+                scheduler.awaitTermination(10, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    /**
+     * @return the highest id of the next {@code batchSize} archivable
+     * tickets after {@code lastId}, or {@code lastId} if none is left
+     */
+    private int lastIdOfNextBatch(int lastId, Timestamp cutoff) {
+        Connection con = null;
+        int maxId = lastId;
+        try {
+            con = dataBaseConfig.getConnection();
+            PreparedStatement ps = con.prepareStatement(DBConstants.GET_ARCHIVABLE_TICKET_IDS);
+            ps.setInt(1, lastId);
+            ps.setTimestamp(2, cutoff);
+            ps.setTimestamp(3, cutoff);
+            ps.setInt(4, batchSize);
+            ResultSet rs = ps.executeQuery();
+            while (rs.next()) {
+                maxId = rs.getInt(1);
+            }
+            dataBaseConfig.closeResultSet(rs);
+            dataBaseConfig.closePreparedStatement(ps);
+        } catch (Exception ex) {
+            logger.error("Error looking for tickets to archive", ex);
+        } finally {
+            dataBaseConfig.closeConnection(con);
+        }
+        return maxId;
+    }
+
+    /**
+     * @return the number of tickets moved from ({@code lastId},
+     * {@code maxId}], or -1 if the batch was rolled back
+     */
+    private int archiveBatch(int lastId, int maxId, Timestamp cutoff) {
+        long start = System.nanoTime();
+        Connection con = null;
+        try {
+            con = dataBaseConfig.getConnection();
+            con.setAutoCommit(false);
+            int copied = executeRange(con, DBConstants.ARCHIVE_TICKETS, lastId, maxId, cutoff);
+            executeRange(con, DBConstants.SUMMARIZE_ARCHIVED_TICKETS, lastId, maxId, cutoff);
+            int deleted = executeRange(con, DBConstants.DELETE_ARCHIVED_TICKETS, lastId, maxId, cutoff);
+            if (copied != deleted) {
+                //the range changed under the batch, try again on the next pass
+                logger.warn("Copied " + copied + " tickets but deleted " + deleted + " in ids (" + lastId + ", " + maxId + "], rolling back");
+                con.rollback();
+                return -1;
+            }
+            con.commit();
+            return deleted;
+        } catch (Exception ex) {
+            logger.error("Error archiving tickets in ids (" + lastId + ", " + maxId + "]", ex);
+            archiveBatchStats.error();
+            if (con != null) {
+                try {
+                    con.rollback();
+                } catch (SQLException e) {
+                    logger.error("Error while rolling back ticket archiving", e);
+                }
+            }
+            return -1;
+        } finally {
+            dataBaseConfig.closeConnection(con);
+            archiveBatchStats.record(start);
+        }
+    }
+
+    private int executeRange(Connection con, String sql, int lastId, int maxId, Timestamp cutoff) throws SQLException {
+        PreparedStatement ps = con.prepareStatement(sql);
+        ps.setInt(1, lastId);
+        ps.setInt(2, maxId);
+        ps.setTimestamp(3, cutoff);
+        ps.setTimestamp(4, cutoff);
+        int count = ps.executeUpdate();
+        dataBaseConfig.closePreparedStatement(ps);
+        return count;
+    }
+}
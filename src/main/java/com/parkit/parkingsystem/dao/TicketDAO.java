@@ -3,44 +3,189 @@ package com.parkit.parkingsystem.dao;
 import com.parkit.parkingsystem.config.DataBaseConfig;
 import com.parkit.parkingsystem.constants.DBConstants;
 import com.parkit.parkingsystem.constants.ParkingType;
+import com.parkit.parkingsystem.metrics.Metrics;
+import com.parkit.parkingsystem.metrics.OperationStats;
+import com.parkit.parkingsystem.model.ExitResult;
 import com.parkit.parkingsystem.model.ParkingSpot;
+import com.parkit.parkingsystem.model.ParkingSpotRegistry;
 import com.parkit.parkingsystem.model.Ticket;
+import com.parkit.parkingsystem.util.Money;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
+import java.math.RoundingMode;
 import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
 import java.sql.Timestamp;
+import java.util.concurrent.CompletableFuture;
 
-public class TicketDAO {
+public class TicketDAO implements TicketRepository {
 
     private static final Logger logger = LogManager.getLogger("TicketDAO");
 
+    private static final OperationStats loadOpenTicketIndexStats = Metrics.operation("TicketDAO.loadOpenTicketIndex");
+    private static final OperationStats loadVisitCountIndexStats = Metrics.operation("TicketDAO.loadVisitCountIndex");
+    private static final OperationStats saveTicketStats = Metrics.operation("TicketDAO.saveTicket");
+    private static final OperationStats getTicketStats = Metrics.operation("TicketDAO.getTicket");
+    private static final OperationStats updateTicketStats = Metrics.operation("TicketDAO.updateTicket");
+    private static final OperationStats getNbTicketStats = Metrics.operation("TicketDAO.getNbTicket");
+
     public DataBaseConfig dataBaseConfig = new DataBaseConfig();
 
+    public TicketWriteBehindQueue ticketWriteBehindQueue;
+
+    public TicketArchiver ticketArchiver;
+
+    public VisitCountIndex visitCountIndex;
+
+    public OpenTicketIndex openTicketIndex;
+
+    public ParkingSpotRegistry parkingSpotRegistry;
+
+    public boolean loadOpenTicketIndex(){
+        long start = System.nanoTime();
+        Connection con = null;
+        OpenTicketIndex index = new OpenTicketIndex();
+        try {
+            con = dataBaseConfig.getConnection();
+            PreparedStatement ps = con.prepareStatement(DBConstants.GET_OPEN_TICKETS);
+            ResultSet rs = ps.executeQuery();
+            while(rs.next()){
+                index.put(mapTicket(rs, rs.getString(7)));
+            }
+            dataBaseConfig.closeResultSet(rs);
+            dataBaseConfig.closePreparedStatement(ps);
+            openTicketIndex = index;
+            logger.info("Loaded " + index.size() + " open tickets");
+            return true;
+        }catch (Exception ex){
+            logger.error("Error loading open tickets, keeping database lookup",ex);
+            loadOpenTicketIndexStats.error();
+            return false;
+        }finally {
+            dataBaseConfig.closeConnection(con);
+            loadOpenTicketIndexStats.record(start);
+        }
+    }
+
+    public boolean loadVisitCountIndex(){
+        long start = System.nanoTime();
+        Connection con = null;
+        VisitCountIndex index = new VisitCountIndex();
+        try {
+            con = dataBaseConfig.getConnection();
+            PreparedStatement ps = DataBaseConfig.prepareStreamingStatement(con, DBConstants.GET_VISIT_COUNTS);
+            ResultSet rs = ps.executeQuery();
+            while(rs.next()){
+                index.add(rs.getString(1), rs.getInt(2));
+            }
+            dataBaseConfig.closeResultSet(rs);
+            dataBaseConfig.closePreparedStatement(ps);
+            visitCountIndex = index;
+            logger.info("Loaded visit counts for " + index.size() + " vehicles");
+            return true;
+        }catch (Exception ex){
+            logger.error("Error loading visit counts, keeping database count",ex);
+            loadVisitCountIndexStats.error();
+            return false;
+        }finally {
+            dataBaseConfig.closeConnection(con);
+            loadVisitCountIndexStats.record(start);
+        }
+    }
+
+    @Override
     public boolean saveTicket(Ticket ticket){
+        long start = System.nanoTime();
+        if(ticketWriteBehindQueue != null){
+            CompletableFuture<Ticket> committed = ticketWriteBehindQueue.submitSave(ticket);
+            boolean accepted = !committed.isCompletedExceptionally();
+            if(accepted){
+                indexSavedTicket(ticket);
+                committed.whenComplete((saved, ex) -> {
+                    if(ex != null){
+                        unindexLostTicket(ticket);
+                    }
+                });
+            } else {
+                saveTicketStats.error();
+            }
+            saveTicketStats.record(start);
+            return accepted;
+        }
         Connection con = null;
+        PreparedStatement ps = null;
         try {
             con = dataBaseConfig.getConnection();
-            PreparedStatement ps = con.prepareStatement(DBConstants.SAVE_TICKET);
+            ps = (openTicketIndex == null)
+                    ? con.prepareStatement(DBConstants.SAVE_TICKET)
+                    : con.prepareStatement(DBConstants.SAVE_TICKET, Statement.RETURN_GENERATED_KEYS);
             //ID, PARKING_NUMBER, VEHICLE_REG_NUMBER, PRICE, IN_TIME, OUT_TIME)
             //ps.setInt(1,ticket.getId());
             ps.setInt(1,ticket.getParkingSpot().getId());
             ps.setString(2, ticket.getVehicleRegNumber());
-            ps.setDouble(3, ticket.getPrice());
-            ps.setTimestamp(4, new Timestamp(ticket.getInTime().getTime()));
-            ps.setTimestamp(5, (ticket.getOutTime() == null)?null: (new Timestamp(ticket.getOutTime().getTime())) );
-            return ps.execute();
+            ps.setBigDecimal(3, Money.toBigDecimal(ticket.getPriceCents()));
+            ps.setTimestamp(4, new Timestamp(ticket.getInTimeMillis()));
+            ps.setTimestamp(5, ticket.isOpen() ? null : new Timestamp(ticket.getOutTimeMillis()));
+            if(ps.executeUpdate() != 1){
+                throw new SQLException("Ticket of vehicle " + ticket.getVehicleRegNumber() + " was not inserted");
+            }
+            if(openTicketIndex != null){
+                ResultSet keys = ps.getGeneratedKeys();
+                if(keys != null && keys.next()){
+                    ticket.setId(keys.getInt(1));
+                }
+                dataBaseConfig.closeResultSet(keys);
+            }
+            indexSavedTicket(ticket);
+            return true;
         }catch (Exception ex){
-            logger.error("Error fetching next available slot",ex);
+            logger.error("Error saving ticket",ex);
+            saveTicketStats.error();
         }finally {
+            dataBaseConfig.closePreparedStatement(ps);
             dataBaseConfig.closeConnection(con);
-            return false;
+            saveTicketStats.record(start);
+        }
+        return false;
+    }
+
+    private void indexSavedTicket(Ticket ticket){
+        if(visitCountIndex != null){
+            visitCountIndex.increment(ticket.getVehicleRegNumber());
+        }
+        if(openTicketIndex != null && ticket.isOpen()){
+            openTicketIndex.put(ticket);
+        }
+    }
+
+    /**
+     * Takes a ticket whose write-behind insert failed back out of the indexes,
+     * so that the gate does not keep serving a ticket the database never had.
+     */
+    private void unindexLostTicket(Ticket ticket){
+        logger.error("Ticket of vehicle " + ticket.getVehicleRegNumber() + " was not saved, removing it from the indexes");
+        if(openTicketIndex != null){
+            openTicketIndex.remove(ticket);
+        }
+        if(visitCountIndex != null){
+            visitCountIndex.add(ticket.getVehicleRegNumber(), -1);
         }
     }
 
+    @Override
     public Ticket getTicket(String vehicleRegNumber) {
+        long start = System.nanoTime();
+        if(openTicketIndex != null){
+            Ticket openTicket = openTicketIndex.get(vehicleRegNumber);
+            if(openTicket != null){
+                getTicketStats.record(start);
+                return openTicket;
+            }
+        }
         Connection con = null;
         Ticket ticket = null;
         try {
@@ -50,44 +195,144 @@ public class TicketDAO {
             ps.setString(1,vehicleRegNumber);
             ResultSet rs = ps.executeQuery();
             if(rs.next()){
-                ticket = new Ticket();
-                ParkingSpot parkingSpot = new ParkingSpot(rs.getInt(1), ParkingType.valueOf(rs.getString(6)),false);
-                ticket.setParkingSpot(parkingSpot);
-                ticket.setId(rs.getInt(2));
-                ticket.setVehicleRegNumber(vehicleRegNumber);
-                ticket.setPrice(rs.getDouble(3));
-                ticket.setInTime(rs.getTimestamp(4));
-                ticket.setOutTime(rs.getTimestamp(5));
+                ticket = mapTicket(rs, vehicleRegNumber);
             }
             dataBaseConfig.closeResultSet(rs);
             dataBaseConfig.closePreparedStatement(ps);
         }catch (Exception ex){
-            logger.error("Error fetching next available slot",ex);
+            logger.error("Error fetching ticket",ex);
+            getTicketStats.error();
         }finally {
             dataBaseConfig.closeConnection(con);
-            return ticket;
+            getTicketStats.record(start);
         }
+        return ticket;
+    }
+
+    private Ticket mapTicket(ResultSet rs, String vehicleRegNumber) throws SQLException {
+        Ticket ticket = new Ticket();
+        ParkingSpot parkingSpot = (parkingSpotRegistry == null)
+                ? new ParkingSpot(rs.getInt(1), ParkingType.valueOf(rs.getString(6)),false)
+                : parkingSpotRegistry.get(rs.getInt(1), ParkingType.valueOf(rs.getString(6)), false);
+        ticket.setParkingSpot(parkingSpot);
+        ticket.setId(rs.getInt(2));
+        ticket.setVehicleRegNumber(vehicleRegNumber);
+        ticket.setPriceCents(Money.fromBigDecimal(rs.getBigDecimal(3), RoundingMode.HALF_UP));
+        ticket.setInTimeMillis(millisOf(rs.getTimestamp(4)));
+        ticket.setOutTimeMillis(millisOf(rs.getTimestamp(5)));
+        return ticket;
+    }
+
+    private static long millisOf(Timestamp timestamp) {
+        return timestamp == null ? Ticket.NO_TIME : timestamp.getTime();
     }
 
+    @Override
     public boolean updateTicket(Ticket ticket) {
+        return closeTicket(ticket) == ExitResult.Status.SUCCESS;
+    }
+
+    /**
+     * Closes the ticket if no other exit did. The exit first claims the
+     * ticket in the open-ticket index, and the update only matches a ticket
+     * still open, so of two exits racing for one ticket only one succeeds.
+     */
+    @Override
+    public ExitResult.Status closeTicket(Ticket ticket) {
+        long start = System.nanoTime();
+        ExitResult.Status status = ticketWriteBehindQueue != null ? submitUpdate(ticket) : writeUpdate(ticket);
+        if(status == ExitResult.Status.ERROR){
+            updateTicketStats.error();
+        }
+        updateTicketStats.record(start);
+        return status;
+    }
+
+    private ExitResult.Status writeUpdate(Ticket ticket){
         Connection con = null;
+        Ticket cached = null;
         try {
+            if(ticket.isOpen()){
+                throw new IllegalArgumentException("Ticket " + ticket.getId() + " has no out time");
+            }
+            //null when the ticket was read from the database, the update then settles the race
+            cached = openTicketIndex == null ? null : openTicketIndex.claim(ticket);
             con = dataBaseConfig.getConnection();
             PreparedStatement ps = con.prepareStatement(DBConstants.UPDATE_TICKET);
-            ps.setDouble(1, ticket.getPrice());
-            ps.setTimestamp(2, new Timestamp(ticket.getOutTime().getTime()));
+            ps.setBigDecimal(1, Money.toBigDecimal(ticket.getPriceCents()));
+            ps.setTimestamp(2, new Timestamp(ticket.getOutTimeMillis()));
             ps.setInt(3,ticket.getId());
-            ps.execute();
-            return true;
+            int updated = ps.executeUpdate();
+            dataBaseConfig.closePreparedStatement(ps);
+            if(updated == 0){
+                logger.info("Ticket " + ticket.getId() + " is unknown or already closed");
+                return ExitResult.Status.NO_TICKET_FOUND;
+            }
+            return ExitResult.Status.SUCCESS;
         }catch (Exception ex){
             logger.error("Error saving ticket info",ex);
+            if(cached != null){
+                openTicketIndex.put(cached);
+            }
+            return ExitResult.Status.ERROR;
         }finally {
             dataBaseConfig.closeConnection(con);
         }
-        return false;
     }
 
+    /**
+     * Queues the exit. The ticket may be a priced copy of the indexed one,
+     * whose id the queue may not have assigned yet: the indexed instance is
+     * closed and queued instead, and goes back into the index if the update
+     * is not written.
+     */
+    private ExitResult.Status submitUpdate(Ticket ticket){
+        if(ticket.isOpen()){
+            logger.error("Ticket " + ticket.getId() + " has no out time");
+            return ExitResult.Status.ERROR;
+        }
+        Ticket cached = openTicketIndex == null ? null : openTicketIndex.claim(ticket);
+        if(openTicketIndex != null && cached == null){
+            //another exit claimed it, its update may still be queued
+            return ExitResult.Status.NO_TICKET_FOUND;
+        }
+        Ticket closing = cached == null ? ticket : cached;
+        long openPriceCents = closing.getPriceCents();
+        closing.setOutTimeMillis(ticket.getOutTimeMillis());
+        closing.setPriceCents(ticket.getPriceCents());
+        CompletableFuture<Ticket> committed = ticketWriteBehindQueue.submitUpdate(closing);
+        if(committed.isCompletedExceptionally()){
+            reopen(cached, openPriceCents);
+            return ExitResult.Status.ERROR;
+        }
+        committed.whenComplete((updated, ex) -> {
+            if(ex != null){
+                logger.error("Exit of vehicle " + closing.getVehicleRegNumber() + " was not saved, ticket "
+                        + closing.getId() + " is still open");
+                reopen(cached, openPriceCents);
+            }
+        });
+        return ExitResult.Status.SUCCESS;
+    }
+
+    private void reopen(Ticket cached, long openPriceCents){
+        if(cached != null){
+            cached.setOutTimeMillis(Ticket.NO_TIME);
+            cached.setPriceCents(openPriceCents);
+            openTicketIndex.put(cached);
+        }
+    }
+
+    @Override
     public int getNbTicket(String vehicleRegNumber) {
+        long start = System.nanoTime();
+        if (visitCountIndex != null) {
+            int count = visitCountIndex.getCount(vehicleRegNumber);
+            if (count != VisitCountIndex.UNKNOWN) {
+                getNbTicketStats.record(start);
+                return count;
+            }
+        }
         Connection con = null;
         int count = 0;
 
@@ -106,8 +351,10 @@ public class TicketDAO {
 
         } catch (Exception ex) {
             logger.error("Error counting tickets for vehicle", ex);
+            getNbTicketStats.error();
         } finally {
             dataBaseConfig.closeConnection(con);
+            getNbTicketStats.record(start);
         }
 
         return count;
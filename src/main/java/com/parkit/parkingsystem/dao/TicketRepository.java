@@ -0,0 +1,38 @@
+package com.parkit.parkingsystem.dao;
+
+import com.parkit.parkingsystem.model.ExitResult;
+import com.parkit.parkingsystem.model.Ticket;
+
+/**
+ * Ticket storage as {@code ParkingService} sees it, whatever the backend.
+ */
+public interface TicketRepository {
+
+    /**
+     * Stores a new ticket. Backends that assign ids set it on the ticket.
+     */
+    boolean saveTicket(Ticket ticket);
+
+    /**
+     * @return the ticket to close when this vehicle leaves, or null
+     */
+    Ticket getTicket(String vehicleRegNumber);
+
+    /**
+     * Records the out time and price of a ticket.
+     */
+    boolean updateTicket(Ticket ticket);
+
+    /**
+     * Records the out time and price of a ticket still open.
+     *
+     * @return NO_TICKET_FOUND if the ticket is unknown or another exit closed
+     * it first, ERROR if it could not be written
+     */
+    ExitResult.Status closeTicket(Ticket ticket);
+
+    /**
+     * Number of tickets ever issued to this vehicle.
+     */
+    int getNbTicket(String vehicleRegNumber);
+}
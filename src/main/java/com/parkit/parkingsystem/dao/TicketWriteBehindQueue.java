@@ -0,0 +1,386 @@
+package com.parkit.parkingsystem.dao;
+
+import com.parkit.parkingsystem.config.DataBaseConfig;
+import com.parkit.parkingsystem.constants.DBConstants;
+import com.parkit.parkingsystem.model.Ticket;
+import com.parkit.parkingsystem.util.Money;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Write-behind buffer for ticket inserts and updates. Writes are queued and
+ * a single flusher thread commits them with JDBC batching, one transaction
+ * per flush, every {@code batchSize} rows or {@code flushIntervalMillis}.
+ * Each write returns a future completed once its transaction is committed.
+ * Inserts of a flush run before its updates, so an update can follow the
+ * insert of the same ticket in the same flush; the generated id is copied
+ * back onto the {@link Ticket}. When a flush fails, its rows are retried one
+ * at a time; a row that still fails completes its future exceptionally and
+ * is logged as lost.
+ */
+public class TicketWriteBehindQueue {
+
+    private static final Logger logger = LogManager.getLogger("TicketWriteBehindQueue");
+
+    private static final class PendingWrite {
+        private final boolean insert;
+        private final Ticket ticket;
+        private final int parkingNumber;
+        private final String vehicleRegNumber;
+        private final long priceCents;
+        private final Timestamp inTime;
+        private final Timestamp outTime;
+        private final CompletableFuture<Ticket> committed = new CompletableFuture<>();
+
+        private PendingWrite(boolean insert, Ticket ticket) {
+            this.insert = insert;
+            this.ticket = ticket;
+            this.parkingNumber = insert ? ticket.getParkingSpot().getId() : 0;
+            this.vehicleRegNumber = ticket.getVehicleRegNumber();
+            this.priceCents = ticket.getPriceCents();
+            this.inTime = ticket.getInTimeMillis() == Ticket.NO_TIME ? null : new Timestamp(ticket.getInTimeMillis());
+            this.outTime = ticket.isOpen() ? null : new Timestamp(ticket.getOutTimeMillis());
+        }
+
+        private PendingWrite() {
+            this.insert = false;
+            this.ticket = null;
+            this.parkingNumber = 0;
+            this.vehicleRegNumber = null;
+            this.priceCents = 0;
+            this.inTime = null;
+            this.outTime = null;
+        }
+    }
+
+    private static final PendingWrite SHUTDOWN = new PendingWrite();
+
+    private final DataBaseConfig dataBaseConfig;
+    private final BlockingQueue<PendingWrite> queue;
+    private final int batchSize;
+    private final long flushIntervalMillis;
+    private final long offerTimeoutMillis;
+    private final Thread flusher;
+    private final LongAdder failedCount = new LongAdder();
+    private volatile boolean running = true;
+
+    public TicketWriteBehindQueue(DataBaseConfig dataBaseConfig) {
+        this(dataBaseConfig,
+                Integer.getInteger("parkit.ticketWriteBehind.capacity", 10_000),
+                Integer.getInteger("parkit.ticketWriteBehind.batchSize", 100),
+                Long.getLong("parkit.ticketWriteBehind.flushIntervalMillis", 20L),
+                Long.getLong("parkit.ticketWriteBehind.offerTimeoutMillis", 1_000L));
+    }
+
+    public TicketWriteBehindQueue(DataBaseConfig dataBaseConfig, int capacity, int batchSize,
+                                  long flushIntervalMillis, long offerTimeoutMillis) {
+        this.dataBaseConfig = dataBaseConfig;
+        this.queue = new ArrayBlockingQueue<>(capacity);
+        this.batchSize = batchSize;
+        this.flushIntervalMillis = flushIntervalMillis;
+        this.offerTimeoutMillis = offerTimeoutMillis;
+        this.flusher = new Thread(this::run, "ticket-write-behind");
+        this.flusher.setDaemon(true);
+        this.flusher.start();
+    }
+
+    public CompletableFuture<Ticket> submitSave(Ticket ticket) {
+        return submit(new PendingWrite(true, ticket));
+    }
+
+    public CompletableFuture<Ticket> submitUpdate(Ticket ticket) {
+        return submit(new PendingWrite(false, ticket));
+    }
+
+    public int getPendingCount() {
+        return queue.size();
+    }
+
+    /**
+     * @return how many writes were given up on since the queue started
+     */
+    public long getFailedCount() {
+        return failedCount.sum();
+    }
+
+    /**
+     * Stops accepting writes, then flushes everything still queued.
+     */
+    public synchronized void shutdown() {
+        if (!running) {
+            return;
+        }
+        running = false;
+        try {
+            queue.put(SHUTDOWN);
+            flusher.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        List<PendingWrite> remaining = new ArrayList<>();
+        while (queue.drainTo(remaining, batchSize) > 0) {
+            remaining.remove(SHUTDOWN);
+            flush(remaining);
+            remaining.clear();
+        }
+        logger.info("Ticket write-behind queue drained");
+    }
+
+    private CompletableFuture<Ticket> submit(PendingWrite write) {
+        if (!running) {
+            write.committed.completeExceptionally(new RejectedExecutionException("Ticket write-behind queue is shut down"));
+            return write.committed;
+        }
+        try {
+            if (!queue.offer(write, offerTimeoutMillis, TimeUnit.MILLISECONDS)) {
+                write.committed.completeExceptionally(new RejectedExecutionException(
+                        "Ticket write-behind queue still full after " + offerTimeoutMillis + "ms"));
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            write.committed.completeExceptionally(e);
+        }
+        return write.committed;
+    }
+
+    private void run() {
+        List<PendingWrite> batch = new ArrayList<>(batchSize);
+        while (true) {
+            try {
+                batch.add(queue.take());
+                long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(flushIntervalMillis);
+                while (batch.size() < batchSize && !batch.contains(SHUTDOWN)) {
+                    if (queue.drainTo(batch, batchSize - batch.size()) > 0) {
+                        continue;
+                    }
+                    long remaining = deadline - System.nanoTime();
+                    PendingWrite next = remaining > 0 ? queue.poll(remaining, TimeUnit.NANOSECONDS) : null;
+                    if (next == null) {
+                        break;
+                    }
+                    batch.add(next);
+                }
+                boolean stop = batch.remove(SHUTDOWN);
+                if (!batch.isEmpty()) {
+                    flush(batch);
+                }
+                batch.clear();
+                if (stop) {
+                    return;
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    private void flush(List<PendingWrite> batch) {
+        Connection con = null;
+        try {
+            con = dataBaseConfig.getConnection();
+            con.setAutoCommit(false);
+            executeInserts(con, batch);
+            executeUpdates(con, batch);
+            con.commit();
+            for (PendingWrite write : batch) {
+                write.committed.complete(write.ticket);
+            }
+        } catch (Exception ex) {
+            logger.warn("Error flushing " + batch.size() + " ticket writes, retrying them one at a time", ex);
+            if (con == null) {
+                for (PendingWrite write : batch) {
+                    fail(write, ex);
+                }
+                return;
+            }
+            try {
+                con.rollback();
+            } catch (SQLException e) {
+                logger.error("Error while rolling back ticket writes", e);
+            }
+            for (PendingWrite write : batch) {
+                if (write.insert) {
+                    //the ids handed out by the rolled back inserts are gone
+                    write.ticket.setId(0);
+                }
+            }
+            retryOneAtATime(con, batch);
+        } finally {
+            dataBaseConfig.closeConnection(con);
+        }
+    }
+
+    /**
+     * Writes the rows of a failed flush each in its own transaction, inserts
+     * first, so that one bad row does not fail the rest of the batch.
+     */
+    private void retryOneAtATime(Connection con, List<PendingWrite> batch) {
+        try {
+            con.setAutoCommit(true);
+        } catch (SQLException ex) {
+            for (PendingWrite write : batch) {
+                fail(write, ex);
+            }
+            return;
+        }
+        for (PendingWrite write : batch) {
+            if (write.insert) {
+                retry(con, write);
+            }
+        }
+        for (PendingWrite write : batch) {
+            if (!write.insert) {
+                retry(con, write);
+            }
+        }
+    }
+
+    private void retry(Connection con, PendingWrite write) {
+        PreparedStatement ps = null;
+        ResultSet keys = null;
+        try {
+            if (write.insert) {
+                ps = con.prepareStatement(DBConstants.SAVE_TICKET, Statement.RETURN_GENERATED_KEYS);
+                bindInsert(ps, write);
+                checkCount(ps.executeUpdate(), write);
+                keys = ps.getGeneratedKeys();
+                if (keys == null || !keys.next()) {
+                    throw new SQLException("No id generated for the ticket of vehicle " + write.vehicleRegNumber);
+                }
+                write.ticket.setId(keys.getInt(1));
+            } else {
+                ps = con.prepareStatement(DBConstants.UPDATE_TICKET);
+                bindUpdate(ps, write);
+                checkCount(ps.executeUpdate(), write);
+            }
+            write.committed.complete(write.ticket);
+        } catch (Exception ex) {
+            fail(write, ex);
+        } finally {
+            dataBaseConfig.closeResultSet(keys);
+            dataBaseConfig.closePreparedStatement(ps);
+        }
+    }
+
+    /**
+     * Gives up on a write: it is logged with everything needed to replay it
+     * by hand and counted in {@link #getFailedCount()}.
+     */
+    private void fail(PendingWrite write, Exception cause) {
+        failedCount.increment();
+        logger.error("Lost ticket " + (write.insert ? "insert" : "update of id " + write.ticket.getId())
+                + " : vehicle " + write.vehicleRegNumber + ", spot " + write.parkingNumber + ", in " + write.inTime
+                + ", out " + write.outTime + ", price " + Money.toBigDecimal(write.priceCents), cause);
+        write.committed.completeExceptionally(cause);
+    }
+
+    private void executeInserts(Connection con, List<PendingWrite> batch) throws SQLException {
+        List<PendingWrite> inserts = new ArrayList<>();
+        PreparedStatement ps = null;
+        for (PendingWrite write : batch) {
+            if (!write.insert) {
+                continue;
+            }
+            if (ps == null) {
+                ps = con.prepareStatement(DBConstants.SAVE_TICKET, Statement.RETURN_GENERATED_KEYS);
+            }
+            bindInsert(ps, write);
+            ps.addBatch();
+            inserts.add(write);
+        }
+        if (ps == null) {
+            return;
+        }
+        ResultSet keys = null;
+        try {
+            checkCounts(ps.executeBatch(), inserts);
+            keys = ps.getGeneratedKeys();
+            for (PendingWrite write : inserts) {
+                if (keys == null || !keys.next()) {
+                    throw new SQLException("No id generated for the ticket of vehicle " + write.vehicleRegNumber);
+                }
+                write.ticket.setId(keys.getInt(1));
+            }
+        } finally {
+            dataBaseConfig.closeResultSet(keys);
+            dataBaseConfig.closePreparedStatement(ps);
+        }
+    }
+
+    private void executeUpdates(Connection con, List<PendingWrite> batch) throws SQLException {
+        List<PendingWrite> updates = new ArrayList<>();
+        PreparedStatement ps = null;
+        for (PendingWrite write : batch) {
+            if (write.insert) {
+                continue;
+            }
+            if (ps == null) {
+                ps = con.prepareStatement(DBConstants.UPDATE_TICKET);
+            }
+            bindUpdate(ps, write);
+            ps.addBatch();
+            updates.add(write);
+        }
+        if (ps == null) {
+            return;
+        }
+        try {
+            checkCounts(ps.executeBatch(), updates);
+        } finally {
+            dataBaseConfig.closePreparedStatement(ps);
+        }
+    }
+
+    private static void bindInsert(PreparedStatement ps, PendingWrite write) throws SQLException {
+        ps.setInt(1, write.parkingNumber);
+        ps.setString(2, write.vehicleRegNumber);
+        ps.setBigDecimal(3, Money.toBigDecimal(write.priceCents));
+        ps.setTimestamp(4, write.inTime);
+        ps.setTimestamp(5, write.outTime);
+    }
+
+    private static void bindUpdate(PreparedStatement ps, PendingWrite write) throws SQLException {
+        ps.setBigDecimal(1, Money.toBigDecimal(write.priceCents));
+        ps.setTimestamp(2, write.outTime);
+        ps.setInt(3, write.ticket.getId());
+    }
+
+    /**
+     * A row the batch did not write, such as an update of a ticket id that
+     * does not exist, fails the whole flush so that it gets retried alone.
+     */
+    private static void checkCounts(int[] counts, List<PendingWrite> writes) throws SQLException {
+        if (counts == null || counts.length != writes.size()) {
+            throw new SQLException("Expected " + writes.size() + " ticket write counts, got "
+                    + (counts == null ? "none" : String.valueOf(counts.length)));
+        }
+        for (int i = 0; i < counts.length; i++) {
+            if (counts[i] != Statement.SUCCESS_NO_INFO) {
+                checkCount(counts[i], writes.get(i));
+            }
+        }
+    }
+
+    private static void checkCount(int count, PendingWrite write) throws SQLException {
+        if (count <= 0) {
+            throw new SQLException("Ticket " + (write.insert ? "insert" : "update of id " + write.ticket.getId())
+                    + " for vehicle " + write.vehicleRegNumber + " wrote no row");
+        }
+    }
+}
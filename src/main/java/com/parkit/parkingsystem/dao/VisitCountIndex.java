@@ -0,0 +1,151 @@
+package com.parkit.parkingsystem.dao;
+
+import com.parkit.parkingsystem.util.PlateKey;
+
+import java.util.concurrent.locks.StampedLock;
+
+/**
+ * Number of tickets per vehicle, kept in an open-addressing table of
+ * packed plate keys ({@link PlateKey}) to primitive counts. Reads are
+ * optimistic and never block; writers take a short exclusive lock.
+ */
+public class VisitCountIndex {
+
+    /** Returned for plates this index cannot hold; callers should ask the database. */
+    public static final int UNKNOWN = -1;
+
+    private static final long EMPTY = 0L;
+
+    private static final class Table {
+        private final long[] keys;
+        private final int[] counts;
+
+        private Table(int capacity) {
+            keys = new long[capacity];
+            counts = new int[capacity];
+        }
+    }
+
+    private final StampedLock lock = new StampedLock();
+    private Table table;
+    private int size;
+
+    public VisitCountIndex() {
+        this(1024);
+    }
+
+    public VisitCountIndex(int expectedPlates) {
+        int capacity = Integer.highestOneBit(Math.max(16, expectedPlates * 2 - 1)) << 1;
+        table = new Table(capacity);
+    }
+
+    public int getCount(String vehicleRegNumber) {
+        long key = PlateKey.pack(vehicleRegNumber);
+        if (key == PlateKey.NOT_PACKABLE) {
+            return UNKNOWN;
+        }
+        long stamp = lock.tryOptimisticRead();
+        int count = lookup(table, key);
+        if (!lock.validate(stamp)) {
+            stamp = lock.readLock();
+            try {
+                count = lookup(table, key);
+            } finally {
+                lock.unlockRead(stamp);
+            }
+        }
+        return count;
+    }
+
+    /**
+     * @return the new count, or {@link #UNKNOWN} if the plate cannot be packed
+     */
+    public int increment(String vehicleRegNumber) {
+        return add(vehicleRegNumber, 1);
+    }
+
+    public int add(String vehicleRegNumber, int delta) {
+        long key = PlateKey.pack(vehicleRegNumber);
+        if (key == PlateKey.NOT_PACKABLE) {
+            return UNKNOWN;
+        }
+        long stamp = lock.writeLock();
+        try {
+            if ((size + 1) * 2 > table.keys.length) {
+                resize();
+            }
+            int slot = slotOf(table.keys, key);
+            if (table.keys[slot] == EMPTY) {
+                table.keys[slot] = key;
+                size++;
+            }
+            table.counts[slot] += delta;
+            return table.counts[slot];
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    public void clear() {
+        long stamp = lock.writeLock();
+        try {
+            table = new Table(table.keys.length);
+            size = 0;
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    public int size() {
+        long stamp = lock.readLock();
+        try {
+            return size;
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    private static int lookup(Table table, long key) {
+        long[] keys = table.keys;
+        int mask = keys.length - 1;
+        for (int slot = hash(key) & mask, probes = 0; probes < keys.length; slot = (slot + 1) & mask, probes++) {
+            long candidate = keys[slot];
+            if (candidate == key) {
+                return table.counts[slot];
+            }
+            if (candidate == EMPTY) {
+                return 0;
+            }
+        }
+        return 0;
+    }
+
+    private static int slotOf(long[] keys, long key) {
+        int mask = keys.length - 1;
+        int slot = hash(key) & mask;
+        while (keys[slot] != EMPTY && keys[slot] != key) {
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    private void resize() {
+        Table old = table;
+        Table resized = new Table(old.keys.length << 1);
+        for (int i = 0; i < old.keys.length; i++) {
+            if (old.keys[i] != EMPTY) {
+                int slot = slotOf(resized.keys, old.keys[i]);
+                resized.keys[slot] = old.keys[i];
+                resized.counts[slot] = old.counts[i];
+            }
+        }
+        table = resized;
+    }
+
+    private static int hash(long key) {
+        key ^= key >>> 33;
+        key *= 0xff51afd7ed558ccdL;
+        key ^= key >>> 33;
+        return (int) key;
+    }
+}
@@ -0,0 +1,118 @@
+package com.parkit.parkingsystem.metrics;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+/**
+ * Process-wide registry of {@link OperationStats}. Each operation is also
+ * registered with the platform MBean server and is part of the
+ * {@link #writePrometheus(Appendable) Prometheus text dump}.
+ */
+public final class Metrics {
+
+    private static final Logger logger = LogManager.getLogger("Metrics");
+
+    static final String DOMAIN = "com.parkit.parkingsystem";
+
+    private static final ConcurrentNavigableMap<String, OperationStats> operations = new ConcurrentSkipListMap<>();
+
+    private static final double[] QUANTILES = {0.5, 0.99, 0.999};
+
+    private Metrics() {
+    }
+
+    /**
+     * Stats of the named operation, created on first use. Look them up once
+     * and keep them in a static field, the lookup is not free.
+     */
+    public static OperationStats operation(String name) {
+        OperationStats stats = operations.get(name);
+        if (stats != null) {
+            return stats;
+        }
+        return operations.computeIfAbsent(name, key -> {
+            OperationStats created = new OperationStats(key);
+            register(created);
+            return created;
+        });
+    }
+
+    public static Collection<OperationStats> getOperations() {
+        return Collections.unmodifiableCollection(operations.values());
+    }
+
+    static ObjectName objectNameOf(String name) throws JMException {
+        return new ObjectName(DOMAIN + ":type=Operation,name=" + name);
+    }
+
+    private static void register(OperationStats stats) {
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            ObjectName objectName = objectNameOf(stats.getName());
+            if (!server.isRegistered(objectName)) {
+                server.registerMBean(stats, objectName);
+            }
+        } catch (JMException | SecurityException e) {
+            logger.error("Error registering MBean for " + stats.getName(), e);
+        }
+    }
+
+    /**
+     * Writes every operation in the Prometheus text exposition format, as a
+     * {@code parkit_operation_duration_seconds} summary with its max and an
+     * {@code parkit_operation_errors_total} counter.
+     */
+    public static void writePrometheus(Appendable out) throws IOException {
+        out.append("# HELP parkit_operation_duration_seconds Time spent in each operation.\n");
+        out.append("# TYPE parkit_operation_duration_seconds summary\n");
+        for (OperationStats stats : operations.values()) {
+            LatencyHistogram histogram = stats.getHistogram();
+            for (double quantile : QUANTILES) {
+                out.append("parkit_operation_duration_seconds{operation=\"").append(stats.getName())
+                        .append("\",quantile=\"").append(Double.toString(quantile)).append("\"} ")
+                        .append(seconds(histogram.getPercentileNanos(quantile))).append('\n');
+            }
+            out.append("parkit_operation_duration_seconds_sum{operation=\"").append(stats.getName()).append("\"} ")
+                    .append(seconds(histogram.getTotalNanos())).append('\n');
+            out.append("parkit_operation_duration_seconds_count{operation=\"").append(stats.getName()).append("\"} ")
+                    .append(Long.toString(histogram.getCount())).append('\n');
+        }
+        out.append("# HELP parkit_operation_duration_seconds_max Longest time spent in each operation.\n");
+        out.append("# TYPE parkit_operation_duration_seconds_max gauge\n");
+        for (OperationStats stats : operations.values()) {
+            out.append("parkit_operation_duration_seconds_max{operation=\"").append(stats.getName()).append("\"} ")
+                    .append(seconds(stats.getHistogram().getMaxNanos())).append('\n');
+        }
+        out.append("# HELP parkit_operation_errors_total Failed calls of each operation.\n");
+        out.append("# TYPE parkit_operation_errors_total counter\n");
+        for (OperationStats stats : operations.values()) {
+            out.append("parkit_operation_errors_total{operation=\"").append(stats.getName()).append("\"} ")
+                    .append(Long.toString(stats.getErrorCount())).append('\n');
+        }
+    }
+
+    public static String toPrometheusText() {
+        StringBuilder text = new StringBuilder();
+        try {
+            writePrometheus(text);
+        } catch (IOException e) {
+            //a StringBuilder does not throw
+            throw new IllegalStateException(e);
+        }
+        return text.toString();
+    }
+
+    private static String seconds(long nanos) {
+        return Double.toString(nanos / 1e9);
+    }
+}
@@ -0,0 +1,84 @@
+package com.parkit.parkingsystem.metrics;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Latency histogram and error count of one named operation. Callers take
+ * {@link System#nanoTime()} before the operation and hand it to
+ * {@link #record(long)} once it is over, whatever the outcome:
+ * <pre>
+ * long start = System.nanoTime();
+ * try {
+ *     ...
+ * } catch (Exception ex) {
+ *     stats.error();
+ * } finally {
+ *     stats.record(start);
+ * }
+ * </pre>
+ * Get instances from {@link Metrics#operation(String)}.
+ */
+public class OperationStats implements OperationStatsMXBean {
+
+    private final String name;
+    private final LatencyHistogram histogram = new LatencyHistogram();
+    private final LongAdder errorCount = new LongAdder();
+
+    OperationStats(String name) {
+        this.name = name;
+    }
+
+    public void record(long startNanos) {
+        histogram.record(System.nanoTime() - startNanos);
+    }
+
+    public void error() {
+        errorCount.increment();
+    }
+
+    public LatencyHistogram getHistogram() {
+        return histogram;
+    }
+
+    @Override
+    public String getName() {
+        return name;
+    }
+
+    @Override
+    public long getCount() {
+        return histogram.getCount();
+    }
+
+    @Override
+    public long getErrorCount() {
+        return errorCount.sum();
+    }
+
+    @Override
+    public long getMeanMicros() {
+        long count = getCount();
+        return count == 0 ? 0 : TimeUnit.NANOSECONDS.toMicros(histogram.getTotalNanos() / count);
+    }
+
+    @Override
+    public long getP50Micros() {
+        return TimeUnit.NANOSECONDS.toMicros(histogram.getPercentileNanos(0.5));
+    }
+
+    @Override
+    public long getP99Micros() {
+        return TimeUnit.NANOSECONDS.toMicros(histogram.getPercentileNanos(0.99));
+    }
+
+    @Override
+    public long getP999Micros() {
+        return TimeUnit.NANOSECONDS.toMicros(histogram.getPercentileNanos(0.999));
+    }
+
+    @Override
+    public long getMaxMicros() {
+        return TimeUnit.NANOSECONDS.toMicros(histogram.getMaxNanos());
+    }
+}
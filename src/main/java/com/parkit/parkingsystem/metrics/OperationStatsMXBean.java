@@ -0,0 +1,24 @@
+package com.parkit.parkingsystem.metrics;
+
+/**
+ * JMX view of one {@link OperationStats}, registered as
+ * {@code com.parkit.parkingsystem:type=Operation,name=<operation>}.
+ */
+public interface OperationStatsMXBean {
+
+    String getName();
+
+    long getCount();
+
+    long getErrorCount();
+
+    long getMeanMicros();
+
+    long getP50Micros();
+
+    long getP99Micros();
+
+    long getP999Micros();
+
+    long getMaxMicros();
+}
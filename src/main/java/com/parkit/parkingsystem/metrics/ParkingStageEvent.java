@@ -0,0 +1,96 @@
+package com.parkit.parkingsystem.metrics;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Flight Recorder event for one step of a vehicle entry or exit. Plates are
+ * not recorded, only a case-insensitive hash of them, so traces from
+ * production can be shared. When no recording is running the event is not
+ * committed and costs next to nothing.
+ * <pre>
+ * ParkingStageEvent event = ParkingStageEvent.begin(ParkingStageEvent.ENTRY, ParkingStageEvent.SPOT_LOOKUP, plate);
+ * int parkingNumber = parkingSpotDAO.getNextAvailableSlot(parkingType);
+ * event.end(parkingNumber, parkingNumber > 0);
+ * </pre>
+ */
+@Name("com.parkit.parkingsystem.ParkingStage")
+@Label("Parking Stage")
+@Category("Parking System")
+@Description("One step of a vehicle entry or exit")
+@StackTrace(false)
+public class ParkingStageEvent extends Event {
+
+    public static final String ENTRY = "ENTRY";
+    public static final String EXIT = "EXIT";
+    public static final String FARE_PREVIEW = "FARE_PREVIEW";
+
+    public static final String SPOT_LOOKUP = "SPOT_LOOKUP";
+    public static final String ENTRY_TRANSACTION = "ENTRY_TRANSACTION";
+    public static final String VISIT_COUNT = "VISIT_COUNT";
+    public static final String SPOT_UPDATE = "SPOT_UPDATE";
+    public static final String TICKET_SAVE = "TICKET_SAVE";
+    public static final String TICKET_LOOKUP = "TICKET_LOOKUP";
+    public static final String FARE_CALCULATION = "FARE_CALCULATION";
+    public static final String TICKET_UPDATE = "TICKET_UPDATE";
+
+    @Label("Flow")
+    String flow;
+
+    @Label("Stage")
+    String stage;
+
+    @Label("Plate Hash")
+    int plateHash;
+
+    @Label("Parking Number")
+    int parkingNumber;
+
+    @Label("Succeeded")
+    boolean succeeded;
+
+    //hashed only if the event is committed
+    private transient String vehicleRegNumber;
+
+    public static ParkingStageEvent begin(String flow, String stage, String vehicleRegNumber) {
+        ParkingStageEvent event = new ParkingStageEvent();
+        event.flow = flow;
+        event.stage = stage;
+        event.vehicleRegNumber = vehicleRegNumber;
+        event.begin();
+        return event;
+    }
+
+    /**
+     * @param parkingNumber the spot involved, 0 if none is known yet
+     */
+    public void end(int parkingNumber, boolean succeeded) {
+        end();
+        if (shouldCommit()) {
+            this.plateHash = plateHash(vehicleRegNumber);
+            this.parkingNumber = parkingNumber;
+            this.succeeded = succeeded;
+            commit();
+        }
+    }
+
+    /**
+     * Hash of the upper-cased plate, 0 for none.
+     */
+    static int plateHash(String vehicleRegNumber) {
+        if (vehicleRegNumber == null) {
+            return 0;
+        }
+        int hash = 0;
+        for (int i = 0; i < vehicleRegNumber.length(); i++) {
+            hash = 31 * hash + Character.toUpperCase(vehicleRegNumber.charAt(i));
+        }
+        //spread the bits so nearby plates do not get nearby hashes
+        hash *= 0x9E3779B9;
+        return hash ^ (hash >>> 16);
+    }
+}
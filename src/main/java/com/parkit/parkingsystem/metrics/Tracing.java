@@ -0,0 +1,74 @@
+package com.parkit.parkingsystem.metrics;
+
+import jdk.jfr.Configuration;
+import jdk.jfr.Recording;
+import org.apache.logging.log4j.Level;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.apache.logging.log4j.core.config.Configurator;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.text.ParseException;
+
+/**
+ * Low-overhead tracing mode: the loggers that write a line on every
+ * connection, statement and result set are raised to WARN, and a Flight
+ * Recorder recording of the {@link ParkingStageEvent}s is written to a file
+ * when the JVM exits. Read it with
+ * {@code jfr print --events com.parkit.parkingsystem.ParkingStage <file>}.
+ */
+public final class Tracing {
+
+    private static final Logger logger = LogManager.getLogger("Tracing");
+
+    /** Loggers writing at INFO on every call, silenced while tracing. */
+    static final String[] PER_CALL_LOGGERS = {"DataBaseConfig", "ConnectionPool"};
+
+    private static volatile boolean enabled;
+
+    private Tracing() {
+    }
+
+    public static boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Silences the per-call loggers without starting a recording, e.g. when
+     * the JVM is started with {@code -XX:StartFlightRecording}.
+     */
+    public static void silencePerCallLogging() {
+        for (String name : PER_CALL_LOGGERS) {
+            if (LogManager.getLogger(name).isInfoEnabled()) {
+                Configurator.setLevel(name, Level.WARN);
+            }
+        }
+        enabled = true;
+    }
+
+    /**
+     * Silences the per-call loggers and records the parking stages, with
+     * the JDK's default settings for everything else, until the JVM exits.
+     */
+    public static Recording start(Path destination) throws IOException {
+        silencePerCallLogging();
+        Recording recording;
+        try {
+            recording = new Recording(Configuration.getConfiguration("default"));
+        } catch (ParseException e) {
+            throw new IOException("Unreadable default JFR configuration", e);
+        }
+        recording.setName("parkit-trace");
+        recording.enable(ParkingStageEvent.class).withoutThreshold();
+        recording.setToDisk(true);
+        recording.setDestination(destination);
+        recording.start();
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            recording.stop();
+            recording.close();
+        }, "parkit-trace-dump"));
+        logger.info("Tracing to " + destination);
+        return recording;
+    }
+}
@@ -0,0 +1,48 @@
+package com.parkit.parkingsystem.model;
+
+public class EntryResult {
+
+    public enum Status {
+        SUCCESS,
+        NO_SPOT_AVAILABLE,
+        CONTENTION,
+        ERROR
+    }
+
+    private final Status status;
+    private final Ticket ticket;
+    private final int nbTicket;
+
+    private EntryResult(Status status, Ticket ticket, int nbTicket) {
+        this.status = status;
+        this.ticket = ticket;
+        this.nbTicket = nbTicket;
+    }
+
+    public static EntryResult success(Ticket ticket, int nbTicket) {
+        return new EntryResult(Status.SUCCESS, ticket, nbTicket);
+    }
+
+    public static EntryResult failure(Status status) {
+        return new EntryResult(status, null, 0);
+    }
+
+    public Status getStatus() {
+        return status;
+    }
+
+    public boolean isSuccess() {
+        return status == Status.SUCCESS;
+    }
+
+    public Ticket getTicket() {
+        return ticket;
+    }
+
+    /**
+     * Number of tickets the vehicle had before this entry.
+     */
+    public int getNbTicket() {
+        return nbTicket;
+    }
+}
@@ -0,0 +1,41 @@
+package com.parkit.parkingsystem.model;
+
+public class ExitResult {
+
+    public enum Status {
+        SUCCESS,
+        NO_TICKET_FOUND,
+        ERROR
+    }
+
+    private final Status status;
+    private final Ticket ticket;
+
+    private ExitResult(Status status, Ticket ticket) {
+        this.status = status;
+        this.ticket = ticket;
+    }
+
+    public static ExitResult success(Ticket ticket) {
+        return new ExitResult(Status.SUCCESS, ticket);
+    }
+
+    public static ExitResult failure(Status status) {
+        return new ExitResult(status, null);
+    }
+
+    public Status getStatus() {
+        return status;
+    }
+
+    public boolean isSuccess() {
+        return status == Status.SUCCESS;
+    }
+
+    /**
+     * The priced ticket, with its out time set.
+     */
+    public Ticket getTicket() {
+        return ticket;
+    }
+}
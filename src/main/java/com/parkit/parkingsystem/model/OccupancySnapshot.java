@@ -0,0 +1,64 @@
+package com.parkit.parkingsystem.model;
+
+import com.parkit.parkingsystem.constants.ParkingType;
+
+/**
+ * Spots taken and in total per {@link ParkingType} at one point in time.
+ */
+public class OccupancySnapshot {
+
+    private final int[] capacity;
+    private final int[] occupied;
+    private final long takenAtMillis;
+
+    /**
+     * @param capacity spots per type, indexed by ordinal
+     * @param occupied spots taken per type, indexed by ordinal
+     */
+    public OccupancySnapshot(int[] capacity, int[] occupied, long takenAtMillis) {
+        this.capacity = capacity.clone();
+        this.occupied = occupied.clone();
+        this.takenAtMillis = takenAtMillis;
+    }
+
+    public int getCapacity(ParkingType parkingType) {
+        return capacity[parkingType.ordinal()];
+    }
+
+    public int getOccupied(ParkingType parkingType) {
+        return occupied[parkingType.ordinal()];
+    }
+
+    public int getAvailable(ParkingType parkingType) {
+        return Math.max(0, getCapacity(parkingType) - getOccupied(parkingType));
+    }
+
+    public long getTakenAtMillis() {
+        return takenAtMillis;
+    }
+
+    /**
+     * @return the spots of both snapshots added up, taken at the older time
+     */
+    public OccupancySnapshot plus(OccupancySnapshot other) {
+        int[] totalCapacity = new int[capacity.length];
+        int[] totalOccupied = new int[occupied.length];
+        for (int i = 0; i < capacity.length; i++) {
+            totalCapacity[i] = capacity[i] + other.capacity[i];
+            totalOccupied[i] = occupied[i] + other.occupied[i];
+        }
+        return new OccupancySnapshot(totalCapacity, totalOccupied, Math.min(takenAtMillis, other.takenAtMillis));
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder text = new StringBuilder("OccupancySnapshot{");
+        for (ParkingType parkingType : ParkingType.values()) {
+            if (text.length() > 18) {
+                text.append(", ");
+            }
+            text.append(parkingType).append('=').append(getOccupied(parkingType)).append('/').append(getCapacity(parkingType));
+        }
+        return text.append('}').toString();
+    }
+}
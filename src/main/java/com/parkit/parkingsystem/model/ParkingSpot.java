@@ -2,15 +2,28 @@ package com.parkit.parkingsystem.model;
 
 import com.parkit.parkingsystem.constants.ParkingType;
 
+/**
+ * A parking spot. Spots handed out by a {@link ParkingSpotRegistry} are
+ * shared: their number and type are fixed and their availability lives in
+ * the registry. Spots built with the constructor carry their own.
+ */
 public class ParkingSpot {
     private int number;
     private ParkingType parkingType;
     private boolean isAvailable;
+    private final ParkingSpotRegistry registry;
 
     public ParkingSpot(int number, ParkingType parkingType, boolean isAvailable) {
         this.number = number;
         this.parkingType = parkingType;
         this.isAvailable = isAvailable;
+        this.registry = null;
+    }
+
+    ParkingSpot(int number, ParkingType parkingType, ParkingSpotRegistry registry) {
+        this.number = number;
+        this.parkingType = parkingType;
+        this.registry = registry;
     }
 
     public int getId() {
@@ -18,6 +31,7 @@ public class ParkingSpot {
     }
 
     public void setId(int number) {
+        checkNotShared();
         this.number = number;
     }
 
@@ -26,15 +40,26 @@ public class ParkingSpot {
     }
 
     public void setParkingType(ParkingType parkingType) {
+        checkNotShared();
         this.parkingType = parkingType;
     }
 
     public boolean isAvailable() {
-        return isAvailable;
+        return registry == null ? isAvailable : registry.isAvailable(number);
     }
 
     public void setAvailable(boolean available) {
-        isAvailable = available;
+        if (registry == null) {
+            isAvailable = available;
+        } else {
+            registry.setAvailable(number, available);
+        }
+    }
+
+    private void checkNotShared() {
+        if (registry != null) {
+            throw new UnsupportedOperationException("Spot " + number + " is shared, it cannot be renumbered or retyped");
+        }
     }
 
     @Override
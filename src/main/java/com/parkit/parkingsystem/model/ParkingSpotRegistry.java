@@ -0,0 +1,88 @@
+package com.parkit.parkingsystem.model;
+
+import com.parkit.parkingsystem.constants.ParkingType;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+/**
+ * One shared {@link ParkingSpot} per physical spot, indexed by parking
+ * number, so lookups and loaded tickets do not allocate spots. The
+ * availability of every spot is kept here in a single array rather than in
+ * the spot objects.
+ */
+public class ParkingSpotRegistry {
+
+    private final ParkingSpot[] spots;
+    private final AtomicIntegerArray available;
+
+    public ParkingSpotRegistry(List<ParkingSpot> parkingSpots) {
+        int maxNumber = 0;
+        for (ParkingSpot parkingSpot : parkingSpots) {
+            if (parkingSpot.getId() <= 0) {
+                throw new IllegalArgumentException("Parking numbers start at 1 : " + parkingSpot.getId());
+            }
+            maxNumber = Math.max(maxNumber, parkingSpot.getId());
+        }
+        this.spots = new ParkingSpot[maxNumber + 1];
+        this.available = new AtomicIntegerArray(maxNumber + 1);
+        for (ParkingSpot parkingSpot : parkingSpots) {
+            spots[parkingSpot.getId()] = new ParkingSpot(parkingSpot.getId(), parkingSpot.getParkingType(), this);
+            available.set(parkingSpot.getId(), parkingSpot.isAvailable() ? 1 : 0);
+        }
+    }
+
+    /**
+     * @return the shared spot, or null if there is no such spot
+     */
+    public ParkingSpot get(int parkingNumber) {
+        return parkingNumber > 0 && parkingNumber < spots.length ? spots[parkingNumber] : null;
+    }
+
+    /**
+     * The shared spot with that number and type, or a new spot if the
+     * registry does not know it, e.g. when it was added to the database
+     * after the registry was loaded. The shared spot keeps its availability.
+     *
+     * @param isAvailable availability of the new spot, if one is created
+     */
+    public ParkingSpot get(int parkingNumber, ParkingType parkingType, boolean isAvailable) {
+        ParkingSpot parkingSpot = get(parkingNumber);
+        if (parkingSpot == null || parkingSpot.getParkingType() != parkingType) {
+            return new ParkingSpot(parkingNumber, parkingType, isAvailable);
+        }
+        return parkingSpot;
+    }
+
+    /**
+     * @return the shared spots, by parking number
+     */
+    public List<ParkingSpot> getParkingSpots() {
+        List<ParkingSpot> parkingSpots = new ArrayList<>();
+        for (ParkingSpot parkingSpot : spots) {
+            if (parkingSpot != null) {
+                parkingSpots.add(parkingSpot);
+            }
+        }
+        return parkingSpots;
+    }
+
+    public int size() {
+        int size = 0;
+        for (ParkingSpot parkingSpot : spots) {
+            if (parkingSpot != null) {
+                size++;
+            }
+        }
+        return size;
+    }
+
+    boolean isAvailable(int parkingNumber) {
+        return available.get(parkingNumber) == 1;
+    }
+
+    void setAvailable(int parkingNumber, boolean isAvailable) {
+        available.set(parkingNumber, isAvailable ? 1 : 0);
+    }
+}
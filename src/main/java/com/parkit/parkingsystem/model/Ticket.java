@@ -1,15 +1,25 @@
 package com.parkit.parkingsystem.model;
 
-import java.util.Calendar;
+import com.parkit.parkingsystem.util.Money;
+
+import java.math.RoundingMode;
 import java.util.Date;
 
+/**
+ * A parking ticket. Times are kept as epoch millis; the {@link Date}
+ * accessors are views built on each call, hot paths use the millis ones.
+ */
 public class Ticket {
+
+    /** Millis of a time that is not set, e.g. the out time of an open ticket. */
+    public static final long NO_TIME = Long.MIN_VALUE;
+
     private int id;
     private ParkingSpot parkingSpot;
     private String vehicleRegNumber;
-    private double price;
-    private Date inTime;
-    private Date outTime;
+    private long priceCents;
+    private long inTimeMillis = NO_TIME;
+    private long outTimeMillis = NO_TIME;
 
     public int getId() {
         return id;
@@ -35,27 +45,72 @@ public class Ticket {
         this.vehicleRegNumber = vehicleRegNumber;
     }
 
+    public long getPriceCents() {
+        return priceCents;
+    }
+
+    public void setPriceCents(long priceCents) {
+        this.priceCents = priceCents;
+    }
+
     public double getPrice() {
-        return price;
+        return Money.toDouble(priceCents);
     }
 
+    /**
+     * Sets the price from a decimal amount, rounded half-up to the cent.
+     */
     public void setPrice(double price) {
-        this.price = price;
+        this.priceCents = Money.fromDouble(price, RoundingMode.HALF_UP);
     }
 
     public Date getInTime() {
-        return inTime;
+        return toDate(inTimeMillis);
     }
 
     public void setInTime(Date inTime) {
-        this.inTime = inTime;
+        this.inTimeMillis = toMillis(inTime);
     }
 
     public Date getOutTime() {
-        return outTime;
+        return toDate(outTimeMillis);
     }
 
     public void setOutTime(Date outTime) {
-        this.outTime = outTime;
+        this.outTimeMillis = toMillis(outTime);
+    }
+
+    /**
+     * @return the entry time, or {@link #NO_TIME}
+     */
+    public long getInTimeMillis() {
+        return inTimeMillis;
+    }
+
+    public void setInTimeMillis(long inTimeMillis) {
+        this.inTimeMillis = inTimeMillis;
+    }
+
+    /**
+     * @return the exit time, or {@link #NO_TIME} while the vehicle is parked
+     */
+    public long getOutTimeMillis() {
+        return outTimeMillis;
+    }
+
+    public void setOutTimeMillis(long outTimeMillis) {
+        this.outTimeMillis = outTimeMillis;
+    }
+
+    public boolean isOpen() {
+        return outTimeMillis == NO_TIME;
+    }
+
+    private static Date toDate(long millis) {
+        return millis == NO_TIME ? null : new Date(millis);
+    }
+
+    private static long toMillis(Date date) {
+        return date == null ? NO_TIME : date.getTime();
     }
 }
@@ -0,0 +1,115 @@
+package com.parkit.parkingsystem.service;
+
+import com.parkit.parkingsystem.config.TariffDefinition;
+import com.parkit.parkingsystem.constants.ParkingType;
+import com.parkit.parkingsystem.util.Money;
+
+import java.math.RoundingMode;
+
+/**
+ * A {@link TariffDefinition} flattened into per-minute lookup tables, so a fare
+ * costs one table read and one division whatever the number of tiers.
+ * <p>
+ * Amounts are kept as "rate-milliseconds": the sum over every parked
+ * millisecond of the hourly rate in cents. Dividing by the millis in an hour
+ * gives cents, so the fare is exact until the single final rounding.
+ */
+final class CompiledTariff {
+
+    private static final long MILLIS_PER_MINUTE = 60_000L;
+    private static final long MILLIS_PER_HOUR = 60 * MILLIS_PER_MINUTE;
+    private static final long MILLIS_PER_DAY = TariffDefinition.MINUTES_PER_DAY * MILLIS_PER_MINUTE;
+    private static final long FULL_PRICE_PERCENT = 100;
+    private static final long FARE_DIVISOR = MILLIS_PER_HOUR * FULL_PRICE_PERCENT;
+
+    private static final int MINUTES = TariffDefinition.MINUTES_PER_DAY;
+    private static final int CUMULATIVE_STRIDE = MINUTES + 1;
+
+    private final TariffDefinition definition;
+    private final int typeCount;
+    private final long discountedPercent;
+    private final long maxDurationMillis;
+
+    /** Per type: stays up to this long are free. */
+    private final long[] graceMillis;
+    /** Per type: rate-millis charged before minute m of a day, at [type * CUMULATIVE_STRIDE + m]. */
+    private final long[] cumulative;
+    /** Per type: hourly rate in cents during minute m of a day, at [type * MINUTES + m]. */
+    private final long[] ratePerMinute;
+    /** Per type: daily cap in rate-millis, or Long.MAX_VALUE. */
+    private final long[] dailyCap;
+    /** Per type: rate-millis charged for a complete day, cap included. */
+    private final long[] fullDay;
+
+    private CompiledTariff(TariffDefinition definition) {
+        this.definition = definition;
+        this.typeCount = ParkingType.values().length;
+        this.discountedPercent = FULL_PRICE_PERCENT - definition.getDiscountPercent();
+        this.graceMillis = new long[typeCount];
+        this.cumulative = new long[typeCount * CUMULATIVE_STRIDE];
+        this.ratePerMinute = new long[typeCount * MINUTES];
+        this.dailyCap = new long[typeCount];
+        this.fullDay = new long[typeCount];
+
+        long maxRate = 1;
+        for (ParkingType parkingType : ParkingType.values()) {
+            int type = parkingType.ordinal();
+            TariffDefinition.TypeTariff typeTariff = definition.getTypeTariff(parkingType);
+            graceMillis[type] = typeTariff.getGraceMinutes() * MILLIS_PER_MINUTE;
+
+            int tier = 0;
+            long total = 0;
+            for (int minute = 0; minute < MINUTES; minute++) {
+                while (tier + 1 < typeTariff.getTierCount() && typeTariff.getTierStartMinute(tier + 1) <= minute) {
+                    tier++;
+                }
+                long rate = typeTariff.getTierRatePerHourCents(tier);
+                maxRate = Math.max(maxRate, rate);
+                ratePerMinute[type * MINUTES + minute] = rate;
+                cumulative[type * CUMULATIVE_STRIDE + minute] = total;
+                total = Math.addExact(total, Math.multiplyExact(rate, MILLIS_PER_MINUTE));
+            }
+            cumulative[type * CUMULATIVE_STRIDE + MINUTES] = total;
+
+            long capCents = typeTariff.getDailyCapCents();
+            dailyCap[type] = capCents == TariffDefinition.NO_DAILY_CAP
+                    ? Long.MAX_VALUE
+                    : Math.multiplyExact(capCents, MILLIS_PER_HOUR);
+            fullDay[type] = Math.min(total, dailyCap[type]);
+        }
+        this.maxDurationMillis = Long.MAX_VALUE / (maxRate * FULL_PRICE_PERCENT);
+    }
+
+    static CompiledTariff compile(TariffDefinition definition) {
+        return new CompiledTariff(definition);
+    }
+
+    TariffDefinition getDefinition() {
+        return definition;
+    }
+
+    int getTypeCount() {
+        return typeCount;
+    }
+
+    /**
+     * Longest stay whose fare cannot overflow.
+     */
+    long getMaxDurationMillis() {
+        return maxDurationMillis;
+    }
+
+    long fareInCents(int type, long durationInMillis, boolean discount, RoundingMode roundingMode) {
+        if (durationInMillis <= graceMillis[type]) {
+            return 0;
+        }
+        long days = durationInMillis / MILLIS_PER_DAY;
+        long remainder = durationInMillis - days * MILLIS_PER_DAY;
+        int minute = (int) (remainder / MILLIS_PER_MINUTE);
+        long partialDay = cumulative[type * CUMULATIVE_STRIDE + minute]
+                + (remainder - minute * MILLIS_PER_MINUTE) * ratePerMinute[type * MINUTES + minute];
+        long rateMillis = days * fullDay[type] + Math.min(partialDay, dailyCap[type]);
+        long percent = discount ? discountedPercent : FULL_PRICE_PERCENT;
+        return Money.divide(rateMillis * percent, FARE_DIVISOR, roundingMode);
+    }
+}
@@ -0,0 +1,363 @@
+package com.parkit.parkingsystem.service;
+
+import com.parkit.parkingsystem.config.ShardSettings;
+import com.parkit.parkingsystem.constants.ParkingType;
+import com.parkit.parkingsystem.dao.MappedTicketDAO;
+import com.parkit.parkingsystem.dao.TicketDAO;
+import com.parkit.parkingsystem.dao.TicketRepository;
+import com.parkit.parkingsystem.dao.TicketWriteBehindQueue;
+import com.parkit.parkingsystem.model.EntryResult;
+import com.parkit.parkingsystem.model.ExitResult;
+import com.parkit.parkingsystem.util.InputReaderUtil;
+import com.parkit.parkingsystem.util.Money;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.net.ProtocolException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.time.format.DateTimeParseException;
+import java.util.Date;
+import java.util.Locale;
+import java.util.PriorityQueue;
+
+/**
+ * Replays a recorded gate event log through a {@link ParkingGate}, with the
+ * recorded times as entry and exit times. The file is streamed, and events
+ * are put back in timestamp order through a bounded reorder window, so memory
+ * use depends on the window size, not on the file size. An event older than
+ * one already applied is still applied, and counted as late.
+ * <p>
+ * Two formats are read:
+ * <ul>
+ *     <li>CSV, one {@code timestamp,ENTRY|EXIT,type,plate} line per event. The
+ *     timestamp is epoch millis or ISO-8601; type is ignored on exit. Blank
+ *     lines, {@code #} comments and a header are skipped.</li>
+ *     <li>Binary, back-to-back {@link GateEventCodec} request frames.</li>
+ * </ul>
+ */
+public class EventReplayer {
+
+    private static final Logger logger = LogManager.getLogger("EventReplayer");
+
+    public enum Format {
+        CSV,
+        BINARY;
+
+        public static Format of(Path file) {
+            return file.getFileName().toString().toLowerCase(Locale.ROOT).endsWith(".csv") ? CSV : BINARY;
+        }
+    }
+
+    private final ParkingGate parkingGate;
+    private final int reorderWindow;
+    private final PriorityQueue<ReplayEvent> pending;
+    private ReplayReport report;
+    private long sequence;
+    private long watermark;
+
+    public EventReplayer(ParkingGate parkingGate, int reorderWindow) {
+        if (reorderWindow < 1) {
+            throw new IllegalArgumentException("Reorder window must be at least 1 : " + reorderWindow);
+        }
+        this.parkingGate = parkingGate;
+        this.reorderWindow = reorderWindow;
+        this.pending = new PriorityQueue<>(reorderWindow + 1);
+    }
+
+    /**
+     * Wires a parking service, or a shard router, from the {@code parkit.*} system properties,
+     * with database ticket writes batched through a write-behind queue, replays the
+     * file through it and prints the report.
+     */
+    public static ReplayReport replayFile(Path file, Format format) throws IOException {
+        if (new ShardSettings().isEnabled()) {
+            ShardRouter shardRouter = ParkingServiceFactory.createShardRouter(new InputReaderUtil());
+            shardRouter.getTicketRepositories().forEach(EventReplayer::batchWrites);
+            try {
+                return replayFile(shardRouter, file, format);
+            } finally {
+                ParkingServiceFactory.shutdown(shardRouter);
+            }
+        }
+        TicketRepository ticketRepository = ParkingServiceFactory.createTicketRepository();
+        batchWrites(ticketRepository);
+        ParkingService parkingService = ParkingServiceFactory.createParkingService(new InputReaderUtil(), ticketRepository);
+        try {
+            return replayFile(parkingService, file, format);
+        } finally {
+            //flush the batched writes before reporting the run finished
+            ParkingServiceFactory.shutdown(ticketRepository);
+        }
+    }
+
+    private static ReplayReport replayFile(ParkingGate parkingGate, Path file, Format format) throws IOException {
+        EventReplayer replayer = new EventReplayer(parkingGate, Integer.getInteger("parkit.replay.reorderWindow", 10_000));
+        ReplayReport report = replayer.replay(file, format);
+        System.out.println(report);
+        return report;
+    }
+
+    /**
+     * Queued tickets are not in the database yet, so their exits can only
+     * find them in the open-ticket index: without it, writes stay synchronous.
+     */
+    static void batchWrites(TicketRepository ticketRepository) {
+        if (ticketRepository instanceof TicketDAO && !(ticketRepository instanceof MappedTicketDAO)) {
+            TicketDAO ticketDAO = (TicketDAO) ticketRepository;
+            if (ticketDAO.ticketWriteBehindQueue == null) {
+                if (ticketDAO.openTicketIndex == null && !ticketDAO.loadOpenTicketIndex()) {
+                    logger.error("No open-ticket index, replaying without batched ticket writes");
+                    return;
+                }
+                ticketDAO.ticketWriteBehindQueue = new TicketWriteBehindQueue(ticketDAO.dataBaseConfig);
+            }
+        }
+    }
+
+    public ReplayReport replay(Path file, Format format) throws IOException {
+        try (InputStream in = Files.newInputStream(file)) {
+            return replay(in, format);
+        }
+    }
+
+    public ReplayReport replay(InputStream in, Format format) throws IOException {
+        report = new ReplayReport();
+        sequence = 0;
+        watermark = Long.MIN_VALUE;
+        pending.clear();
+        long start = System.nanoTime();
+        if (format == Format.CSV) {
+            readCsv(in);
+        } else {
+            readBinary(in);
+        }
+        while (!pending.isEmpty()) {
+            apply(pending.poll());
+        }
+        report.elapsedNanos = System.nanoTime() - start;
+        logger.info(report.toString());
+        return report;
+    }
+
+    private void readCsv(InputStream in) throws IOException {
+        BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8), 1 << 16);
+        String line;
+        long lineNumber = 0;
+        while ((line = reader.readLine()) != null) {
+            lineNumber++;
+            line = line.trim();
+            if (line.isEmpty() || line.startsWith("#")) {
+                continue;
+            }
+            String[] fields = line.split(",", -1);
+            if (fields.length != 4) {
+                malformed(lineNumber, line);
+                continue;
+            }
+            try {
+                String action = fields[1].trim().toUpperCase(Locale.ROOT);
+                int opcode;
+                if ("ENTRY".equals(action)) {
+                    opcode = GateEventCodec.OP_ENTRY;
+                } else if ("EXIT".equals(action)) {
+                    opcode = GateEventCodec.OP_EXIT;
+                } else if (lineNumber == 1) {
+                    continue; //header
+                } else {
+                    malformed(lineNumber, line);
+                    continue;
+                }
+                ParkingType parkingType = opcode == GateEventCodec.OP_ENTRY
+                        ? ParkingType.valueOf(fields[2].trim().toUpperCase(Locale.ROOT))
+                        : null;
+                String vehicleRegNumber = fields[3].trim();
+                if (vehicleRegNumber.isEmpty()) {
+                    malformed(lineNumber, line);
+                    continue;
+                }
+                offer(new ReplayEvent(parseTimestamp(fields[0].trim()), sequence++, opcode, parkingType, vehicleRegNumber));
+            } catch (IllegalArgumentException | DateTimeParseException e) {
+                malformed(lineNumber, line);
+            }
+        }
+    }
+
+    private void readBinary(InputStream in) throws IOException {
+        ReadableByteChannel channel = Channels.newChannel(in);
+        ByteBuffer buffer = ByteBuffer.allocate(1 << 16);
+        GateEvent event = new GateEvent();
+        while (channel.read(buffer) >= 0) {
+            buffer.flip();
+            while (GateEventCodec.decodeRequest(buffer, event)) {
+                if (event.getOpcode() == GateEventCodec.OP_FARE) {
+                    continue;
+                }
+                if (event.getOpcode() == GateEventCodec.OP_ENTRY && event.getParkingType() == null) {
+                    report.malformed++;
+                    continue;
+                }
+                offer(new ReplayEvent(event.getTimestamp(), sequence++, event.getOpcode(),
+                        event.getParkingType(), event.getVehicleRegNumber()));
+            }
+            buffer.compact();
+        }
+        if (buffer.position() > 0) {
+            throw new ProtocolException("Truncated frame at the end of the event log");
+        }
+    }
+
+    private void offer(ReplayEvent event) {
+        pending.add(event);
+        if (pending.size() > reorderWindow) {
+            apply(pending.poll());
+        }
+    }
+
+    private void apply(ReplayEvent event) {
+        if (event.timestamp < watermark) {
+            report.late++;
+        } else {
+            watermark = event.timestamp;
+        }
+        Date time = new Date(event.timestamp);
+        if (event.opcode == GateEventCodec.OP_ENTRY) {
+            EntryResult result = parkingGate.processIncomingVehicle(event.parkingType, event.vehicleRegNumber, time);
+            if (result.isSuccess()) {
+                report.entries++;
+            } else if (result.getStatus() == EntryResult.Status.NO_SPOT_AVAILABLE) {
+                report.noSpotAvailable++;
+            } else {
+                report.failed++;
+            }
+        } else {
+            ExitResult result = parkingGate.processExitingVehicle(event.vehicleRegNumber, time);
+            if (result.isSuccess()) {
+                report.exits++;
+                report.revenueCents += result.getTicket().getPriceCents();
+            } else if (result.getStatus() == ExitResult.Status.NO_TICKET_FOUND) {
+                report.noTicketFound++;
+            } else {
+                report.failed++;
+            }
+        }
+        report.events++;
+    }
+
+    private void malformed(long lineNumber, String line) {
+        report.malformed++;
+        logger.error("Skipping malformed event at line " + lineNumber + " : " + line);
+    }
+
+    private static long parseTimestamp(String value) {
+        if (!value.isEmpty() && value.chars().allMatch(Character::isDigit)) {
+            return Long.parseLong(value);
+        }
+        return Instant.parse(value).toEpochMilli();
+    }
+
+    private static class ReplayEvent implements Comparable<ReplayEvent> {
+        private final long timestamp;
+        private final long sequence;
+        private final int opcode;
+        private final ParkingType parkingType;
+        private final String vehicleRegNumber;
+
+        ReplayEvent(long timestamp, long sequence, int opcode, ParkingType parkingType, String vehicleRegNumber) {
+            this.timestamp = timestamp;
+            this.sequence = sequence;
+            this.opcode = opcode;
+            this.parkingType = parkingType;
+            this.vehicleRegNumber = vehicleRegNumber;
+        }
+
+        @Override
+        public int compareTo(ReplayEvent other) {
+            //events with the same timestamp keep their file order
+            int byTime = Long.compare(timestamp, other.timestamp);
+            return byTime != 0 ? byTime : Long.compare(sequence, other.sequence);
+        }
+    }
+
+    /**
+     * Outcome of one replay run.
+     */
+    public static class ReplayReport {
+        private long events;
+        private long entries;
+        private long exits;
+        private long noSpotAvailable;
+        private long noTicketFound;
+        private long failed;
+        private long malformed;
+        private long late;
+        private long revenueCents;
+        private long elapsedNanos;
+
+        public long getEvents() {
+            return events;
+        }
+
+        public long getEntries() {
+            return entries;
+        }
+
+        public long getExits() {
+            return exits;
+        }
+
+        public long getNoSpotAvailable() {
+            return noSpotAvailable;
+        }
+
+        public long getNoTicketFound() {
+            return noTicketFound;
+        }
+
+        public long getFailed() {
+            return failed;
+        }
+
+        public long getMalformed() {
+            return malformed;
+        }
+
+        /**
+         * Events older than an event already applied, because they were
+         * further out of order than the reorder window.
+         */
+        public long getLate() {
+            return late;
+        }
+
+        public long getRevenueCents() {
+            return revenueCents;
+        }
+
+        public long getElapsedNanos() {
+            return elapsedNanos;
+        }
+
+        public double getEventsPerSecond() {
+            return elapsedNanos == 0 ? 0 : events * 1_000_000_000.0 / elapsedNanos;
+        }
+
+        @Override
+        public String toString() {
+            return String.format(Locale.ROOT,
+                    "Replayed %d events in %.3f s (%.0f events/s): %d entries, %d exits, %d without spot, "
+                            + "%d without ticket, %d failed, %d malformed, %d late, revenue %s",
+                    events, elapsedNanos / 1e9, getEventsPerSecond(), entries, exits, noSpotAvailable,
+                    noTicketFound, failed, malformed, late, Money.format(revenueCents));
+        }
+    }
+}
@@ -1,48 +1,196 @@
 package com.parkit.parkingsystem.service;
 
-import com.parkit.parkingsystem.constants.Fare;
+import com.parkit.parkingsystem.config.TariffDefinition;
+import com.parkit.parkingsystem.constants.ParkingType;
+import com.parkit.parkingsystem.metrics.Metrics;
+import com.parkit.parkingsystem.metrics.OperationStats;
 import com.parkit.parkingsystem.model.Ticket;
 
+import java.math.RoundingMode;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Prices tickets in integer cents from the current {@link TariffDefinition},
+ * compiled into lookup tables. The fare is computed exactly and rounded once
+ * with the configured {@link RoundingMode}. The tariff can be replaced at any
+ * time; each calculation uses either the old or the new one, never a mix.
+ */
 public class FareCalculatorService {
 
+    /** Batches below this size are priced on the calling thread. */
+    private static final int PARALLEL_CHUNK_SIZE = 16_384;
+
+    private static final OperationStats calculateFareStats = Metrics.operation("FareCalculatorService.calculateFare");
+    private static final OperationStats calculateFaresStats = Metrics.operation("FareCalculatorService.calculateFares");
+
+    private final RoundingMode roundingMode;
+    private volatile CompiledTariff tariff;
+
+    public FareCalculatorService() {
+        this(RoundingMode.HALF_UP);
+    }
+
+    public FareCalculatorService(RoundingMode roundingMode) {
+        this(TariffDefinition.defaults(), roundingMode);
+    }
+
+    public FareCalculatorService(TariffDefinition tariffDefinition, RoundingMode roundingMode) {
+        this.roundingMode = roundingMode;
+        this.tariff = CompiledTariff.compile(tariffDefinition);
+    }
+
+    public RoundingMode getRoundingMode() {
+        return roundingMode;
+    }
+
+    public TariffDefinition getTariff() {
+        return tariff.getDefinition();
+    }
+
+    /**
+     * Compiles the definition and swaps it in. Calculations already running
+     * finish with the previous tariff.
+     */
+    public void setTariff(TariffDefinition tariffDefinition) {
+        this.tariff = CompiledTariff.compile(tariffDefinition);
+    }
+
     public void calculateFare(Ticket ticket, boolean discount) {
+        long start = System.nanoTime();
+        try {
+            priceTicket(ticket, discount);
+        } catch (RuntimeException e) {
+            calculateFareStats.error();
+            throw e;
+        } finally {
+            calculateFareStats.record(start);
+        }
+    }
 
-        if (ticket.getOutTime() == null || ticket.getOutTime().before(ticket.getInTime())) {
+    private void priceTicket(Ticket ticket, boolean discount) {
+        if (ticket.getInTimeMillis() == Ticket.NO_TIME) {
+            throw new IllegalArgumentException("In time missing");
+        }
+        if (ticket.isOpen() || ticket.getOutTimeMillis() < ticket.getInTimeMillis()) {
             throw new IllegalArgumentException("Out time provided incorrect : " + ticket.getOutTime());
         }
 
-        long durationInMillis = ticket.getOutTime().getTime() - ticket.getInTime().getTime();
-        double durationInMinutes = durationInMillis / (1000.0 * 60);
-        double durationInHours = durationInMillis / (1000.0 * 60 * 60);
+        CompiledTariff currentTariff = tariff;
+        long durationInMillis = ticket.getOutTimeMillis() - ticket.getInTimeMillis();
+        if (durationInMillis > currentTariff.getMaxDurationMillis()) {
+            throw new IllegalArgumentException("Parking duration too long : " + durationInMillis + "ms");
+        }
 
-        switch (ticket.getParkingSpot().getParkingType()) {
+        int type = ticket.getParkingSpot().getParkingType().ordinal();
+        ticket.setPriceCents(currentTariff.fareInCents(type, durationInMillis, discount, roundingMode));
+    }
 
-            case CAR:
-                if (durationInMinutes <= 30) {
-                    ticket.setPrice(0.0);
-                } else {
-                    ticket.setPrice(durationInHours * Fare.CAR_RATE_PER_HOUR);
-                }
-                break;
+    public void calculateFare(Ticket ticket) {
+        calculateFare(ticket, false);
+    }
 
-            case BIKE:
-                if (durationInMinutes <= 30) {
-                    ticket.setPrice(0.0);
-                } else {
-                    ticket.setPrice(durationInHours * Fare.BIKE_RATE_PER_HOUR);
-                }
-                break;
+    /**
+     * Prices a batch of tickets held in parallel arrays, writing each fare in
+     * cents to {@code pricesInCents[i]}. Gives the same results as
+     * {@link #calculateFare(Ticket, boolean)} without allocating anything per ticket.
+     *
+     * @param inTimes       entry times, epoch millis
+     * @param outTimes      exit times, epoch millis
+     * @param parkingTypes  {@link ParkingType#ordinal()} of each ticket's spot
+     * @param discounts     whether the recurring-user discount applies
+     * @param pricesInCents receives the fares
+     */
+    public void calculateFares(long[] inTimes, long[] outTimes, int[] parkingTypes, boolean[] discounts, long[] pricesInCents) {
+        long start = System.nanoTime();
+        try {
+            CompiledTariff batchTariff = tariff;
+            checkBatch(batchTariff, inTimes, outTimes, parkingTypes, discounts, pricesInCents);
+            calculateFares(batchTariff, inTimes, outTimes, parkingTypes, discounts, pricesInCents, 0, inTimes.length);
+        } catch (RuntimeException e) {
+            calculateFaresStats.error();
+            throw e;
+        } finally {
+            calculateFaresStats.record(start);
+        }
+    }
 
-            default:
-                throw new IllegalArgumentException("Unknown parking type.");
+    /**
+     * Same as {@link #calculateFares(long[], long[], int[], boolean[], long[])},
+     * splitting large batches over the common fork-join pool. The whole batch
+     * is checked first, so a bad ticket leaves every price untouched.
+     */
+    public void calculateFaresParallel(long[] inTimes, long[] outTimes, int[] parkingTypes, boolean[] discounts, long[] pricesInCents) {
+        long start = System.nanoTime();
+        try {
+            CompiledTariff batchTariff = tariff;
+            checkBatch(batchTariff, inTimes, outTimes, parkingTypes, discounts, pricesInCents);
+            ForkJoinPool.commonPool().invoke(new FareBatchTask(batchTariff, inTimes, outTimes, parkingTypes, discounts, pricesInCents, 0, inTimes.length));
+        } catch (RuntimeException e) {
+            calculateFaresStats.error();
+            throw e;
+        } finally {
+            calculateFaresStats.record(start);
         }
+    }
 
-        if (discount) {
-            ticket.setPrice(ticket.getPrice() * 0.95);
+    private void calculateFares(CompiledTariff batchTariff, long[] inTimes, long[] outTimes, int[] parkingTypes, boolean[] discounts,
+                                long[] pricesInCents, int from, int to) {
+        for (int i = from; i < to; i++) {
+            pricesInCents[i] = batchTariff.fareInCents(parkingTypes[i], outTimes[i] - inTimes[i], discounts[i], roundingMode);
         }
     }
 
-    public void calculateFare(Ticket ticket) {
-        calculateFare(ticket, false);
+    private static void checkBatch(CompiledTariff batchTariff, long[] inTimes, long[] outTimes, int[] parkingTypes, boolean[] discounts,
+                                   long[] pricesInCents) {
+        int size = inTimes.length;
+        if (outTimes.length != size || parkingTypes.length != size || discounts.length != size || pricesInCents.length != size) {
+            throw new IllegalArgumentException("Fare batch arrays must all have the same length");
+        }
+        long maxDurationMillis = batchTariff.getMaxDurationMillis();
+        int typeCount = batchTariff.getTypeCount();
+        for (int i = 0; i < size; i++) {
+            long durationInMillis = outTimes[i] - inTimes[i];
+            if (durationInMillis < 0 || durationInMillis > maxDurationMillis) {
+                throw new IllegalArgumentException("Out time provided incorrect at index " + i + " : " + outTimes[i]);
+            }
+            if (parkingTypes[i] < 0 || parkingTypes[i] >= typeCount) {
+                throw new IllegalArgumentException("Unknown parking type at index " + i + " : " + parkingTypes[i]);
+            }
+        }
+    }
+
+    private class FareBatchTask extends RecursiveAction {
+        private final CompiledTariff batchTariff;
+        private final long[] inTimes;
+        private final long[] outTimes;
+        private final int[] parkingTypes;
+        private final boolean[] discounts;
+        private final long[] pricesInCents;
+        private final int from;
+        private final int to;
+
+        FareBatchTask(CompiledTariff batchTariff, long[] inTimes, long[] outTimes, int[] parkingTypes, boolean[] discounts,
+                      long[] pricesInCents, int from, int to) {
+            this.batchTariff = batchTariff;
+            this.inTimes = inTimes;
+            this.outTimes = outTimes;
+            this.parkingTypes = parkingTypes;
+            this.discounts = discounts;
+            this.pricesInCents = pricesInCents;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= PARALLEL_CHUNK_SIZE) {
+                calculateFares(batchTariff, inTimes, outTimes, parkingTypes, discounts, pricesInCents, from, to);
+                return;
+            }
+            int middle = (from + to) >>> 1;
+            invokeAll(new FareBatchTask(batchTariff, inTimes, outTimes, parkingTypes, discounts, pricesInCents, from, middle),
+                    new FareBatchTask(batchTariff, inTimes, outTimes, parkingTypes, discounts, pricesInCents, middle, to));
+        }
     }
-}
\ No newline at end of file
+}
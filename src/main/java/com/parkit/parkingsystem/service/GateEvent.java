@@ -0,0 +1,114 @@
+package com.parkit.parkingsystem.service;
+
+import com.parkit.parkingsystem.constants.ParkingType;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * One gate request and its outcome. Instances are mutable and reused: the
+ * codec decodes every frame of a connection into the same event, so reading
+ * the wire creates no objects.
+ */
+public class GateEvent {
+
+    private int opcode;
+    private int correlationId;
+    private int gateId;
+    private long timestamp;
+    private ParkingType parkingType;
+    private final byte[] plate = new byte[GateEventCodec.MAX_PLATE_LENGTH];
+    private int plateLength;
+
+    private int status;
+    private int parkingNumber;
+    private long priceCents;
+
+    public int getOpcode() {
+        return opcode;
+    }
+
+    public void setOpcode(int opcode) {
+        this.opcode = opcode;
+    }
+
+    /**
+     * Chosen by the gate and echoed back in the response.
+     */
+    public int getCorrelationId() {
+        return correlationId;
+    }
+
+    public void setCorrelationId(int correlationId) {
+        this.correlationId = correlationId;
+    }
+
+    public int getGateId() {
+        return gateId;
+    }
+
+    public void setGateId(int gateId) {
+        this.gateId = gateId;
+    }
+
+    /**
+     * When the gate saw the vehicle, epoch millis.
+     */
+    public long getTimestamp() {
+        return timestamp;
+    }
+
+    public void setTimestamp(long timestamp) {
+        this.timestamp = timestamp;
+    }
+
+    public ParkingType getParkingType() {
+        return parkingType;
+    }
+
+    public void setParkingType(ParkingType parkingType) {
+        this.parkingType = parkingType;
+    }
+
+    byte[] plateBytes() {
+        return plate;
+    }
+
+    int getPlateLength() {
+        return plateLength;
+    }
+
+    void setPlateLength(int plateLength) {
+        this.plateLength = plateLength;
+    }
+
+    public String getVehicleRegNumber() {
+        return new String(plate, 0, plateLength, StandardCharsets.US_ASCII);
+    }
+
+    public void setVehicleRegNumber(String vehicleRegNumber) {
+        byte[] bytes = vehicleRegNumber.getBytes(StandardCharsets.US_ASCII);
+        if (bytes.length == 0 || bytes.length > plate.length) {
+            throw new IllegalArgumentException("Plate must be 1 to " + plate.length + " characters : " + vehicleRegNumber);
+        }
+        System.arraycopy(bytes, 0, plate, 0, bytes.length);
+        this.plateLength = bytes.length;
+    }
+
+    public int getStatus() {
+        return status;
+    }
+
+    public int getParkingNumber() {
+        return parkingNumber;
+    }
+
+    public long getPriceCents() {
+        return priceCents;
+    }
+
+    public void setResult(int status, int parkingNumber, long priceCents) {
+        this.status = status;
+        this.parkingNumber = parkingNumber;
+        this.priceCents = priceCents;
+    }
+}
@@ -0,0 +1,133 @@
+package com.parkit.parkingsystem.service;
+
+import com.parkit.parkingsystem.constants.ParkingType;
+
+import java.net.ProtocolException;
+import java.nio.ByteBuffer;
+
+/**
+ * Wire format of the gate protocol. Every frame is a big-endian {@code int}
+ * length followed by that many bytes.
+ * <pre>
+ * request  : opcode(1) correlationId(4) gateId(2) timestamp(8) vehicleType(1) plateLength(1) plate(1..10, ASCII)
+ * response : opcode(1) correlationId(4) status(1) parkingNumber(4) priceCents(8)
+ * </pre>
+ * {@code vehicleType} is the {@link ParkingType} ordinal, ignored on exit.
+ * Decoding leaves the buffer untouched until a whole frame is available, so
+ * several pipelined frames can sit in one buffer.
+ */
+public final class GateEventCodec {
+
+    public static final int OP_ENTRY = 1;
+    public static final int OP_EXIT = 2;
+    public static final int OP_FARE = 3;
+
+    public static final int STATUS_OK = 0;
+    public static final int STATUS_NO_SPOT_AVAILABLE = 1;
+    public static final int STATUS_NO_TICKET_FOUND = 2;
+    public static final int STATUS_BUSY = 3;
+    public static final int STATUS_ERROR = 4;
+    public static final int STATUS_BAD_REQUEST = 5;
+
+    public static final int MAX_PLATE_LENGTH = 10;
+
+    static final int LENGTH_PREFIX = Integer.BYTES;
+    private static final int REQUEST_HEADER = 1 + 4 + 2 + 8 + 1 + 1;
+    static final int MAX_REQUEST_FRAME = LENGTH_PREFIX + REQUEST_HEADER + MAX_PLATE_LENGTH;
+    private static final int RESPONSE_BODY = 1 + 4 + 1 + 4 + 8;
+    public static final int RESPONSE_FRAME = LENGTH_PREFIX + RESPONSE_BODY;
+
+    private static final ParkingType[] PARKING_TYPES = ParkingType.values();
+
+    private GateEventCodec() {
+    }
+
+    /**
+     * Reads the next request from {@code in} (in read mode) into {@code event}.
+     *
+     * @return false, consuming nothing, if the frame is not complete yet
+     * @throws ProtocolException if the frame is malformed; the stream cannot be resynchronised
+     */
+    public static boolean decodeRequest(ByteBuffer in, GateEvent event) throws ProtocolException {
+        if (in.remaining() < LENGTH_PREFIX) {
+            return false;
+        }
+        int start = in.position();
+        int length = in.getInt(start);
+        if (length < REQUEST_HEADER + 1 || length > REQUEST_HEADER + MAX_PLATE_LENGTH) {
+            throw new ProtocolException("Invalid request length : " + length);
+        }
+        if (in.remaining() < LENGTH_PREFIX + length) {
+            return false;
+        }
+        int opcode = in.get(start + 4);
+        if (opcode != OP_ENTRY && opcode != OP_EXIT && opcode != OP_FARE) {
+            throw new ProtocolException("Unknown opcode : " + opcode);
+        }
+        int plateLength = in.get(start + 20);
+        if (plateLength != length - REQUEST_HEADER) {
+            throw new ProtocolException("Plate length " + plateLength + " does not match frame length " + length);
+        }
+        int vehicleType = in.get(start + 19);
+
+        event.setOpcode(opcode);
+        event.setCorrelationId(in.getInt(start + 5));
+        event.setGateId(Short.toUnsignedInt(in.getShort(start + 9)));
+        event.setTimestamp(in.getLong(start + 11));
+        event.setParkingType(vehicleType >= 0 && vehicleType < PARKING_TYPES.length ? PARKING_TYPES[vehicleType] : null);
+        in.get(start + 21, event.plateBytes(), 0, plateLength);
+        event.setPlateLength(plateLength);
+        in.position(start + LENGTH_PREFIX + length);
+        return true;
+    }
+
+    /**
+     * Writes the outcome held by {@code event} to {@code out}, which needs
+     * {@link #RESPONSE_FRAME} bytes remaining.
+     */
+    public static void encodeResponse(GateEvent event, ByteBuffer out) {
+        out.putInt(RESPONSE_BODY)
+                .put((byte) event.getOpcode())
+                .putInt(event.getCorrelationId())
+                .put((byte) event.getStatus())
+                .putInt(event.getParkingNumber())
+                .putLong(event.getPriceCents());
+    }
+
+    /**
+     * Client side of {@link #decodeRequest}.
+     */
+    public static void encodeRequest(GateEvent event, ByteBuffer out) {
+        int plateLength = event.getPlateLength();
+        ParkingType parkingType = event.getParkingType();
+        out.putInt(REQUEST_HEADER + plateLength)
+                .put((byte) event.getOpcode())
+                .putInt(event.getCorrelationId())
+                .putShort((short) event.getGateId())
+                .putLong(event.getTimestamp())
+                .put((byte) (parkingType == null ? -1 : parkingType.ordinal()))
+                .put((byte) plateLength)
+                .put(event.plateBytes(), 0, plateLength);
+    }
+
+    /**
+     * Client side of {@link #encodeResponse}.
+     *
+     * @return false, consuming nothing, if the frame is not complete yet
+     */
+    public static boolean decodeResponse(ByteBuffer in, GateEvent event) throws ProtocolException {
+        if (in.remaining() < RESPONSE_FRAME) {
+            return false;
+        }
+        int length = in.getInt();
+        if (length != RESPONSE_BODY) {
+            throw new ProtocolException("Invalid response length : " + length);
+        }
+        event.setOpcode(in.get());
+        event.setCorrelationId(in.getInt());
+        int status = in.get();
+        int parkingNumber = in.getInt();
+        event.setResult(status, parkingNumber, in.getLong());
+        return true;
+    }
+}
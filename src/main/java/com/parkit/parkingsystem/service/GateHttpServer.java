@@ -0,0 +1,272 @@
+package com.parkit.parkingsystem.service;
+
+import com.parkit.parkingsystem.constants.ParkingType;
+import com.parkit.parkingsystem.metrics.Metrics;
+import com.parkit.parkingsystem.model.EntryResult;
+import com.parkit.parkingsystem.model.ExitResult;
+import com.parkit.parkingsystem.model.OccupancySnapshot;
+import com.parkit.parkingsystem.model.Ticket;
+import com.parkit.parkingsystem.util.Money;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * HTTP/JSON front end for the gates, on the JDK's built-in server. Every
+ * request runs on its own virtual thread, so one JVM serves all the gates.
+ * <ul>
+ *     <li>{@code POST /entry?type=CAR&plate=AB123} parks a vehicle</li>
+ *     <li>{@code POST /exit?plate=AB123} closes and prices its ticket</li>
+ *     <li>{@code GET /fare?plate=AB123} shows what it would pay now</li>
+ *     <li>{@code GET /occupancy} counts the free spots of each type</li>
+ *     <li>{@code GET /metrics} dumps the operation latencies for Prometheus</li>
+ * </ul>
+ * Parameters may also be sent as a form-encoded body.
+ */
+public class GateHttpServer {
+
+    private static final Logger logger = LogManager.getLogger("GateHttpServer");
+
+    private final ParkingGate parkingGate;
+    private final HttpServer server;
+    private final ExecutorService executor;
+
+    public GateHttpServer(ParkingGate parkingGate, InetSocketAddress address) throws IOException {
+        this.parkingGate = parkingGate;
+        this.server = HttpServer.create(address, 0);
+        this.executor = Executors.newVirtualThreadPerTaskExecutor();
+        server.setExecutor(executor);
+        server.createContext("/entry", handler("POST", this::entry));
+        server.createContext("/exit", handler("POST", this::exit));
+        server.createContext("/fare", handler("GET", this::fare));
+        server.createContext("/occupancy", handler("GET", this::occupancy));
+        server.createContext("/metrics", this::metrics);
+    }
+
+    public void start() {
+        server.start();
+        logger.info("Gate API listening on port " + getPort());
+    }
+
+    public void stop(int delaySeconds) {
+        server.stop(delaySeconds);
+        executor.close();
+    }
+
+    public int getPort() {
+        return server.getAddress().getPort();
+    }
+
+    private Response entry(Map<String, String> params) {
+        ParkingType parkingType;
+        try {
+            parkingType = ParkingType.valueOf(required(params, "type").toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            return Response.error(400, "Unknown vehicle type");
+        }
+        String vehicleRegNumber = required(params, "plate");
+
+        EntryResult result = parkingGate.processIncomingVehicle(parkingType, vehicleRegNumber);
+        switch (result.getStatus()) {
+            case SUCCESS:
+                Ticket ticket = result.getTicket();
+                return new Response(201, "{\"ticketId\":" + ticket.getId()
+                        + ",\"vehicleRegNumber\":" + quote(ticket.getVehicleRegNumber())
+                        + ",\"parkingNumber\":" + ticket.getParkingSpot().getId()
+                        + ",\"parkingType\":" + quote(ticket.getParkingSpot().getParkingType().name())
+                        + ",\"inTime\":" + quote(ticket.getInTime())
+                        + ",\"recurringUser\":" + (result.getNbTicket() > 0) + "}");
+            case NO_SPOT_AVAILABLE:
+                return Response.error(409, "No parking spot available");
+            case CONTENTION:
+                return Response.error(503, "Parking spots busy, try again");
+            default:
+                return Response.error(500, "Unable to register vehicle entry");
+        }
+    }
+
+    private Response exit(Map<String, String> params) {
+        return priced(parkingGate.processExitingVehicle(required(params, "plate")));
+    }
+
+    private Response fare(Map<String, String> params) {
+        return priced(parkingGate.previewFare(required(params, "plate")));
+    }
+
+    private Response occupancy(Map<String, String> params) {
+        StringBuilder json = new StringBuilder("{");
+        OccupancySnapshot occupancy = parkingGate.getOccupancy();
+        if (occupancy != null) {
+            for (ParkingType parkingType : ParkingType.values()) {
+                if (json.length() > 1) {
+                    json.append(',');
+                }
+                json.append(quote(parkingType.name())).append(":{\"available\":").append(occupancy.getAvailable(parkingType))
+                        .append(",\"occupied\":").append(occupancy.getOccupied(parkingType))
+                        .append(",\"capacity\":").append(occupancy.getCapacity(parkingType)).append('}');
+            }
+            return new Response(200, json.append('}').toString());
+        }
+        for (Map.Entry<ParkingType, Integer> entry : parkingGate.getAvailableSpots().entrySet()) {
+            if (json.length() > 1) {
+                json.append(',');
+            }
+            json.append(quote(entry.getKey().name())).append(":{\"available\":").append(entry.getValue()).append('}');
+        }
+        return new Response(200, json.append('}').toString());
+    }
+
+    private Response priced(ExitResult result) {
+        switch (result.getStatus()) {
+            case SUCCESS:
+                Ticket ticket = result.getTicket();
+                return new Response(200, "{\"ticketId\":" + ticket.getId()
+                        + ",\"vehicleRegNumber\":" + quote(ticket.getVehicleRegNumber())
+                        + ",\"parkingNumber\":" + ticket.getParkingSpot().getId()
+                        + ",\"inTime\":" + quote(ticket.getInTime())
+                        + ",\"outTime\":" + quote(ticket.getOutTime())
+                        + ",\"price\":" + quote(Money.format(ticket.getPriceCents()))
+                        + ",\"priceCents\":" + ticket.getPriceCents() + "}");
+            case NO_TICKET_FOUND:
+                return Response.error(404, "No ticket found for this vehicle");
+            default:
+                return Response.error(500, "Unable to price ticket");
+        }
+    }
+
+    private HttpHandler handler(String method, Endpoint endpoint) {
+        return exchange -> {
+            Response response;
+            try {
+                if (!method.equals(exchange.getRequestMethod())) {
+                    exchange.getResponseHeaders().set("Allow", method);
+                    response = Response.error(405, "Method not allowed");
+                } else {
+                    response = endpoint.handle(readParams(exchange));
+                }
+            } catch (MissingParameterException e) {
+                response = Response.error(400, e.getMessage());
+            } catch (Exception e) {
+                logger.error("Error handling " + exchange.getRequestURI(), e);
+                response = Response.error(500, "Internal error");
+            }
+            send(exchange, response);
+        };
+    }
+
+    private void metrics(HttpExchange exchange) throws IOException {
+        if (!"GET".equals(exchange.getRequestMethod())) {
+            exchange.getResponseHeaders().set("Allow", "GET");
+            send(exchange, Response.error(405, "Method not allowed"));
+            return;
+        }
+        byte[] body = Metrics.toPrometheusText().getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "text/plain; version=0.0.4; charset=utf-8");
+        exchange.sendResponseHeaders(200, body.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(body);
+        }
+    }
+
+    private static Map<String, String> readParams(HttpExchange exchange) throws IOException {
+        Map<String, String> params = new HashMap<>();
+        parseForm(exchange.getRequestURI().getRawQuery(), params);
+        try (InputStream body = exchange.getRequestBody()) {
+            String contentType = exchange.getRequestHeaders().getFirst("Content-Type");
+            if (contentType != null && contentType.startsWith("application/x-www-form-urlencoded")) {
+                parseForm(new String(body.readAllBytes(), StandardCharsets.UTF_8), params);
+            }
+        }
+        return params;
+    }
+
+    private static void parseForm(String form, Map<String, String> params) {
+        if (form == null || form.isEmpty()) {
+            return;
+        }
+        for (String pair : form.split("&")) {
+            int equals = pair.indexOf('=');
+            String name = equals < 0 ? pair : pair.substring(0, equals);
+            String value = equals < 0 ? "" : pair.substring(equals + 1);
+            params.put(URLDecoder.decode(name, StandardCharsets.UTF_8), URLDecoder.decode(value, StandardCharsets.UTF_8));
+        }
+    }
+
+    private static String required(Map<String, String> params, String name) {
+        String value = params.get(name);
+        if (value == null || value.isBlank()) {
+            throw new MissingParameterException("Missing parameter: " + name);
+        }
+        return value.trim();
+    }
+
+    private static void send(HttpExchange exchange, Response response) throws IOException {
+        byte[] body = response.body.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+        exchange.sendResponseHeaders(response.status, body.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(body);
+        }
+    }
+
+    private static String quote(Date date) {
+        return date == null ? "null" : quote(date.toInstant().toString());
+    }
+
+    private static String quote(String value) {
+        if (value == null) {
+            return "null";
+        }
+        StringBuilder json = new StringBuilder(value.length() + 2).append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '"' || c == '\\') {
+                json.append('\\').append(c);
+            } else if (c < 0x20) {
+                json.append(String.format("\\u%04x", (int) c));
+            } else {
+                json.append(c);
+            }
+        }
+        return json.append('"').toString();
+    }
+
+    private interface Endpoint {
+        Response handle(Map<String, String> params);
+    }
+
+    private static class Response {
+        private final int status;
+        private final String body;
+
+        private Response(int status, String body) {
+            this.status = status;
+            this.body = body;
+        }
+
+        private static Response error(int status, String message) {
+            return new Response(status, "{\"error\":" + quote(message) + "}");
+        }
+    }
+
+    private static class MissingParameterException extends RuntimeException {
+        private MissingParameterException(String message) {
+            super(message);
+        }
+    }
+}
@@ -0,0 +1,393 @@
+package com.parkit.parkingsystem.service;
+
+import com.parkit.parkingsystem.model.EntryResult;
+import com.parkit.parkingsystem.model.ExitResult;
+import com.parkit.parkingsystem.util.DirectBufferPool;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.ProtocolException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedSelectorException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Serves the binary {@link GateEventCodec gate protocol}. One selector thread
+ * does all the socket I/O into pooled direct buffers. Each connection's
+ * events are decoded and handled in order on a virtual thread, because
+ * {@link ParkingService} blocks on the database. Gates may pipeline requests;
+ * responses come back on the same channel in request order.
+ */
+public class GateProtocolServer implements Closeable {
+
+    private static final Logger logger = LogManager.getLogger("GateProtocolServer");
+
+    private static final int BUFFER_SIZE = 16 * 1024;
+
+    private final ParkingGate parkingGate;
+    private final DirectBufferPool bufferPool;
+    private final ServerSocketChannel serverChannel;
+    private final Selector selector;
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+    private final Thread selectorThread;
+    private volatile boolean running;
+
+    public GateProtocolServer(ParkingGate parkingGate, InetSocketAddress address) throws IOException {
+        this(parkingGate, address, new DirectBufferPool(BUFFER_SIZE, 256));
+    }
+
+    public GateProtocolServer(ParkingGate parkingGate, InetSocketAddress address, DirectBufferPool bufferPool) throws IOException {
+        if (bufferPool.getBufferSize() < GateEventCodec.MAX_REQUEST_FRAME + GateEventCodec.RESPONSE_FRAME) {
+            throw new IllegalArgumentException("Buffers too small for a frame : " + bufferPool.getBufferSize());
+        }
+        this.parkingGate = parkingGate;
+        this.bufferPool = bufferPool;
+        this.selector = Selector.open();
+        this.serverChannel = ServerSocketChannel.open();
+        serverChannel.bind(address);
+        serverChannel.configureBlocking(false);
+        serverChannel.register(selector, SelectionKey.OP_ACCEPT);
+        this.selectorThread = new Thread(this::selectLoop, "gate-protocol-selector");
+    }
+
+    public void start() {
+        running = true;
+        selectorThread.start();
+        logger.info("Gate protocol listening on port " + getPort());
+    }
+
+    public int getPort() {
+        return serverChannel.socket().getLocalPort();
+    }
+
+    @Override
+    public void close() throws IOException {
+        running = false;
+        selector.wakeup();
+        try {
+            selectorThread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        for (SelectionKey key : new ArrayList<>(selector.keys())) {
+            if (key.attachment() instanceof Connection) {
+                ((Connection) key.attachment()).close();
+            }
+        }
+        selector.close();
+        serverChannel.close();
+        executor.close();
+    }
+
+    private void selectLoop() {
+        try {
+            while (running) {
+                selector.select();
+                Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+                while (keys.hasNext()) {
+                    SelectionKey key = keys.next();
+                    keys.remove();
+                    if (!key.isValid()) {
+                        continue;
+                    }
+                    if (key.isAcceptable()) {
+                        accept();
+                        continue;
+                    }
+                    Connection connection = (Connection) key.attachment();
+                    try {
+                        if (key.isReadable()) {
+                            connection.onReadable();
+                        }
+                        if (key.isValid() && key.isWritable()) {
+                            connection.onWritable();
+                        }
+                    } catch (IOException e) {
+                        logger.error("Closing gate connection after I/O error", e);
+                        connection.close();
+                    }
+                }
+            }
+        } catch (IOException | ClosedSelectorException e) {
+            if (running) {
+                logger.error("Gate protocol selector stopped", e);
+            }
+        }
+    }
+
+    private void accept() throws IOException {
+        SocketChannel channel = serverChannel.accept();
+        if (channel == null) {
+            return;
+        }
+        channel.configureBlocking(false);
+        channel.socket().setTcpNoDelay(true);
+        Connection connection = new Connection(channel);
+        connection.key = channel.register(selector, SelectionKey.OP_READ, connection);
+    }
+
+    private void handle(GateEvent event) {
+        try {
+            switch (event.getOpcode()) {
+                case GateEventCodec.OP_ENTRY:
+                    if (event.getParkingType() == null) {
+                        event.setResult(GateEventCodec.STATUS_BAD_REQUEST, 0, 0);
+                        return;
+                    }
+                    EntryResult entry = parkingGate.processIncomingVehicle(event.getParkingType(), event.getVehicleRegNumber());
+                    event.setResult(entryStatus(entry.getStatus()),
+                            entry.isSuccess() ? entry.getTicket().getParkingSpot().getId() : 0, 0);
+                    return;
+                case GateEventCodec.OP_EXIT:
+                    priced(event, parkingGate.processExitingVehicle(event.getVehicleRegNumber()));
+                    return;
+                default:
+                    priced(event, parkingGate.previewFare(event.getVehicleRegNumber()));
+            }
+        } catch (RuntimeException e) {
+            logger.error("Error handling gate event from gate " + event.getGateId(), e);
+            event.setResult(GateEventCodec.STATUS_ERROR, 0, 0);
+        }
+    }
+
+    private static void priced(GateEvent event, ExitResult result) {
+        switch (result.getStatus()) {
+            case SUCCESS:
+                event.setResult(GateEventCodec.STATUS_OK, result.getTicket().getParkingSpot().getId(), result.getTicket().getPriceCents());
+                break;
+            case NO_TICKET_FOUND:
+                event.setResult(GateEventCodec.STATUS_NO_TICKET_FOUND, 0, 0);
+                break;
+            default:
+                event.setResult(GateEventCodec.STATUS_ERROR, 0, 0);
+        }
+    }
+
+    private static int entryStatus(EntryResult.Status status) {
+        switch (status) {
+            case SUCCESS:
+                return GateEventCodec.STATUS_OK;
+            case NO_SPOT_AVAILABLE:
+                return GateEventCodec.STATUS_NO_SPOT_AVAILABLE;
+            case CONTENTION:
+                return GateEventCodec.STATUS_BUSY;
+            default:
+                return GateEventCodec.STATUS_ERROR;
+        }
+    }
+
+    /**
+     * Buffers are kept in write mode (position at the end of the data) and
+     * only touched under {@link #lock}, by the selector thread for socket I/O
+     * and by at most one worker for decoding and encoding.
+     */
+    private class Connection {
+
+        private final SocketChannel channel;
+        private final ByteBuffer in = bufferPool.acquire();
+        private final ByteBuffer out = bufferPool.acquire();
+        private final GateEvent event = new GateEvent();
+        private final ReentrantLock lock = new ReentrantLock();
+        private final Condition outputDrained = lock.newCondition();
+        private SelectionKey key;
+        private boolean processing;
+        private boolean inputShutdown;
+        private boolean closed;
+
+        Connection(SocketChannel channel) {
+            this.channel = channel;
+        }
+
+        void onReadable() throws IOException {
+            lock.lock();
+            try {
+                if (channel.read(in) < 0) {
+                    //the gate is done sending, answer what it sent before closing
+                    inputShutdown = true;
+                    key.interestOpsAnd(~SelectionKey.OP_READ);
+                    if (!processing && in.position() > 0) {
+                        processing = true;
+                        executor.execute(this::process);
+                    }
+                    closeIfAnswered();
+                    return;
+                }
+                if (!in.hasRemaining()) {
+                    //the worker is behind, stop reading until it catches up
+                    key.interestOpsAnd(~SelectionKey.OP_READ);
+                }
+                if (!processing && in.position() > 0) {
+                    processing = true;
+                    executor.execute(this::process);
+                }
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        void onWritable() throws IOException {
+            lock.lock();
+            try {
+                flush();
+                outputDrained.signalAll();
+                closeIfAnswered();
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        private void process() {
+            try {
+                while (nextEvent()) {
+                    handle(event);
+                    if (!writeResponse()) {
+                        return;
+                    }
+                }
+            } catch (ProtocolException e) {
+                logger.error("Closing gate connection after malformed frame", e);
+                closeFromWorker();
+            } catch (IOException e) {
+                logger.error("Closing gate connection after I/O error", e);
+                closeFromWorker();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                closeFromWorker();
+            }
+        }
+
+        private boolean nextEvent() throws ProtocolException {
+            lock.lock();
+            try {
+                if (!closed) {
+                    in.flip();
+                    boolean decoded;
+                    try {
+                        decoded = GateEventCodec.decodeRequest(in, event);
+                    } finally {
+                        in.compact();
+                    }
+                    if (decoded) {
+                        if (!inputShutdown && key.isValid() && (key.interestOps() & SelectionKey.OP_READ) == 0) {
+                            key.interestOpsOr(SelectionKey.OP_READ);
+                            selector.wakeup();
+                        }
+                        return true;
+                    }
+                }
+                processing = false;
+                if (closed) {
+                    releaseBuffers();
+                } else {
+                    closeIfAnswered();
+                }
+                return false;
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        private boolean writeResponse() throws IOException, InterruptedException {
+            lock.lock();
+            try {
+                while (!closed && out.remaining() < GateEventCodec.RESPONSE_FRAME) {
+                    outputDrained.await();
+                }
+                if (closed) {
+                    processing = false;
+                    releaseBuffers();
+                    return false;
+                }
+                GateEventCodec.encodeResponse(event, out);
+                flush();
+                return true;
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        private void flush() throws IOException {
+            out.flip();
+            try {
+                channel.write(out);
+            } finally {
+                out.compact();
+            }
+            if (!key.isValid()) {
+                return;
+            }
+            if (out.position() > 0) {
+                key.interestOpsOr(SelectionKey.OP_WRITE);
+                selector.wakeup();
+            } else if ((key.interestOps() & SelectionKey.OP_WRITE) != 0) {
+                key.interestOpsAnd(~SelectionKey.OP_WRITE);
+            }
+        }
+
+        /**
+         * Closes a connection whose gate shut down its output once every
+         * request it sent is answered and the answers are written. An
+         * incomplete frame left in the input is dropped.
+         */
+        private void closeIfAnswered() {
+            if (inputShutdown && !processing && out.position() == 0) {
+                close();
+            }
+        }
+
+        private void closeFromWorker() {
+            lock.lock();
+            try {
+                processing = false;
+                if (closed) {
+                    releaseBuffers();
+                } else {
+                    close();
+                }
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        void close() {
+            lock.lock();
+            try {
+                if (closed) {
+                    return;
+                }
+                closed = true;
+                if (key != null) {
+                    key.cancel();
+                }
+                try {
+                    channel.close();
+                } catch (IOException e) {
+                    logger.error("Error while closing gate connection", e);
+                }
+                outputDrained.signalAll();
+                if (!processing) {
+                    releaseBuffers();
+                }
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        private void releaseBuffers() {
+            bufferPool.release(in);
+            bufferPool.release(out);
+        }
+    }
+}
@@ -0,0 +1,84 @@
+package com.parkit.parkingsystem.service;
+
+import com.parkit.parkingsystem.config.ShardSettings;
+import com.parkit.parkingsystem.dao.TicketRepository;
+import com.parkit.parkingsystem.util.InputReaderUtil;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.file.Paths;
+
+/**
+ * Runs the network front ends over one shared {@link ParkingService}, or a
+ * {@link ShardRouter} when {@code parkit.shards} is set, wired from the
+ * {@code parkit.*} system properties, until the JVM shuts down.
+ */
+public final class GateServers {
+
+    private static final Logger logger = LogManager.getLogger("GateServers");
+
+    public static final int DISABLED = -1;
+
+    private GateServers() {
+    }
+
+    /**
+     * @param httpPort port of the {@link GateHttpServer}, or {@link #DISABLED}
+     * @param gatePort port of the {@link GateProtocolServer}, or {@link #DISABLED}
+     */
+    public static void serve(int httpPort, int gatePort) throws IOException {
+        ShardRouter shardRouter = null;
+        TicketRepository ticketRepository = null;
+        ParkingGate parkingGate;
+        if (new ShardSettings().isEnabled()) {
+            shardRouter = ParkingServiceFactory.createShardRouter(new InputReaderUtil());
+            parkingGate = shardRouter;
+        } else {
+            ticketRepository = ParkingServiceFactory.createTicketRepository();
+            parkingGate = ParkingServiceFactory.createParkingService(new InputReaderUtil(), ticketRepository);
+        }
+        String tariffFile = System.getProperty("parkit.tariff.file");
+        TariffFileReloader tariffFileReloader = tariffFile == null ? null
+                : new TariffFileReloader(Paths.get(tariffFile), ParkingService.getFareCalculatorService());
+        if (tariffFileReloader != null) {
+            tariffFileReloader.start(Long.getLong("parkit.tariff.reloadIntervalMillis", 5_000L));
+        }
+
+        GateHttpServer httpServer = httpPort == DISABLED ? null
+                : new GateHttpServer(parkingGate, new InetSocketAddress(httpPort));
+        GateProtocolServer protocolServer = gatePort == DISABLED ? null
+                : new GateProtocolServer(parkingGate, new InetSocketAddress(gatePort));
+
+        ShardRouter routerToClose = shardRouter;
+        TicketRepository repositoryToClose = ticketRepository;
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            if (tariffFileReloader != null) {
+                tariffFileReloader.shutdown();
+            }
+            if (httpServer != null) {
+                httpServer.stop(1);
+            }
+            if (protocolServer != null) {
+                try {
+                    protocolServer.close();
+                } catch (IOException e) {
+                    logger.error("Error while closing the gate protocol server", e);
+                }
+            }
+            if (routerToClose != null) {
+                ParkingServiceFactory.shutdown(routerToClose);
+            } else {
+                ParkingServiceFactory.shutdown(repositoryToClose);
+            }
+        }, "gate-servers-shutdown"));
+
+        if (httpServer != null) {
+            httpServer.start();
+        }
+        if (protocolServer != null) {
+            protocolServer.start();
+        }
+    }
+}
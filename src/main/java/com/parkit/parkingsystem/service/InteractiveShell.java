@@ -1,11 +1,12 @@
 package com.parkit.parkingsystem.service;
 
-import com.parkit.parkingsystem.dao.ParkingSpotDAO;
-import com.parkit.parkingsystem.dao.TicketDAO;
+import com.parkit.parkingsystem.dao.TicketRepository;
 import com.parkit.parkingsystem.util.InputReaderUtil;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
+import java.nio.file.Paths;
+
 public class InteractiveShell {
 
     private static final Logger logger = LogManager.getLogger("InteractiveShell");
@@ -16,11 +17,19 @@ public class InteractiveShell {
 
         boolean continueApp = true;
         InputReaderUtil inputReaderUtil = new InputReaderUtil();
-        ParkingSpotDAO parkingSpotDAO = new ParkingSpotDAO();
-        TicketDAO ticketDAO = new TicketDAO();
-        ParkingService parkingService = new ParkingService(inputReaderUtil, parkingSpotDAO, ticketDAO);
+        TicketRepository ticketRepository = ParkingServiceFactory.createTicketRepository();
+        ParkingService parkingService = ParkingServiceFactory.createParkingService(inputReaderUtil, ticketRepository);
+
+        TariffFileReloader tariffFileReloader = null;
+        String tariffFile = System.getProperty("parkit.tariff.file");
+        if (tariffFile != null) {
+            tariffFileReloader = new TariffFileReloader(Paths.get(tariffFile), ParkingService.getFareCalculatorService());
+        }
 
         while(continueApp){
+            if (tariffFileReloader != null) {
+                tariffFileReloader.reloadIfModified();
+            }
             loadMenu();
             int option = inputReaderUtil.readSelection();
             switch(option){
@@ -35,6 +44,7 @@ public class InteractiveShell {
                 case 3: {
                     System.out.println("Exiting from the system!");
                     continueApp = false;
+                    ParkingServiceFactory.shutdown(ticketRepository);
                     break;
                 }
                 default: System.out.println("Unsupported option. Please enter a number corresponding to the provided menu");
@@ -0,0 +1,88 @@
+package com.parkit.parkingsystem.service;
+
+import com.parkit.parkingsystem.constants.ParkingType;
+import com.parkit.parkingsystem.model.OccupancySnapshot;
+import com.parkit.parkingsystem.model.ParkingSpot;
+
+import java.util.Collection;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Live count of the spots taken per {@link ParkingType}, kept by
+ * {@link ParkingService} on every entry and exit so that displays read the
+ * occupancy without querying the database. Each type counts in a
+ * {@link LongAdder}, which gates entering at once do not contend on, and
+ * reads only sum the adders, without locking.
+ * <p>
+ * Counts start from the spots loaded at startup, see {@link #reconcile}.
+ */
+public class OccupancyCounters {
+
+    private static final ParkingType[] PARKING_TYPES = ParkingType.values();
+
+    private final LongAdder[] occupied = new LongAdder[PARKING_TYPES.length];
+    private volatile int[] capacity = new int[PARKING_TYPES.length];
+
+    public OccupancyCounters() {
+        for (int i = 0; i < occupied.length; i++) {
+            occupied[i] = new LongAdder();
+        }
+    }
+
+    public static OccupancyCounters of(Collection<ParkingSpot> parkingSpots) {
+        OccupancyCounters occupancyCounters = new OccupancyCounters();
+        occupancyCounters.reconcile(parkingSpots);
+        return occupancyCounters;
+    }
+
+    /**
+     * Resets capacity and counts to these spots and their availability.
+     * Entries and exits counted while this runs may be lost, so call it
+     * before traffic starts.
+     */
+    public void reconcile(Collection<ParkingSpot> parkingSpots) {
+        int[] newCapacity = new int[PARKING_TYPES.length];
+        long[] newOccupied = new long[PARKING_TYPES.length];
+        for (ParkingSpot parkingSpot : parkingSpots) {
+            int type = parkingSpot.getParkingType().ordinal();
+            newCapacity[type]++;
+            if (!parkingSpot.isAvailable()) {
+                newOccupied[type]++;
+            }
+        }
+        for (int i = 0; i < occupied.length; i++) {
+            occupied[i].reset();
+            occupied[i].add(newOccupied[i]);
+        }
+        capacity = newCapacity;
+    }
+
+    public void entered(ParkingType parkingType) {
+        occupied[parkingType.ordinal()].increment();
+    }
+
+    public void exited(ParkingType parkingType) {
+        occupied[parkingType.ordinal()].decrement();
+    }
+
+    public int getCapacity(ParkingType parkingType) {
+        return capacity[parkingType.ordinal()];
+    }
+
+    public int getOccupied(ParkingType parkingType) {
+        return (int) Math.max(0, occupied[parkingType.ordinal()].sum());
+    }
+
+    public int getAvailable(ParkingType parkingType) {
+        return Math.max(0, getCapacity(parkingType) - getOccupied(parkingType));
+    }
+
+    public OccupancySnapshot snapshot() {
+        int[] capacity = this.capacity;
+        int[] occupied = new int[PARKING_TYPES.length];
+        for (ParkingType parkingType : PARKING_TYPES) {
+            occupied[parkingType.ordinal()] = getOccupied(parkingType);
+        }
+        return new OccupancySnapshot(capacity, occupied, System.currentTimeMillis());
+    }
+}
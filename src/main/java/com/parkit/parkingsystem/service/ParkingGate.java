@@ -0,0 +1,54 @@
+package com.parkit.parkingsystem.service;
+
+import com.parkit.parkingsystem.constants.ParkingType;
+import com.parkit.parkingsystem.model.EntryResult;
+import com.parkit.parkingsystem.model.ExitResult;
+import com.parkit.parkingsystem.model.OccupancySnapshot;
+
+import java.util.Date;
+import java.util.Map;
+
+/**
+ * The parking as the gates and their front ends see it, whether one
+ * {@link ParkingService} or a {@link ShardRouter} over several.
+ */
+public interface ParkingGate {
+
+    /**
+     * Parks a vehicle whose type and plate are already known.
+     */
+    EntryResult processIncomingVehicle(ParkingType parkingType, String vehicleRegNumber);
+
+    /**
+     * Same as {@link #processIncomingVehicle(ParkingType, String)} with the
+     * entry time given, e.g. when replaying recorded gate events.
+     */
+    EntryResult processIncomingVehicle(ParkingType parkingType, String vehicleRegNumber, Date inTime);
+
+    /**
+     * Closes and prices the ticket of a vehicle leaving, then frees its spot.
+     */
+    ExitResult processExitingVehicle(String vehicleRegNumber);
+
+    /**
+     * Same as {@link #processExitingVehicle(String)} with the exit time given.
+     */
+    ExitResult processExitingVehicle(String vehicleRegNumber, Date outTime);
+
+    /**
+     * What the vehicle would pay if it left now. Nothing is written.
+     */
+    ExitResult previewFare(String vehicleRegNumber);
+
+    /**
+     * Number of free spots of each type, -1 where it could not be read.
+     */
+    Map<ParkingType, Integer> getAvailableSpots();
+
+    /**
+     * Spots taken and in total per type.
+     *
+     * @return null if not counted
+     */
+    OccupancySnapshot getOccupancy();
+}
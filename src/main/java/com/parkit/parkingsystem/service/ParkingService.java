@@ -1,69 +1,253 @@
 package com.parkit.parkingsystem.service;
 
 import com.parkit.parkingsystem.constants.ParkingType;
-import com.parkit.parkingsystem.dao.ParkingSpotDAO;
-import com.parkit.parkingsystem.dao.TicketDAO;
+import com.parkit.parkingsystem.dao.ParkingEntryDAO;
+import com.parkit.parkingsystem.dao.ParkingSpotRepository;
+import com.parkit.parkingsystem.dao.TicketRepository;
+import com.parkit.parkingsystem.metrics.Metrics;
+import com.parkit.parkingsystem.metrics.OperationStats;
+import com.parkit.parkingsystem.metrics.ParkingStageEvent;
+import com.parkit.parkingsystem.model.EntryResult;
+import com.parkit.parkingsystem.model.ExitResult;
+import com.parkit.parkingsystem.model.OccupancySnapshot;
 import com.parkit.parkingsystem.model.ParkingSpot;
+import com.parkit.parkingsystem.model.ParkingSpotRegistry;
 import com.parkit.parkingsystem.model.Ticket;
 import com.parkit.parkingsystem.util.InputReaderUtil;
+import com.parkit.parkingsystem.util.Money;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
 import java.util.Date;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.function.ToIntFunction;
 
-public class ParkingService {
+public class ParkingService implements ParkingGate {
 
     private static final Logger logger = LogManager.getLogger("ParkingService");
 
+    private static final int MAX_ENTRY_ATTEMPTS = 3;
+
+    private static final OperationStats entryStats = Metrics.operation("ParkingService.entry");
+    private static final OperationStats exitStats = Metrics.operation("ParkingService.exit");
+    private static final OperationStats previewFareStats = Metrics.operation("ParkingService.previewFare");
+    private static final OperationStats availableSpotsStats = Metrics.operation("ParkingService.availableSpots");
+
     private static FareCalculatorService fareCalculatorService = new FareCalculatorService();
 
     private InputReaderUtil inputReaderUtil;
-    private ParkingSpotDAO parkingSpotDAO;
-    private  TicketDAO ticketDAO;
+    private ParkingSpotRepository parkingSpotDAO;
+    private  TicketRepository ticketDAO;
+    private ParkingEntryDAO parkingEntryDAO;
+    private ParkingSpotRegistry parkingSpotRegistry;
+    private OccupancyCounters occupancyCounters;
+    private ToIntFunction<String> visitCounter;
 
-    public ParkingService(InputReaderUtil inputReaderUtil, ParkingSpotDAO parkingSpotDAO, TicketDAO ticketDAO){
+    public ParkingService(InputReaderUtil inputReaderUtil, ParkingSpotRepository parkingSpotDAO, TicketRepository ticketDAO){
         this.inputReaderUtil = inputReaderUtil;
         this.parkingSpotDAO = parkingSpotDAO;
         this.ticketDAO = ticketDAO;
     }
 
+    public ParkingService(InputReaderUtil inputReaderUtil, ParkingSpotRepository parkingSpotDAO, TicketRepository ticketDAO, ParkingEntryDAO parkingEntryDAO){
+        this(inputReaderUtil, parkingSpotDAO, ticketDAO);
+        this.parkingEntryDAO = parkingEntryDAO;
+    }
+
+    /**
+     * Hands out the registry's shared spots instead of a new spot per entry.
+     */
+    public void setParkingSpotRegistry(ParkingSpotRegistry parkingSpotRegistry) {
+        this.parkingSpotRegistry = parkingSpotRegistry;
+    }
+
+    /**
+     * Counts entries and exits in these counters, which then answer
+     * {@link #getAvailableSpots()} instead of the repository.
+     */
+    public void setOccupancyCounters(OccupancyCounters occupancyCounters) {
+        this.occupancyCounters = occupancyCounters;
+    }
+
+    /**
+     * Counts the visits of a vehicle instead of the ticket repository, e.g.
+     * over all the shards of a {@link ShardRouter}.
+     */
+    public void setVisitCounter(ToIntFunction<String> visitCounter) {
+        this.visitCounter = visitCounter;
+    }
+
+    public static FareCalculatorService getFareCalculatorService() {
+        return fareCalculatorService;
+    }
+
     public void processIncomingVehicle() {
+        if (parkingEntryDAO != null) {
+            processIncomingVehicleInTransaction();
+            return;
+        }
         try {
 
             ParkingSpot parkingSpot = getNextParkingNumberIfAvailable();
 
             if (parkingSpot != null && parkingSpot.getId() > 0) {
-                String vehicleRegNumber = getVehichleRegNumber();
-
-                int nbTicket = ticketDAO.getNbTicket(vehicleRegNumber);
-                if (nbTicket > 0) {
-                    System.out.println("Welcome back! As a recurring user of our park, you are eligible for a 5% discount !");
-                } else {
-                    System.out.println("Welcome to our parking service.");
+                String vehicleRegNumber;
+                try {
+                    vehicleRegNumber = getVehichleRegNumber();
+                } catch (Exception e) {
+                    parkingSpotDAO.releaseSlot(parkingSpot);
+                    throw e;
                 }
 
-                parkingSpot.setAvailable(false);
-                parkingSpotDAO.updateParking(parkingSpot);
+                long start = System.nanoTime();
+                EntryResult result = parkVehicle(parkingSpot, vehicleRegNumber, new Date());
+                printEntry(recordEntry(start, result), vehicleRegNumber);
+            }
+        } catch (Exception e) {
+            logger.error("Unable to process incoming vehicle", e);
+        }
+    }
+
+    /**
+     * Parks a vehicle whose type and plate are already known, for callers that
+     * are not driven by the console.
+     */
+    @Override
+    public EntryResult processIncomingVehicle(ParkingType parkingType, String vehicleRegNumber) {
+        return processIncomingVehicle(parkingType, vehicleRegNumber, new Date());
+    }
+
+    /**
+     * Same as {@link #processIncomingVehicle(ParkingType, String)} with the
+     * entry time given, e.g. when replaying recorded gate events.
+     */
+    @Override
+    public EntryResult processIncomingVehicle(ParkingType parkingType, String vehicleRegNumber, Date inTime) {
+        long start = System.nanoTime();
+        if (parkingEntryDAO != null) {
+            return recordEntry(start, enterVehicleInTransaction(parkingType, vehicleRegNumber, inTime));
+        }
+        ParkingStageEvent spotLookup = ParkingStageEvent.begin(ParkingStageEvent.ENTRY, ParkingStageEvent.SPOT_LOOKUP, vehicleRegNumber);
+        int parkingNumber = parkingSpotDAO.getNextAvailableSlot(parkingType);
+        spotLookup.end(parkingNumber, parkingNumber > 0);
+        if (parkingNumber <= 0) {
+            return recordEntry(start, EntryResult.failure(EntryResult.Status.NO_SPOT_AVAILABLE));
+        }
+        return recordEntry(start, parkVehicle(parkingSpotOf(parkingNumber, parkingType), vehicleRegNumber, inTime));
+    }
+
+    private EntryResult recordEntry(long start, EntryResult result) {
+        if (result.getStatus() == EntryResult.Status.ERROR) {
+            entryStats.error();
+        } else if (result.isSuccess() && occupancyCounters != null) {
+            occupancyCounters.entered(result.getTicket().getParkingSpot().getParkingType());
+        }
+        entryStats.record(start);
+        return result;
+    }
 
-                Date inTime = new Date();
-                Ticket ticket = new Ticket();
-                ticket.setParkingSpot(parkingSpot);
-                ticket.setVehicleRegNumber(vehicleRegNumber);
-                ticket.setPrice(0);
-                ticket.setInTime(inTime);
-                ticket.setOutTime(null);
+    private EntryResult parkVehicle(ParkingSpot parkingSpot, String vehicleRegNumber, Date inTime) {
+        try {
+            ParkingStageEvent visitCount = ParkingStageEvent.begin(ParkingStageEvent.ENTRY, ParkingStageEvent.VISIT_COUNT, vehicleRegNumber);
+            int nbTicket = getNbTicket(vehicleRegNumber);
+            visitCount.end(parkingSpot.getId(), true);
 
-                ticketDAO.saveTicket(ticket);
+            ParkingStageEvent spotUpdate = ParkingStageEvent.begin(ParkingStageEvent.ENTRY, ParkingStageEvent.SPOT_UPDATE, vehicleRegNumber);
+            parkingSpot.setAvailable(false);
+            boolean occupied = parkingSpotDAO.updateParking(parkingSpot);
+            spotUpdate.end(parkingSpot.getId(), occupied);
+            if (!occupied) {
+                //the repository left the spot free, its reservation included
+                logger.error("Unable to occupy parking spot " + parkingSpot.getId() + " for vehicle number: " + vehicleRegNumber);
+                parkingSpot.setAvailable(true);
+                return EntryResult.failure(EntryResult.Status.ERROR);
+            }
 
-                System.out.println("Generated Ticket and saved in DB.");
-                System.out.println("Please park your vehicle in spot number: " + parkingSpot.getId());
-                System.out.println("Recorded in-time for vehicle number: " + vehicleRegNumber + " is: " + inTime);
+            Ticket ticket = new Ticket();
+            ticket.setParkingSpot(parkingSpot);
+            ticket.setVehicleRegNumber(vehicleRegNumber);
+            ticket.setPriceCents(0);
+            ticket.setInTimeMillis(inTime.getTime());
+
+            ParkingStageEvent ticketSave = ParkingStageEvent.begin(ParkingStageEvent.ENTRY, ParkingStageEvent.TICKET_SAVE, vehicleRegNumber);
+            boolean saved = ticketDAO.saveTicket(ticket);
+            ticketSave.end(parkingSpot.getId(), saved);
+            if (!saved) {
+                logger.error("Unable to save the ticket of vehicle number: " + vehicleRegNumber);
+                freeSpot(parkingSpot);
+                return EntryResult.failure(EntryResult.Status.ERROR);
             }
+            return EntryResult.success(ticket, nbTicket);
+        } catch (Exception e) {
+            logger.error("Unable to process incoming vehicle", e);
+            return EntryResult.failure(EntryResult.Status.ERROR);
+        }
+    }
+
+    /**
+     * Frees a spot already marked as occupied for an entry that did not go
+     * through.
+     */
+    private void freeSpot(ParkingSpot parkingSpot) {
+        parkingSpot.setAvailable(true);
+        if (!parkingSpotDAO.updateParking(parkingSpot)) {
+            logger.error("Unable to free parking spot " + parkingSpot.getId() + " after a failed entry");
+            parkingSpotDAO.releaseSlot(parkingSpot);
+        }
+    }
+
+    private void processIncomingVehicleInTransaction() {
+        try {
+            ParkingType parkingType = getVehichleType();
+            String vehicleRegNumber = getVehichleRegNumber();
+            long start = System.nanoTime();
+            EntryResult result = enterVehicleInTransaction(parkingType, vehicleRegNumber, new Date());
+            printEntry(recordEntry(start, result), vehicleRegNumber);
+        } catch (IllegalArgumentException ie) {
+            logger.error("Error parsing user input for type of vehicle", ie);
         } catch (Exception e) {
             logger.error("Unable to process incoming vehicle", e);
         }
     }
 
+    private EntryResult enterVehicleInTransaction(ParkingType parkingType, String vehicleRegNumber, Date inTime) {
+        EntryResult result = enterVehicleOnce(parkingType, vehicleRegNumber, inTime);
+        for (int attempt = 1; attempt < MAX_ENTRY_ATTEMPTS && result.getStatus() == EntryResult.Status.CONTENTION; attempt++) {
+            logger.info("Parking spot contention, retrying entry for vehicle number: " + vehicleRegNumber);
+            result = enterVehicleOnce(parkingType, vehicleRegNumber, inTime);
+        }
+        return result;
+    }
+
+    private EntryResult enterVehicleOnce(ParkingType parkingType, String vehicleRegNumber, Date inTime) {
+        ParkingStageEvent transaction = ParkingStageEvent.begin(ParkingStageEvent.ENTRY, ParkingStageEvent.ENTRY_TRANSACTION, vehicleRegNumber);
+        EntryResult result = parkingEntryDAO.enterVehicle(parkingType, vehicleRegNumber, inTime);
+        boolean succeeded = result.getStatus() == EntryResult.Status.SUCCESS;
+        transaction.end(succeeded ? result.getTicket().getParkingSpot().getId() : 0, succeeded);
+        return result;
+    }
+
+    private void printEntry(EntryResult result, String vehicleRegNumber) {
+        switch (result.getStatus()) {
+            case SUCCESS:
+                if (result.getNbTicket() > 0) {
+                    System.out.println("Welcome back! As a recurring user of our park, you are eligible for a 5% discount !");
+                } else {
+                    System.out.println("Welcome to our parking service.");
+                }
+                System.out.println("Generated Ticket and saved in DB.");
+                System.out.println("Please park your vehicle in spot number: " + result.getTicket().getParkingSpot().getId());
+                System.out.println("Recorded in-time for vehicle number: " + vehicleRegNumber + " is: " + result.getTicket().getInTime());
+                break;
+            case NO_SPOT_AVAILABLE:
+                logger.error("Error fetching next available parking slot. Parking slots might be full");
+                break;
+            default:
+                logger.error("Unable to register vehicle entry : " + result.getStatus());
+        }
+    }
+
     private String getVehichleRegNumber() throws Exception {
         System.out.println("Please type the vehicle registration number and press enter key");
         return inputReaderUtil.readVehicleRegistrationNumber();
@@ -74,9 +258,11 @@ public class ParkingService {
         ParkingSpot parkingSpot = null;
         try{
             ParkingType parkingType = getVehichleType();
+            ParkingStageEvent spotLookup = ParkingStageEvent.begin(ParkingStageEvent.ENTRY, ParkingStageEvent.SPOT_LOOKUP, null);
             parkingNumber = parkingSpotDAO.getNextAvailableSlot(parkingType);
+            spotLookup.end(parkingNumber, parkingNumber > 0);
             if(parkingNumber > 0){
-                parkingSpot = new ParkingSpot(parkingNumber,parkingType, true);
+                parkingSpot = parkingSpotOf(parkingNumber, parkingType);
             }else{
                 throw new Exception("Error fetching parking number from DB. Parking slots might be full");
             }
@@ -88,6 +274,12 @@ public class ParkingService {
         return parkingSpot;
     }
 
+    private ParkingSpot parkingSpotOf(int parkingNumber, ParkingType parkingType) {
+        return parkingSpotRegistry == null
+                ? new ParkingSpot(parkingNumber, parkingType, true)
+                : parkingSpotRegistry.get(parkingNumber, parkingType, true);
+    }
+
     private ParkingType getVehichleType(){
         System.out.println("Please select vehicle type from menu");
         System.out.println("1 CAR");
@@ -110,33 +302,178 @@ public class ParkingService {
     public void processExitingVehicle() {
         try {
             String vehicleRegNumber = getVehichleRegNumber();
-            Ticket ticket = ticketDAO.getTicket(vehicleRegNumber);
+            ExitResult result = processExitingVehicle(vehicleRegNumber);
 
-            //Date inTime = new Date(System.currentTimeMillis() - 60 * 60 * 1000);
-            //ticket.setInTime(inTime);
-            //ticketDAO.updateTicket(ticket);
+            switch (result.getStatus()) {
+                case SUCCESS:
+                    System.out.println("Please pay the parking fare: " + Money.format(result.getTicket().getPriceCents()));
+                    System.out.println("Recorded in-time for vehicle number: " + vehicleRegNumber + " is: " + result.getTicket().getOutTime());
+                    break;
+                case NO_TICKET_FOUND:
+                    logger.error("No ticket found for vehicle number: " + vehicleRegNumber);
+                    break;
+                default:
+                    System.out.println("Unable to update ticket information. Error occurred.");
+            }
 
-            Date outTime = new Date(System.currentTimeMillis() + 60 * 60 * 1000);
-            ticket.setOutTime(outTime);
+        } catch (Exception e) {
+            logger.error("Unable to process exiting vehicle", e);
+        }
+    }
 
-            int nbTicket = ticketDAO.getNbTicket(vehicleRegNumber);
-            boolean discount = nbTicket >= 1;
+    /**
+     * Closes and prices the ticket of a vehicle leaving, then frees its spot.
+     */
+    @Override
+    public ExitResult processExitingVehicle(String vehicleRegNumber) {
+        return processExitingVehicle(vehicleRegNumber, getOutTime());
+    }
 
-            fareCalculatorService.calculateFare(ticket, discount);
+    /**
+     * Same as {@link #processExitingVehicle(String)} with the exit time given,
+     * e.g. when replaying recorded gate events.
+     */
+    @Override
+    public ExitResult processExitingVehicle(String vehicleRegNumber, Date outTime) {
+        long start = System.nanoTime();
+        try {
+            ParkingStageEvent ticketLookup = ParkingStageEvent.begin(ParkingStageEvent.EXIT, ParkingStageEvent.TICKET_LOOKUP, vehicleRegNumber);
+            Ticket openTicket = ticketDAO.getTicket(vehicleRegNumber);
+            //the file and memory stores hand out the latest ticket, even closed
+            boolean open = openTicket != null && openTicket.isOpen();
+            ticketLookup.end(open ? openTicket.getParkingSpot().getId() : 0, open);
+            if (!open) {
+                return ExitResult.failure(ExitResult.Status.NO_TICKET_FOUND);
+            }
 
-            if (ticketDAO.updateTicket(ticket)) {
-                ParkingSpot parkingSpot = ticket.getParkingSpot();
-                parkingSpot.setAvailable(true);
-                parkingSpotDAO.updateParking(parkingSpot);
+            //Date inTime = new Date(System.currentTimeMillis() - 60 * 60 * 1000);
+            //ticket.setInTime(inTime);
+            //ticketDAO.updateTicket(ticket);
 
-                System.out.println("Please pay the parking fare: " + ticket.getPrice());
-                System.out.println("Recorded in-time for vehicle number: " + vehicleRegNumber + " is: " + outTime);
-            } else {
-                System.out.println("Unable to update ticket information. Error occurred.");
-            }
+            //close a copy, the DAO may hand out its cached ticket and keeps it open until the update is written
+            Ticket ticket = copyOf(openTicket);
+            ticket.setOutTimeMillis(outTime.getTime());
+            priceTicket(ticket, vehicleRegNumber, ParkingStageEvent.EXIT);
 
+            ParkingSpot parkingSpot = ticket.getParkingSpot();
+            ParkingStageEvent ticketUpdate = ParkingStageEvent.begin(ParkingStageEvent.EXIT, ParkingStageEvent.TICKET_UPDATE, vehicleRegNumber);
+            //only one of two exits racing for the ticket closes it and frees the spot
+            ExitResult.Status closed = ticketDAO.closeTicket(ticket);
+            ticketUpdate.end(parkingSpot.getId(), closed == ExitResult.Status.SUCCESS);
+            if (closed == ExitResult.Status.NO_TICKET_FOUND) {
+                return ExitResult.failure(ExitResult.Status.NO_TICKET_FOUND);
+            }
+            if (closed != ExitResult.Status.SUCCESS) {
+                exitStats.error();
+                return ExitResult.failure(ExitResult.Status.ERROR);
+            }
+            ParkingStageEvent spotUpdate = ParkingStageEvent.begin(ParkingStageEvent.EXIT, ParkingStageEvent.SPOT_UPDATE, vehicleRegNumber);
+            parkingSpot.setAvailable(true);
+            boolean freed = parkingSpotDAO.updateParking(parkingSpot);
+            spotUpdate.end(parkingSpot.getId(), freed);
+            if (!freed) {
+                //the ticket is closed and priced, only the spot stays taken
+                logger.error("Unable to free parking spot " + parkingSpot.getId() + " for vehicle number: " + vehicleRegNumber);
+                exitStats.error();
+            } else if (occupancyCounters != null) {
+                occupancyCounters.exited(parkingSpot.getParkingType());
+            }
+            return ExitResult.success(ticket);
         } catch (Exception e) {
             logger.error("Unable to process exiting vehicle", e);
+            exitStats.error();
+            return ExitResult.failure(ExitResult.Status.ERROR);
+        } finally {
+            exitStats.record(start);
+        }
+    }
+
+    /**
+     * What the vehicle would pay if it left now. Nothing is written.
+     */
+    @Override
+    public ExitResult previewFare(String vehicleRegNumber) {
+        long start = System.nanoTime();
+        try {
+            ParkingStageEvent ticketLookup = ParkingStageEvent.begin(ParkingStageEvent.FARE_PREVIEW, ParkingStageEvent.TICKET_LOOKUP, vehicleRegNumber);
+            Ticket openTicket = ticketDAO.getTicket(vehicleRegNumber);
+            boolean open = openTicket != null && openTicket.isOpen();
+            ticketLookup.end(open ? openTicket.getParkingSpot().getId() : 0, open);
+            if (!open) {
+                return ExitResult.failure(ExitResult.Status.NO_TICKET_FOUND);
+            }
+            //price a copy, the DAO may hand out its cached ticket
+            Ticket ticket = copyOf(openTicket);
+            ticket.setOutTimeMillis(getOutTimeMillis());
+            priceTicket(ticket, vehicleRegNumber, ParkingStageEvent.FARE_PREVIEW);
+            return ExitResult.success(ticket);
+        } catch (Exception e) {
+            logger.error("Unable to preview fare", e);
+            previewFareStats.error();
+            return ExitResult.failure(ExitResult.Status.ERROR);
+        } finally {
+            previewFareStats.record(start);
+        }
+    }
+
+    /**
+     * Number of free spots of each type, -1 where it could not be read.
+     * Answered from the occupancy counters when there are some.
+     */
+    @Override
+    public Map<ParkingType, Integer> getAvailableSpots() {
+        long start = System.nanoTime();
+        Map<ParkingType, Integer> availableSpots = new EnumMap<>(ParkingType.class);
+        for (ParkingType parkingType : ParkingType.values()) {
+            availableSpots.put(parkingType, occupancyCounters != null
+                    ? occupancyCounters.getAvailable(parkingType)
+                    : parkingSpotDAO.getAvailableSlotCount(parkingType));
         }
+        availableSpotsStats.record(start);
+        return availableSpots;
+    }
+
+    /**
+     * Spots taken and in total per type, read from the occupancy counters
+     * without touching the database.
+     *
+     * @return null without occupancy counters
+     */
+    @Override
+    public OccupancySnapshot getOccupancy() {
+        return occupancyCounters == null ? null : occupancyCounters.snapshot();
+    }
+
+    private Date getOutTime() {
+        return new Date(getOutTimeMillis());
+    }
+
+    private long getOutTimeMillis() {
+        return System.currentTimeMillis() + 60 * 60 * 1000;
+    }
+
+    private static Ticket copyOf(Ticket openTicket) {
+        Ticket ticket = new Ticket();
+        ticket.setId(openTicket.getId());
+        ticket.setParkingSpot(openTicket.getParkingSpot());
+        ticket.setVehicleRegNumber(openTicket.getVehicleRegNumber());
+        ticket.setInTimeMillis(openTicket.getInTimeMillis());
+        return ticket;
+    }
+
+    private int getNbTicket(String vehicleRegNumber) {
+        return visitCounter != null ? visitCounter.applyAsInt(vehicleRegNumber) : ticketDAO.getNbTicket(vehicleRegNumber);
+    }
+
+    private void priceTicket(Ticket ticket, String vehicleRegNumber, String flow) {
+        int parkingNumber = ticket.getParkingSpot().getId();
+        ParkingStageEvent visitCount = ParkingStageEvent.begin(flow, ParkingStageEvent.VISIT_COUNT, vehicleRegNumber);
+        int nbTicket = getNbTicket(vehicleRegNumber);
+        visitCount.end(parkingNumber, true);
+        boolean discount = nbTicket >= 1;
+
+        ParkingStageEvent fareCalculation = ParkingStageEvent.begin(flow, ParkingStageEvent.FARE_CALCULATION, vehicleRegNumber);
+        fareCalculatorService.calculateFare(ticket, discount);
+        fareCalculation.end(parkingNumber, true);
     }
 }
@@ -0,0 +1,166 @@
+package com.parkit.parkingsystem.service;
+
+import com.parkit.parkingsystem.config.DataBaseConfig;
+import com.parkit.parkingsystem.config.MemoryStoreSettings;
+import com.parkit.parkingsystem.config.SchemaMigrator;
+import com.parkit.parkingsystem.config.ShardSettings;
+import com.parkit.parkingsystem.config.TicketStoreSettings;
+import com.parkit.parkingsystem.dao.InMemoryParkingStore;
+import com.parkit.parkingsystem.dao.MappedTicketDAO;
+import com.parkit.parkingsystem.dao.MappedTicketStore;
+import com.parkit.parkingsystem.dao.ParkingEntryDAO;
+import com.parkit.parkingsystem.dao.ParkingSpotDAO;
+import com.parkit.parkingsystem.dao.TicketDAO;
+import com.parkit.parkingsystem.dao.TicketRepository;
+import com.parkit.parkingsystem.dao.TicketArchiver;
+import com.parkit.parkingsystem.dao.TicketWriteBehindQueue;
+import com.parkit.parkingsystem.model.ParkingSpotRegistry;
+import com.parkit.parkingsystem.util.InputReaderUtil;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.Closeable;
+import java.io.IOException;
+
+/**
+ * Wires the storage backend and its in-memory indexes from the
+ * {@code parkit.*} system properties, the same way for every front end.
+ */
+final class ParkingServiceFactory {
+
+    private static final Logger logger = LogManager.getLogger("ParkingServiceFactory");
+
+    private ParkingServiceFactory() {
+    }
+
+    static TicketRepository createTicketRepository() {
+        return createTicketRepository(new DataBaseConfig(), new MemoryStoreSettings(), new TicketStoreSettings());
+    }
+
+    /**
+     * One {@link ParkingService} per shard of {@code parkit.shards}, each
+     * wired like a single-lot deployment over the shard's own storage.
+     */
+    static ShardRouter createShardRouter(InputReaderUtil inputReaderUtil) {
+        ShardSettings settings = new ShardSettings();
+        ShardRouter shardRouter = new ShardRouter(settings.getVirtualNodes());
+        for (String shardName : settings.getShardNames()) {
+            TicketRepository ticketRepository = createTicketRepository(settings.getDataBaseConfig(shardName),
+                    settings.getMemoryStoreSettings(shardName), settings.getTicketStoreSettings(shardName));
+            shardRouter.addShard(shardName, createParkingService(inputReaderUtil, ticketRepository), ticketRepository);
+        }
+        return shardRouter;
+    }
+
+    private static TicketRepository createTicketRepository(DataBaseConfig dataBaseConfig,
+                                                           MemoryStoreSettings memoryStoreSettings,
+                                                           TicketStoreSettings ticketStoreSettings) {
+        if (Boolean.getBoolean("parkit.memoryStore")) {
+            try {
+                return new InMemoryParkingStore(memoryStoreSettings);
+            } catch (IOException e) {
+                throw new IllegalStateException("Unable to restore the parking store from " + memoryStoreSettings.getDirectory(), e);
+            }
+        }
+        //spots are in the database with either ticket backend
+        if (!"false".equals(System.getProperty("parkit.schema.migrate"))) {
+            SchemaMigrator schemaMigrator = new SchemaMigrator(dataBaseConfig);
+            if (schemaMigrator.migrate() && !"false".equals(System.getProperty("parkit.schema.verifyPlans"))) {
+                schemaMigrator.verifyQueryPlans();
+            }
+        }
+        if (Boolean.getBoolean("parkit.ticketStore")) {
+            try {
+                MappedTicketDAO mappedTicketDAO = new MappedTicketDAO(new MappedTicketStore(ticketStoreSettings));
+                //spots stay in the database
+                mappedTicketDAO.dataBaseConfig = dataBaseConfig;
+                return mappedTicketDAO;
+            } catch (IOException e) {
+                throw new IllegalStateException("Unable to open the ticket store in " + ticketStoreSettings.getDirectory(), e);
+            }
+        }
+        TicketDAO ticketDAO = new TicketDAO();
+        ticketDAO.dataBaseConfig = dataBaseConfig;
+        if (Boolean.getBoolean("parkit.ticketWriteBehind")) {
+            ticketDAO.ticketWriteBehindQueue = new TicketWriteBehindQueue(ticketDAO.dataBaseConfig);
+        }
+        if (!"false".equals(System.getProperty("parkit.visitCountIndex"))) {
+            ticketDAO.loadVisitCountIndex();
+        }
+        if (!"false".equals(System.getProperty("parkit.openTicketIndex"))) {
+            ticketDAO.loadOpenTicketIndex();
+        }
+        if (Boolean.getBoolean("parkit.archiver")) {
+            ticketDAO.ticketArchiver = new TicketArchiver(ticketDAO.dataBaseConfig);
+            ticketDAO.ticketArchiver.start();
+        }
+        return ticketDAO;
+    }
+
+    static ParkingService createParkingService(InputReaderUtil inputReaderUtil, TicketRepository ticketRepository) {
+        if (ticketRepository instanceof InMemoryParkingStore) {
+            InMemoryParkingStore store = (InMemoryParkingStore) ticketRepository;
+            ParkingService parkingService = new ParkingService(inputReaderUtil, store, store);
+            useParkingSpotRegistry(parkingService, store.getParkingSpotRegistry());
+            return parkingService;
+        }
+        TicketDAO ticketDAO = (TicketDAO) ticketRepository;
+        ParkingSpotDAO parkingSpotDAO = new ParkingSpotDAO();
+        parkingSpotDAO.dataBaseConfig = ticketDAO.dataBaseConfig;
+        ParkingService parkingService;
+        //the atomic entry inserts the ticket itself, in the database
+        if (Boolean.getBoolean("parkit.atomicEntry") && !(ticketDAO instanceof MappedTicketDAO)) {
+            parkingSpotDAO.loadSpotRegistry();
+            ParkingEntryDAO parkingEntryDAO = new ParkingEntryDAO();
+            parkingEntryDAO.dataBaseConfig = ticketDAO.dataBaseConfig;
+            parkingEntryDAO.visitCountIndex = ticketDAO.visitCountIndex;
+            parkingEntryDAO.openTicketIndex = ticketDAO.openTicketIndex;
+            parkingEntryDAO.parkingSpotRegistry = parkingSpotDAO.parkingSpotRegistry;
+            parkingService = new ParkingService(inputReaderUtil, parkingSpotDAO, ticketDAO, parkingEntryDAO);
+        } else {
+            if (!"false".equals(System.getProperty("parkit.spotAllocator"))) {
+                parkingSpotDAO.loadSpotAllocator();
+            } else {
+                parkingSpotDAO.loadSpotRegistry();
+            }
+            parkingService = new ParkingService(inputReaderUtil, parkingSpotDAO, ticketDAO);
+        }
+        ticketDAO.parkingSpotRegistry = parkingSpotDAO.parkingSpotRegistry;
+        useParkingSpotRegistry(parkingService, parkingSpotDAO.parkingSpotRegistry);
+        return parkingService;
+    }
+
+    private static void useParkingSpotRegistry(ParkingService parkingService, ParkingSpotRegistry parkingSpotRegistry) {
+        parkingService.setParkingSpotRegistry(parkingSpotRegistry);
+        //counts start from the availability just loaded
+        if (parkingSpotRegistry != null && !"false".equals(System.getProperty("parkit.occupancyCounters"))) {
+            parkingService.setOccupancyCounters(OccupancyCounters.of(parkingSpotRegistry.getParkingSpots()));
+        }
+    }
+
+    static void shutdown(TicketRepository ticketRepository) {
+        close(ticketRepository);
+        DataBaseConfig.shutdownPools();
+    }
+
+    static void shutdown(ShardRouter shardRouter) {
+        shardRouter.getTicketRepositories().forEach(ParkingServiceFactory::close);
+        DataBaseConfig.shutdownPools();
+    }
+
+    private static void close(TicketRepository ticketRepository) {
+        if (ticketRepository instanceof Closeable) {
+            try {
+                ((Closeable) ticketRepository).close();
+            } catch (IOException e) {
+                logger.error("Error closing the ticket store", e);
+            }
+        }
+        if (ticketRepository instanceof TicketDAO && ((TicketDAO) ticketRepository).ticketArchiver != null) {
+            ((TicketDAO) ticketRepository).ticketArchiver.shutdown();
+        }
+        if (ticketRepository instanceof TicketDAO && ((TicketDAO) ticketRepository).ticketWriteBehindQueue != null) {
+            ((TicketDAO) ticketRepository).ticketWriteBehindQueue.shutdown();
+        }
+    }
+}
@@ -0,0 +1,253 @@
+package com.parkit.parkingsystem.service;
+
+import com.parkit.parkingsystem.constants.ParkingType;
+import com.parkit.parkingsystem.dao.TicketRepository;
+import com.parkit.parkingsystem.model.EntryResult;
+import com.parkit.parkingsystem.model.ExitResult;
+import com.parkit.parkingsystem.model.OccupancySnapshot;
+import com.parkit.parkingsystem.util.ConsistentHashRing;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+/**
+ * Spreads vehicles over several shards, each a complete
+ * {@link ParkingService} with its own spots and storage, which share nothing.
+ * A plate enters the shard owning it on a consistent hash ring, so a
+ * returning vehicle finds its visit count there, or the next shard on the
+ * ring while that one is full. Open tickets are indexed by plate, so an exit
+ * goes straight to the shard holding the ticket even after a shard was added
+ * and the plate now hashes elsewhere. Plates entered before a restart are not
+ * indexed and are looked up on every shard, owner first. Visits are counted
+ * over all shards, so a plate keeps its discount wherever it parks.
+ */
+public class ShardRouter implements ParkingGate {
+
+    private static final Logger logger = LogManager.getLogger("ShardRouter");
+
+    private static final class Shard {
+        private final String name;
+        private final ParkingService parkingService;
+        private final TicketRepository ticketRepository;
+
+        private Shard(String name, ParkingService parkingService, TicketRepository ticketRepository) {
+            this.name = name;
+            this.parkingService = parkingService;
+            this.ticketRepository = ticketRepository;
+        }
+    }
+
+    private volatile ConsistentHashRing<Shard> ring;
+    private final Map<String, Shard> openTickets = new ConcurrentHashMap<>();
+    private final LongAdder spilloverCount = new LongAdder();
+
+    public ShardRouter(int virtualNodes) {
+        this.ring = new ConsistentHashRing<>(virtualNodes);
+    }
+
+    /**
+     * Adds a shard. New plates spread over it at once; vehicles already parked
+     * elsewhere still leave through their own shard.
+     *
+     * @param ticketRepository closed with the router and counted for the
+     *                         visits of every shard, may be null
+     */
+    public synchronized void addShard(String name, ParkingService parkingService, TicketRepository ticketRepository) {
+        parkingService.setVisitCounter(this::getNbTicket);
+        ring = ring.with(name, new Shard(name, parkingService, ticketRepository));
+        logger.info("Added shard " + name + ", routing over " + ring.size() + " shards");
+    }
+
+    public List<String> getShardNames() {
+        return new ArrayList<>(ring.getMembers().keySet());
+    }
+
+    /**
+     * @return the shard holding this vehicle's open ticket if known, else the
+     * shard it would enter first, or null without shards
+     */
+    public String getShardOf(String vehicleRegNumber) {
+        String key = keyOf(vehicleRegNumber);
+        Shard shard = openTickets.get(key);
+        if (shard == null) {
+            shard = ring.get(key);
+        }
+        return shard == null ? null : shard.name;
+    }
+
+    /**
+     * Entries that went to another shard because the owner was full.
+     */
+    public long getSpilloverCount() {
+        return spilloverCount.sum();
+    }
+
+    /**
+     * Visits of a vehicle over all shards, which tell apart the tickets they
+     * hold: a plate parks elsewhere once a shard is added or its own is full.
+     */
+    int getNbTicket(String vehicleRegNumber) {
+        int nbTicket = 0;
+        for (Shard shard : ring.getMembers().values()) {
+            if (shard.ticketRepository != null) {
+                nbTicket += shard.ticketRepository.getNbTicket(vehicleRegNumber);
+            }
+        }
+        return nbTicket;
+    }
+
+    List<TicketRepository> getTicketRepositories() {
+        List<TicketRepository> ticketRepositories = new ArrayList<>();
+        for (Shard shard : ring.getMembers().values()) {
+            if (shard.ticketRepository != null) {
+                ticketRepositories.add(shard.ticketRepository);
+            }
+        }
+        return ticketRepositories;
+    }
+
+    @Override
+    public EntryResult processIncomingVehicle(ParkingType parkingType, String vehicleRegNumber) {
+        return processIncomingVehicle(parkingType, vehicleRegNumber, new Date());
+    }
+
+    @Override
+    public EntryResult processIncomingVehicle(ParkingType parkingType, String vehicleRegNumber, Date inTime) {
+        String key = keyOf(vehicleRegNumber);
+        ConsistentHashRing<Shard> ring = this.ring;
+        Shard owner = ring.get(key);
+        if (owner == null) {
+            logger.error("No shard to route vehicle number: " + vehicleRegNumber);
+            return EntryResult.failure(EntryResult.Status.ERROR);
+        }
+        Shard shard = owner;
+        EntryResult result = owner.parkingService.processIncomingVehicle(parkingType, vehicleRegNumber, inTime);
+        if (result.getStatus() == EntryResult.Status.NO_SPOT_AVAILABLE && ring.size() > 1) {
+            for (Shard next : ring.preferenceList(key)) {
+                if (next == owner) {
+                    continue;
+                }
+                shard = next;
+                result = next.parkingService.processIncomingVehicle(parkingType, vehicleRegNumber, inTime);
+                if (result.getStatus() != EntryResult.Status.NO_SPOT_AVAILABLE) {
+                    break;
+                }
+            }
+            if (result.isSuccess()) {
+                spilloverCount.increment();
+            }
+        }
+        if (result.isSuccess()) {
+            openTickets.put(key, shard);
+        }
+        return result;
+    }
+
+    @Override
+    public ExitResult processExitingVehicle(String vehicleRegNumber) {
+        return exit(vehicleRegNumber, parkingService -> parkingService.processExitingVehicle(vehicleRegNumber));
+    }
+
+    @Override
+    public ExitResult processExitingVehicle(String vehicleRegNumber, Date outTime) {
+        return exit(vehicleRegNumber, parkingService -> parkingService.processExitingVehicle(vehicleRegNumber, outTime));
+    }
+
+    private ExitResult exit(String vehicleRegNumber, Function<ParkingService, ExitResult> exit) {
+        String key = keyOf(vehicleRegNumber);
+        Shard indexed = openTickets.get(key);
+        if (indexed != null) {
+            ExitResult result = exit.apply(indexed.parkingService);
+            if (result.getStatus() != ExitResult.Status.NO_TICKET_FOUND) {
+                if (result.isSuccess()) {
+                    openTickets.remove(key, indexed);
+                }
+                return result;
+            }
+            //closed some other way, look everywhere
+            openTickets.remove(key, indexed);
+        }
+        ExitResult result = ExitResult.failure(ExitResult.Status.NO_TICKET_FOUND);
+        for (Shard shard : ring.preferenceList(key)) {
+            if (shard == indexed) {
+                continue;
+            }
+            result = exit.apply(shard.parkingService);
+            if (result.getStatus() != ExitResult.Status.NO_TICKET_FOUND) {
+                return result;
+            }
+        }
+        return result;
+    }
+
+    @Override
+    public ExitResult previewFare(String vehicleRegNumber) {
+        String key = keyOf(vehicleRegNumber);
+        Shard indexed = openTickets.get(key);
+        if (indexed != null) {
+            ExitResult result = indexed.parkingService.previewFare(vehicleRegNumber);
+            if (result.getStatus() != ExitResult.Status.NO_TICKET_FOUND) {
+                return result;
+            }
+        }
+        ExitResult result = ExitResult.failure(ExitResult.Status.NO_TICKET_FOUND);
+        for (Shard shard : ring.preferenceList(key)) {
+            if (shard == indexed) {
+                continue;
+            }
+            result = shard.parkingService.previewFare(vehicleRegNumber);
+            if (result.getStatus() != ExitResult.Status.NO_TICKET_FOUND) {
+                return result;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Free spots of each type over all shards, -1 where no shard could tell.
+     */
+    @Override
+    public Map<ParkingType, Integer> getAvailableSpots() {
+        Map<ParkingType, Integer> availableSpots = new EnumMap<>(ParkingType.class);
+        for (ParkingType parkingType : ParkingType.values()) {
+            availableSpots.put(parkingType, -1);
+        }
+        for (Shard shard : ring.getMembers().values()) {
+            for (Map.Entry<ParkingType, Integer> entry : shard.parkingService.getAvailableSpots().entrySet()) {
+                if (entry.getValue() >= 0) {
+                    availableSpots.merge(entry.getKey(), entry.getValue(), (total, count) -> Math.max(total, 0) + count);
+                }
+            }
+        }
+        return availableSpots;
+    }
+
+    /**
+     * Occupancy over the shards that count it, or null if none does.
+     */
+    @Override
+    public OccupancySnapshot getOccupancy() {
+        OccupancySnapshot occupancy = null;
+        for (Shard shard : ring.getMembers().values()) {
+            OccupancySnapshot shardOccupancy = shard.parkingService.getOccupancy();
+            if (shardOccupancy != null) {
+                occupancy = occupancy == null ? shardOccupancy : occupancy.plus(shardOccupancy);
+            }
+        }
+        return occupancy;
+    }
+
+    //plates compare case-insensitively, like vehicle_reg_number
+    private static String keyOf(String vehicleRegNumber) {
+        return vehicleRegNumber.toUpperCase(Locale.ROOT);
+    }
+}
@@ -0,0 +1,77 @@
+package com.parkit.parkingsystem.service;
+
+import com.parkit.parkingsystem.config.TariffDefinition;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Swaps a new tariff into a {@link FareCalculatorService} whenever its file
+ * changes. An invalid file is logged and the current tariff is kept. The
+ * console checks the file before each menu; servers poll it with
+ * {@link #start(long)}.
+ */
+class TariffFileReloader {
+
+    private static final Logger logger = LogManager.getLogger("TariffFileReloader");
+
+    private final Path path;
+    private final FareCalculatorService fareCalculatorService;
+    private FileTime lastModified;
+    private ScheduledExecutorService scheduler;
+
+    TariffFileReloader(Path path, FareCalculatorService fareCalculatorService) {
+        this.path = path;
+        this.fareCalculatorService = fareCalculatorService;
+    }
+
+    /**
+     * Loads the file now, then checks it every {@code intervalMillis}.
+     */
+    synchronized void start(long intervalMillis) {
+        if (scheduler != null) {
+            return;
+        }
+        scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "tariff-reloader");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.scheduleWithFixedDelay(this::reloadIfModified, 0, intervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    synchronized void shutdown() {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+            scheduler = null;
+        }
+    }
+
+    synchronized void reloadIfModified() {
+        FileTime modified;
+        try {
+            modified = Files.getLastModifiedTime(path);
+        } catch (IOException e) {
+            logger.error("Error reading tariff file " + path, e);
+            return;
+        }
+        if (modified.equals(lastModified)) {
+            return;
+        }
+        try {
+            fareCalculatorService.setTariff(TariffDefinition.load(path));
+            //a file that failed, e.g. caught half written, is read again on the next check
+            lastModified = modified;
+            logger.info("Loaded tariff from " + path);
+        } catch (IOException | IllegalArgumentException e) {
+            logger.error("Error loading tariff from " + path + ", keeping the current one", e);
+        }
+    }
+}
@@ -0,0 +1,118 @@
+package com.parkit.parkingsystem.util;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Maps keys to named members by consistent hashing: each member owns
+ * {@code virtualNodes} points on a 64-bit ring and a key goes to the member of
+ * the first point at or after its hash. Adding a member only moves the keys
+ * that now fall on its points, about {@code 1/n} of them.
+ * <p>
+ * A ring never changes once built; {@link #with} returns a new one, so
+ * readers can keep a reference without locking.
+ */
+public final class ConsistentHashRing<T> {
+
+    private final int virtualNodes;
+    private final Map<String, T> members;
+    private final TreeMap<Long, T> points = new TreeMap<>();
+
+    public ConsistentHashRing(int virtualNodes) {
+        this(virtualNodes, Collections.emptyMap());
+    }
+
+    private ConsistentHashRing(int virtualNodes, Map<String, T> members) {
+        if (virtualNodes <= 0) {
+            throw new IllegalArgumentException("Virtual nodes must be positive : " + virtualNodes);
+        }
+        this.virtualNodes = virtualNodes;
+        this.members = Collections.unmodifiableMap(members);
+        members.forEach((name, member) -> {
+            for (int i = 0; i < virtualNodes; i++) {
+                //on a collision the first member keeps the point
+                points.putIfAbsent(hash(name + "#" + i), member);
+            }
+        });
+    }
+
+    /**
+     * @return a ring with this member added
+     */
+    public ConsistentHashRing<T> with(String name, T member) {
+        if (members.containsKey(name)) {
+            throw new IllegalArgumentException("Already on the ring : " + name);
+        }
+        Map<String, T> newMembers = new LinkedHashMap<>(members);
+        newMembers.put(name, member);
+        return new ConsistentHashRing<>(virtualNodes, newMembers);
+    }
+
+    /**
+     * @return the member owning this key, or null if the ring is empty
+     */
+    public T get(CharSequence key) {
+        if (points.isEmpty()) {
+            return null;
+        }
+        Map.Entry<Long, T> point = points.ceilingEntry(hash(key));
+        return (point == null ? points.firstEntry() : point).getValue();
+    }
+
+    /**
+     * @return every member once, in the order met walking the ring from this
+     * key, the owner first
+     */
+    public List<T> preferenceList(CharSequence key) {
+        List<T> preference = new ArrayList<>(members.size());
+        if (points.isEmpty()) {
+            return preference;
+        }
+        long hash = hash(key);
+        walk(points.tailMap(hash, true).values(), preference);
+        walk(points.headMap(hash, false).values(), preference);
+        return preference;
+    }
+
+    private void walk(Collection<T> members, List<T> preference) {
+        for (T member : members) {
+            if (preference.size() == this.members.size()) {
+                return;
+            }
+            if (!preference.contains(member)) {
+                preference.add(member);
+            }
+        }
+    }
+
+    public Map<String, T> getMembers() {
+        return members;
+    }
+
+    public int size() {
+        return members.size();
+    }
+
+    /**
+     * 64-bit FNV-1a of the characters, spread with the MurmurHash3 finalizer
+     * so that close keys land far apart.
+     */
+    static long hash(CharSequence key) {
+        long hash = 0xcbf29ce484222325L;
+        for (int i = 0; i < key.length(); i++) {
+            hash ^= key.charAt(i);
+            hash *= 0x100000001b3L;
+        }
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        hash *= 0xc4ceb9fe1a85ec53L;
+        hash ^= hash >>> 33;
+        return hash;
+    }
+}
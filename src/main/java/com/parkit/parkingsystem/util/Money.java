@@ -0,0 +1,83 @@
+package com.parkit.parkingsystem.util;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+
+/**
+ * Integer arithmetic on amounts held as {@code long} cents.
+ */
+public final class Money {
+
+    public static final int SCALE = 2;
+    public static final long CENTS_PER_UNIT = 100;
+
+    private Money() {
+    }
+
+    /**
+     * Divides two longs, rounding the quotient with the given mode, without
+     * going through floating point or {@link BigDecimal}.
+     */
+    public static long divide(long dividend, long divisor, RoundingMode roundingMode) {
+        long quotient = dividend / divisor;
+        long remainder = dividend % divisor;
+        if (remainder == 0) {
+            return quotient;
+        }
+        long signum = ((dividend ^ divisor) >> 63) | 1;
+        boolean increment;
+        switch (roundingMode) {
+            case UNNECESSARY:
+                throw new ArithmeticException("Rounding necessary for " + dividend + " / " + divisor);
+            case DOWN:
+                increment = false;
+                break;
+            case UP:
+                increment = true;
+                break;
+            case FLOOR:
+                increment = signum < 0;
+                break;
+            case CEILING:
+                increment = signum > 0;
+                break;
+            case HALF_UP:
+            case HALF_DOWN:
+            case HALF_EVEN:
+                long absRemainder = Math.abs(remainder);
+                int comparison = Long.compare(absRemainder, Math.abs(divisor) - absRemainder);
+                if (comparison == 0) {
+                    increment = roundingMode == RoundingMode.HALF_UP
+                            || (roundingMode == RoundingMode.HALF_EVEN && (quotient & 1) != 0);
+                } else {
+                    increment = comparison > 0;
+                }
+                break;
+            default:
+                throw new IllegalArgumentException("Unsupported rounding mode : " + roundingMode);
+        }
+        return increment ? quotient + signum : quotient;
+    }
+
+    public static BigDecimal toBigDecimal(long cents) {
+        return BigDecimal.valueOf(cents, SCALE);
+    }
+
+    public static long fromBigDecimal(BigDecimal amount, RoundingMode roundingMode) {
+        return amount == null ? 0 : amount.setScale(SCALE, roundingMode).unscaledValue().longValueExact();
+    }
+
+    public static long fromDouble(double amount, RoundingMode roundingMode) {
+        return fromBigDecimal(BigDecimal.valueOf(amount), roundingMode);
+    }
+
+    public static double toDouble(long cents) {
+        return cents / (double) CENTS_PER_UNIT;
+    }
+
+    public static String format(long cents) {
+        long units = Math.abs(cents / CENTS_PER_UNIT);
+        long fraction = Math.abs(cents % CENTS_PER_UNIT);
+        return (cents < 0 ? "-" : "") + units + (fraction < 10 ? ".0" : ".") + fraction;
+    }
+}
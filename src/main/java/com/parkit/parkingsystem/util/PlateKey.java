@@ -0,0 +1,69 @@
+package com.parkit.parkingsystem.util;
+
+/**
+ * Packs a vehicle registration number of up to 10 characters into a
+ * {@code long}, 6 bits per character. Letters are folded to upper case to
+ * match the case-insensitive comparison MySQL applies to
+ * {@code vehicle_reg_number}. Plates that are empty, longer than 10
+ * characters or use other characters cannot be packed.
+ */
+public final class PlateKey {
+
+    public static final long NOT_PACKABLE = -1L;
+
+    private static final int MAX_LENGTH = 10;
+    private static final int BITS_PER_CHAR = 6;
+    private static final String ALPHABET = "0123456789ABCDEFGHIJKLMNOPQRSTUVWXYZ- ._/";
+
+    private PlateKey() {
+    }
+
+    public static long pack(CharSequence vehicleRegNumber) {
+        int length = vehicleRegNumber == null ? 0 : vehicleRegNumber.length();
+        if (length == 0 || length > MAX_LENGTH) {
+            return NOT_PACKABLE;
+        }
+        long key = 0;
+        for (int i = 0; i < length; i++) {
+            int code = encode(vehicleRegNumber.charAt(i));
+            if (code == 0) {
+                return NOT_PACKABLE;
+            }
+            key = (key << BITS_PER_CHAR) | code;
+        }
+        return key;
+    }
+
+    public static String unpack(long key) {
+        if (key <= 0) {
+            throw new IllegalArgumentException("Not a packed plate : " + key);
+        }
+        char[] chars = new char[MAX_LENGTH];
+        int position = MAX_LENGTH;
+        while (key != 0) {
+            chars[--position] = ALPHABET.charAt((int) (key & 0x3F) - 1);
+            key >>>= BITS_PER_CHAR;
+        }
+        return new String(chars, position, MAX_LENGTH - position);
+    }
+
+    private static int encode(char c) {
+        if (c >= '0' && c <= '9') {
+            return c - '0' + 1;
+        }
+        if (c >= 'A' && c <= 'Z') {
+            return c - 'A' + 11;
+        }
+        if (c >= 'a' && c <= 'z') {
+            return c - 'a' + 11;
+        }
+        switch (c) {
+            case '-': return 37;
+            case ' ': return 38;
+            case '.': return 39;
+            case '_': return 40;
+            case '/': return 41;
+            default: return 0;
+        }
+    }
+}
@@ -0,0 +1,22 @@
+/* Tables and spots of the original Data.sql; a no-op on databases it already set up */
+CREATE TABLE IF NOT EXISTS parking(
+ PARKING_NUMBER int PRIMARY KEY,
+ AVAILABLE bool NOT NULL,
+ TYPE varchar(10) NOT NULL
+);
+
+CREATE TABLE IF NOT EXISTS ticket(
+ ID int PRIMARY KEY AUTO_INCREMENT,
+ PARKING_NUMBER int NOT NULL,
+ VEHICLE_REG_NUMBER varchar(10) NOT NULL,
+ PRICE DECIMAL(10,2),
+ IN_TIME DATETIME NOT NULL,
+ OUT_TIME DATETIME,
+ FOREIGN KEY (PARKING_NUMBER)
+ REFERENCES parking(PARKING_NUMBER));
+
+INSERT IGNORE INTO parking(PARKING_NUMBER,AVAILABLE,TYPE) values(1,true,'CAR');
+INSERT IGNORE INTO parking(PARKING_NUMBER,AVAILABLE,TYPE) values(2,true,'CAR');
+INSERT IGNORE INTO parking(PARKING_NUMBER,AVAILABLE,TYPE) values(3,true,'CAR');
+INSERT IGNORE INTO parking(PARKING_NUMBER,AVAILABLE,TYPE) values(4,true,'BIKE');
+INSERT IGNORE INTO parking(PARKING_NUMBER,AVAILABLE,TYPE) values(5,true,'BIKE');
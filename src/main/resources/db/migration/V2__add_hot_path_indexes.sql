@@ -0,0 +1,8 @@
+/* GET_NEXT_PARKING_SPOT, CLAIM_PARKING_SPOT and COUNT_AVAILABLE_PARKING_SPOTS, answered from the index alone */
+CREATE INDEX idx_parking_type_available ON parking(TYPE, AVAILABLE, PARKING_NUMBER);
+
+/* GET_TICKET without a sort, GET_NB_TICKET and GET_VISIT_COUNTS from the index alone */
+CREATE INDEX idx_ticket_plate_in_time ON ticket(VEHICLE_REG_NUMBER, IN_TIME);
+
+/* GET_OPEN_TICKETS */
+CREATE INDEX idx_ticket_out_time ON ticket(OUT_TIME);
@@ -0,0 +1,17 @@
+/*
+ Yearly partitions of ticket by IN_TIME, so old years can be dropped or
+ archived without touching the current one. Partitioned tables take no
+ foreign key and every unique key must hold IN_TIME, so the foreign key to
+ parking goes and IN_TIME joins the primary key. Split pmax with
+ ALTER TABLE ticket REORGANIZE PARTITION before a year starts.
+*/
+ALTER TABLE ticket DROP FOREIGN KEY ticket_ibfk_1;
+
+ALTER TABLE ticket DROP PRIMARY KEY, ADD PRIMARY KEY (ID, IN_TIME);
+
+ALTER TABLE ticket PARTITION BY RANGE COLUMNS(IN_TIME) (
+ PARTITION p2024 VALUES LESS THAN ('2025-01-01'),
+ PARTITION p2025 VALUES LESS THAN ('2026-01-01'),
+ PARTITION p2026 VALUES LESS THAN ('2027-01-01'),
+ PARTITION p2027 VALUES LESS THAN ('2028-01-01'),
+ PARTITION pmax VALUES LESS THAN (MAXVALUE));
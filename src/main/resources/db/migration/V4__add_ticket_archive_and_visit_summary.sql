@@ -0,0 +1,18 @@
+/*
+ Closed tickets older than the retention move from ticket to ticket_archive
+ (see TicketArchiver), so the hot table holds about a day of traffic.
+ ticket_visit_summary keeps how many tickets of each plate were archived,
+ which GET_NB_TICKET and GET_VISIT_COUNTS add to the tickets still in ticket.
+*/
+CREATE TABLE IF NOT EXISTS ticket_archive(
+ ID int PRIMARY KEY,
+ PARKING_NUMBER int NOT NULL,
+ VEHICLE_REG_NUMBER varchar(10) NOT NULL,
+ PRICE DECIMAL(10,2),
+ IN_TIME DATETIME NOT NULL,
+ OUT_TIME DATETIME NOT NULL,
+ INDEX idx_ticket_archive_plate (VEHICLE_REG_NUMBER));
+
+CREATE TABLE IF NOT EXISTS ticket_visit_summary(
+ VEHICLE_REG_NUMBER varchar(10) PRIMARY KEY,
+ ARCHIVED_COUNT int NOT NULL);
@@ -0,0 +1,8 @@
+/*
+ V1 creates ticket only if it does not exist, so databases older than the
+ switch to integer cents still have PRICE as DOUBLE. DECIMAL(10,2) holds the
+ cents the fare calculator computes exactly.
+*/
+ALTER TABLE ticket MODIFY PRICE DECIMAL(10,2);
+
+ALTER TABLE ticket_archive MODIFY PRICE DECIMAL(10,2);
@@ -0,0 +1,95 @@
+package com.parkit.parkingsystem.analytics;
+
+import com.parkit.parkingsystem.constants.ParkingType;
+import org.junit.jupiter.api.Test;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TicketAnalyticsTest {
+
+    private static final ZoneId PARIS = ZoneId.of("Europe/Paris");
+
+    @Test
+    public void parallelQueriesShouldMatchARowByRowScan() {
+
+        // GIVEN
+        Random random = new Random(42);
+        TicketArchive.Builder builder = TicketArchive.builder();
+        //a year of tickets, across both daylight saving changes
+        long from = ZonedDateTime.of(2024, 1, 1, 0, 0, 0, 0, PARIS).toInstant().toEpochMilli();
+        for (int i = 0; i < 100_000; i++) {
+            long inTime = from + (long) (random.nextDouble() * 365 * 86_400_000L);
+            long outTime = inTime + random.nextInt(10 * 3_600_000);
+            ParkingType parkingType = random.nextBoolean() ? ParkingType.CAR : ParkingType.BIKE;
+            builder.add(inTime, outTime, 1 + random.nextInt(5), parkingType, random.nextInt(2_000), "AB" + random.nextInt(5_000));
+        }
+        TicketArchive archive = builder.build();
+
+        // WHEN
+        TicketAnalytics analytics = new TicketAnalytics(archive, PARIS);
+        SortedMap<LocalDate, Long> revenuePerDay = analytics.revenuePerDay(RowFilter.ofType(ParkingType.CAR));
+        Map<ParkingType, Long> revenuePerType = analytics.revenuePerType(RowFilter.ALL);
+        long[] revenuePerHour = analytics.revenuePerArrivalHour(RowFilter.ALL);
+        DwellTimeDistribution dwellTimes = analytics.dwellTimes(RowFilter.ofType(ParkingType.BIKE));
+
+        // THEN
+        SortedMap<LocalDate, Long> expectedPerDay = new TreeMap<>();
+        Map<ParkingType, Long> expectedPerType = new EnumMap<>(ParkingType.class);
+        long[] expectedPerHour = new long[24];
+        long[] bikeDwellTimes = new long[archive.size()];
+        int bikes = 0;
+        for (int row = 0; row < archive.size(); row++) {
+            long price = archive.getPriceCents(row);
+            if (archive.getParkingType(row) == ParkingType.CAR) {
+                expectedPerDay.merge(Instant.ofEpochMilli(archive.getOutTime(row)).atZone(PARIS).toLocalDate(), price, Long::sum);
+            } else {
+                bikeDwellTimes[bikes++] = archive.getDwellMillis(row);
+            }
+            expectedPerType.merge(archive.getParkingType(row), price, Long::sum);
+            expectedPerHour[Instant.ofEpochMilli(archive.getInTime(row)).atZone(PARIS).getHour()] += price;
+        }
+        bikeDwellTimes = Arrays.copyOf(bikeDwellTimes, bikes);
+        Arrays.sort(bikeDwellTimes);
+        assertEquals(expectedPerDay, revenuePerDay);
+        assertEquals(expectedPerType, revenuePerType);
+        assertArrayEquals(expectedPerHour, revenuePerHour);
+        assertEquals(bikes, dwellTimes.getCount());
+        assertEquals(bikeDwellTimes[(bikes + 1) / 2 - 1], dwellTimes.getPercentileMillis(0.5));
+        assertEquals(bikeDwellTimes[bikes - 1], dwellTimes.getMaxMillis());
+    }
+
+    @Test
+    public void platesShouldBeDictionaryEncoded() {
+
+        // GIVEN
+        TicketArchive archive = TicketArchive.builder()
+                .add(0, 3_600_000, 1, ParkingType.CAR, 150, "ab123")
+                .add(0, 7_200_000, 4, ParkingType.BIKE, 100, "CD456")
+                .add(86_400_000, 90_000_000, 2, ParkingType.CAR, 150, "AB123")
+                .build();
+
+        // WHEN
+        TicketAnalytics analytics = new TicketAnalytics(archive, ZoneId.of("UTC"));
+
+        // THEN
+        assertEquals(2, archive.getPlateCount());
+        assertEquals("AB123", archive.getPlate(0));
+        assertEquals(archive.getPlateId(0), archive.getPlateId(2));
+        assertEquals(-1, archive.plateIdOf("ZZ999"));
+        assertEquals(300, analytics.revenuePerType(RowFilter.ofPlate(archive, "Ab123")).get(ParkingType.CAR));
+        assertEquals(2, analytics.revenuePerDay(RowFilter.ALL).size());
+        assertEquals(400, analytics.revenuePerArrivalHour(RowFilter.ALL)[0]);
+        assertEquals(0, new TicketAnalytics(TicketArchive.builder().build(), ZoneId.of("UTC")).dwellTimes(RowFilter.ALL).getCount());
+    }
+}
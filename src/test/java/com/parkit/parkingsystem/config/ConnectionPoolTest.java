@@ -0,0 +1,197 @@
+package com.parkit.parkingsystem.config;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.SQLTransientConnectionException;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+public class ConnectionPoolTest {
+
+    private ConnectionPoolSettings settings;
+    private List<Connection> physicalConnections;
+    private ConnectionPool pool;
+
+    @BeforeEach
+    public void setUpPerTest() {
+        settings = new ConnectionPoolSettings();
+        settings.setMaxSize(2);
+        settings.setBorrowTimeoutMillis(50);
+        settings.setEvictionIntervalMillis(0);
+        physicalConnections = new ArrayList<>();
+    }
+
+    @AfterEach
+    public void tearDown() {
+        if (pool != null) {
+            pool.close();
+        }
+    }
+
+    private ConnectionPool newPool() {
+        return new ConnectionPool(() -> {
+            Connection connection = mock(Connection.class);
+            when(connection.getAutoCommit()).thenReturn(true);
+            physicalConnections.add(connection);
+            return connection;
+        }, settings);
+    }
+
+    @Test
+    public void borrowShouldReuseReturnedConnection() throws Exception {
+
+        // GIVEN
+        pool = newPool();
+        Connection first = pool.borrow();
+        pool.release(first);
+
+        // WHEN
+        Connection second = pool.borrow();
+
+        // THEN
+        assertSame(first, second);
+        assertEquals(1, pool.getCreatedCount());
+        assertEquals(2, pool.getBorrowCount());
+        verify(first, never()).close();
+    }
+
+    @Test
+    public void borrowShouldTimeOutWhenPoolIsExhausted() throws Exception {
+
+        // GIVEN
+        pool = newPool();
+        pool.borrow();
+        pool.borrow();
+
+        // WHEN / THEN
+        assertThrows(SQLTransientConnectionException.class, () -> pool.borrow());
+        assertEquals(1, pool.getTimeoutCount());
+        assertEquals(2, pool.getActiveCount());
+    }
+
+    @Test
+    public void borrowShouldReplaceConnectionFailingValidation() throws Exception {
+
+        // GIVEN
+        settings.setValidationIntervalMillis(0);
+        pool = newPool();
+        Connection first = pool.borrow();
+        pool.release(first);
+        when(first.isValid(anyInt())).thenReturn(false);
+
+        // WHEN
+        Connection second = pool.borrow();
+
+        // THEN
+        assertNotSame(first, second);
+        verify(first).close();
+        assertEquals(1, pool.getDestroyedCount());
+    }
+
+    @Test
+    public void releaseShouldCloseConnectionPastMaxLifetime() throws Exception {
+
+        // GIVEN
+        settings.setMaxLifetimeMillis(1);
+        pool = newPool();
+        Connection connection = pool.borrow();
+        Thread.sleep(5);
+
+        // WHEN
+        pool.release(connection);
+
+        // THEN
+        verify(connection).close();
+        assertEquals(0, pool.getIdleCount());
+    }
+
+    @Test
+    public void evictionShouldCloseIdleConnections() throws Exception {
+
+        // GIVEN
+        settings.setIdleTimeoutMillis(1);
+        pool = newPool();
+        Connection connection = pool.borrow();
+        pool.release(connection);
+        Thread.sleep(5);
+
+        // WHEN
+        pool.evictIdleConnections();
+
+        // THEN
+        verify(connection).close();
+        assertEquals(0, pool.getIdleCount());
+    }
+
+    @Test
+    public void releaseShouldRollBackOpenTransaction() throws Exception {
+
+        // GIVEN
+        pool = newPool();
+        Connection connection = pool.borrow();
+        when(connection.getAutoCommit()).thenReturn(false);
+
+        // WHEN
+        boolean released = pool.release(connection);
+
+        // THEN
+        assertTrue(released);
+        verify(connection).rollback();
+        verify(connection).setAutoCommit(true);
+        assertEquals(1, pool.getIdleCount());
+    }
+
+    @Test
+    public void releaseShouldIgnoreForeignConnection() {
+
+        // GIVEN
+        pool = newPool();
+
+        // WHEN / THEN
+        assertFalse(pool.release(mock(Connection.class)));
+    }
+
+    @Test
+    public void statementsShouldBeReusedAcrossBorrows() throws Exception {
+
+        // GIVEN
+        settings.setMaxSize(1);
+        settings.setStatementCacheSize(1);
+        pool = newPool();
+        Connection connection = pool.withStatementCache(pool.borrow());
+        Connection physicalConnection = physicalConnections.get(0);
+        when(physicalConnection.prepareStatement(anyString())).thenAnswer(invocation -> mock(PreparedStatement.class));
+        PreparedStatement first = connection.prepareStatement("SELECT 1");
+        first.setInt(1, 42);
+        first.close();
+        pool.release(connection);
+
+        // WHEN
+        Connection again = pool.withStatementCache(pool.borrow());
+        PreparedStatement second = again.prepareStatement("SELECT 1");
+        PreparedStatement other = again.prepareStatement("SELECT 2");
+        second.close();
+        other.close();
+
+        // THEN
+        assertSame(connection, again);
+        assertSame(first, second);
+        assertTrue(first.isClosed());
+        assertThrows(SQLException.class, () -> first.setInt(1, 7));
+        verify(physicalConnection, times(1)).prepareStatement("SELECT 1");
+        assertEquals(1, pool.getStatementCacheHits());
+        assertEquals(2, pool.getStatementCacheMisses());
+        assertEquals(1, pool.getStatementCacheEvictions());
+        assertEquals(1.0 / 3, pool.getStatementCacheHitRate(), 1e-9);
+        assertTrue(pool.release(again));
+        assertEquals(1, pool.getIdleCount());
+    }
+}
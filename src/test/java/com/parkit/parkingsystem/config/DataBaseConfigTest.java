@@ -0,0 +1,32 @@
+package com.parkit.parkingsystem.config;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class DataBaseConfigTest {
+
+    private static final String URL = "jdbc:mysql://localhost:3306/test";
+
+    @AfterEach
+    public void tearDown() {
+        DataBaseConfig.shutdownPools();
+    }
+
+    @Test
+    public void poolShouldBeSharedByConfigsOfTheSameUserOnly() throws Exception {
+
+        // GIVEN
+        DataBaseConfig first = new DataBaseConfig(URL, "root", "");
+        DataBaseConfig second = new DataBaseConfig(URL, "root", "");
+        DataBaseConfig reporting = new DataBaseConfig(URL, "report", "secret");
+
+        // WHEN
+        ConnectionPool pool = first.getPool();
+
+        // THEN
+        assertSame(pool, second.getPool());
+        assertNotSame(pool, reporting.getPool());
+    }
+}
@@ -0,0 +1,215 @@
+package com.parkit.parkingsystem.config;
+
+import com.parkit.parkingsystem.constants.DBConstants;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InOrder;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+public class SchemaMigratorTest {
+
+    @Mock
+    private DataBaseConfig dataBaseConfig;
+
+    @Mock
+    private Connection connection;
+
+    @Mock
+    private Statement statement;
+
+    @Mock
+    private PreparedStatement lockStatement;
+
+    @Mock
+    private ResultSet lockResult;
+
+    @Mock
+    private PreparedStatement versionsStatement;
+
+    @Mock
+    private ResultSet versionsResult;
+
+    @Mock
+    private PreparedStatement saveStatement;
+
+    private SchemaMigrator schemaMigrator;
+
+    private void givenLockedDatabase() throws Exception {
+        when(dataBaseConfig.getConnection()).thenReturn(connection);
+        when(connection.prepareStatement(DBConstants.LOCK_SCHEMA)).thenReturn(lockStatement);
+        when(lockStatement.executeQuery()).thenReturn(lockResult);
+        when(lockResult.next()).thenReturn(true);
+        when(lockResult.getInt(1)).thenReturn(1);
+        when(connection.prepareStatement(DBConstants.UNLOCK_SCHEMA)).thenReturn(mock(PreparedStatement.class));
+        when(connection.createStatement()).thenReturn(statement);
+        when(connection.prepareStatement(DBConstants.GET_SCHEMA_VERSIONS)).thenReturn(versionsStatement);
+        when(versionsStatement.executeQuery()).thenReturn(versionsResult);
+        schemaMigrator = new SchemaMigrator(dataBaseConfig);
+    }
+
+    private void givenForeignKeys(String name) throws Exception {
+        PreparedStatement foreignKeysStatement = mock(PreparedStatement.class);
+        ResultSet foreignKeys = mock(ResultSet.class);
+        when(connection.prepareStatement(DBConstants.GET_FOREIGN_KEYS)).thenReturn(foreignKeysStatement);
+        when(foreignKeysStatement.executeQuery()).thenReturn(foreignKeys);
+        when(foreignKeys.next()).thenReturn(true, false);
+        when(foreignKeys.getString(1)).thenReturn(name);
+    }
+
+    /**
+     * @param partitions name and bound pairs, as in information_schema
+     */
+    private void givenTicketPartitions(String... partitions) throws Exception {
+        PreparedStatement partitionsStatement = mock(PreparedStatement.class);
+        ResultSet rows = mock(ResultSet.class);
+        when(connection.prepareStatement(DBConstants.GET_TICKET_PARTITIONS)).thenReturn(partitionsStatement);
+        when(partitionsStatement.executeQuery()).thenReturn(rows);
+        int count = partitions.length / 2;
+        Boolean[] more = new Boolean[count];
+        Arrays.fill(more, true);
+        if (count == 0) {
+            when(rows.next()).thenReturn(false);
+            return;
+        }
+        more[count - 1] = false;
+        when(rows.next()).thenReturn(true, more);
+        String[] names = new String[count];
+        String[] bounds = new String[count];
+        for (int i = 0; i < count; i++) {
+            names[i] = partitions[2 * i];
+            bounds[i] = partitions[2 * i + 1];
+        }
+        when(rows.getString(1)).thenReturn(names[0], Arrays.copyOfRange(names, 1, count));
+        when(rows.getString(2)).thenReturn(bounds[0], Arrays.copyOfRange(bounds, 1, count));
+    }
+
+    @Test
+    public void pendingMigrationsShouldBeAppliedInOrderAndRecorded() throws Exception {
+
+        // GIVEN
+        givenLockedDatabase();
+        List<SchemaMigrator.Migration> migrations = SchemaMigrator.loadMigrations();
+        //V1 already applied
+        when(versionsResult.next()).thenReturn(true, false);
+        when(versionsResult.getInt(1)).thenReturn(1);
+        when(versionsResult.getLong(2)).thenReturn(migrations.get(0).checksum);
+        when(connection.prepareStatement(DBConstants.SAVE_SCHEMA_VERSION)).thenReturn(saveStatement);
+        givenForeignKeys("ticket_ibfk_1");
+        givenTicketPartitions();
+
+        // WHEN
+        boolean migrated = schemaMigrator.migrate();
+
+        // THEN
+        assertTrue(migrated);
+        InOrder inOrder = inOrder(statement, saveStatement);
+        inOrder.verify(statement).execute(DBConstants.CREATE_SCHEMA_VERSION);
+        inOrder.verify(statement).execute(startsWith("CREATE INDEX idx_parking_type_available"));
+        inOrder.verify(saveStatement).setInt(1, 2);
+        inOrder.verify(statement).execute("ALTER TABLE ticket DROP FOREIGN KEY ticket_ibfk_1");
+        inOrder.verify(statement).execute(startsWith("ALTER TABLE ticket PARTITION BY RANGE COLUMNS(IN_TIME)"));
+        inOrder.verify(saveStatement).setInt(1, 3);
+        inOrder.verify(statement).execute(startsWith("CREATE TABLE IF NOT EXISTS ticket_visit_summary"));
+        inOrder.verify(saveStatement).setInt(1, 4);
+        inOrder.verify(statement).execute("ALTER TABLE ticket MODIFY PRICE DECIMAL(10,2)");
+        inOrder.verify(statement).execute("ALTER TABLE ticket_archive MODIFY PRICE DECIMAL(10,2)");
+        inOrder.verify(saveStatement).setInt(1, 5);
+        verify(statement, never()).execute(startsWith("CREATE TABLE IF NOT EXISTS parking"));
+        verify(saveStatement, times(4)).execute();
+        verify(connection).prepareStatement(DBConstants.UNLOCK_SCHEMA);
+        verify(dataBaseConfig).closeConnection(connection);
+    }
+
+    @Test
+    public void changedMigrationShouldStopTheMigration() throws Exception {
+
+        // GIVEN
+        givenLockedDatabase();
+        when(versionsResult.next()).thenReturn(true, false);
+        when(versionsResult.getInt(1)).thenReturn(1);
+        when(versionsResult.getLong(2)).thenReturn(0L);
+
+        // WHEN
+        boolean migrated = schemaMigrator.migrate();
+
+        // THEN
+        assertFalse(migrated);
+        verify(statement, times(1)).execute(anyString());
+        verify(connection, never()).prepareStatement(DBConstants.SAVE_SCHEMA_VERSION);
+        verify(connection).prepareStatement(DBConstants.UNLOCK_SCHEMA);
+    }
+
+    @Test
+    public void scriptsShouldBeSplitIntoStatements() {
+        assertEquals(List.of("CREATE INDEX a ON t(x)", "ALTER TABLE t\n ADD c int"),
+                SchemaMigrator.statementsOf("/* indexes;\n of t */\nCREATE INDEX a ON t(x);\n-- then; a column\nALTER TABLE t\n ADD c int;\n"));
+    }
+
+    @Test
+    public void foreignKeyCreatedUnderAnotherNameShouldStillBeDropped() throws Exception {
+
+        // GIVEN
+        givenLockedDatabase();
+        List<SchemaMigrator.Migration> migrations = SchemaMigrator.loadMigrations();
+        //V1 and V2 already applied
+        when(versionsResult.next()).thenReturn(true, true, false);
+        when(versionsResult.getInt(1)).thenReturn(1, 2);
+        when(versionsResult.getLong(2)).thenReturn(migrations.get(0).checksum, migrations.get(1).checksum);
+        when(connection.prepareStatement(DBConstants.SAVE_SCHEMA_VERSION)).thenReturn(saveStatement);
+        givenForeignKeys("fk_ticket_parking");
+        givenTicketPartitions();
+
+        // WHEN
+        boolean migrated = schemaMigrator.migrate();
+
+        // THEN
+        assertTrue(migrated);
+        verify(statement).execute("ALTER TABLE ticket DROP FOREIGN KEY fk_ticket_parking");
+        verify(statement, never()).execute("ALTER TABLE ticket DROP FOREIGN KEY ticket_ibfk_1");
+    }
+
+    @Test
+    public void nextYearPartitionShouldBeSplitOffAheadOfTime() throws Exception {
+
+        // GIVEN
+        when(connection.createStatement()).thenReturn(statement);
+        givenTicketPartitions("p2026", "'2027-01-01'", "p2027", "'2028-01-01'", "pmax", "MAXVALUE");
+        schemaMigrator = new SchemaMigrator(dataBaseConfig);
+
+        // WHEN
+        schemaMigrator.extendTicketPartitions(connection, LocalDate.of(2027, 11, 15));
+
+        // THEN
+        verify(statement).execute("ALTER TABLE ticket REORGANIZE PARTITION pmax INTO ("
+                + "PARTITION p2028 VALUES LESS THAN ('2029-01-01'), PARTITION pmax VALUES LESS THAN (MAXVALUE))");
+        verify(statement, times(1)).execute(anyString());
+    }
+
+    @Test
+    public void partitionsCoveringTheLookaheadShouldBeLeftAlone() throws Exception {
+
+        // GIVEN
+        givenTicketPartitions("p2027", "'2028-01-01'", "pmax", "MAXVALUE");
+        schemaMigrator = new SchemaMigrator(dataBaseConfig);
+
+        // WHEN
+        schemaMigrator.extendTicketPartitions(connection, LocalDate.of(2027, 6, 1));
+
+        // THEN
+        verify(connection, never()).createStatement();
+    }
+}
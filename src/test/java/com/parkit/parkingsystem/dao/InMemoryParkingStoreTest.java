@@ -0,0 +1,154 @@
+package com.parkit.parkingsystem.dao;
+
+import com.parkit.parkingsystem.config.MemoryStoreSettings;
+import com.parkit.parkingsystem.constants.ParkingType;
+import com.parkit.parkingsystem.model.ExitResult;
+import com.parkit.parkingsystem.model.ParkingSpot;
+import com.parkit.parkingsystem.model.Ticket;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Date;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class InMemoryParkingStoreTest {
+
+    @TempDir
+    Path directory;
+
+    private MemoryStoreSettings settings() {
+        MemoryStoreSettings settings = new MemoryStoreSettings();
+        settings.setDirectory(directory);
+        settings.setSpots("CAR:2,BIKE:1");
+        settings.setSnapshotIntervalMillis(3_600_000);
+        settings.setFlushIntervalMillis(3_600_000);
+        return settings;
+    }
+
+    private static Ticket park(InMemoryParkingStore store, ParkingType parkingType, String vehicleRegNumber, long inTime) {
+        ParkingSpot parkingSpot = new ParkingSpot(store.getNextAvailableSlot(parkingType), parkingType, false);
+        assertTrue(store.updateParking(parkingSpot));
+        Ticket ticket = new Ticket();
+        ticket.setParkingSpot(parkingSpot);
+        ticket.setVehicleRegNumber(vehicleRegNumber);
+        ticket.setInTime(new Date(inTime));
+        assertTrue(store.saveTicket(ticket));
+        return ticket;
+    }
+
+    private List<Path> files(String prefix) throws Exception {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.filter(file -> file.getFileName().toString().startsWith(prefix)).toList();
+        }
+    }
+
+    @Test
+    public void spotsShouldBeReservedUntilOccupiedOrReleased() throws Exception {
+
+        // GIVEN
+        MemoryStoreSettings settings = settings();
+        settings.setDirectory(null);
+        InMemoryParkingStore store = new InMemoryParkingStore(settings);
+
+        // WHEN
+        int reserved = store.getNextAvailableSlot(ParkingType.BIKE);
+
+        // THEN
+        assertEquals(3, reserved);
+        assertEquals(-1, store.getNextAvailableSlot(ParkingType.BIKE));
+        store.releaseSlot(new ParkingSpot(reserved, ParkingType.BIKE, true));
+        assertEquals(1, store.getAvailableSlotCount(ParkingType.BIKE));
+        assertEquals(2, store.getAvailableSlotCount(ParkingType.CAR));
+        assertFalse(store.updateParking(new ParkingSpot(9, ParkingType.CAR, false)));
+        store.close();
+        assertTrue(files("").isEmpty());
+    }
+
+    @Test
+    public void stateShouldBeRestoredFromSnapshotAndChangeLog() throws Exception {
+
+        // GIVEN
+        InMemoryParkingStore store = new InMemoryParkingStore(settings());
+        Ticket first = park(store, ParkingType.CAR, "AB123", 1_000);
+        first.setOutTime(new Date(2_000));
+        first.setPriceCents(150);
+        store.updateTicket(first);
+        first.getParkingSpot().setAvailable(true);
+        store.updateParking(first.getParkingSpot());
+        store.snapshot();
+        park(store, ParkingType.CAR, "ab123", 3_000);
+        park(store, ParkingType.BIKE, "CD456", 4_000);
+        //a crash: the change log is flushed but no snapshot is taken on close
+        store.flushChangeLog();
+
+        // WHEN
+        InMemoryParkingStore restored = new InMemoryParkingStore(settings());
+
+        // THEN
+        assertEquals(3, restored.getTicketCount());
+        assertEquals(2, restored.getNbTicket("AB123"));
+        Ticket latest = restored.getTicket("AB123");
+        assertEquals(2, latest.getId());
+        assertNull(latest.getOutTime());
+        assertEquals(new Date(3_000), latest.getInTime());
+        assertEquals(1, restored.getAvailableSlotCount(ParkingType.CAR));
+        assertEquals(0, restored.getAvailableSlotCount(ParkingType.BIKE));
+        assertEquals(1, files("snapshot-").size());
+        restored.close();
+        store.close();
+    }
+
+    @Test
+    public void ticketShouldBeClosedOnlyOnce() throws Exception {
+
+        // GIVEN
+        MemoryStoreSettings settings = settings();
+        settings.setDirectory(null);
+        InMemoryParkingStore store = new InMemoryParkingStore(settings);
+        Ticket ticket = park(store, ParkingType.CAR, "AB123", 1_000);
+        ticket.setOutTime(new Date(2_000));
+        ticket.setPriceCents(150);
+
+        // WHEN
+        ExitResult.Status first = store.closeTicket(ticket);
+        ticket.setOutTime(new Date(3_000));
+        ExitResult.Status second = store.closeTicket(ticket);
+
+        // THEN
+        assertEquals(ExitResult.Status.SUCCESS, first);
+        assertEquals(ExitResult.Status.NO_TICKET_FOUND, second);
+        assertEquals(new Date(2_000), store.getTicket("AB123").getOutTime());
+        store.close();
+    }
+
+    @Test
+    public void tornChangeLogShouldBeReplayedUpToTheLastGoodRecord() throws Exception {
+
+        // GIVEN
+        InMemoryParkingStore store = new InMemoryParkingStore(settings());
+        park(store, ParkingType.CAR, "AB123", 1_000);
+        park(store, ParkingType.CAR, "CD456", 2_000);
+        store.flushChangeLog();
+        Path changeLog = files("changes-").get(0);
+        try (RandomAccessFile file = new RandomAccessFile(changeLog.toFile(), "rw")) {
+            file.setLength(file.length() - 3);
+        }
+
+        // WHEN
+        InMemoryParkingStore restored = new InMemoryParkingStore(settings());
+
+        // THEN
+        assertEquals(1, restored.getTicketCount());
+        assertNull(restored.getTicket("CD456"));
+        //the spot update of the second entry survived, its ticket did not
+        assertEquals(0, restored.getAvailableSlotCount(ParkingType.CAR));
+        restored.close();
+        store.close();
+    }
+}
@@ -0,0 +1,128 @@
+package com.parkit.parkingsystem.dao;
+
+import com.parkit.parkingsystem.config.TicketStoreSettings;
+import com.parkit.parkingsystem.constants.ParkingType;
+import com.parkit.parkingsystem.model.ParkingSpot;
+import com.parkit.parkingsystem.model.Ticket;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Date;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class MappedTicketStoreTest {
+
+    @TempDir
+    Path directory;
+
+    private TicketStoreSettings settings(int recordsPerSegment) {
+        TicketStoreSettings settings = new TicketStoreSettings();
+        settings.setDirectory(directory);
+        settings.setRecordsPerSegment(recordsPerSegment);
+        settings.setFsyncPolicy(TicketStoreSettings.FsyncPolicy.NEVER);
+        return settings;
+    }
+
+    private static Ticket ticket(String vehicleRegNumber, long inTime) {
+        Ticket ticket = new Ticket();
+        ticket.setParkingSpot(new ParkingSpot(4, ParkingType.BIKE, false));
+        ticket.setVehicleRegNumber(vehicleRegNumber);
+        ticket.setInTime(new Date(inTime));
+        return ticket;
+    }
+
+    @Test
+    public void ticketsShouldBeRecoveredAfterReopening() throws Exception {
+
+        // GIVEN
+        MappedTicketStore store = new MappedTicketStore(settings(16));
+        int first = store.append(ticket("AB123", 1_000));
+        int second = store.append(ticket("ab123", 5_000));
+        store.append(ticket("CD456", 2_000));
+        assertTrue(store.recordExit(first, new Date(3_000), 150));
+        store.close();
+
+        // WHEN
+        MappedTicketStore reopened = new MappedTicketStore(settings(16));
+
+        // THEN
+        Ticket latest = reopened.findLatest("AB123");
+        assertEquals(second, latest.getId());
+        assertEquals(ParkingType.BIKE, latest.getParkingSpot().getParkingType());
+        assertEquals(4, latest.getParkingSpot().getId());
+        assertEquals(new Date(5_000), latest.getInTime());
+        assertNull(latest.getOutTime());
+        assertEquals(2, reopened.getVisitCount("Ab123"));
+        assertEquals(2, reopened.getOpenTicketCount());
+        assertEquals(4, reopened.append(ticket("EF789", 6_000)));
+        reopened.close();
+    }
+
+    @Test
+    public void tornRecordsShouldEndTheLog() throws Exception {
+
+        // GIVEN
+        MappedTicketStore store = new MappedTicketStore(settings(16));
+        int closed = store.append(ticket("AB123", 1_000));
+        store.recordExit(closed, new Date(3_000), 150);
+        store.append(ticket("CD456", 2_000));
+        store.append(ticket("EF789", 2_500));
+        store.close();
+        Path segment = directory.resolve("tickets-0000000000.seg");
+        try (RandomAccessFile file = new RandomAccessFile(segment.toFile(), "rw")) {
+            //exit price of ticket 1, then plate of ticket 2
+            file.seek(MappedTicketStore.RECORD_SIZE + 56);
+            file.writeLong(999);
+            file.seek(2L * MappedTicketStore.RECORD_SIZE + 12);
+            file.writeByte('X');
+        }
+
+        // WHEN
+        MappedTicketStore reopened = new MappedTicketStore(settings(16));
+
+        // THEN
+        assertNull(reopened.findLatest("AB123").getOutTime());
+        assertNull(reopened.findLatest("CD456"));
+        assertNull(reopened.findLatest("EF789"));
+        assertEquals(0, reopened.getVisitCount("EF789"));
+        assertEquals(2, reopened.append(ticket("GH012", 4_000)));
+        reopened.close();
+    }
+
+    @Test
+    public void closedSegmentsShouldBeCompactedKeepingVisitCounts() throws Exception {
+
+        // GIVEN
+        MappedTicketStore store = new MappedTicketStore(settings(2));
+        int parked = store.append(ticket("LONGSTAY", 0));
+        for (int i = 0; i < 5; i++) {
+            int id = store.append(ticket("AB123", i));
+            store.recordExit(id, new Date(i + 1), 100);
+        }
+
+        // WHEN
+        store.append(ticket("AB123", 10));
+
+        // THEN
+        assertEquals(2, store.getSegmentCount());
+        assertTrue(Files.exists(directory.resolve("tickets-0000000000.seg")));
+        assertFalse(Files.exists(directory.resolve("tickets-0000000001.seg")));
+        assertFalse(store.recordExit(3, new Date(20), 100));
+        assertEquals(6, store.getVisitCount("AB123"));
+        store.recordExit(parked, new Date(30), 100);
+        assertEquals(1, store.compact());
+        store.close();
+
+        MappedTicketStore reopened = new MappedTicketStore(settings(2));
+        assertEquals(1, reopened.getSegmentCount());
+        assertEquals(6, reopened.getVisitCount("AB123"));
+        assertEquals(1, reopened.getVisitCount("LONGSTAY"));
+        assertNull(reopened.findLatest("LONGSTAY"));
+        assertEquals(7, reopened.findLatest("AB123").getId());
+        reopened.close();
+    }
+}
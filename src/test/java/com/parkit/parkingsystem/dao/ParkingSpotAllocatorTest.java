@@ -0,0 +1,107 @@
+package com.parkit.parkingsystem.dao;
+
+import com.parkit.parkingsystem.constants.ParkingType;
+import com.parkit.parkingsystem.model.ParkingSpot;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ParkingSpotAllocatorTest {
+
+    private ParkingSpotAllocator allocator;
+
+    @BeforeEach
+    public void setUpPerTest() {
+        allocator = new ParkingSpotAllocator(List.of(
+                new ParkingSpot(1, ParkingType.CAR, false),
+                new ParkingSpot(2, ParkingType.CAR, true),
+                new ParkingSpot(3, ParkingType.CAR, true),
+                new ParkingSpot(4, ParkingType.BIKE, true),
+                new ParkingSpot(5, ParkingType.BIKE, true)));
+    }
+
+    @Test
+    public void claimShouldReturnLowestFreeSpotOfType() {
+
+        // WHEN
+        int firstCar = allocator.claim(ParkingType.CAR);
+        int secondCar = allocator.claim(ParkingType.CAR);
+        int firstBike = allocator.claim(ParkingType.BIKE);
+
+        // THEN
+        assertEquals(2, firstCar);
+        assertEquals(3, secondCar);
+        assertEquals(4, firstBike);
+        assertEquals(-1, allocator.claim(ParkingType.CAR));
+    }
+
+    @Test
+    public void releaseShouldMakeSpotClaimableAgain() {
+
+        // GIVEN
+        allocator.claim(ParkingType.CAR);
+        allocator.claim(ParkingType.CAR);
+
+        // WHEN
+        boolean released = allocator.release(1);
+
+        // THEN
+        assertTrue(released);
+        assertFalse(allocator.release(1));
+        assertEquals(1, allocator.getAvailableCount(ParkingType.CAR));
+        assertEquals(1, allocator.claim(ParkingType.CAR));
+    }
+
+    @Test
+    public void claimByNumberShouldFailForTakenOrUnknownSpot() {
+
+        // THEN
+        assertFalse(allocator.claim(1));
+        assertTrue(allocator.claim(2));
+        assertFalse(allocator.isAvailable(2));
+        assertFalse(allocator.claim(42));
+    }
+
+    @Test
+    public void concurrentClaimsShouldNeverHandOutTheSameSpot() throws Exception {
+
+        // GIVEN
+        List<ParkingSpot> spots = new ArrayList<>();
+        for (int number = 1; number <= 500; number++) {
+            spots.add(new ParkingSpot(number, ParkingType.CAR, true));
+        }
+        ParkingSpotAllocator bigAllocator = new ParkingSpotAllocator(spots);
+        Set<Integer> claimed = ConcurrentHashMap.newKeySet();
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        CountDownLatch start = new CountDownLatch(1);
+
+        // WHEN
+        for (int gate = 0; gate < 8; gate++) {
+            executor.submit(() -> {
+                start.await();
+                int number;
+                while ((number = bigAllocator.claim(ParkingType.CAR)) > 0) {
+                    assertTrue(claimed.add(number), "Spot handed out twice : " + number);
+                }
+                return null;
+            });
+        }
+        start.countDown();
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+
+        // THEN
+        assertEquals(500, claimed.size());
+        assertEquals(0, bigAllocator.getAvailableCount(ParkingType.CAR));
+    }
+}
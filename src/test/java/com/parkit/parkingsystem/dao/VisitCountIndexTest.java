@@ -0,0 +1,61 @@
+package com.parkit.parkingsystem.dao;
+
+import com.parkit.parkingsystem.util.PlateKey;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class VisitCountIndexTest {
+
+    @Test
+    public void plateKeyShouldRoundTripAndFoldCase() {
+
+        // WHEN
+        long key = PlateKey.pack("ab-123-CD");
+
+        // THEN
+        assertTrue(key > 0);
+        assertEquals(key, PlateKey.pack("AB-123-cd"));
+        assertEquals("AB-123-CD", PlateKey.unpack(key));
+        assertNotEquals(PlateKey.pack("A1"), PlateKey.pack("1A"));
+    }
+
+    @Test
+    public void plateKeyShouldRejectUnpackablePlates() {
+
+        // THEN
+        assertEquals(PlateKey.NOT_PACKABLE, PlateKey.pack(""));
+        assertEquals(PlateKey.NOT_PACKABLE, PlateKey.pack("ABCDEFGHIJK"));
+        assertEquals(PlateKey.NOT_PACKABLE, PlateKey.pack("ÉTÉ-42"));
+    }
+
+    @Test
+    public void countsShouldSurviveGrowth() {
+
+        // GIVEN
+        VisitCountIndex index = new VisitCountIndex(4);
+
+        // WHEN
+        for (int i = 0; i < 5_000; i++) {
+            index.add("CAR" + i, i % 7 + 1);
+        }
+        index.increment("CAR42");
+
+        // THEN
+        assertEquals(5_000, index.size());
+        assertEquals(42 % 7 + 2, index.getCount("car42"));
+        assertEquals(4_999 % 7 + 1, index.getCount("CAR4999"));
+        assertEquals(0, index.getCount("UNSEEN"));
+    }
+
+    @Test
+    public void unpackablePlatesShouldBeUnknown() {
+
+        // GIVEN
+        VisitCountIndex index = new VisitCountIndex();
+
+        // THEN
+        assertEquals(VisitCountIndex.UNKNOWN, index.increment("TOO-LONG-PLATE"));
+        assertEquals(VisitCountIndex.UNKNOWN, index.getCount("TOO-LONG-PLATE"));
+    }
+}
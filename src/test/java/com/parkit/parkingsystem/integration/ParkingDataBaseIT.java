@@ -6,6 +6,7 @@ import com.parkit.parkingsystem.dao.ParkingSpotDAO;
 import com.parkit.parkingsystem.dao.TicketDAO;
 import com.parkit.parkingsystem.integration.config.DataBaseTestConfig;
 import com.parkit.parkingsystem.integration.service.DataBasePrepareService;
+import com.parkit.parkingsystem.model.ExitResult;
 import com.parkit.parkingsystem.model.ParkingSpot;
 import com.parkit.parkingsystem.model.Ticket;
 import com.parkit.parkingsystem.service.ParkingService;
@@ -90,15 +91,16 @@ public class ParkingDataBaseIT {
         ParkingService parkingService = new ParkingService(inputReaderUtil, parkingSpotDAO, ticketDAO);
 
         // WHEN
-        parkingService.processExitingVehicle();
+        ExitResult result = parkingService.processExitingVehicle(inputReaderUtil.readVehicleRegistrationNumber());
 
-        Ticket ticket = ticketDAO.getTicket(inputReaderUtil.readVehicleRegistrationNumber());
+        Ticket ticket = result.getTicket();
         int parkingSpot = parkingSpotDAO.getNextAvailableSlot(ParkingType.CAR);
 
         // THEN
         assertAll("Error during parking car exit test",
                 () -> Assertions.assertEquals(1, parkingSpot, "Error with parking table not update in DB."),
-                () -> Assertions.assertNotNull((ticket.getOutTime()), "Error with the ticket out time which is null."));
+                () -> Assertions.assertNotNull((ticket.getOutTime()), "Error with the ticket out time which is null."),
+                () -> Assertions.assertNull(ticketDAO.getTicket(ticket.getVehicleRegNumber()), "Error, the closed ticket is still open."));
     }
 
     @Test
@@ -111,30 +113,18 @@ public class ParkingDataBaseIT {
 
         // WHEN
         parkingService.processIncomingVehicle();
-
-        Ticket ticket = ticketDAO.getTicket(vehicleRegNumber);
-        ticket.setInTime(new Date(System.currentTimeMillis()));
-        ticket.setOutTime(new Date(System.currentTimeMillis() + 60 * 60 * 1000));
-        ticketDAO.updateTicket(ticket);
-
-        parkingService.processExitingVehicle();
-        parkingService.processIncomingVehicle();
-
-        Ticket secondTicket = ticketDAO.getTicket(vehicleRegNumber);
-        secondTicket.setOutTime(new Date(System.currentTimeMillis() + 60 * 60 * 1000));
-        ticketDAO.updateTicket(secondTicket);
-
-        parkingService.processExitingVehicle();
+        parkingService.processExitingVehicle(vehicleRegNumber, new Date(NEW_OUT_TIME));
+        parkingService.processIncomingVehicle(ParkingType.CAR, vehicleRegNumber, new Date(NEW_OUT_TIME));
+        ExitResult result = parkingService.processExitingVehicle(vehicleRegNumber, new Date(NEW_OUT_TIME + 60 * 60 * 1000));
 
         // THEN
-        ticket = ticketDAO.getTicket(vehicleRegNumber);
+        Ticket ticket = result.getTicket();
 
         double expectedFare =
                 Math.round(Fare.CAR_RATE_PER_HOUR * 0.95 * 100.0) / 100.0;
 
         assertNotNull(ticket.getOutTime());
         assertEquals(expectedFare, ticket.getPrice(), 0.01, "5% discount for a recurring user.");
-
-        parkingService.processExitingVehicle();
+        assertEquals(ExitResult.Status.NO_TICKET_FOUND, parkingService.processExitingVehicle(vehicleRegNumber).getStatus());
     }
 }
@@ -0,0 +1,182 @@
+package com.parkit.parkingsystem.integration.dao;
+
+import com.parkit.parkingsystem.config.DataBaseConfig;
+import com.parkit.parkingsystem.constants.DBConstants;
+import com.parkit.parkingsystem.constants.ParkingType;
+import com.parkit.parkingsystem.dao.ParkingEntryDAO;
+import com.parkit.parkingsystem.model.EntryResult;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InOrder;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Date;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class ParkingEntryDAOTest {
+
+    @InjectMocks
+    private ParkingEntryDAO parkingEntryDAO;
+
+    @Mock
+    private DataBaseConfig dataBaseConfig;
+
+    @Mock
+    private Connection connection;
+
+    @Mock
+    private PreparedStatement claimStatement;
+
+    @Mock
+    private ResultSet claimResult;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        when(dataBaseConfig.getConnection()).thenReturn(connection);
+        when(connection.prepareStatement(DBConstants.CLAIM_PARKING_SPOT)).thenReturn(claimStatement);
+        when(claimStatement.executeQuery()).thenReturn(claimResult);
+    }
+
+    @Test
+    void enterVehicleShouldClaimSpotAndSaveTicketInOneTransaction() throws Exception {
+
+        // GIVEN
+        PreparedStatement updateStatement = mock(PreparedStatement.class);
+        PreparedStatement countStatement = mock(PreparedStatement.class);
+        PreparedStatement saveStatement = mock(PreparedStatement.class);
+        ResultSet countResult = mock(ResultSet.class);
+        ResultSet keys = mock(ResultSet.class);
+        when(claimResult.next()).thenReturn(true);
+        when(claimResult.getInt(1)).thenReturn(2);
+        when(connection.prepareStatement(DBConstants.UPDATE_PARKING_SPOT)).thenReturn(updateStatement);
+        when(updateStatement.executeUpdate()).thenReturn(1);
+        when(connection.prepareStatement(DBConstants.GET_NB_TICKET)).thenReturn(countStatement);
+        when(countStatement.executeQuery()).thenReturn(countResult);
+        when(countResult.next()).thenReturn(true);
+        when(countResult.getInt(1)).thenReturn(3);
+        when(connection.prepareStatement(DBConstants.SAVE_TICKET, Statement.RETURN_GENERATED_KEYS)).thenReturn(saveStatement);
+        when(saveStatement.getGeneratedKeys()).thenReturn(keys);
+        when(keys.next()).thenReturn(true);
+        when(keys.getInt(1)).thenReturn(42);
+
+        // WHEN
+        EntryResult result = parkingEntryDAO.enterVehicle(ParkingType.CAR, "ABCDEF", new Date());
+
+        // THEN
+        assertTrue(result.isSuccess());
+        assertEquals(3, result.getNbTicket());
+        assertEquals(42, result.getTicket().getId());
+        assertEquals(2, result.getTicket().getParkingSpot().getId());
+        verify(updateStatement).setBoolean(1, false);
+        verify(updateStatement).setInt(2, 2);
+        verify(saveStatement).setString(2, "ABCDEF");
+        InOrder inOrder = inOrder(connection, dataBaseConfig);
+        inOrder.verify(connection).setAutoCommit(false);
+        inOrder.verify(connection).commit();
+        inOrder.verify(dataBaseConfig).closeConnection(connection);
+    }
+
+    @Test
+    void enterVehicleShouldRollBackWhenTheSpotIsNotUpdated() throws Exception {
+
+        // GIVEN
+        PreparedStatement updateStatement = mock(PreparedStatement.class);
+        when(claimResult.next()).thenReturn(true);
+        when(claimResult.getInt(1)).thenReturn(2);
+        when(connection.prepareStatement(DBConstants.UPDATE_PARKING_SPOT)).thenReturn(updateStatement);
+        when(updateStatement.executeUpdate()).thenReturn(0);
+
+        // WHEN
+        EntryResult result = parkingEntryDAO.enterVehicle(ParkingType.CAR, "ABCDEF", new Date());
+
+        // THEN
+        assertEquals(EntryResult.Status.ERROR, result.getStatus());
+        verify(connection).rollback();
+        verify(connection, never()).commit();
+        verify(connection, never()).prepareStatement(DBConstants.SAVE_TICKET, Statement.RETURN_GENERATED_KEYS);
+    }
+
+    @Test
+    void enterVehicleShouldReportContentionWhenFreeSpotsAreLocked() throws Exception {
+
+        // GIVEN
+        PreparedStatement countStatement = mock(PreparedStatement.class);
+        ResultSet countResult = mock(ResultSet.class);
+        when(claimResult.next()).thenReturn(false);
+        when(connection.prepareStatement(DBConstants.COUNT_AVAILABLE_PARKING_SPOTS)).thenReturn(countStatement);
+        when(countStatement.executeQuery()).thenReturn(countResult);
+        when(countResult.next()).thenReturn(true);
+        when(countResult.getInt(1)).thenReturn(1);
+
+        // WHEN
+        EntryResult result = parkingEntryDAO.enterVehicle(ParkingType.CAR, "ABCDEF", new Date());
+
+        // THEN
+        assertEquals(EntryResult.Status.CONTENTION, result.getStatus());
+        verify(connection).rollback();
+        verify(connection, never()).commit();
+    }
+
+    @Test
+    void enterVehicleShouldReportFullParking() throws Exception {
+
+        // GIVEN
+        PreparedStatement countStatement = mock(PreparedStatement.class);
+        ResultSet countResult = mock(ResultSet.class);
+        when(claimResult.next()).thenReturn(false);
+        when(connection.prepareStatement(DBConstants.COUNT_AVAILABLE_PARKING_SPOTS)).thenReturn(countStatement);
+        when(countStatement.executeQuery()).thenReturn(countResult);
+        when(countResult.next()).thenReturn(true);
+        when(countResult.getInt(1)).thenReturn(0);
+
+        // WHEN
+        EntryResult result = parkingEntryDAO.enterVehicle(ParkingType.BIKE, "ABCDEF", new Date());
+
+        // THEN
+        assertEquals(EntryResult.Status.NO_SPOT_AVAILABLE, result.getStatus());
+        assertNull(result.getTicket());
+    }
+
+    @Test
+    void enterVehicleShouldReportContentionOnDeadlock() throws Exception {
+
+        // GIVEN
+        when(claimResult.next()).thenReturn(true);
+        when(claimResult.getInt(1)).thenReturn(2);
+        when(connection.prepareStatement(DBConstants.UPDATE_PARKING_SPOT))
+                .thenThrow(new SQLException("Deadlock found", "40001", 1213));
+
+        // WHEN
+        EntryResult result = parkingEntryDAO.enterVehicle(ParkingType.CAR, "ABCDEF", new Date());
+
+        // THEN
+        assertEquals(EntryResult.Status.CONTENTION, result.getStatus());
+        verify(connection).rollback();
+        verify(dataBaseConfig).closeConnection(connection);
+    }
+
+    @Test
+    void enterVehicleShouldReportErrorAndRollBack() throws Exception {
+
+        // GIVEN
+        when(claimResult.next()).thenThrow(new SQLException("Connection reset", "08S01"));
+
+        // WHEN
+        EntryResult result = parkingEntryDAO.enterVehicle(ParkingType.CAR, "ABCDEF", new Date());
+
+        // THEN
+        assertEquals(EntryResult.Status.ERROR, result.getStatus());
+        verify(connection).rollback();
+    }
+}
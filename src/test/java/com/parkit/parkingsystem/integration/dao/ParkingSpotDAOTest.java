@@ -3,6 +3,7 @@ package com.parkit.parkingsystem.integration.dao;
 import com.parkit.parkingsystem.config.DataBaseConfig;
 import com.parkit.parkingsystem.constants.DBConstants;
 import com.parkit.parkingsystem.constants.ParkingType;
+import com.parkit.parkingsystem.dao.ParkingSpotAllocator;
 import com.parkit.parkingsystem.dao.ParkingSpotDAO;
 import com.parkit.parkingsystem.model.ParkingSpot;
 import org.junit.jupiter.api.BeforeEach;
@@ -15,6 +16,7 @@ import org.mockito.junit.jupiter.MockitoExtension;
 import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
+import java.util.List;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.Mockito.*;
@@ -140,4 +142,69 @@ class ParkingSpotDAOTest {
         // THEN
         assertFalse(result);
     }
+
+    @Test
+    void updateParkingShouldWriteThroughAllocatorClaims() throws Exception {
+
+        // GIVEN
+        parkingSpotDAO.parkingSpotAllocator = new ParkingSpotAllocator(List.of(
+                new ParkingSpot(1, ParkingType.CAR, true),
+                new ParkingSpot(2, ParkingType.CAR, true)));
+        when(connection.prepareStatement(DBConstants.UPDATE_PARKING_SPOT)).thenReturn(preparedStatement);
+        when(preparedStatement.executeUpdate()).thenReturn(1);
+
+        // WHEN
+        int slot = parkingSpotDAO.getNextAvailableSlot(ParkingType.CAR);
+        parkingSpotDAO.updateParking(new ParkingSpot(slot, ParkingType.CAR, false));
+        int nextSlot = parkingSpotDAO.getNextAvailableSlot(ParkingType.CAR);
+        parkingSpotDAO.updateParking(new ParkingSpot(slot, ParkingType.CAR, true));
+
+        // THEN
+        assertEquals(1, slot);
+        assertEquals(2, nextSlot);
+        assertTrue(parkingSpotDAO.parkingSpotAllocator.isAvailable(1));
+        verify(connection, never()).prepareStatement(DBConstants.GET_NEXT_PARKING_SPOT);
+        verify(preparedStatement).setBoolean(1, false);
+        verify(preparedStatement).setBoolean(1, true);
+    }
+
+    @Test
+    void failedOccupyShouldHandTheClaimBackToTheAllocator() throws Exception {
+
+        // GIVEN
+        parkingSpotDAO.parkingSpotAllocator = new ParkingSpotAllocator(List.of(
+                new ParkingSpot(1, ParkingType.CAR, true)));
+        when(connection.prepareStatement(DBConstants.UPDATE_PARKING_SPOT)).thenReturn(preparedStatement);
+        when(preparedStatement.executeUpdate()).thenReturn(0);
+
+        // WHEN
+        int slot = parkingSpotDAO.getNextAvailableSlot(ParkingType.CAR);
+        boolean updated = parkingSpotDAO.updateParking(new ParkingSpot(slot, ParkingType.CAR, false));
+
+        // THEN
+        assertFalse(updated);
+        assertTrue(parkingSpotDAO.parkingSpotAllocator.isAvailable(1));
+        assertEquals(1, parkingSpotDAO.getNextAvailableSlot(ParkingType.CAR));
+    }
+
+    @Test
+    void getParkingSpotsShouldMapEveryRow() throws Exception {
+
+        // GIVEN
+        when(connection.prepareStatement(DBConstants.GET_PARKING_SPOTS)).thenReturn(preparedStatement);
+        when(preparedStatement.executeQuery()).thenReturn(resultSet);
+        when(resultSet.next()).thenReturn(true, true, false);
+        when(resultSet.getInt(1)).thenReturn(1, 4);
+        when(resultSet.getBoolean(2)).thenReturn(true, false);
+        when(resultSet.getString(3)).thenReturn("CAR", "BIKE");
+
+        // WHEN
+        List<ParkingSpot> spots = parkingSpotDAO.getParkingSpots();
+
+        // THEN
+        assertEquals(2, spots.size());
+        assertEquals(ParkingType.BIKE, spots.get(1).getParkingType());
+        assertFalse(spots.get(1).isAvailable());
+        verify(dataBaseConfig).closeConnection(connection);
+    }
 }
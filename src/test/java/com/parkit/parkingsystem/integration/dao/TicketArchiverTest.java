@@ -0,0 +1,115 @@
+package com.parkit.parkingsystem.integration.dao;
+
+import com.parkit.parkingsystem.config.DataBaseConfig;
+import com.parkit.parkingsystem.constants.DBConstants;
+import com.parkit.parkingsystem.dao.TicketArchiver;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.InOrder;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Timestamp;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+class TicketArchiverTest {
+
+    private static final long NOW = 1_700_000_000_000L;
+    private static final Timestamp CUTOFF = new Timestamp(NOW - 24 * 60 * 60 * 1000L);
+
+    private DataBaseConfig dataBaseConfig;
+    private Connection connection;
+    private PreparedStatement idsStatement;
+    private ResultSet ids;
+    private PreparedStatement archiveStatement;
+    private PreparedStatement summaryStatement;
+    private PreparedStatement deleteStatement;
+    private TicketArchiver archiver;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        dataBaseConfig = mock(DataBaseConfig.class);
+        connection = mock(Connection.class);
+        idsStatement = mock(PreparedStatement.class);
+        ids = mock(ResultSet.class);
+        archiveStatement = mock(PreparedStatement.class);
+        summaryStatement = mock(PreparedStatement.class);
+        deleteStatement = mock(PreparedStatement.class);
+        when(dataBaseConfig.getConnection()).thenReturn(connection);
+        when(connection.prepareStatement(DBConstants.GET_ARCHIVABLE_TICKET_IDS)).thenReturn(idsStatement);
+        when(idsStatement.executeQuery()).thenReturn(ids);
+        when(connection.prepareStatement(DBConstants.ARCHIVE_TICKETS)).thenReturn(archiveStatement);
+        when(connection.prepareStatement(DBConstants.SUMMARIZE_ARCHIVED_TICKETS)).thenReturn(summaryStatement);
+        when(connection.prepareStatement(DBConstants.DELETE_ARCHIVED_TICKETS)).thenReturn(deleteStatement);
+        archiver = new TicketArchiver(dataBaseConfig, 1, 2, 0, 60_000);
+    }
+
+    @Test
+    void closedTicketsShouldBeMovedOneBatchPerTransaction() throws Exception {
+
+        // GIVEN
+        //ids 3 and 7, then 9, then nothing left
+        when(ids.next()).thenReturn(true, true, false, true, false, false);
+        when(ids.getInt(1)).thenReturn(3, 7, 9);
+        when(archiveStatement.executeUpdate()).thenReturn(2, 1);
+        when(deleteStatement.executeUpdate()).thenReturn(2, 1);
+
+        // WHEN
+        int archived = archiver.archive(NOW);
+
+        // THEN
+        assertEquals(3, archived);
+        InOrder inOrder = inOrder(idsStatement, archiveStatement, summaryStatement, deleteStatement, connection);
+        inOrder.verify(idsStatement).setInt(1, 0);
+        inOrder.verify(archiveStatement).setInt(2, 7);
+        inOrder.verify(summaryStatement).executeUpdate();
+        inOrder.verify(deleteStatement).executeUpdate();
+        inOrder.verify(connection).commit();
+        inOrder.verify(idsStatement).setInt(1, 7);
+        inOrder.verify(archiveStatement).setInt(1, 7);
+        inOrder.verify(archiveStatement).setInt(2, 9);
+        inOrder.verify(connection).commit();
+        inOrder.verify(idsStatement).setInt(1, 9);
+        verify(idsStatement, times(3)).setInt(4, 2);
+        verify(deleteStatement, times(2)).setTimestamp(4, CUTOFF);
+        verify(connection, never()).rollback();
+    }
+
+    @Test
+    void batchShouldBeRolledBackWhenTheDeleteDoesNotMatchTheCopy() throws Exception {
+
+        // GIVEN
+        when(ids.next()).thenReturn(true, false);
+        when(ids.getInt(1)).thenReturn(4);
+        when(archiveStatement.executeUpdate()).thenReturn(1);
+        when(deleteStatement.executeUpdate()).thenReturn(0);
+
+        // WHEN
+        int archived = archiver.archive(NOW);
+
+        // THEN
+        assertEquals(0, archived);
+        verify(connection).rollback();
+        verify(connection, never()).commit();
+        verify(idsStatement, times(1)).executeQuery();
+    }
+
+    @Test
+    void nothingShouldBeWrittenWithoutArchivableTickets() throws Exception {
+
+        // GIVEN
+        when(ids.next()).thenReturn(false);
+
+        // WHEN
+        int archived = archiver.archive(NOW);
+
+        // THEN
+        assertEquals(0, archived);
+        verify(idsStatement).setTimestamp(2, CUTOFF);
+        verify(connection, never()).prepareStatement(DBConstants.ARCHIVE_TICKETS);
+        verify(connection, never()).setAutoCommit(false);
+    }
+}
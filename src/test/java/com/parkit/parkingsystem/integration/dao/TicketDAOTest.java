@@ -3,7 +3,11 @@ package com.parkit.parkingsystem.integration.dao;
 import com.parkit.parkingsystem.config.DataBaseConfig;
 import com.parkit.parkingsystem.constants.DBConstants;
 import com.parkit.parkingsystem.constants.ParkingType;
+import com.parkit.parkingsystem.dao.OpenTicketIndex;
 import com.parkit.parkingsystem.dao.TicketDAO;
+import com.parkit.parkingsystem.dao.TicketWriteBehindQueue;
+import com.parkit.parkingsystem.dao.VisitCountIndex;
+import com.parkit.parkingsystem.model.ExitResult;
 import com.parkit.parkingsystem.model.ParkingSpot;
 import com.parkit.parkingsystem.model.Ticket;
 import org.junit.jupiter.api.BeforeEach;
@@ -13,11 +17,15 @@ import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 
+import java.math.BigDecimal;
 import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
 import java.sql.Timestamp;
 import java.util.Date;
+import java.util.concurrent.CompletableFuture;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.Mockito.*;
@@ -42,11 +50,12 @@ class TicketDAOTest {
 
     @BeforeEach
     void setUp() throws Exception {
-        when(dataBaseConfig.getConnection()).thenReturn(connection);
+        //tests served from the indexes alone never connect
+        lenient().when(dataBaseConfig.getConnection()).thenReturn(connection);
     }
 
     @Test
-    void saveTicketShouldReturnFalseDueToFinallyBlock() throws Exception {
+    void saveTicketShouldReturnTrueWhenTheTicketIsInserted() throws Exception {
 
         // GIVEN
         Ticket ticket = new Ticket();
@@ -56,22 +65,45 @@ class TicketDAOTest {
         ticket.setInTime(new Date());
 
         when(connection.prepareStatement(DBConstants.SAVE_TICKET)).thenReturn(preparedStatement);
-        when(preparedStatement.execute()).thenReturn(true);
+        when(preparedStatement.executeUpdate()).thenReturn(1);
 
         // WHEN
         boolean result = ticketDAO.saveTicket(ticket);
 
         // THEN
-        assertFalse(result);
+        assertTrue(result);
 
         verify(preparedStatement).setInt(1, 1);
         verify(preparedStatement).setString(2, "AA-123-BB");
-        verify(preparedStatement).setDouble(3, 5.0);
+        verify(preparedStatement).setBigDecimal(3, new BigDecimal("5.00"));
         verify(preparedStatement).setTimestamp(eq(4), any(Timestamp.class));
         verify(preparedStatement).setTimestamp(eq(5), isNull());
         verify(dataBaseConfig).closeConnection(connection);
     }
 
+    @Test
+    void saveTicketShouldReturnFalseWhenInsertFails() throws Exception {
+
+        // GIVEN
+        Ticket ticket = new Ticket();
+        ticket.setParkingSpot(new ParkingSpot(1, ParkingType.CAR, false));
+        ticket.setVehicleRegNumber("AA-123-BB");
+        ticket.setInTime(new Date());
+        ticketDAO.visitCountIndex = new VisitCountIndex();
+
+        when(connection.prepareStatement(DBConstants.SAVE_TICKET)).thenReturn(preparedStatement);
+        when(preparedStatement.executeUpdate()).thenThrow(new SQLException("Duplicate entry"));
+
+        // WHEN
+        boolean result = ticketDAO.saveTicket(ticket);
+
+        // THEN
+        assertFalse(result);
+        assertEquals(0, ticketDAO.visitCountIndex.getCount("AA-123-BB"));
+        verify(dataBaseConfig).closePreparedStatement(preparedStatement);
+        verify(dataBaseConfig).closeConnection(connection);
+    }
+
     @Test
     void getTicketShouldReturnTicketWhenFound() throws Exception {
 
@@ -82,7 +114,7 @@ class TicketDAOTest {
 
         when(resultSet.getInt(1)).thenReturn(3);
         when(resultSet.getInt(2)).thenReturn(10);
-        when(resultSet.getDouble(3)).thenReturn(20.0);
+        when(resultSet.getBigDecimal(3)).thenReturn(new BigDecimal("20.00"));
         when(resultSet.getTimestamp(4)).thenReturn(new Timestamp(System.currentTimeMillis()));
         when(resultSet.getTimestamp(5)).thenReturn(null);
         when(resultSet.getString(6)).thenReturn("CAR");
@@ -129,18 +161,76 @@ class TicketDAOTest {
         ticket.setOutTime(new Date());
 
         when(connection.prepareStatement(DBConstants.UPDATE_TICKET)).thenReturn(preparedStatement);
+        when(preparedStatement.executeUpdate()).thenReturn(1);
 
         // WHEN
         boolean result = ticketDAO.updateTicket(ticket);
 
         // THEN
         assertTrue(result);
-        verify(preparedStatement).setDouble(1, 30.0);
+        verify(preparedStatement).setBigDecimal(1, new BigDecimal("30.00"));
         verify(preparedStatement).setTimestamp(eq(2), any(Timestamp.class));
         verify(preparedStatement).setInt(3, 5);
         verify(dataBaseConfig).closeConnection(connection);
     }
 
+    @Test
+    void updateTicketShouldReturnFalseWhenNoTicketHasItsId() throws Exception {
+
+        // GIVEN
+        Ticket ticket = new Ticket();
+        ticket.setPrice(30.0);
+        ticket.setOutTime(new Date());
+
+        when(connection.prepareStatement(DBConstants.UPDATE_TICKET)).thenReturn(preparedStatement);
+        when(preparedStatement.executeUpdate()).thenReturn(0);
+
+        // WHEN
+        boolean result = ticketDAO.updateTicket(ticket);
+
+        // THEN
+        assertFalse(result);
+        verify(preparedStatement).setInt(3, 0);
+        verify(dataBaseConfig).closeConnection(connection);
+    }
+
+    @Test
+    void secondExitOfATicketShouldFindItClosed() throws Exception {
+
+        // GIVEN
+        ticketDAO.openTicketIndex = new OpenTicketIndex();
+        Ticket openTicket = new Ticket();
+        openTicket.setId(5);
+        openTicket.setParkingSpot(new ParkingSpot(2, ParkingType.CAR, false));
+        openTicket.setVehicleRegNumber("AA-123-BB");
+        openTicket.setInTime(new Date(System.currentTimeMillis() - 3_600_000));
+        ticketDAO.openTicketIndex.put(openTicket);
+        when(connection.prepareStatement(DBConstants.UPDATE_TICKET)).thenReturn(preparedStatement);
+        //the row is already closed when the second update runs
+        when(preparedStatement.executeUpdate()).thenReturn(1, 0);
+
+        // WHEN
+        ExitResult.Status first = ticketDAO.closeTicket(closedCopyOf(openTicket));
+        ExitResult.Status second = ticketDAO.closeTicket(closedCopyOf(openTicket));
+
+        // THEN
+        assertEquals(ExitResult.Status.SUCCESS, first);
+        assertEquals(ExitResult.Status.NO_TICKET_FOUND, second);
+        assertEquals(0, ticketDAO.openTicketIndex.size());
+        assertTrue(DBConstants.UPDATE_TICKET.endsWith("AND out_time IS NULL"));
+    }
+
+    private static Ticket closedCopyOf(Ticket openTicket) {
+        Ticket ticket = new Ticket();
+        ticket.setId(openTicket.getId());
+        ticket.setParkingSpot(openTicket.getParkingSpot());
+        ticket.setVehicleRegNumber(openTicket.getVehicleRegNumber());
+        ticket.setInTimeMillis(openTicket.getInTimeMillis());
+        ticket.setOutTime(new Date());
+        ticket.setPrice(1.5);
+        return ticket;
+    }
+
     @Test
     void updateTicketShouldReturnFalseWhenExceptionOccurs() throws Exception {
 
@@ -189,4 +279,125 @@ class TicketDAOTest {
         // THEN
         assertEquals(0, count);
     }
+
+    @Test
+    void getNbTicketShouldBeServedFromVisitCountIndex() throws Exception {
+
+        // GIVEN
+        ticketDAO.visitCountIndex = new VisitCountIndex();
+        ticketDAO.visitCountIndex.add("AA-123-BB", 2);
+        Ticket ticket = new Ticket();
+        ticket.setParkingSpot(new ParkingSpot(1, ParkingType.CAR, false));
+        ticket.setVehicleRegNumber("AA-123-BB");
+        ticket.setInTime(new Date());
+        when(connection.prepareStatement(DBConstants.SAVE_TICKET)).thenReturn(preparedStatement);
+        when(preparedStatement.executeUpdate()).thenReturn(1);
+
+        // WHEN
+        ticketDAO.saveTicket(ticket);
+        int count = ticketDAO.getNbTicket("AA-123-BB");
+
+        // THEN
+        assertEquals(3, count);
+        verify(connection, never()).prepareStatement(DBConstants.GET_NB_TICKET);
+    }
+
+    @Test
+    void openTicketShouldBeResolvedFromIndexUntilUpdated() throws Exception {
+
+        // GIVEN
+        ticketDAO.openTicketIndex = new OpenTicketIndex();
+        Ticket ticket = new Ticket();
+        ticket.setParkingSpot(new ParkingSpot(2, ParkingType.CAR, false));
+        ticket.setVehicleRegNumber("AA-123-BB");
+        ticket.setInTime(new Date());
+        ResultSet keys = mock(ResultSet.class);
+        PreparedStatement updateStatement = mock(PreparedStatement.class);
+        when(connection.prepareStatement(DBConstants.SAVE_TICKET, Statement.RETURN_GENERATED_KEYS)).thenReturn(preparedStatement);
+        when(preparedStatement.executeUpdate()).thenReturn(1);
+        when(preparedStatement.getGeneratedKeys()).thenReturn(keys);
+        when(keys.next()).thenReturn(true);
+        when(keys.getInt(1)).thenReturn(7);
+        when(connection.prepareStatement(DBConstants.UPDATE_TICKET)).thenReturn(updateStatement);
+        when(updateStatement.executeUpdate()).thenReturn(1);
+
+        // WHEN
+        ticketDAO.saveTicket(ticket);
+        Ticket openTicket = ticketDAO.getTicket("aa-123-bb");
+        openTicket.setOutTime(new Date());
+        ticketDAO.updateTicket(openTicket);
+
+        // THEN
+        assertSame(ticket, openTicket);
+        assertEquals(7, openTicket.getId());
+        assertEquals(2, openTicket.getParkingSpot().getId());
+        assertEquals(0, ticketDAO.openTicketIndex.size());
+        verify(updateStatement).setInt(3, 7);
+        verify(connection, never()).prepareStatement(DBConstants.GET_TICKET);
+    }
+
+    @Test
+    void ticketLostByTheWriteBehindQueueShouldLeaveTheIndexes() throws Exception {
+
+        // GIVEN
+        ticketDAO.openTicketIndex = new OpenTicketIndex();
+        ticketDAO.visitCountIndex = new VisitCountIndex();
+        ticketDAO.ticketWriteBehindQueue = mock(TicketWriteBehindQueue.class);
+        CompletableFuture<Ticket> committed = new CompletableFuture<>();
+        when(ticketDAO.ticketWriteBehindQueue.submitSave(any(Ticket.class))).thenReturn(committed);
+        Ticket ticket = new Ticket();
+        ticket.setParkingSpot(new ParkingSpot(2, ParkingType.CAR, false));
+        ticket.setVehicleRegNumber("AA-123-BB");
+        ticket.setInTime(new Date());
+        when(connection.prepareStatement(DBConstants.GET_TICKET)).thenReturn(preparedStatement);
+        when(preparedStatement.executeQuery()).thenReturn(resultSet);
+        when(resultSet.next()).thenReturn(false);
+
+        // WHEN
+        boolean accepted = ticketDAO.saveTicket(ticket);
+        int visitsWhileQueued = ticketDAO.getNbTicket("AA-123-BB");
+        committed.completeExceptionally(new SQLException("Disk full"));
+
+        // THEN
+        assertTrue(accepted);
+        assertEquals(1, visitsWhileQueued);
+        assertEquals(0, ticketDAO.openTicketIndex.size());
+        assertNull(ticketDAO.getTicket("AA-123-BB"));
+        assertEquals(0, ticketDAO.getNbTicket("AA-123-BB"));
+    }
+
+    @Test
+    void exitOfAQueuedTicketShouldCloseTheIndexedOneAndReopenItIfLost() throws Exception {
+
+        // GIVEN
+        ticketDAO.openTicketIndex = new OpenTicketIndex();
+        ticketDAO.ticketWriteBehindQueue = mock(TicketWriteBehindQueue.class);
+        CompletableFuture<Ticket> committed = new CompletableFuture<>();
+        when(ticketDAO.ticketWriteBehindQueue.submitUpdate(any(Ticket.class))).thenReturn(committed);
+        Ticket indexed = new Ticket();
+        indexed.setParkingSpot(new ParkingSpot(2, ParkingType.CAR, false));
+        indexed.setVehicleRegNumber("AA-123-BB");
+        indexed.setInTime(new Date());
+        ticketDAO.openTicketIndex.put(indexed);
+        //priced copy made before the queue assigned an id
+        Ticket closed = new Ticket();
+        closed.setParkingSpot(indexed.getParkingSpot());
+        closed.setVehicleRegNumber("AA-123-BB");
+        closed.setInTimeMillis(indexed.getInTimeMillis());
+        closed.setOutTime(new Date());
+        closed.setPrice(1.5);
+
+        // WHEN
+        boolean accepted = ticketDAO.updateTicket(closed);
+        boolean indexedWhileQueued = ticketDAO.openTicketIndex.get("AA-123-BB") != null;
+        committed.completeExceptionally(new SQLException("Disk full"));
+
+        // THEN
+        assertTrue(accepted);
+        assertFalse(indexedWhileQueued);
+        verify(ticketDAO.ticketWriteBehindQueue).submitUpdate(indexed);
+        assertSame(indexed, ticketDAO.getTicket("AA-123-BB"));
+        assertTrue(indexed.isOpen());
+        assertEquals(0, indexed.getPriceCents());
+    }
 }
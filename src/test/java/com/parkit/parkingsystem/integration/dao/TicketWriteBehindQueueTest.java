@@ -0,0 +1,198 @@
+package com.parkit.parkingsystem.integration.dao;
+
+import com.parkit.parkingsystem.config.DataBaseConfig;
+import com.parkit.parkingsystem.constants.DBConstants;
+import com.parkit.parkingsystem.constants.ParkingType;
+import com.parkit.parkingsystem.dao.TicketWriteBehindQueue;
+import com.parkit.parkingsystem.model.ParkingSpot;
+import com.parkit.parkingsystem.model.Ticket;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Date;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+class TicketWriteBehindQueueTest {
+
+    private DataBaseConfig dataBaseConfig;
+    private Connection connection;
+    private PreparedStatement insertStatement;
+    private PreparedStatement updateStatement;
+    private ResultSet keys;
+    private TicketWriteBehindQueue queue;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        dataBaseConfig = mock(DataBaseConfig.class);
+        connection = mock(Connection.class);
+        insertStatement = mock(PreparedStatement.class);
+        updateStatement = mock(PreparedStatement.class);
+        keys = mock(ResultSet.class);
+        when(dataBaseConfig.getConnection()).thenReturn(connection);
+        when(connection.prepareStatement(DBConstants.SAVE_TICKET, Statement.RETURN_GENERATED_KEYS)).thenReturn(insertStatement);
+        when(connection.prepareStatement(DBConstants.UPDATE_TICKET)).thenReturn(updateStatement);
+        when(insertStatement.getGeneratedKeys()).thenReturn(keys);
+    }
+
+    @AfterEach
+    void tearDown() {
+        if (queue != null) {
+            queue.shutdown();
+        }
+    }
+
+    private Ticket newTicket(String vehicleRegNumber) {
+        Ticket ticket = new Ticket();
+        ticket.setParkingSpot(new ParkingSpot(1, ParkingType.CAR, false));
+        ticket.setVehicleRegNumber(vehicleRegNumber);
+        ticket.setInTime(new Date());
+        return ticket;
+    }
+
+    @Test
+    void writesShouldBeBatchedIntoOneTransaction() throws Exception {
+
+        // GIVEN
+        queue = new TicketWriteBehindQueue(dataBaseConfig, 100, 3, 1_000, 100);
+        when(insertStatement.executeBatch()).thenReturn(new int[]{1, 1});
+        when(keys.next()).thenReturn(true, true, false);
+        when(keys.getInt(1)).thenReturn(10, 11);
+        when(updateStatement.executeBatch()).thenReturn(new int[]{1});
+        Ticket first = newTicket("AA-111-AA");
+        Ticket second = newTicket("BB-222-BB");
+
+        // WHEN
+        CompletableFuture<Ticket> firstSaved = queue.submitSave(first);
+        queue.submitSave(second);
+        second.setOutTime(new Date());
+        second.setPrice(1.5);
+        CompletableFuture<Ticket> secondUpdated = queue.submitUpdate(second);
+
+        // THEN
+        secondUpdated.get(5, TimeUnit.SECONDS);
+        assertSame(first, firstSaved.get());
+        assertEquals(10, first.getId());
+        assertEquals(11, second.getId());
+        verify(insertStatement, times(2)).addBatch();
+        verify(insertStatement).executeBatch();
+        verify(updateStatement).setInt(3, 11);
+        verify(updateStatement).executeBatch();
+        verify(connection, times(1)).commit();
+    }
+
+    @Test
+    void flushFailureShouldFailEveryWriteOfTheBatch() throws Exception {
+
+        // GIVEN
+        queue = new TicketWriteBehindQueue(dataBaseConfig, 100, 1, 1_000, 100);
+        when(insertStatement.executeBatch()).thenThrow(new SQLException("Disk full"));
+
+        // WHEN
+        CompletableFuture<Ticket> saved = queue.submitSave(newTicket("AA-111-AA"));
+
+        // THEN
+        assertThrows(ExecutionException.class, () -> saved.get(5, TimeUnit.SECONDS));
+        verify(connection).rollback();
+        verify(connection, never()).commit();
+        verify(insertStatement).executeUpdate();
+        verify(dataBaseConfig, timeout(1_000)).closeConnection(connection);
+        assertEquals(1, queue.getFailedCount());
+    }
+
+    @Test
+    void badRowShouldBeRetriedAloneWithoutFailingTheRestOfTheBatch() throws Exception {
+
+        // GIVEN
+        queue = new TicketWriteBehindQueue(dataBaseConfig, 100, 2, 1_000, 100);
+        when(insertStatement.executeBatch()).thenThrow(new SQLException("Data too long for column"));
+        when(insertStatement.executeUpdate()).thenReturn(1).thenThrow(new SQLException("Data too long for column"));
+        when(keys.next()).thenReturn(true);
+        when(keys.getInt(1)).thenReturn(20);
+        Ticket good = newTicket("AA-111-AA");
+        Ticket bad = newTicket("BB-222-BB");
+
+        // WHEN
+        CompletableFuture<Ticket> goodSaved = queue.submitSave(good);
+        CompletableFuture<Ticket> badSaved = queue.submitSave(bad);
+
+        // THEN
+        assertSame(good, goodSaved.get(5, TimeUnit.SECONDS));
+        assertThrows(ExecutionException.class, () -> badSaved.get(5, TimeUnit.SECONDS));
+        assertEquals(20, good.getId());
+        assertEquals(0, bad.getId());
+        verify(connection).rollback();
+        verify(connection).setAutoCommit(true);
+        verify(insertStatement, times(2)).executeUpdate();
+        assertEquals(1, queue.getFailedCount());
+    }
+
+    @Test
+    void updateMatchingNoTicketShouldFail() throws Exception {
+
+        // GIVEN
+        queue = new TicketWriteBehindQueue(dataBaseConfig, 100, 1, 1_000, 100);
+        when(updateStatement.executeBatch()).thenReturn(new int[]{0});
+        Ticket ticket = newTicket("AA-111-AA");
+        ticket.setOutTime(new Date());
+
+        // WHEN
+        CompletableFuture<Ticket> updated = queue.submitUpdate(ticket);
+
+        // THEN
+        assertThrows(ExecutionException.class, () -> updated.get(5, TimeUnit.SECONDS));
+        verify(connection).rollback();
+        verify(connection, never()).commit();
+        verify(updateStatement, times(2)).setInt(3, 0);
+        verify(updateStatement).executeUpdate();
+    }
+
+    @Test
+    void shutdownShouldDrainQueueAndRejectNewWrites() throws Exception {
+
+        // GIVEN
+        queue = new TicketWriteBehindQueue(dataBaseConfig, 100, 50, 60_000, 100);
+        when(insertStatement.executeBatch()).thenReturn(new int[]{1});
+        when(keys.next()).thenReturn(true);
+        when(keys.getInt(1)).thenReturn(12);
+        CompletableFuture<Ticket> saved = queue.submitSave(newTicket("AA-111-AA"));
+
+        // WHEN
+        queue.shutdown();
+
+        // THEN
+        assertTrue(saved.isDone());
+        assertFalse(saved.isCompletedExceptionally());
+        assertTrue(queue.submitSave(newTicket("BB-222-BB")).isCompletedExceptionally());
+    }
+
+    @Test
+    void fullQueueShouldRejectAfterOfferTimeout() throws Exception {
+
+        // GIVEN
+        when(dataBaseConfig.getConnection()).thenAnswer(invocation -> {
+            Thread.sleep(500);
+            return connection;
+        });
+        queue = new TicketWriteBehindQueue(dataBaseConfig, 1, 1, 1, 10);
+        queue.submitSave(newTicket("AA-111-AA"));
+        Thread.sleep(50);
+        queue.submitSave(newTicket("BB-222-BB"));
+
+        // WHEN
+        CompletableFuture<Ticket> rejected = queue.submitSave(newTicket("CC-333-CC"));
+
+        // THEN
+        assertTrue(rejected.isCompletedExceptionally());
+    }
+}
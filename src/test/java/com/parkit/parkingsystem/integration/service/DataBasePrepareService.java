@@ -1,5 +1,6 @@
 package com.parkit.parkingsystem.integration.service;
 
+import com.parkit.parkingsystem.config.SchemaMigrator;
 import com.parkit.parkingsystem.integration.config.DataBaseTestConfig;
 
 import java.sql.Connection;
@@ -9,6 +10,7 @@ public class DataBasePrepareService {
     DataBaseTestConfig dataBaseTestConfig = new DataBaseTestConfig();
 
     public void clearDataBaseEntries(){
+        new SchemaMigrator(dataBaseTestConfig).migrate();
         Connection connection = null;
         try{
             connection = dataBaseTestConfig.getConnection();
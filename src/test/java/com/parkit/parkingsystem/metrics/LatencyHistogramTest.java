@@ -0,0 +1,72 @@
+package com.parkit.parkingsystem.metrics;
+
+import org.junit.jupiter.api.Test;
+
+import java.lang.management.ManagementFactory;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class LatencyHistogramTest {
+
+    @Test
+    public void bucketsShouldCoverEveryDurationWithinTheirError() {
+
+        // THEN
+        for (long nanos = 0; nanos < 1L << 42; nanos = nanos * 3 / 2 + 1) {
+            int bucket = LatencyHistogram.bucketOf(nanos);
+            assertTrue(bucket >= 0 && bucket < LatencyHistogram.BUCKET_COUNT);
+            long upperBound = LatencyHistogram.upperBoundOf(bucket);
+            if (bucket < LatencyHistogram.BUCKET_COUNT - 1) {
+                assertTrue(upperBound >= nanos, "upper bound of " + nanos);
+                assertTrue(upperBound <= nanos + nanos / LatencyHistogram.SUB_BUCKETS, "error of " + nanos);
+            }
+        }
+        assertEquals(LatencyHistogram.BUCKET_COUNT - 1, LatencyHistogram.bucketOf(Long.MAX_VALUE));
+    }
+
+    @Test
+    public void percentilesShouldFollowRecordedDurations() {
+
+        // GIVEN
+        LatencyHistogram histogram = new LatencyHistogram();
+
+        // WHEN
+        for (int i = 1; i <= 1_000; i++) {
+            histogram.record(i * 1_000L);
+        }
+        histogram.record(-5);
+
+        // THEN
+        assertEquals(1_001, histogram.getCount());
+        assertEquals(1_000_000, histogram.getMaxNanos());
+        assertEquals(500_500_000, histogram.getTotalNanos());
+        long p50 = histogram.getPercentileNanos(0.5);
+        assertTrue(p50 >= 500_000 && p50 <= 500_000 * 9 / 8, "p50 " + p50);
+        long p99 = histogram.getPercentileNanos(0.99);
+        assertTrue(p99 >= 990_000 && p99 <= 1_000_000, "p99 " + p99);
+        assertEquals(1_000_000, histogram.getPercentileNanos(1));
+        assertEquals(0, new LatencyHistogram().getPercentileNanos(0.99));
+    }
+
+    @Test
+    public void operationsShouldBePublishedAsMXBeansAndPrometheusText() throws Exception {
+
+        // GIVEN
+        OperationStats stats = Metrics.operation("LatencyHistogramTest.operation");
+
+        // WHEN
+        stats.record(System.nanoTime() - 2_000_000);
+        stats.error();
+
+        // THEN
+        assertSame(stats, Metrics.operation("LatencyHistogramTest.operation"));
+        Object count = ManagementFactory.getPlatformMBeanServer()
+                .getAttribute(Metrics.objectNameOf("LatencyHistogramTest.operation"), "Count");
+        assertEquals(1L, count);
+        assertTrue(stats.getMaxMicros() >= 2_000);
+        String text = Metrics.toPrometheusText();
+        assertTrue(text.contains("parkit_operation_duration_seconds{operation=\"LatencyHistogramTest.operation\",quantile=\"0.99\"} "));
+        assertTrue(text.contains("parkit_operation_duration_seconds_count{operation=\"LatencyHistogramTest.operation\"} 1\n"));
+        assertTrue(text.contains("parkit_operation_errors_total{operation=\"LatencyHistogramTest.operation\"} 1\n"));
+    }
+}
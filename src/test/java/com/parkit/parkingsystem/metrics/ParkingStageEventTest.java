@@ -0,0 +1,62 @@
+package com.parkit.parkingsystem.metrics;
+
+import com.parkit.parkingsystem.config.MemoryStoreSettings;
+import com.parkit.parkingsystem.constants.ParkingType;
+import com.parkit.parkingsystem.dao.InMemoryParkingStore;
+import com.parkit.parkingsystem.model.EntryResult;
+import com.parkit.parkingsystem.model.ExitResult;
+import com.parkit.parkingsystem.service.ParkingService;
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.util.Date;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ParkingStageEventTest {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    public void entryAndExitShouldBeRecordedStageByStage() throws Exception {
+
+        // GIVEN
+        MemoryStoreSettings settings = new MemoryStoreSettings();
+        settings.setDirectory(null);
+        InMemoryParkingStore store = new InMemoryParkingStore(settings);
+        ParkingService parkingService = new ParkingService(null, store, store);
+        Path file = directory.resolve("trace.jfr");
+
+        // WHEN
+        try (Recording recording = new Recording()) {
+            recording.enable(ParkingStageEvent.class).withoutThreshold();
+            recording.start();
+            EntryResult entry = parkingService.processIncomingVehicle(ParkingType.CAR, "ab123", new Date(0));
+            ExitResult exit = parkingService.processExitingVehicle("AB123", new Date(3_600_000));
+            recording.stop();
+            recording.dump(file);
+            assertEquals(EntryResult.Status.SUCCESS, entry.getStatus());
+            assertEquals(ExitResult.Status.SUCCESS, exit.getStatus());
+        }
+        store.close();
+
+        // THEN
+        List<RecordedEvent> events = RecordingFile.readAllEvents(file);
+        assertEquals(List.of("ENTRY/SPOT_LOOKUP", "ENTRY/VISIT_COUNT", "ENTRY/SPOT_UPDATE", "ENTRY/TICKET_SAVE",
+                        "EXIT/TICKET_LOOKUP", "EXIT/VISIT_COUNT", "EXIT/FARE_CALCULATION", "EXIT/TICKET_UPDATE", "EXIT/SPOT_UPDATE"),
+                events.stream().map(event -> event.getString("flow") + "/" + event.getString("stage")).toList());
+        for (RecordedEvent event : events) {
+            assertEquals(ParkingStageEvent.plateHash("AB123"), event.getInt("plateHash"));
+            assertEquals(1, event.getInt("parkingNumber"));
+            assertTrue(event.getBoolean("succeeded"));
+        }
+        assertNotEquals(0, ParkingStageEvent.plateHash("AB123"));
+        assertEquals(0, ParkingStageEvent.plateHash(null));
+    }
+}
@@ -0,0 +1,59 @@
+package com.parkit.parkingsystem.model;
+
+import com.parkit.parkingsystem.constants.ParkingType;
+import org.junit.jupiter.api.Test;
+
+import java.util.Date;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ParkingSpotRegistryTest {
+
+    @Test
+    public void spotsShouldBeSharedWithAvailabilityInTheRegistry() {
+
+        // GIVEN
+        ParkingSpotRegistry registry = new ParkingSpotRegistry(List.of(
+                new ParkingSpot(1, ParkingType.CAR, true),
+                new ParkingSpot(3, ParkingType.BIKE, false)));
+
+        // WHEN
+        ParkingSpot car = registry.get(1, ParkingType.CAR, false);
+        car.setAvailable(false);
+
+        // THEN
+        assertSame(car, registry.get(1));
+        assertFalse(registry.get(1, ParkingType.CAR, true).isAvailable());
+        assertFalse(registry.get(3).isAvailable());
+        assertNull(registry.get(2));
+        assertEquals(2, registry.size());
+        assertThrows(UnsupportedOperationException.class, () -> car.setId(2));
+
+        ParkingSpot unknown = registry.get(2, ParkingType.CAR, true);
+        assertNotSame(unknown, registry.get(2, ParkingType.CAR, true));
+        assertTrue(unknown.isAvailable());
+        assertNotSame(registry.get(3), registry.get(3, ParkingType.CAR, true));
+    }
+
+    @Test
+    public void ticketTimesShouldBeKeptAsMillis() {
+
+        // GIVEN
+        Ticket ticket = new Ticket();
+
+        // WHEN
+        ticket.setInTime(new Date(1_000));
+
+        // THEN
+        assertEquals(1_000, ticket.getInTimeMillis());
+        assertTrue(ticket.isOpen());
+        assertNull(ticket.getOutTime());
+        assertEquals(Ticket.NO_TIME, ticket.getOutTimeMillis());
+        ticket.setOutTimeMillis(2_000);
+        assertFalse(ticket.isOpen());
+        assertEquals(new Date(2_000), ticket.getOutTime());
+        ticket.setOutTime(null);
+        assertTrue(ticket.isOpen());
+    }
+}
@@ -0,0 +1,119 @@
+package com.parkit.parkingsystem.service;
+
+import com.parkit.parkingsystem.config.DataBaseConfig;
+import com.parkit.parkingsystem.constants.ParkingType;
+import com.parkit.parkingsystem.dao.TicketDAO;
+import com.parkit.parkingsystem.model.EntryResult;
+import com.parkit.parkingsystem.model.ExitResult;
+import com.parkit.parkingsystem.model.ParkingSpot;
+import com.parkit.parkingsystem.model.Ticket;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InOrder;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.io.ByteArrayInputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.sql.SQLException;
+import java.util.Arrays;
+import java.util.Date;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+public class EventReplayerTest {
+
+    @Mock
+    private ParkingService parkingService;
+
+    @Test
+    public void csvEventsShouldBeAppliedInTimestampOrderWithinTheWindow() throws Exception {
+
+        // GIVEN
+        Ticket ticket = new Ticket();
+        ticket.setParkingSpot(new ParkingSpot(1, ParkingType.CAR, false));
+        ticket.setPriceCents(143);
+        when(parkingService.processIncomingVehicle(any(ParkingType.class), any(String.class), any(Date.class)))
+                .thenReturn(EntryResult.success(ticket, 0));
+        when(parkingService.processExitingVehicle(eq("AB123"), any(Date.class))).thenReturn(ExitResult.success(ticket));
+        when(parkingService.processExitingVehicle(eq("ZZ999"), any(Date.class)))
+                .thenReturn(ExitResult.failure(ExitResult.Status.NO_TICKET_FOUND));
+        String log = "timestamp,event,type,plate\n"
+                + "1000,EXIT,,AB123\n"
+                + "0,ENTRY,car,AB123\n"
+                + "1970-01-01T00:00:00.500Z,ENTRY,BIKE,CD456\n"
+                + "not a line\n"
+                + "2000,EXIT,,ZZ999\n";
+        EventReplayer replayer = new EventReplayer(parkingService, 3);
+
+        // WHEN
+        EventReplayer.ReplayReport report = replayer.replay(
+                new ByteArrayInputStream(log.getBytes(StandardCharsets.UTF_8)), EventReplayer.Format.CSV);
+
+        // THEN
+        InOrder inOrder = inOrder(parkingService);
+        inOrder.verify(parkingService).processIncomingVehicle(ParkingType.CAR, "AB123", new Date(0));
+        inOrder.verify(parkingService).processIncomingVehicle(ParkingType.BIKE, "CD456", new Date(500));
+        inOrder.verify(parkingService).processExitingVehicle("AB123", new Date(1000));
+        inOrder.verify(parkingService).processExitingVehicle("ZZ999", new Date(2000));
+        assertEquals(4, report.getEvents());
+        assertEquals(2, report.getEntries());
+        assertEquals(1, report.getExits());
+        assertEquals(1, report.getNoTicketFound());
+        assertEquals(1, report.getMalformed());
+        assertEquals(0, report.getLate());
+        assertEquals(143, report.getRevenueCents());
+    }
+
+    @Test
+    public void eventsOutOfOrderBeyondTheWindowShouldBeCountedLate() throws Exception {
+
+        // GIVEN
+        when(parkingService.processIncomingVehicle(any(ParkingType.class), any(String.class), any(Date.class)))
+                .thenReturn(EntryResult.failure(EntryResult.Status.NO_SPOT_AVAILABLE));
+        ByteBuffer wire = ByteBuffer.allocate(256);
+        GateEvent event = new GateEvent();
+        event.setOpcode(GateEventCodec.OP_ENTRY);
+        event.setParkingType(ParkingType.CAR);
+        for (long timestamp : new long[]{3000, 4000, 1000}) {
+            event.setTimestamp(timestamp);
+            event.setVehicleRegNumber("P" + timestamp);
+            GateEventCodec.encodeRequest(event, wire);
+        }
+        EventReplayer replayer = new EventReplayer(parkingService, 1);
+
+        // WHEN
+        EventReplayer.ReplayReport report = replayer.replay(
+                new ByteArrayInputStream(Arrays.copyOf(wire.array(), wire.position())), EventReplayer.Format.BINARY);
+
+        // THEN
+        InOrder inOrder = inOrder(parkingService);
+        inOrder.verify(parkingService).processIncomingVehicle(ParkingType.CAR, "P3000", new Date(3000));
+        inOrder.verify(parkingService).processIncomingVehicle(ParkingType.CAR, "P1000", new Date(1000));
+        inOrder.verify(parkingService).processIncomingVehicle(ParkingType.CAR, "P4000", new Date(4000));
+        assertEquals(3, report.getEvents());
+        assertEquals(3, report.getNoSpotAvailable());
+        assertEquals(1, report.getLate());
+    }
+
+    @Test
+    public void writesShouldNotBeBatchedWithoutAnOpenTicketIndex() throws Exception {
+
+        // GIVEN
+        TicketDAO ticketDAO = new TicketDAO();
+        ticketDAO.dataBaseConfig = mock(DataBaseConfig.class);
+        when(ticketDAO.dataBaseConfig.getConnection()).thenThrow(new SQLException("Database down"));
+
+        // WHEN
+        EventReplayer.batchWrites(ticketDAO);
+
+        // THEN
+        assertNull(ticketDAO.openTicketIndex);
+        assertNull(ticketDAO.ticketWriteBehindQueue);
+    }
+}
@@ -1,16 +1,21 @@
 package com.parkit.parkingsystem.service;
 
+import com.parkit.parkingsystem.config.TariffDefinition;
 import com.parkit.parkingsystem.constants.Fare;
 import com.parkit.parkingsystem.constants.ParkingType;
 import com.parkit.parkingsystem.model.ParkingSpot;
 import com.parkit.parkingsystem.model.Ticket;
+import com.parkit.parkingsystem.util.Money;
 import org.junit.jupiter.api.BeforeAll;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
 import static org.junit.jupiter.api.Assertions.*;
 
+import java.math.RoundingMode;
 import java.util.Date;
+import java.util.Properties;
+import java.util.Random;
 
 public class FareCalculatorServiceTest {
 
@@ -136,7 +141,8 @@ public class FareCalculatorServiceTest {
 
         // THEN
         fareCalculatorService.calculateFare(ticket);
-        assertEquals( (0.75 * Fare.CAR_RATE_PER_HOUR) , ticket.getPrice());
+        //1.125 rounded half-up to the cent
+        assertEquals(113, ticket.getPriceCents());
     }
 
     @Test
@@ -216,7 +222,8 @@ public class FareCalculatorServiceTest {
 
         // THEN
         fareCalculatorService.calculateFare(ticket, true);
-        assertEquals(Fare.CAR_RATE_PER_HOUR * 0.95, ticket.getPrice(), 0.001);
+        //1.425 rounded half-up to the cent
+        assertEquals(143, ticket.getPriceCents());
     }
 
     @Test
@@ -239,4 +246,188 @@ public class FareCalculatorServiceTest {
         fareCalculatorService.calculateFare(ticket, true);
         assertEquals(Fare.BIKE_RATE_PER_HOUR * 0.95, ticket.getPrice(), 0.001);
     }
+
+    @Test
+    public void calculateFaresShouldMatchScalarCalculation() {
+
+        // GIVEN
+        int size = 10_000;
+        long[] inTimes = new long[size];
+        long[] outTimes = new long[size];
+        int[] parkingTypes = new int[size];
+        boolean[] discounts = new boolean[size];
+        long[] prices = new long[size];
+        Random random = new Random(42);
+        long now = System.currentTimeMillis();
+        for (int i = 0; i < size; i++) {
+            inTimes[i] = now - random.nextInt(48 * 60 * 60 * 1000);
+            outTimes[i] = inTimes[i] + random.nextInt(72 * 60 * 60 * 1000);
+            parkingTypes[i] = random.nextInt(ParkingType.values().length);
+            discounts[i] = random.nextBoolean();
+        }
+
+        // WHEN
+        fareCalculatorService.calculateFares(inTimes, outTimes, parkingTypes, discounts, prices);
+
+        // THEN
+        for (int i = 0; i < size; i++) {
+            Ticket scalarTicket = new Ticket();
+            scalarTicket.setInTime(new Date(inTimes[i]));
+            scalarTicket.setOutTime(new Date(outTimes[i]));
+            scalarTicket.setParkingSpot(new ParkingSpot(1, ParkingType.values()[parkingTypes[i]], false));
+            fareCalculatorService.calculateFare(scalarTicket, discounts[i]);
+            assertEquals(scalarTicket.getPriceCents(), prices[i], "Mismatch at index " + i);
+        }
+    }
+
+    @Test
+    public void calculateFaresParallelShouldMatchSequentialCalculation() {
+
+        // GIVEN
+        int size = 100_000;
+        long[] inTimes = new long[size];
+        long[] outTimes = new long[size];
+        int[] parkingTypes = new int[size];
+        boolean[] discounts = new boolean[size];
+        long[] sequentialPrices = new long[size];
+        long[] parallelPrices = new long[size];
+        for (int i = 0; i < size; i++) {
+            outTimes[i] = i * 60_000L;
+            parkingTypes[i] = i % 2;
+            discounts[i] = i % 3 == 0;
+        }
+
+        // WHEN
+        fareCalculatorService.calculateFares(inTimes, outTimes, parkingTypes, discounts, sequentialPrices);
+        fareCalculatorService.calculateFaresParallel(inTimes, outTimes, parkingTypes, discounts, parallelPrices);
+
+        // THEN
+        assertArrayEquals(sequentialPrices, parallelPrices);
+    }
+
+    @Test
+    public void calculateFaresShouldRejectOutTimeBeforeInTime() {
+
+        // GIVEN
+        long[] inTimes = {0L, 10_000L};
+        long[] outTimes = {60_000L, 0L};
+
+        // THEN
+        assertThrows(IllegalArgumentException.class, () -> fareCalculatorService.calculateFares(
+                inTimes, outTimes, new int[2], new boolean[2], new long[2]));
+    }
+
+    @Test
+    public void calculateFaresParallelShouldRejectTheBatchBeforePricingAnyTicket() {
+
+        // GIVEN
+        int size = 100_000;
+        long[] inTimes = new long[size];
+        long[] outTimes = new long[size];
+        long[] prices = new long[size];
+        for (int i = 0; i < size; i++) {
+            outTimes[i] = 3_600_000L;
+            prices[i] = -1;
+        }
+        inTimes[size - 1] = 7_200_000L;
+
+        // WHEN
+        assertThrows(IllegalArgumentException.class, () -> fareCalculatorService.calculateFaresParallel(
+                inTimes, outTimes, new int[size], new boolean[size], prices));
+
+        // THEN
+        for (long price : prices) {
+            assertEquals(-1, price);
+        }
+    }
+
+    @Test
+    public void calculateFareShouldUseConfiguredRoundingMode() {
+
+        // GIVEN
+        FareCalculatorService bankersRounding = new FareCalculatorService(RoundingMode.HALF_EVEN);
+        ticket.setInTime(new Date(0));
+        ticket.setOutTime(new Date(45 * 60 * 1000));
+        ticket.setParkingSpot(new ParkingSpot(1, ParkingType.CAR, false));
+
+        // WHEN
+        bankersRounding.calculateFare(ticket);
+
+        // THEN
+        assertEquals(112, ticket.getPriceCents());
+        assertEquals("1.12", Money.format(ticket.getPriceCents()));
+    }
+
+    @Test
+    public void calculateFareShouldApplyTiersAndDailyCap() {
+
+        // GIVEN
+        Properties properties = new Properties();
+        properties.setProperty("tariff.discount.percent", "10");
+        properties.setProperty("tariff.CAR.grace.minutes", "15");
+        properties.setProperty("tariff.CAR.tiers", "0:200, 60:100");
+        properties.setProperty("tariff.CAR.daily.cap.cents", "1000");
+        properties.setProperty("tariff.BIKE.tiers", "0:100");
+        FareCalculatorService tieredService = new FareCalculatorService(
+                TariffDefinition.fromProperties(properties), RoundingMode.HALF_UP);
+        ticket.setParkingSpot(new ParkingSpot(1, ParkingType.CAR, false));
+        ticket.setInTime(new Date(0));
+
+        // THEN
+        ticket.setOutTime(new Date(10 * 60 * 1000));
+        tieredService.calculateFare(ticket);
+        assertEquals(0, ticket.getPriceCents());
+
+        ticket.setOutTime(new Date(2 * 60 * 60 * 1000));
+        tieredService.calculateFare(ticket);
+        assertEquals(300, ticket.getPriceCents());
+
+        tieredService.calculateFare(ticket, true);
+        assertEquals(270, ticket.getPriceCents());
+
+        //one capped day, then 1h at 2.00 and 5h at 1.00
+        ticket.setOutTime(new Date(30 * 60 * 60 * 1000));
+        tieredService.calculateFare(ticket);
+        assertEquals(1700, ticket.getPriceCents());
+    }
+
+    @Test
+    public void setTariffShouldSwapPricing() {
+
+        // GIVEN
+        FareCalculatorService swappableService = new FareCalculatorService();
+        Properties properties = new Properties();
+        properties.setProperty("tariff.CAR.tiers", "0:300");
+        properties.setProperty("tariff.BIKE.tiers", "0:100");
+        ticket.setParkingSpot(new ParkingSpot(1, ParkingType.CAR, false));
+        ticket.setInTime(new Date(0));
+        ticket.setOutTime(new Date(60 * 60 * 1000));
+
+        // WHEN
+        swappableService.calculateFare(ticket);
+        long defaultPrice = ticket.getPriceCents();
+        swappableService.setTariff(TariffDefinition.fromProperties(properties));
+        swappableService.calculateFare(ticket);
+
+        // THEN
+        assertEquals(Fare.CAR_RATE_PER_HOUR_CENTS, defaultPrice);
+        assertEquals(300, ticket.getPriceCents());
+    }
+
+    @Test
+    public void tariffDefinitionShouldRejectInvalidTiers() {
+
+        // GIVEN
+        Properties properties = new Properties();
+        properties.setProperty("tariff.CAR.tiers", "30:150");
+        properties.setProperty("tariff.BIKE.tiers", "0:100");
+
+        // THEN
+        assertThrows(IllegalArgumentException.class, () -> TariffDefinition.fromProperties(properties));
+        properties.setProperty("tariff.CAR.tiers", "0:150,abc");
+        assertThrows(IllegalArgumentException.class, () -> TariffDefinition.fromProperties(properties));
+        properties.remove("tariff.BIKE.tiers");
+        properties.setProperty("tariff.CAR.tiers", "0:150");
+        assertThrows(IllegalArgumentException.class, () -> TariffDefinition.fromProperties(properties));
+    }
 }
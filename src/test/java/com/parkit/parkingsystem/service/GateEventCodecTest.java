@@ -0,0 +1,76 @@
+package com.parkit.parkingsystem.service;
+
+import com.parkit.parkingsystem.constants.ParkingType;
+import org.junit.jupiter.api.Test;
+
+import java.net.ProtocolException;
+import java.nio.ByteBuffer;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class GateEventCodecTest {
+
+    @Test
+    public void requestShouldRoundTripAcrossPartialReads() throws Exception {
+
+        // GIVEN
+        GateEvent sent = new GateEvent();
+        sent.setOpcode(GateEventCodec.OP_ENTRY);
+        sent.setCorrelationId(42);
+        sent.setGateId(60_000);
+        sent.setTimestamp(1_700_000_000_000L);
+        sent.setParkingType(ParkingType.BIKE);
+        sent.setVehicleRegNumber("AB-123-CD");
+        ByteBuffer wire = ByteBuffer.allocate(64);
+        GateEventCodec.encodeRequest(sent, wire);
+        wire.flip();
+        ByteBuffer partial = wire.duplicate().limit(wire.limit() - 1);
+        GateEvent received = new GateEvent();
+
+        // THEN
+        assertFalse(GateEventCodec.decodeRequest(partial, received));
+        assertEquals(0, partial.position());
+        assertTrue(GateEventCodec.decodeRequest(wire, received));
+        assertFalse(wire.hasRemaining());
+        assertEquals(GateEventCodec.OP_ENTRY, received.getOpcode());
+        assertEquals(42, received.getCorrelationId());
+        assertEquals(60_000, received.getGateId());
+        assertEquals(1_700_000_000_000L, received.getTimestamp());
+        assertEquals(ParkingType.BIKE, received.getParkingType());
+        assertEquals("AB-123-CD", received.getVehicleRegNumber());
+    }
+
+    @Test
+    public void responseShouldRoundTrip() throws Exception {
+
+        // GIVEN
+        GateEvent event = new GateEvent();
+        event.setOpcode(GateEventCodec.OP_EXIT);
+        event.setCorrelationId(7);
+        event.setResult(GateEventCodec.STATUS_OK, 3, 143);
+        ByteBuffer wire = ByteBuffer.allocate(GateEventCodec.RESPONSE_FRAME);
+        GateEventCodec.encodeResponse(event, wire);
+        wire.flip();
+        GateEvent received = new GateEvent();
+
+        // THEN
+        assertTrue(GateEventCodec.decodeResponse(wire, received));
+        assertEquals(GateEventCodec.OP_EXIT, received.getOpcode());
+        assertEquals(7, received.getCorrelationId());
+        assertEquals(GateEventCodec.STATUS_OK, received.getStatus());
+        assertEquals(3, received.getParkingNumber());
+        assertEquals(143, received.getPriceCents());
+    }
+
+    @Test
+    public void malformedRequestsShouldBeRejected() {
+
+        // GIVEN
+        ByteBuffer tooLong = ByteBuffer.allocate(8).putInt(1_000).flip();
+        ByteBuffer unknownOpcode = ByteBuffer.allocate(64).putInt(18).put((byte) 9).put(new byte[17]).flip();
+
+        // THEN
+        assertThrows(ProtocolException.class, () -> GateEventCodec.decodeRequest(tooLong, new GateEvent()));
+        assertThrows(ProtocolException.class, () -> GateEventCodec.decodeRequest(unknownOpcode, new GateEvent()));
+    }
+}
@@ -0,0 +1,142 @@
+package com.parkit.parkingsystem.service;
+
+import com.parkit.parkingsystem.constants.ParkingType;
+import com.parkit.parkingsystem.model.EntryResult;
+import com.parkit.parkingsystem.model.ExitResult;
+import com.parkit.parkingsystem.model.OccupancySnapshot;
+import com.parkit.parkingsystem.model.ParkingSpot;
+import com.parkit.parkingsystem.model.Ticket;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.Date;
+import java.util.EnumMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+public class GateHttpServerTest {
+
+    @Mock
+    private ParkingService parkingService;
+
+    private GateHttpServer gateHttpServer;
+    private HttpClient client;
+
+    @BeforeEach
+    public void setUpPerTest() throws Exception {
+        gateHttpServer = new GateHttpServer(parkingService, new InetSocketAddress("localhost", 0));
+        gateHttpServer.start();
+        client = HttpClient.newHttpClient();
+    }
+
+    @AfterEach
+    public void tearDownPerTest() {
+        gateHttpServer.stop(0);
+    }
+
+    @Test
+    public void entryShouldParkVehicleFromParameters() throws Exception {
+
+        // GIVEN
+        Ticket ticket = new Ticket();
+        ticket.setId(7);
+        ticket.setParkingSpot(new ParkingSpot(2, ParkingType.CAR, false));
+        ticket.setVehicleRegNumber("AB123");
+        ticket.setInTime(new Date(0));
+        when(parkingService.processIncomingVehicle(ParkingType.CAR, "AB123")).thenReturn(EntryResult.success(ticket, 1));
+
+        // WHEN
+        HttpResponse<String> response = send("POST", "/entry?type=car&plate=AB123");
+
+        // THEN
+        assertEquals(201, response.statusCode());
+        assertEquals("{\"ticketId\":7,\"vehicleRegNumber\":\"AB123\",\"parkingNumber\":2,\"parkingType\":\"CAR\","
+                + "\"inTime\":\"1970-01-01T00:00:00Z\",\"recurringUser\":true}", response.body());
+    }
+
+    @Test
+    public void entryShouldRejectBadRequests() throws Exception {
+
+        // THEN
+        assertEquals(400, send("POST", "/entry?type=TRUCK&plate=AB123").statusCode());
+        assertEquals(400, send("POST", "/entry?type=CAR").statusCode());
+        assertEquals(405, send("GET", "/entry?type=CAR&plate=AB123").statusCode());
+        verifyNoInteractions(parkingService);
+    }
+
+    @Test
+    public void exitShouldReturnFareOrNotFound() throws Exception {
+
+        // GIVEN
+        Ticket ticket = new Ticket();
+        ticket.setId(7);
+        ticket.setParkingSpot(new ParkingSpot(2, ParkingType.CAR, false));
+        ticket.setVehicleRegNumber("AB123");
+        ticket.setInTime(new Date(0));
+        ticket.setOutTime(new Date(60 * 60 * 1000));
+        ticket.setPriceCents(150);
+        when(parkingService.processExitingVehicle("AB123")).thenReturn(ExitResult.success(ticket));
+        when(parkingService.previewFare("ZZ999")).thenReturn(ExitResult.failure(ExitResult.Status.NO_TICKET_FOUND));
+
+        // WHEN
+        HttpResponse<String> exit = send("POST", "/exit?plate=AB123");
+        HttpResponse<String> fare = send("GET", "/fare?plate=ZZ999");
+
+        // THEN
+        assertEquals(200, exit.statusCode());
+        assertTrue(exit.body().contains("\"price\":\"1.50\",\"priceCents\":150"));
+        assertEquals(404, fare.statusCode());
+    }
+
+    @Test
+    public void occupancyShouldListEachParkingType() throws Exception {
+
+        // GIVEN
+        Map<ParkingType, Integer> availableSpots = new EnumMap<>(ParkingType.class);
+        availableSpots.put(ParkingType.CAR, 3);
+        availableSpots.put(ParkingType.BIKE, 0);
+        when(parkingService.getAvailableSpots()).thenReturn(availableSpots);
+
+        // WHEN
+        HttpResponse<String> response = send("GET", "/occupancy");
+
+        // THEN
+        assertEquals(200, response.statusCode());
+        assertEquals("{\"CAR\":{\"available\":3},\"BIKE\":{\"available\":0}}", response.body());
+    }
+
+    @Test
+    public void occupancyShouldComeFromTheCountersWhenThereAreSome() throws Exception {
+
+        // GIVEN
+        when(parkingService.getOccupancy()).thenReturn(new OccupancySnapshot(new int[]{3, 2}, new int[]{1, 2}, 0));
+
+        // WHEN
+        HttpResponse<String> response = send("GET", "/occupancy");
+
+        // THEN
+        assertEquals(200, response.statusCode());
+        assertEquals("{\"CAR\":{\"available\":2,\"occupied\":1,\"capacity\":3},"
+                + "\"BIKE\":{\"available\":0,\"occupied\":2,\"capacity\":2}}", response.body());
+        verify(parkingService, never()).getAvailableSpots();
+    }
+
+    private HttpResponse<String> send(String method, String path) throws Exception {
+        HttpRequest request = HttpRequest.newBuilder(URI.create("http://localhost:" + gateHttpServer.getPort() + path))
+                .method(method, HttpRequest.BodyPublishers.noBody())
+                .build();
+        return client.send(request, HttpResponse.BodyHandlers.ofString());
+    }
+}
@@ -0,0 +1,138 @@
+package com.parkit.parkingsystem.service;
+
+import com.parkit.parkingsystem.constants.ParkingType;
+import com.parkit.parkingsystem.model.EntryResult;
+import com.parkit.parkingsystem.model.ExitResult;
+import com.parkit.parkingsystem.model.ParkingSpot;
+import com.parkit.parkingsystem.model.Ticket;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+public class GateProtocolServerTest {
+
+    @Mock
+    private ParkingService parkingService;
+
+    private GateProtocolServer gateProtocolServer;
+
+    @BeforeEach
+    public void setUpPerTest() throws Exception {
+        gateProtocolServer = new GateProtocolServer(parkingService, new InetSocketAddress("localhost", 0));
+        gateProtocolServer.start();
+    }
+
+    @AfterEach
+    public void tearDownPerTest() throws Exception {
+        gateProtocolServer.close();
+    }
+
+    @Test
+    public void pipelinedEventsShouldBeAnsweredInOrder() throws Exception {
+
+        // GIVEN
+        Ticket entered = new Ticket();
+        entered.setParkingSpot(new ParkingSpot(2, ParkingType.CAR, false));
+        Ticket exited = new Ticket();
+        exited.setParkingSpot(new ParkingSpot(4, ParkingType.BIKE, true));
+        exited.setPriceCents(95);
+        when(parkingService.processIncomingVehicle(ParkingType.CAR, "CAR1")).thenReturn(EntryResult.success(entered, 0));
+        when(parkingService.processExitingVehicle("BIKE1")).thenReturn(ExitResult.success(exited));
+        when(parkingService.processExitingVehicle("GHOST")).thenReturn(ExitResult.failure(ExitResult.Status.NO_TICKET_FOUND));
+
+        ByteBuffer requests = ByteBuffer.allocate(256);
+        encode(requests, GateEventCodec.OP_ENTRY, 1, ParkingType.CAR, "CAR1");
+        encode(requests, GateEventCodec.OP_EXIT, 2, null, "BIKE1");
+        encode(requests, GateEventCodec.OP_EXIT, 3, null, "GHOST");
+        requests.flip();
+
+        try (SocketChannel channel = SocketChannel.open(new InetSocketAddress("localhost", gateProtocolServer.getPort()))) {
+            // WHEN
+            while (requests.hasRemaining()) {
+                channel.write(requests);
+            }
+            ByteBuffer responses = ByteBuffer.allocate(3 * GateEventCodec.RESPONSE_FRAME);
+            while (responses.hasRemaining() && channel.read(responses) >= 0) {
+                //read until all three responses are in
+            }
+            responses.flip();
+
+            // THEN
+            GateEvent response = new GateEvent();
+            assertTrue(GateEventCodec.decodeResponse(responses, response));
+            assertEquals(1, response.getCorrelationId());
+            assertEquals(GateEventCodec.STATUS_OK, response.getStatus());
+            assertEquals(2, response.getParkingNumber());
+
+            assertTrue(GateEventCodec.decodeResponse(responses, response));
+            assertEquals(2, response.getCorrelationId());
+            assertEquals(GateEventCodec.STATUS_OK, response.getStatus());
+            assertEquals(95, response.getPriceCents());
+
+            assertTrue(GateEventCodec.decodeResponse(responses, response));
+            assertEquals(3, response.getCorrelationId());
+            assertEquals(GateEventCodec.STATUS_NO_TICKET_FOUND, response.getStatus());
+        }
+    }
+
+    @Test
+    public void eventsSentBeforeAHalfCloseShouldAllBeAnswered() throws Exception {
+
+        // GIVEN
+        when(parkingService.previewFare("GHOST")).thenAnswer(invocation -> {
+            //keep the worker behind the end of the input
+            Thread.sleep(2);
+            return ExitResult.failure(ExitResult.Status.NO_TICKET_FOUND);
+        });
+        int events = 50;
+        ByteBuffer requests = ByteBuffer.allocate(events * 64);
+        for (int i = 1; i <= events; i++) {
+            encode(requests, GateEventCodec.OP_FARE, i, null, "GHOST");
+        }
+        requests.flip();
+
+        try (SocketChannel channel = SocketChannel.open(new InetSocketAddress("localhost", gateProtocolServer.getPort()))) {
+            // WHEN
+            while (requests.hasRemaining()) {
+                channel.write(requests);
+            }
+            channel.shutdownOutput();
+            ByteBuffer responses = ByteBuffer.allocate((events + 1) * GateEventCodec.RESPONSE_FRAME);
+            while (channel.read(responses) >= 0) {
+                //read until the server closes the connection
+            }
+            responses.flip();
+
+            // THEN
+            assertEquals(events * GateEventCodec.RESPONSE_FRAME, responses.remaining());
+            GateEvent response = new GateEvent();
+            for (int i = 1; i <= events; i++) {
+                assertTrue(GateEventCodec.decodeResponse(responses, response));
+                assertEquals(i, response.getCorrelationId());
+                assertEquals(GateEventCodec.STATUS_NO_TICKET_FOUND, response.getStatus());
+            }
+        }
+    }
+
+    private static void encode(ByteBuffer out, int opcode, int correlationId, ParkingType parkingType, String plate) {
+        GateEvent event = new GateEvent();
+        event.setOpcode(opcode);
+        event.setCorrelationId(correlationId);
+        event.setGateId(1);
+        event.setTimestamp(System.currentTimeMillis());
+        event.setParkingType(parkingType);
+        event.setVehicleRegNumber(plate);
+        GateEventCodec.encodeRequest(event, out);
+    }
+}
@@ -0,0 +1,78 @@
+package com.parkit.parkingsystem.service;
+
+import com.parkit.parkingsystem.config.MemoryStoreSettings;
+import com.parkit.parkingsystem.constants.ParkingType;
+import com.parkit.parkingsystem.dao.InMemoryParkingStore;
+import com.parkit.parkingsystem.model.OccupancySnapshot;
+import com.parkit.parkingsystem.model.ParkingSpot;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class OccupancyCountersTest {
+
+    @Test
+    public void countsShouldStartFromTheLoadedSpotsAndFollowEntriesAndExits() throws Exception {
+
+        // GIVEN
+        OccupancyCounters occupancyCounters = OccupancyCounters.of(List.of(
+                new ParkingSpot(1, ParkingType.CAR, false),
+                new ParkingSpot(2, ParkingType.CAR, true),
+                new ParkingSpot(3, ParkingType.CAR, true),
+                new ParkingSpot(4, ParkingType.BIKE, true)));
+        List<Thread> gates = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            gates.add(new Thread(() -> {
+                for (int j = 0; j < 10_000; j++) {
+                    occupancyCounters.entered(ParkingType.BIKE);
+                    occupancyCounters.exited(ParkingType.BIKE);
+                }
+            }));
+        }
+
+        // WHEN
+        gates.forEach(Thread::start);
+        for (Thread gate : gates) {
+            gate.join();
+        }
+        occupancyCounters.entered(ParkingType.CAR);
+        OccupancySnapshot snapshot = occupancyCounters.snapshot();
+
+        // THEN
+        assertEquals(3, snapshot.getCapacity(ParkingType.CAR));
+        assertEquals(2, snapshot.getOccupied(ParkingType.CAR));
+        assertEquals(1, snapshot.getAvailable(ParkingType.CAR));
+        assertEquals(0, snapshot.getOccupied(ParkingType.BIKE));
+        assertEquals(1, snapshot.getAvailable(ParkingType.BIKE));
+        assertEquals(4, snapshot.plus(snapshot).getOccupied(ParkingType.CAR));
+    }
+
+    @Test
+    public void parkingServiceShouldCountEntriesAndExits() throws Exception {
+
+        // GIVEN
+        MemoryStoreSettings settings = new MemoryStoreSettings();
+        settings.setDirectory(null);
+        InMemoryParkingStore store = new InMemoryParkingStore(settings);
+        ParkingService parkingService = new ParkingService(null, store, store);
+        parkingService.setOccupancyCounters(OccupancyCounters.of(store.getParkingSpotRegistry().getParkingSpots()));
+
+        // WHEN
+        parkingService.processIncomingVehicle(ParkingType.CAR, "AB123", new Date(0));
+        parkingService.processIncomingVehicle(ParkingType.BIKE, "CD456", new Date(0));
+        OccupancySnapshot afterEntries = parkingService.getOccupancy();
+        parkingService.processExitingVehicle("AB123", new Date(3_600_000));
+        store.close();
+
+        // THEN
+        assertEquals(1, afterEntries.getOccupied(ParkingType.CAR));
+        assertEquals(1, afterEntries.getOccupied(ParkingType.BIKE));
+        assertEquals(0, parkingService.getOccupancy().getOccupied(ParkingType.CAR));
+        assertEquals(3, parkingService.getAvailableSpots().get(ParkingType.CAR));
+        assertEquals(1, parkingService.getAvailableSpots().get(ParkingType.BIKE));
+    }
+}
@@ -1,19 +1,24 @@
 package com.parkit.parkingsystem.service;
 
 import com.parkit.parkingsystem.constants.ParkingType;
+import com.parkit.parkingsystem.dao.ParkingEntryDAO;
 import com.parkit.parkingsystem.dao.ParkingSpotDAO;
 import com.parkit.parkingsystem.dao.TicketDAO;
+import com.parkit.parkingsystem.model.EntryResult;
+import com.parkit.parkingsystem.model.ExitResult;
 import com.parkit.parkingsystem.model.ParkingSpot;
 import com.parkit.parkingsystem.model.Ticket;
 import com.parkit.parkingsystem.util.InputReaderUtil;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
 import org.mockito.Mock;
 import org.mockito.Mockito;
 import org.mockito.junit.jupiter.MockitoExtension;
 
 import java.util.Date;
+import java.util.List;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.Mockito.*;
@@ -50,7 +55,7 @@ public class ParkingServiceTest {
         ticket.setVehicleRegNumber("ABCDEF");
         when(ticketDAO.getNbTicket(anyString())).thenReturn(1);
         when(ticketDAO.getTicket(anyString())).thenReturn(ticket);
-        when(ticketDAO.updateTicket(any(Ticket.class))).thenReturn(true);
+        when(ticketDAO.closeTicket(any(Ticket.class))).thenReturn(ExitResult.Status.SUCCESS);
 
         when(parkingSpotDAO.updateParking(any(ParkingSpot.class))).thenReturn(true);
 
@@ -69,6 +74,8 @@ public class ParkingServiceTest {
         ParkingSpot parkingSpot = new ParkingSpot(1, ParkingType.CAR,false);
         when(inputReaderUtil.readSelection()).thenReturn(1);
         when(parkingSpotDAO.getNextAvailableSlot(ParkingType.CAR)).thenReturn(1);
+        when(parkingSpotDAO.updateParking(any(ParkingSpot.class))).thenReturn(true);
+        when(ticketDAO.saveTicket(any(Ticket.class))).thenReturn(true);
 
         Ticket ticket = new Ticket();
         ticket.setInTime(new Date(System.currentTimeMillis() - (60*60*1000)));
@@ -100,13 +107,13 @@ public class ParkingServiceTest {
         ticket.setVehicleRegNumber("ABCDEF");
         when(ticketDAO.getNbTicket(anyString())).thenReturn(1);
         when(ticketDAO.getTicket(anyString())).thenReturn(ticket);
-        when(ticketDAO.updateTicket(any(Ticket.class))).thenReturn(false);
+        when(ticketDAO.closeTicket(any(Ticket.class))).thenReturn(ExitResult.Status.ERROR);
 
         //WHEN
         parkingService.processExitingVehicle();
 
         //THEN
-        verify(ticketDAO, Mockito.times(1)).updateTicket(any(Ticket.class));
+        verify(ticketDAO, Mockito.times(1)).closeTicket(any(Ticket.class));
     }
 
     @Test
@@ -154,4 +161,202 @@ public class ParkingServiceTest {
         assertNull(result);
     }
 
+    @Test
+    public void processIncomingVehicleInTransactionRetriesOnContention() throws Exception {
+
+        // GIVEN
+        ParkingEntryDAO parkingEntryDAO = mock(ParkingEntryDAO.class);
+        parkingService = new ParkingService(inputReaderUtil, parkingSpotDAO, ticketDAO, parkingEntryDAO);
+        when(inputReaderUtil.readSelection()).thenReturn(1);
+        when(inputReaderUtil.readVehicleRegistrationNumber()).thenReturn("ABCDEF");
+
+        Ticket ticket = new Ticket();
+        ticket.setParkingSpot(new ParkingSpot(2, ParkingType.CAR, false));
+        when(parkingEntryDAO.enterVehicle(eq(ParkingType.CAR), eq("ABCDEF"), any(Date.class)))
+                .thenReturn(EntryResult.failure(EntryResult.Status.CONTENTION), EntryResult.success(ticket, 0));
+
+        // WHEN
+        parkingService.processIncomingVehicle();
+
+        // THEN
+        verify(parkingEntryDAO, times(2)).enterVehicle(eq(ParkingType.CAR), eq("ABCDEF"), any(Date.class));
+        verifyNoInteractions(parkingSpotDAO, ticketDAO);
+    }
+
+    @Test
+    public void processIncomingVehicleWithParametersShouldNotPrompt() throws Exception {
+
+        // GIVEN
+        when(parkingSpotDAO.getNextAvailableSlot(ParkingType.BIKE)).thenReturn(4);
+        when(ticketDAO.getNbTicket("ABCDEF")).thenReturn(2);
+        when(parkingSpotDAO.updateParking(any(ParkingSpot.class))).thenReturn(true);
+        when(ticketDAO.saveTicket(any(Ticket.class))).thenReturn(true);
+
+        // WHEN
+        EntryResult result = parkingService.processIncomingVehicle(ParkingType.BIKE, "ABCDEF");
+
+        // THEN
+        assertTrue(result.isSuccess());
+        assertEquals(4, result.getTicket().getParkingSpot().getId());
+        assertEquals(2, result.getNbTicket());
+        verify(ticketDAO).saveTicket(result.getTicket());
+        verifyNoInteractions(inputReaderUtil);
+    }
+
+    @Test
+    public void processExitingVehicleWithoutTicketShouldReportIt() {
+
+        // GIVEN
+        when(ticketDAO.getTicket("ABCDEF")).thenReturn(null);
+
+        // WHEN
+        ExitResult result = parkingService.processExitingVehicle("ABCDEF");
+
+        // THEN
+        assertEquals(ExitResult.Status.NO_TICKET_FOUND, result.getStatus());
+        verify(ticketDAO, never()).closeTicket(any(Ticket.class));
+        verifyNoInteractions(parkingSpotDAO);
+    }
+
+    @Test
+    public void processExitingVehicleNotParkedShouldNotCloseItsLastTicketAgain() {
+
+        // GIVEN
+        //the file and memory stores return the latest ticket of a plate, closed or not
+        Ticket closedTicket = new Ticket();
+        closedTicket.setParkingSpot(new ParkingSpot(1, ParkingType.CAR, false));
+        closedTicket.setVehicleRegNumber("ABCDEF");
+        closedTicket.setInTime(new Date(System.currentTimeMillis() - (2 * 60 * 60 * 1000)));
+        closedTicket.setOutTime(new Date(System.currentTimeMillis() - (60 * 60 * 1000)));
+        closedTicket.setPrice(1.5);
+        when(ticketDAO.getTicket("ABCDEF")).thenReturn(closedTicket);
+
+        // WHEN
+        ExitResult result = parkingService.processExitingVehicle("ABCDEF");
+
+        // THEN
+        assertEquals(ExitResult.Status.NO_TICKET_FOUND, result.getStatus());
+        assertEquals(1.5, closedTicket.getPrice());
+        verify(ticketDAO, never()).closeTicket(any(Ticket.class));
+        verifyNoInteractions(parkingSpotDAO);
+    }
+
+    @Test
+    public void entryShouldFailWithoutSavingATicketWhenTheSpotCannotBeOccupied() {
+
+        // GIVEN
+        OccupancyCounters occupancyCounters = OccupancyCounters.of(List.of(new ParkingSpot(4, ParkingType.BIKE, true)));
+        parkingService.setOccupancyCounters(occupancyCounters);
+        when(parkingSpotDAO.getNextAvailableSlot(ParkingType.BIKE)).thenReturn(4);
+        when(parkingSpotDAO.updateParking(any(ParkingSpot.class))).thenReturn(false);
+
+        // WHEN
+        EntryResult result = parkingService.processIncomingVehicle(ParkingType.BIKE, "ABCDEF");
+
+        // THEN
+        assertEquals(EntryResult.Status.ERROR, result.getStatus());
+        assertEquals(0, occupancyCounters.getOccupied(ParkingType.BIKE));
+        verify(ticketDAO, never()).saveTicket(any(Ticket.class));
+    }
+
+    @Test
+    public void entryShouldFreeTheSpotWhenTheTicketCannotBeSaved() {
+
+        // GIVEN
+        OccupancyCounters occupancyCounters = OccupancyCounters.of(List.of(new ParkingSpot(4, ParkingType.BIKE, true)));
+        parkingService.setOccupancyCounters(occupancyCounters);
+        when(parkingSpotDAO.getNextAvailableSlot(ParkingType.BIKE)).thenReturn(4);
+        when(parkingSpotDAO.updateParking(any(ParkingSpot.class))).thenReturn(true);
+        when(ticketDAO.saveTicket(any(Ticket.class))).thenReturn(false);
+
+        // WHEN
+        EntryResult result = parkingService.processIncomingVehicle(ParkingType.BIKE, "ABCDEF");
+
+        // THEN
+        assertEquals(EntryResult.Status.ERROR, result.getStatus());
+        assertEquals(0, occupancyCounters.getOccupied(ParkingType.BIKE));
+        ArgumentCaptor<ParkingSpot> spots = ArgumentCaptor.forClass(ParkingSpot.class);
+        verify(parkingSpotDAO, times(2)).updateParking(spots.capture());
+        assertTrue(spots.getValue().isAvailable());
+        verify(parkingSpotDAO, never()).releaseSlot(any(ParkingSpot.class));
+    }
+
+    @Test
+    public void exitShouldNotCountTheSpotAsFreeWhenItCannotBeFreed() {
+
+        // GIVEN
+        ParkingSpot parkingSpot = new ParkingSpot(1, ParkingType.CAR, false);
+        OccupancyCounters occupancyCounters = OccupancyCounters.of(List.of(parkingSpot));
+        parkingService.setOccupancyCounters(occupancyCounters);
+        Ticket ticket = new Ticket();
+        ticket.setInTime(new Date(System.currentTimeMillis() - (60 * 60 * 1000)));
+        ticket.setParkingSpot(parkingSpot);
+        ticket.setVehicleRegNumber("ABCDEF");
+        when(ticketDAO.getTicket("ABCDEF")).thenReturn(ticket);
+        when(ticketDAO.closeTicket(any(Ticket.class))).thenReturn(ExitResult.Status.SUCCESS);
+        when(parkingSpotDAO.updateParking(parkingSpot)).thenReturn(false);
+
+        // WHEN
+        ExitResult result = parkingService.processExitingVehicle("ABCDEF");
+
+        // THEN
+        assertTrue(result.isSuccess());
+        assertEquals(1, occupancyCounters.getOccupied(ParkingType.CAR));
+    }
+
+    @Test
+    public void exitShouldNotFreeTheSpotWhenAnotherExitClosedTheTicket() {
+
+        // GIVEN
+        ParkingSpot parkingSpot = new ParkingSpot(1, ParkingType.CAR, false);
+        OccupancyCounters occupancyCounters = OccupancyCounters.of(List.of(parkingSpot));
+        parkingService.setOccupancyCounters(occupancyCounters);
+        Ticket ticket = new Ticket();
+        ticket.setId(3);
+        ticket.setInTime(new Date(System.currentTimeMillis() - (60 * 60 * 1000)));
+        ticket.setParkingSpot(parkingSpot);
+        ticket.setVehicleRegNumber("ABCDEF");
+        when(ticketDAO.getTicket("ABCDEF")).thenReturn(ticket);
+        //both exits read the open ticket, the second loses the race to close it
+        when(ticketDAO.closeTicket(any(Ticket.class))).thenReturn(ExitResult.Status.SUCCESS, ExitResult.Status.NO_TICKET_FOUND);
+        when(parkingSpotDAO.updateParking(any(ParkingSpot.class))).thenReturn(true);
+
+        // WHEN
+        ExitResult first = parkingService.processExitingVehicle("ABCDEF");
+        ExitResult second = parkingService.processExitingVehicle("ABCDEF");
+
+        // THEN
+        assertTrue(first.isSuccess());
+        assertEquals(ExitResult.Status.NO_TICKET_FOUND, second.getStatus());
+        verify(parkingSpotDAO, times(1)).updateParking(any(ParkingSpot.class));
+        assertEquals(0, occupancyCounters.getOccupied(ParkingType.CAR));
+    }
+
+    @Test
+    public void exitShouldLeaveTheTicketOpenWhenItsUpdateFails() {
+
+        // GIVEN
+        Ticket openTicket = new Ticket();
+        openTicket.setId(3);
+        openTicket.setParkingSpot(new ParkingSpot(1, ParkingType.CAR, false));
+        openTicket.setVehicleRegNumber("ABCDEF");
+        openTicket.setInTime(new Date(System.currentTimeMillis() - (60 * 60 * 1000)));
+        //the same cached instance both times, as TicketDAO hands it out from its open-ticket index
+        when(ticketDAO.getTicket("ABCDEF")).thenReturn(openTicket);
+        when(ticketDAO.closeTicket(any(Ticket.class))).thenReturn(ExitResult.Status.ERROR, ExitResult.Status.SUCCESS);
+        when(parkingSpotDAO.updateParking(any(ParkingSpot.class))).thenReturn(true);
+
+        // WHEN
+        ExitResult failed = parkingService.processExitingVehicle("ABCDEF");
+        boolean openAfterFailure = openTicket.isOpen();
+        ExitResult retried = parkingService.processExitingVehicle("ABCDEF");
+
+        // THEN
+        assertEquals(ExitResult.Status.ERROR, failed.getStatus());
+        assertTrue(openAfterFailure);
+        assertTrue(retried.isSuccess());
+        assertEquals(3, retried.getTicket().getId());
+        assertFalse(retried.getTicket().isOpen());
+        verify(parkingSpotDAO, times(1)).updateParking(any(ParkingSpot.class));
+    }
 }
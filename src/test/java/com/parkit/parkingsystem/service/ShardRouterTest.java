@@ -0,0 +1,148 @@
+package com.parkit.parkingsystem.service;
+
+import com.parkit.parkingsystem.config.MemoryStoreSettings;
+import com.parkit.parkingsystem.constants.ParkingType;
+import com.parkit.parkingsystem.dao.InMemoryParkingStore;
+import com.parkit.parkingsystem.model.EntryResult;
+import com.parkit.parkingsystem.model.ExitResult;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ShardRouterTest {
+
+    private final List<InMemoryParkingStore> stores = new ArrayList<>();
+
+    private final ShardRouter shardRouter = new ShardRouter(64);
+
+    @AfterEach
+    public void closeStores() throws IOException {
+        for (InMemoryParkingStore store : stores) {
+            store.close();
+        }
+    }
+
+    private void addShard(String name, String spots) throws IOException {
+        MemoryStoreSettings settings = new MemoryStoreSettings();
+        settings.setDirectory(null);
+        settings.setSpots(spots);
+        InMemoryParkingStore store = new InMemoryParkingStore(settings);
+        stores.add(store);
+        shardRouter.addShard(name, new ParkingService(null, store, store), store);
+    }
+
+    @Test
+    public void exitShouldGoToTheShardHoldingTheTicketAfterAShardIsAdded() throws Exception {
+
+        // GIVEN
+        addShard("north", "CAR:50");
+        addShard("south", "CAR:50");
+        List<String> plates = new ArrayList<>();
+        for (int i = 0; i < 40; i++) {
+            plates.add("AB" + i);
+            assertTrue(shardRouter.processIncomingVehicle(ParkingType.CAR, "AB" + i, new Date(0)).isSuccess());
+        }
+        List<String> shardsBefore = new ArrayList<>();
+        plates.forEach(plate -> shardsBefore.add(shardRouter.getShardOf(plate)));
+
+        // WHEN
+        addShard("east", "CAR:50");
+
+        // THEN
+        for (int i = 0; i < plates.size(); i++) {
+            assertEquals(shardsBefore.get(i), shardRouter.getShardOf(plates.get(i)));
+            ExitResult exit = shardRouter.processExitingVehicle(plates.get(i).toLowerCase(), new Date(3_600_000));
+            assertEquals(ExitResult.Status.SUCCESS, exit.getStatus());
+        }
+        assertEquals(150, shardRouter.getAvailableSpots().get(ParkingType.CAR));
+        assertEquals(0, shardRouter.getAvailableSpots().get(ParkingType.BIKE));
+        assertEquals(List.of("north", "south", "east"), shardRouter.getShardNames());
+        assertEquals(3, shardRouter.getTicketRepositories().size());
+    }
+
+    @Test
+    public void returningVehicleShouldBeRecognizedOnTheShardItMovedTo() throws Exception {
+
+        // GIVEN
+        addShard("north", "CAR:50");
+        addShard("south", "CAR:50");
+        List<String> plates = new ArrayList<>();
+        List<String> shardsBefore = new ArrayList<>();
+        for (int i = 0; i < 40; i++) {
+            plates.add("AB" + i);
+            assertTrue(shardRouter.processIncomingVehicle(ParkingType.CAR, "AB" + i, new Date(0)).isSuccess());
+            shardsBefore.add(shardRouter.getShardOf("AB" + i));
+            assertTrue(shardRouter.processExitingVehicle("AB" + i, new Date(3_600_000)).isSuccess());
+        }
+        addShard("east", "CAR:50");
+        List<String> moved = new ArrayList<>();
+        for (int i = 0; i < plates.size(); i++) {
+            if (!shardsBefore.get(i).equals(shardRouter.getShardOf(plates.get(i)))) {
+                moved.add(plates.get(i));
+            }
+        }
+
+        // WHEN
+        List<EntryResult> returns = new ArrayList<>();
+        for (String plate : moved) {
+            returns.add(shardRouter.processIncomingVehicle(ParkingType.CAR, plate, new Date(7_200_000)));
+        }
+
+        // THEN
+        assertFalse(moved.isEmpty());
+        for (EntryResult entry : returns) {
+            assertTrue(entry.isSuccess());
+            assertEquals(1, entry.getNbTicket());
+        }
+        assertEquals(2, shardRouter.getNbTicket(moved.get(0)));
+    }
+
+    @Test
+    public void entryShouldSpillOverWhenTheOwningShardIsFull() throws Exception {
+
+        // GIVEN
+        addShard("north", "CAR:1");
+        addShard("south", "CAR:1");
+
+        // WHEN
+        EntryResult first = shardRouter.processIncomingVehicle(ParkingType.CAR, "AB123", new Date(0));
+        EntryResult second = shardRouter.processIncomingVehicle(ParkingType.CAR, "AB123X", new Date(0));
+        EntryResult third = shardRouter.processIncomingVehicle(ParkingType.CAR, "CD456", new Date(0));
+
+        // THEN
+        assertTrue(first.isSuccess());
+        assertTrue(second.isSuccess());
+        assertEquals(EntryResult.Status.NO_SPOT_AVAILABLE, third.getStatus());
+        assertNotEquals(shardRouter.getShardOf("AB123"), shardRouter.getShardOf("AB123X"));
+        assertEquals(ExitResult.Status.SUCCESS, shardRouter.previewFare("AB123X").getStatus());
+        assertEquals(ExitResult.Status.NO_TICKET_FOUND, shardRouter.processExitingVehicle("CD456", new Date(0)).getStatus());
+        assertEquals(ExitResult.Status.SUCCESS, shardRouter.processExitingVehicle("AB123X", new Date(3_600_000)).getStatus());
+    }
+
+    @Test
+    public void exitOfAVehicleNotParkedShouldFindNoTicket() throws Exception {
+
+        // GIVEN
+        addShard("north", "CAR:2");
+        addShard("south", "CAR:2");
+        assertTrue(shardRouter.processIncomingVehicle(ParkingType.CAR, "AB123", new Date(0)).isSuccess());
+        ExitResult exit = shardRouter.processExitingVehicle("AB123", new Date(3_600_000));
+        assertTrue(exit.isSuccess());
+        long price = exit.getTicket().getPriceCents();
+
+        // WHEN
+        ExitResult secondExit = shardRouter.processExitingVehicle("AB123", new Date(7_200_000));
+
+        // THEN
+        assertEquals(ExitResult.Status.NO_TICKET_FOUND, secondExit.getStatus());
+        assertEquals(ExitResult.Status.NO_TICKET_FOUND, shardRouter.previewFare("AB123").getStatus());
+        assertEquals(price, exit.getTicket().getPriceCents());
+        assertEquals(4, shardRouter.getAvailableSpots().get(ParkingType.CAR));
+    }
+}
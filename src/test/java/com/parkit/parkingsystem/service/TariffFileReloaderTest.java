@@ -0,0 +1,81 @@
+package com.parkit.parkingsystem.service;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TariffFileReloaderTest {
+
+    private static final String TIERS = "tariff.CAR.tiers=0:150\ntariff.BIKE.tiers=0:100\n";
+
+    @TempDir
+    Path directory;
+
+    private TariffFileReloader tariffFileReloader;
+
+    @AfterEach
+    void tearDown() {
+        if (tariffFileReloader != null) {
+            tariffFileReloader.shutdown();
+        }
+    }
+
+    @Test
+    void startedReloaderShouldPickUpAModifiedFile() throws Exception {
+
+        // GIVEN
+        Path tariffFile = directory.resolve("tariff.properties");
+        Files.writeString(tariffFile, "tariff.discount.percent=7\n" + TIERS);
+        FareCalculatorService fareCalculatorService = new FareCalculatorService();
+        tariffFileReloader = new TariffFileReloader(tariffFile, fareCalculatorService);
+
+        // WHEN
+        tariffFileReloader.start(10);
+        waitForDiscount(fareCalculatorService, 7);
+        Files.writeString(tariffFile, "tariff.discount.percent=10\n" + TIERS);
+        //some file systems only keep whole seconds
+        Files.setLastModifiedTime(tariffFile, FileTime.fromMillis(Files.getLastModifiedTime(tariffFile).toMillis() + 2_000));
+
+        // THEN
+        waitForDiscount(fareCalculatorService, 10);
+    }
+
+    @Test
+    void fileCaughtHalfWrittenShouldBeReadAgainWithTheSameModifiedTime() throws Exception {
+
+        // GIVEN
+        Path tariffFile = directory.resolve("tariff.properties");
+        Files.writeString(tariffFile, "tariff.discount.percent=7\n" + TIERS);
+        FareCalculatorService fareCalculatorService = new FareCalculatorService();
+        tariffFileReloader = new TariffFileReloader(tariffFile, fareCalculatorService);
+        tariffFileReloader.reloadIfModified();
+        FileTime modified = FileTime.fromMillis(Files.getLastModifiedTime(tariffFile).toMillis() + 2_000);
+        Files.writeString(tariffFile, "tariff.discount.percent=10\ntariff.CAR.tiers=0:");
+        Files.setLastModifiedTime(tariffFile, modified);
+        tariffFileReloader.reloadIfModified();
+        int discountWhileHalfWritten = fareCalculatorService.getTariff().getDiscountPercent();
+
+        // WHEN
+        Files.writeString(tariffFile, "tariff.discount.percent=10\n" + TIERS);
+        Files.setLastModifiedTime(tariffFile, modified);
+        tariffFileReloader.reloadIfModified();
+
+        // THEN
+        assertEquals(7, discountWhileHalfWritten);
+        assertEquals(10, fareCalculatorService.getTariff().getDiscountPercent());
+    }
+
+    private static void waitForDiscount(FareCalculatorService fareCalculatorService, int discountPercent) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5_000;
+        while (fareCalculatorService.getTariff().getDiscountPercent() != discountPercent && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(discountPercent, fareCalculatorService.getTariff().getDiscountPercent());
+    }
+}
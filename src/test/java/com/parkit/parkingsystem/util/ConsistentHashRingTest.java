@@ -0,0 +1,63 @@
+package com.parkit.parkingsystem.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ConsistentHashRingTest {
+
+    @Test
+    public void addingAMemberShouldOnlyMoveItsShareOfKeys() {
+
+        // GIVEN
+        ConsistentHashRing<String> ring = new ConsistentHashRing<String>(128)
+                .with("a", "a").with("b", "b").with("c", "c");
+        Map<String, String> owners = new HashMap<>();
+        Map<String, Integer> counts = new HashMap<>();
+        for (int i = 0; i < 30_000; i++) {
+            String owner = ring.get("PLATE" + i);
+            owners.put("PLATE" + i, owner);
+            counts.merge(owner, 1, Integer::sum);
+        }
+
+        // WHEN
+        ConsistentHashRing<String> grown = ring.with("d", "d");
+
+        // THEN
+        for (int count : counts.values()) {
+            assertTrue(count > 7_000 && count < 13_000, "unbalanced : " + counts);
+        }
+        int moved = 0;
+        for (Map.Entry<String, String> owner : owners.entrySet()) {
+            String newOwner = grown.get(owner.getKey());
+            if (!newOwner.equals(owner.getValue())) {
+                assertEquals("d", newOwner);
+                moved++;
+            }
+        }
+        assertTrue(moved > 5_000 && moved < 10_000, "moved : " + moved);
+        assertEquals(3, ring.size());
+    }
+
+    @Test
+    public void preferenceListShouldStartWithTheOwner() {
+
+        // GIVEN
+        ConsistentHashRing<String> ring = new ConsistentHashRing<String>(16)
+                .with("a", "a").with("b", "b").with("c", "c");
+
+        // WHEN
+        List<String> preference = ring.preferenceList("AB123");
+
+        // THEN
+        assertEquals(ring.get("AB123"), preference.get(0));
+        assertEquals(3, preference.size());
+        assertTrue(preference.containsAll(List.of("a", "b", "c")));
+        assertNull(new ConsistentHashRing<String>(16).get("AB123"));
+        assertThrows(IllegalArgumentException.class, () -> ring.with("a", "a"));
+    }
+}